@@ -3,18 +3,24 @@ package org.pdxfinder.services;
 import com.github.openjson.JSONArray;
 import com.github.openjson.JSONObject;
 import org.apache.commons.lang3.StringUtils;
+import org.neo4j.ogm.model.Result;
+import org.neo4j.ogm.session.Session;
 import org.pdxfinder.graph.dao.*;
 import org.pdxfinder.graph.queryresults.TreatmentMappingData;
 import org.pdxfinder.graph.repositories.*;
 import org.pdxfinder.services.ds.Standardizer;
 import org.pdxfinder.services.dto.NodeSuggestionDTO;
+import org.pdxfinder.services.hgnc.MarkerDictionary;
 import org.pdxfinder.services.reporting.LogEntity;
 import org.pdxfinder.services.reporting.MarkerLogEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -51,14 +57,35 @@ public class DataImportService {
     private CurrentTreatmentRepository currentTreatmentRepository;
     private ExternalUrlRepository externalUrlRepository;
     private TreatmentRepository treatmentRepository;
+    private Session session;
 
     private final static Logger log = LoggerFactory.getLogger(DataImportService.class);
 
-    private HashMap<String, Marker> markersBySymbol = null;
-    private HashMap<String, List<Marker>> markersByPrevSymbol = null;
-    private HashMap<String, List<Marker>> markersBySynonym = null;
-
-    private boolean markersInitialized = false;
+    // when empty the dictionary is rebuilt from the graph into a temporary file
+    @Value("${marker-dictionary.file:}")
+    private String markerDictionaryFile;
+
+    // fingerprint of the dictionary written for the markers in this graph
+    private static final String SAVE_DICTIONARY_STAMP =
+        "MERGE (d:MarkerDictionaryStamp) SET d.fingerprint = {fingerprint}";
+    private static final String DICTIONARY_STAMP =
+        "MATCH (d:MarkerDictionaryStamp) RETURN d.fingerprint AS fingerprint";
+
+    private volatile MarkerDictionary markerDictionary;
+    private File temporaryMarkerDictionary;
+
+    private final ReferenceEntityCache<String, Tissue> tissues = new ReferenceEntityCache<>("Tissue");
+    private final ReferenceEntityCache<String, TumorType> tumorTypes = new ReferenceEntityCache<>("TumorType");
+    private final ReferenceEntityCache<String, EngraftmentSite> engraftmentSites = new ReferenceEntityCache<>("EngraftmentSite");
+    private final ReferenceEntityCache<String, EngraftmentType> engraftmentTypes = new ReferenceEntityCache<>("EngraftmentType");
+    private final ReferenceEntityCache<String, EngraftmentMaterial> engraftmentMaterials = new ReferenceEntityCache<>("EngraftmentMaterial");
+    private final ReferenceEntityCache<String, HostStrain> hostStrains = new ReferenceEntityCache<>("HostStrain");
+    private final ReferenceEntityCache<String, Group> projectGroups = new ReferenceEntityCache<>("ProjectGroup");
+    private final ReferenceEntityCache<List<String>, Group> accessibilityGroups = new ReferenceEntityCache<>("AccessibilityGroup");
+    private final ReferenceEntityCache<String, Group> publicationGroups = new ReferenceEntityCache<>("PublicationGroup");
+    private final List<ReferenceEntityCache<?, ?>> referenceEntityCaches = Arrays.asList(
+            tissues, tumorTypes, engraftmentSites, engraftmentTypes, engraftmentMaterials,
+            hostStrains, projectGroups, accessibilityGroups, publicationGroups);
 
     public DataImportService(TumorTypeRepository tumorTypeRepository,
                              HostStrainRepository hostStrainRepository,
@@ -84,7 +111,8 @@ public class DataImportService {
                              TreatmentProtocolRepository treatmentProtocolRepository,
                              CurrentTreatmentRepository currentTreatmentRepository,
                              ExternalUrlRepository externalUrlRepository,
-                             TreatmentRepository treatmentRepository) {
+                             TreatmentRepository treatmentRepository,
+                             Session session) {
 
         Assert.notNull(tumorTypeRepository, "tumorTypeRepository cannot be null");
         Assert.notNull(hostStrainRepository, "hostStrainRepository cannot be null");
@@ -127,11 +155,7 @@ public class DataImportService {
         this.currentTreatmentRepository = currentTreatmentRepository;
         this.externalUrlRepository = externalUrlRepository;
         this.treatmentRepository = treatmentRepository;
-
-
-        this.markersBySymbol = new HashMap<>();
-        this.markersByPrevSymbol = new HashMap<>();
-        this.markersBySynonym = new HashMap<>();
+        this.session = session;
 
     }
 
@@ -158,6 +182,11 @@ public class DataImportService {
 
     public Group getPublicationGroup(String publicationId){
 
+        return publicationGroups.get(publicationId, this::findOrCreatePublicationGroup);
+    }
+
+    private Group findOrCreatePublicationGroup(String publicationId){
+
         Group g = groupRepository.findByPubmedIdAndType(publicationId, "Publication");
 
 
@@ -176,6 +205,11 @@ public class DataImportService {
 
     public Group getProjectGroup(String groupName){
 
+        return projectGroups.get(groupName, this::findOrCreateProjectGroup);
+    }
+
+    private Group findOrCreateProjectGroup(String groupName){
+
         Group g = groupRepository.findByNameAndType(groupName, "Project");
 
         if(g == null){
@@ -193,6 +227,13 @@ public class DataImportService {
 
     public Group getAccessibilityGroup(String accessibility, String accessModalities){
 
+        return accessibilityGroups.get(
+                Arrays.asList(accessibility, accessModalities),
+                key -> findOrCreateAccessibilityGroup(accessibility, accessModalities));
+    }
+
+    private Group findOrCreateAccessibilityGroup(String accessibility, String accessModalities){
+
         Group g = groupRepository.findAccessGroupByAccessibilityAndAccessModalities(accessibility, accessModalities);
 
         if(g == null){
@@ -603,6 +644,11 @@ public class DataImportService {
     }
 
     public EngraftmentSite getImplantationSite(String iSite) {
+
+        return engraftmentSites.get(iSite, this::findOrCreateImplantationSite);
+    }
+
+    private EngraftmentSite findOrCreateImplantationSite(String iSite) {
         EngraftmentSite site = engraftmentSiteRepository.findByName(iSite);
         if (site == null) {
             log.info("Implantation Site '{}' not found. Creating.", iSite);
@@ -614,6 +660,11 @@ public class DataImportService {
     }
 
     public EngraftmentType getImplantationType(String iType) {
+
+        return engraftmentTypes.get(iType, this::findOrCreateImplantationType);
+    }
+
+    private EngraftmentType findOrCreateImplantationType(String iType) {
         EngraftmentType type = engraftmentTypeRepository.findByName(iType);
         if (type == null) {
             log.info("Implantation Type '{}' not found. Creating.", iType);
@@ -626,6 +677,11 @@ public class DataImportService {
 
     public EngraftmentMaterial getEngraftmentMaterial(String eMat){
 
+        return engraftmentMaterials.get(eMat, this::findOrCreateEngraftmentMaterial);
+    }
+
+    private EngraftmentMaterial findOrCreateEngraftmentMaterial(String eMat){
+
         EngraftmentMaterial em = engraftmentMaterialRepository.findByName(eMat);
 
         if(em == null){
@@ -649,6 +705,11 @@ public class DataImportService {
     }
 
     public Tissue getTissue(String t) {
+
+        return tissues.get(t, this::findOrCreateTissue);
+    }
+
+    private Tissue findOrCreateTissue(String t) {
         Tissue tissue = tissueRepository.findByName(t);
         if (tissue == null) {
             tissue = new Tissue(t);
@@ -659,6 +720,11 @@ public class DataImportService {
     }
 
     public TumorType getTumorType(String name) {
+
+        return tumorTypes.get(name, this::findOrCreateTumorType);
+    }
+
+    private TumorType findOrCreateTumorType(String name) {
         TumorType tumorType = tumorTypeRepository.findByName(name);
         if (tumorType == null) {
             log.info("TumorType '{}' not found. Creating.", name);
@@ -673,23 +739,21 @@ public class DataImportService {
 
         if(name == null || symbol == null || symbol.isEmpty()) throw new Exception("Symbol or name is null");
 
-        HostStrain hostStrain = hostStrainRepository.findBySymbol(symbol);
-
+        HostStrain hostStrain = hostStrains.get(symbol, key -> {
+            HostStrain found = hostStrainRepository.findBySymbol(key);
+            if (found == null) {
+                log.info("Background Strain '{}' not found. Creating", name);
+                found = new HostStrain(name, key, description, url);
+                hostStrainRepository.save(found);
+            }
+            return found;
+        });
 
+        //if the saved hoststrain's name is empty update the name
+        if(!StringUtils.equals(hostStrain.getName(), name) ){
 
-        if (hostStrain == null) {
-            log.info("Background Strain '{}' not found. Creating", name);
-            hostStrain = new HostStrain(name, symbol, description, url);
+            hostStrain.setName(name);
             hostStrainRepository.save(hostStrain);
-        }
-        else {
-            //if the saved hoststrain's name is empty update the name
-            if(!StringUtils.equals(hostStrain.getName(), name) ){
-
-                hostStrain.setName(name);
-                hostStrainRepository.save(hostStrain);
-
-            }
 
         }
         return hostStrain;
@@ -1303,81 +1367,149 @@ public class DataImportService {
         return qa;
     }
 
-    private void initializeMarkers(){
+    public void clearReferenceEntityCaches(){
+
+        referenceEntityCaches.forEach(ReferenceEntityCache::clear);
+    }
+
+    /**
+     * Releases the reference entities cached while loading one provider; lookup statistics are kept.
+     */
+    public void evictReferenceEntities(){
+
+        referenceEntityCaches.forEach(ReferenceEntityCache::evict);
+    }
+
+    public void logReferenceEntityCacheStatistics(){
+
+        referenceEntityCaches.forEach(cache -> log.info("Reference cache {}", cache));
+    }
+
+    /**
+     * Writes the dictionary used by {@link #getSuggestedMarker} for the markers just loaded, so the next
+     * loader can map it instead of reading every marker from the graph. Its fingerprint is stamped on the
+     * graph, so a dictionary written for other markers is not reused.
+     */
+    public synchronized void saveMarkerDictionary(MarkerDictionary.Builder builder) {
+
+        File file = markerDictionaryLocation();
+        try {
+            builder.write(file);
+            markerDictionary = MarkerDictionary.open(file);
+            session.query(SAVE_DICTIONARY_STAMP, Collections.singletonMap("fingerprint", markerDictionary.getFingerprint()));
+            log.info("Saved dictionary of {} markers to {}", builder.size(), file);
+        } catch (IOException e) {
+            log.error("Cannot save marker dictionary to {}", file, e);
+            markerDictionary = null;
+        }
+    }
+
+    private synchronized MarkerDictionary getMarkerDictionary(){
+
+        if (markerDictionary != null) return markerDictionary;
 
         int markerCount = markerRepository.getMarkerCount();
-        log.info("Initializing {} markers.",markerCount);
+        File file = markerDictionaryLocation();
+        if (file.isFile()) {
+            try {
+                MarkerDictionary saved = MarkerDictionary.open(file);
+                String stamp = getMarkerDictionaryStamp();
+                if (saved.getMarkerCount() == markerCount && saved.getFingerprint().equals(stamp)) {
+                    log.info("Using dictionary of {} markers from {}", markerCount, file);
+                    markerDictionary = saved;
+                    return saved;
+                }
+                log.info("Marker dictionary {} is out of date ({} of {} markers, fingerprint {} of {})",
+                    file, saved.getMarkerCount(), markerCount, saved.getFingerprint(), stamp);
+            } catch (IOException e) {
+                log.warn("Cannot read marker dictionary {}: {}", file, e.getMessage());
+            }
+        }
+
+        log.info("Building dictionary of {} markers.", markerCount);
+        MarkerDictionary.Builder builder = new MarkerDictionary.Builder();
         int counter = 0;
         int batchSize = 400;
         while(counter < markerCount){
 
-            Collection<Marker> markerCollection = markerRepository.getAllMarkersSkipLimit(counter, batchSize);
-
-            for(Marker marker: markerCollection){
-                addMarkerToMap(marker);
+            for(Marker marker: markerRepository.getAllMarkersSkipLimit(counter, batchSize)){
+                builder.add(marker.getHgncSymbol(), marker.getHgncId(), marker.getNcbiGeneId(),
+                        marker.getEnsemblGeneId(), marker.getPrevSymbols(), marker.getAliasSymbols());
             }
 
             counter += batchSize;
             Float percent = ((float)counter / markerCount) * 100;
             System.out.print(String.format("%s markers initialized (%.0f%%)...\r", counter, percent));
         }
-
-        markersInitialized = true;
+        saveMarkerDictionary(builder);
+        if (markerDictionary == null) throw new IllegalStateException("Cannot build the marker dictionary");
+        return markerDictionary;
     }
 
-    private void addMarkerToMap(Marker marker){
+    private String getMarkerDictionaryStamp() {
 
-        markersBySymbol.put(marker.getHgncSymbol(), marker);
-
-        if(marker.getAliasSymbols() != null){
-            for(String synonym : marker.getAliasSymbols()){
-
-                addMarkerToMapList(synonym, marker, markersBySynonym);
-            }
+        Result result = session.query(DICTIONARY_STAMP, Collections.emptyMap());
+        for (Map<String, Object> row : result.queryResults()) {
+            return (String) row.get("fingerprint");
         }
+        return null;
+    }
 
-        if(marker.getPrevSymbols() != null){
-            for(String prevSymbol : marker.getPrevSymbols()){
+    private File markerDictionaryLocation() {
 
-                addMarkerToMapList(prevSymbol, marker, markersByPrevSymbol);
+        if (markerDictionaryFile != null && !markerDictionaryFile.isEmpty()) return new File(markerDictionaryFile);
+        if (temporaryMarkerDictionary == null) {
+            try {
+                temporaryMarkerDictionary = File.createTempFile("markers", ".dict");
+                temporaryMarkerDictionary.deleteOnExit();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot create a temporary marker dictionary", e);
             }
         }
-
+        return temporaryMarkerDictionary;
     }
 
-    private void addMarkerToMapList(String key, Marker marker, Map<String, List<Marker>> mapList){
+    private Marker dictionaryMarker(MarkerDictionary dictionary, int ordinal) {
 
-        if(mapList == null) mapList = new HashMap<>();
+        Marker marker = new Marker();
+        marker.setHgncSymbol(dictionary.getSymbol(ordinal));
+        marker.setHgncId(dictionary.getHgncId(ordinal));
+        marker.setNcbiGeneId(dictionary.getNcbiGeneId(ordinal));
+        marker.setEnsemblGeneId(dictionary.getEnsemblGeneId(ordinal));
+        return marker;
+    }
 
-        if(mapList.containsKey(key)){
-            mapList.get(key).add(marker);
-        }
-        else{
-            List<Marker> markerList = new ArrayList<>();
-            markerList.add(marker);
-            mapList.put(key, markerList);
-        }
+    private String dictionarySymbols(MarkerDictionary dictionary, int[] ordinals) {
 
+        return Arrays.stream(ordinals).mapToObj(dictionary::getSymbol).collect(Collectors.joining("; "));
     }
 
+    /**
+     * Resolves {@code symbol} against the marker dictionary: approved symbol first, then an unambiguous
+     * previous symbol, then an unambiguous synonym. The suggested node is a detached {@link Marker} carrying
+     * the approved symbol and accessions, not an entity loaded from the graph.
+     */
     public NodeSuggestionDTO getSuggestedMarker(String reporter, String dataSource, String modelId, String symbol,
                                                 String characterizationType, String platform){
 
-        if(!markersInitialized) initializeMarkers();
+        MarkerDictionary dictionary = markerDictionary != null ? markerDictionary : getMarkerDictionary();
 
         NodeSuggestionDTO nodeSuggestionDTO = new NodeSuggestionDTO();
         LogEntity logEntity = new LogEntity(reporter, dataSource, modelId);
         Marker marker = null;
 
-        if (markersBySymbol.containsKey(symbol)) {
-            marker = markersBySymbol.get(symbol);
+        int ordinal = dictionary.findSymbol(symbol);
+        int[] prevSymbolOf = ordinal < 0 ? dictionary.findPrevSymbol(symbol) : null;
+        int[] synonymOf = ordinal < 0 && prevSymbolOf.length == 0 ? dictionary.findSynonym(symbol) : null;
+
+        if (ordinal >= 0) {
+            marker = dictionaryMarker(dictionary, ordinal);
             nodeSuggestionDTO.setNode(marker);
         }
-        else if(markersByPrevSymbol.containsKey(symbol)){
+        else if(prevSymbolOf.length > 0){
 
-            List<Marker> markerList = markersByPrevSymbol.get(symbol);
-            if (markerList.size() == 1) {
-                marker = markerList.get(0);
+            if (prevSymbolOf.length == 1) {
+                marker = dictionaryMarker(dictionary, prevSymbolOf[0]);
                 logEntity = logUpdateFromPreviousSymbol(reporter,dataSource, modelId, characterizationType, platform,
                         symbol, marker.getHgncSymbol(),"Previous symbol");
                 nodeSuggestionDTO.setNode(marker);
@@ -1385,18 +1517,15 @@ public class DataImportService {
             else {
                 logEntity = logNoSingleValidSymbol(reporter,dataSource, modelId, characterizationType, platform,
                         symbol, symbol,"");
-                String prevMarkers = markerList.stream().map(Marker::getHgncSymbol).collect(Collectors.joining("; "));
-                logEntity.setMessage("Previous symbol for multiple approved markers: {} "+prevMarkers);
+                logEntity.setMessage("Previous symbol for multiple approved markers: {} "+dictionarySymbols(dictionary, prevSymbolOf));
 
             }
 
         }
-        else if(markersBySynonym.containsKey(symbol)){
-
-            List<Marker> markerList = markersBySynonym.get(symbol);
+        else if(synonymOf.length > 0){
 
-            if(markerList.size() == 1) {
-                marker = markerList.get(0);
+            if(synonymOf.length == 1) {
+                marker = dictionaryMarker(dictionary, synonymOf[0]);
                 logEntity = new MarkerLogEntity(reporter,dataSource, modelId, characterizationType, platform, symbol,
                         marker.getHgncSymbol(),"Synonym");
                 nodeSuggestionDTO.setNode(marker);
@@ -1404,8 +1533,7 @@ public class DataImportService {
             else{
                 logEntity = new MarkerLogEntity(reporter,dataSource, modelId, characterizationType, platform, symbol,
                         symbol,"");
-                String synMarkers = markerList.stream().map(Marker::getHgncSymbol).collect(Collectors.joining("; "));
-                logEntity.setMessage("Synonym for multiple approved markers: {} "+synMarkers);
+                logEntity.setMessage("Synonym for multiple approved markers: {} "+dictionarySymbols(dictionary, synonymOf));
             }
         }
         else{
@@ -1422,4 +1550,22 @@ public class DataImportService {
     public Marker getMarkerbyNcbiGeneId(String ncbiGene) {
         return markerRepository.findByNcbiGeneId(ncbiGene);
     }
+
+    /**
+     * Reads every marker with an NCBI gene id and an HGNC symbol, in pages.
+     */
+    public Map<String, String> getHgncSymbolsByNcbiGeneId() {
+
+        Map<String, String> symbols = new HashMap<>();
+        int markerCount = markerRepository.getMarkerCount();
+        int batchSize = 400;
+        for (int counter = 0; counter < markerCount; counter += batchSize) {
+            for (Marker marker : markerRepository.getAllMarkersSkipLimit(counter, batchSize)) {
+                if (marker.getNcbiGeneId() != null && !marker.getNcbiGeneId().isEmpty() && marker.hasHgncSymbol()) {
+                    symbols.put(marker.getNcbiGeneId(), marker.getHgncSymbol());
+                }
+            }
+        }
+        return symbols;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package org.pdxfinder.services;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Column positions of a tabular file, built once from its header and shared by every row read from it.
+ * Rows are read-only map views over a plain value array, so a row costs one array instead of one hash map.
+ * When a column name repeats, the last column with that name wins. A null value leaves its column out of the row.
+ */
+public final class HeaderIndex {
+
+    private final Map<String, Integer> positions = new LinkedHashMap<>();
+
+    public HeaderIndex(List<String> columns) {
+        for (int i = 0; i < columns.size(); i++) {
+            positions.put(columns.get(i), i);
+        }
+    }
+
+    /**
+     * @return the position of {@code column}, or -1 when the header has no such column
+     */
+    public int indexOf(Object column) {
+        Integer position = positions.get(column);
+        return position == null ? -1 : position;
+    }
+
+    public Set<String> getColumns() {
+        return Collections.unmodifiableSet(positions.keySet());
+    }
+
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * @return a read-only view of {@code values} keyed by column name. Columns missing from a short row read as "".
+     */
+    public Map<String, String> row(String[] values) {
+        return new RowView(values);
+    }
+
+
+    private final class RowView extends AbstractMap<String, String> {
+
+        private final String[] values;
+
+        private RowView(String[] values) {
+            this.values = values;
+        }
+
+        private String value(int position) {
+            return position < values.length ? values[position] : "";
+        }
+
+        @Override
+        public String get(Object column) {
+            int position = indexOf(column);
+            return position < 0 ? null : value(position);
+        }
+
+        @Override
+        public boolean containsKey(Object column) {
+            return get(column) != null;
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (int position : positions.values()) {
+                if (value(position) != null) size++;
+            }
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    Iterator<Entry<String, Integer>> columns = positions.entrySet().iterator();
+                    return new Iterator<Entry<String, String>>() {
+
+                        private Entry<String, String> next = advance();
+
+                        private Entry<String, String> advance() {
+                            while (columns.hasNext()) {
+                                Entry<String, Integer> column = columns.next();
+                                String value = value(column.getValue());
+                                if (value != null) return new SimpleImmutableEntry<>(column.getKey(), value);
+                            }
+                            return null;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next != null;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (next == null) throw new NoSuchElementException();
+                            Entry<String, String> entry = next;
+                            next = advance();
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return RowView.this.size();
+                }
+            };
+        }
+    }
+}
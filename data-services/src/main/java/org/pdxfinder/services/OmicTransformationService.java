@@ -1,6 +1,9 @@
 package org.pdxfinder.services;
 
-import org.pdxfinder.graph.dao.Marker;
+import org.pdxfinder.services.constants.DataUrl;
+import org.pdxfinder.services.hgnc.HgncIndex;
+import org.pdxfinder.services.hgnc.HgncReader;
+import org.pdxfinder.services.hgnc.HgncRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,23 +12,33 @@ import org.springframework.stereotype.Component;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class OmicTransformationService {
 
     private static final Logger log = LoggerFactory.getLogger(OmicTransformationService.class);
+    private static final int MAX_UNRESOLVED_LISTED = 50;
+
     private DataImportService dataImportService;
+    private HgncReader hgncReader;
+
+    private volatile HgncIndex hgncIndex;
+    private volatile boolean hgncIndexUnavailable;
+    private volatile Map<String, String> graphSymbolsByNcbiGeneId;
+    private final Set<String> unresolvedNcbiGeneIds = ConcurrentHashMap.newKeySet();
 
     @Autowired
-    OmicTransformationService(DataImportService dataImportService){
+    OmicTransformationService(DataImportService dataImportService, HgncReader hgncReader){
         this.dataImportService = dataImportService;
+        this.hgncReader = hgncReader;
     }
 
-    private Map<String, String> geneIdCache = new HashMap<>();
-
     public void convertListOfNcbiToHgnc(List<String> geneList){
         String fileOut = "ncbiToHugoAccessions";
 
@@ -46,6 +59,7 @@ public class OmicTransformationService {
                         }
                 );
                 out.flush();
+                logUnresolvedNcbiGeneIds();
             }
             catch(Exception e){
                 log.error("Bufferedwriter exception ", e);
@@ -62,21 +76,86 @@ public class OmicTransformationService {
         }
     }
 
+    /**
+     * @return the HGNC symbol of {@code ncbiGene}, or an empty string when no HGNC gene has that NCBI gene id
+     */
     public String ncbiGeneIdToHgncSymbol(String ncbiGene) {
         String hgncSymbol = "";
         if (!ncbiGene.isEmpty()) {
-            hgncSymbol = geneIdCache.get(ncbiGene);
+            hgncSymbol = lookupHgncSymbol(ncbiGene);
             if (hgncSymbol == null) {
-                Marker marker = dataImportService.getMarkerbyNcbiGeneId(ncbiGene);
-                if (marker != null && marker.hasHgncSymbol()) {
-                    hgncSymbol = marker.getHgncSymbol();
-                    geneIdCache.put(ncbiGene, hgncSymbol);
-                } else {
-                    log.warn("No marker found for NCBI gene Id {} Cannot generate Hgnc symbol", ncbiGene);
-                }
+                unresolvedNcbiGeneIds.add(ncbiGene);
+                hgncSymbol = "";
             }
         }
         return hgncSymbol;
     }
 
+    /**
+     * Logs every NCBI gene id that had no HGNC symbol since the last summary, then starts a new one.
+     *
+     * @return the number of unresolved ids
+     */
+    public int logUnresolvedNcbiGeneIds() {
+        List<String> unresolved = new ArrayList<>(unresolvedNcbiGeneIds);
+        unresolvedNcbiGeneIds.removeAll(unresolved);
+        if (!unresolved.isEmpty()) {
+            Collections.sort(unresolved);
+            log.warn("No HGNC gene found for {} NCBI gene ids, cannot generate Hgnc symbols: {}{}", unresolved.size(),
+                String.join(", ", unresolved.subList(0, Math.min(MAX_UNRESOLVED_LISTED, unresolved.size()))),
+                unresolved.size() > MAX_UNRESOLVED_LISTED ? ", ..." : "");
+        }
+        return unresolved.size();
+    }
+
+    private String lookupHgncSymbol(String ncbiGene) {
+        HgncIndex index = getHgncIndex();
+        if (index != null) {
+            HgncRecord record = index.getByNcbiGeneId(ncbiGene);
+            return record == null ? null : record.getSymbol();
+        }
+        return getGraphSymbolsByNcbiGeneId().get(ncbiGene);
+    }
+
+    /**
+     * The HGNC index shared with the marker loaders ({@code hgnc.file} when set), or null when it cannot be read.
+     */
+    private HgncIndex getHgncIndex() {
+        HgncIndex index = hgncIndex;
+        if (index == null && !hgncIndexUnavailable) {
+            synchronized (this) {
+                index = hgncIndex;
+                if (index == null && !hgncIndexUnavailable) {
+                    try {
+                        index = hgncReader.getIndex(DataUrl.HUGO_FILE_URL.get());
+                        log.info("Resolving NCBI gene ids with {} HGNC genes", index.size());
+                        hgncIndex = index;
+                    } catch (IOException e) {
+                        log.error("Cannot read HGNC genes, resolving NCBI gene ids from the markers in the graph", e);
+                        hgncIndexUnavailable = true;
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The graph markers by NCBI gene id, read in bulk and kept once the graph has markers.
+     */
+    private Map<String, String> getGraphSymbolsByNcbiGeneId() {
+        Map<String, String> symbols = graphSymbolsByNcbiGeneId;
+        if (symbols == null) {
+            synchronized (this) {
+                symbols = graphSymbolsByNcbiGeneId;
+                if (symbols == null) {
+                    symbols = Collections.unmodifiableMap(dataImportService.getHgncSymbolsByNcbiGeneId());
+                    log.info("Resolving NCBI gene ids with {} markers from the graph", symbols.size());
+                    if (!symbols.isEmpty()) graphSymbolsByNcbiGeneId = symbols;
+                }
+            }
+        }
+        return symbols;
+    }
+
 }
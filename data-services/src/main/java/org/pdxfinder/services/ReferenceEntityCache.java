@@ -0,0 +1,77 @@
+package org.pdxfinder.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Read-through cache for reference entities (tissues, host strains, groups, ...) that are looked
+ * up once per data row but only have a few dozen distinct values per provider. Entities are evicted
+ * when a provider finishes loading, while the lookup counters keep adding up for the whole load.
+ */
+public class ReferenceEntityCache<K, V> {
+
+    private final String name;
+    private final Map<K, V> entities = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ReferenceEntityCache(String name) {
+        this.name = name;
+    }
+
+    public V get(K key, Function<K, V> findOrCreate) {
+        if (key == null) return findOrCreate.apply(null);
+
+        V entity = entities.get(key);
+        if (entity != null) {
+            hits.increment();
+            return entity;
+        }
+        return entities.computeIfAbsent(key, k -> {
+            misses.increment();
+            return findOrCreate.apply(k);
+        });
+    }
+
+    /**
+     * Drops the cached entities but keeps the lookup counters.
+     */
+    public void evict() {
+        entities.clear();
+    }
+
+    public void clear() {
+        evict();
+        hits.reset();
+        misses.reset();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entities.size();
+    }
+
+    public double getHitRate() {
+        long lookups = getHits() + getMisses();
+        return lookups == 0 ? 0 : (double) getHits() / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d lookups, %d entities loaded, %.1f%% hit rate",
+            name, getHits() + getMisses(), getMisses(), getHitRate() * 100);
+    }
+}
@@ -9,8 +9,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 
 @Service
@@ -19,6 +23,9 @@ public class TransformerService {
 
     private static final Logger log = LoggerFactory.getLogger(TransformerService.class);
 
+    private static final String UNKNOWN_PASSAGE = "XXXX";
+    private static final int GENOMICS_CHUNK_SIZE = 10000;
+
     private ObjectMapper mapper = new ObjectMapper();
     private TransPdxInfoRepository transPdxInfoRepository;
     private TransTreatmentRepository transTreatmentRepository;
@@ -30,6 +37,9 @@ public class TransformerService {
 
     private String dataRootDir;
 
+    // model id -> sample id -> passage, read once from the transform tables
+    private volatile Map<String, Map<String, String>> passageIndex;
+
 
     public TransformerService(TransPdxInfoRepository transPdxInfoRepository,
                               TransTreatmentRepository transTreatmentRepository,
@@ -531,6 +541,8 @@ public class TransformerService {
 
         }
 
+        // the transform tables changed, so the next genomics transform reads the passages again
+        passageIndex = null;
         return mappingList;
 
 
@@ -565,7 +577,7 @@ public class TransformerService {
 
         PdmrPdxInfo pdmrPdxInfos = transPdxInfoRepository.findByModelID(modelID);
 
-        String passage = "XXXX";
+        String passage = UNKNOWN_PASSAGE;
 
         try{
 
@@ -584,6 +596,46 @@ public class TransformerService {
         return passage;
     }
 
+    /**
+     * Passage of every PDMR sample keyed by model id then sample id, read from the transform tables on
+     * first use and shared by every genomics file transformed afterwards.
+     */
+    Map<String, Map<String, String>> getPassageIndex() {
+
+        Map<String, Map<String, String>> index = passageIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = passageIndex;
+                if (index == null) {
+                    index = buildPassageIndex();
+                    passageIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private Map<String, Map<String, String>> buildPassageIndex() {
+
+        long startedAt = System.currentTimeMillis();
+        Map<String, Map<String, String>> index = new HashMap<>();
+        int sampleCount = 0;
+        for (PdmrPdxInfo pdmrPdxInfo : transPdxInfoRepository.findAll()) {
+            try {
+                Map<String, String> passages = index.computeIfAbsent(pdmrPdxInfo.getModelID(), k -> new HashMap<>());
+                for (Sample sample : pdmrPdxInfo.getSamples()) {
+                    passages.put(sample.getSampleID(), sample.getPassage());
+                    sampleCount++;
+                }
+            } catch (Exception e) {
+                log.trace("{} has no sample in the database", pdmrPdxInfo.getModelID());
+            }
+        }
+        log.info("Indexed passages of {} samples of {} PDMR models in {} ms",
+                 sampleCount, index.size(), System.currentTimeMillis() - startedAt);
+        return Collections.unmodifiableMap(index);
+    }
+
 
 
 
@@ -708,7 +760,6 @@ public class TransformerService {
 
 
 
-        List<Map<String, String>> oncoKbData = util.serializeDataToMaps(oncoKbUrl);
         List<Map<String, String>> sampleData = util.serializeDataToMaps(sampleUrl);
         List<Map<String, String>> specimenSearchData = util.serializeDataToMaps(specimenSearchUrl);
         List<Map<String, String>> hgncSymbolData = util.serializeDataToMaps(hgncSymbolUrl);
@@ -717,122 +768,127 @@ public class TransformerService {
 
         List<Map<OmicCSVColumn, String>> transformedData = new ArrayList<>();
 
-        for (Map<String, String> oncoKb : oncoKbData) {
+        try (Stream<Map<String, String>> oncoKbData = util.streamDataRows(oncoKbUrl)) {
 
-            AtomicBoolean validData = new AtomicBoolean(false);
-            Map<OmicCSVColumn, String> rowMap = new LinkedHashMap<>();
+            for (Map<String, String> oncoKb : (Iterable<Map<String, String>>) oncoKbData::iterator) {
 
-            // Get Model ID Column
-            // Get Sample from Sample Data and if SAMPLESEQNBR is found, get SPECIMENSEQNBR
-            sampleData.forEach(sample -> {
+                AtomicBoolean validData = new AtomicBoolean(false);
+                Map<OmicCSVColumn, String> rowMap = new LinkedHashMap<>();
 
-                if (String.valueOf(oncoKb.get("SAMPLESEQNBR")).equals(String.valueOf(sample.get("SAMPLESEQNBR")))) {
+                // Get Model ID Column
+                // Get Sample from Sample Data and if SAMPLESEQNBR is found, get SPECIMENSEQNBR
+                sampleData.forEach(sample -> {
 
-                    rowMap.put(OmicCSVColumn.DATASOURCE, "PDMR");
+                    if (String.valueOf(oncoKb.get("SAMPLESEQNBR")).equals(String.valueOf(sample.get("SAMPLESEQNBR")))) {
 
-                    // Search for the specimenSeqNumber inside the sampleSearch Data
-                    specimenSearchData.forEach(specimen -> {
-                        if (String.valueOf(specimen.get("SPECIMENSEQNBR")).equals(String.valueOf(sample.get("SPECIMENSEQNBR")))) {
-                            rowMap.put(OmicCSVColumn.MODEL_ID, specimen.get("PATIENTID") + "-" + specimen.get("SPECIMENID"));
-                        }
-                    });
-
-                    // Get Sample ID Column
-                    rowMap.put(OmicCSVColumn.SAMPLE_ID, sample.get("SAMPLEID"));
-
-                    String samplePassage = sample.get("PASSAGEOFTHISSAMPLE");
-
-                    // Get Sample Origin
-                    if ( isNumeric(samplePassage) ){
-                        rowMap.put(OmicCSVColumn.SAMPLE_ORIGIN, "engrafted tumor");
-                        rowMap.put(OmicCSVColumn.PASSAGE, samplePassage);
-                        validData.set(true);
-                    }else {
-                        if (sample.get("SAMPLEID").equals("ORIGINATOR")){
-                            rowMap.put(OmicCSVColumn.SAMPLE_ORIGIN, "patient tumor");
-                            rowMap.put(OmicCSVColumn.PASSAGE, "");
-                            validData.set(true);
-                        }else {
-                            validData.set(false);
-                        }
-                    }
+                        rowMap.put(OmicCSVColumn.DATASOURCE, "PDMR");
 
-                    // Get Host Strain name Column
-                    rowMap.put(OmicCSVColumn.HOST_STRAIN_NAME, "NOD.Cg-Prkdcscid Il2rgtm1Wjl/SzJ");
-                }
-            });
+                        // Search for the specimenSeqNumber inside the sampleSearch Data
+                        specimenSearchData.forEach(specimen -> {
+                            if (String.valueOf(specimen.get("SPECIMENSEQNBR")).equals(String.valueOf(sample.get("SPECIMENSEQNBR")))) {
+                                rowMap.put(OmicCSVColumn.MODEL_ID, specimen.get("PATIENTID") + "-" + specimen.get("SPECIMENID"));
+                            }
+                        });
 
-            // Get Gene Symbol or HGNC Symbol
-            hgncSymbolData.forEach(hgncSymbol -> {
-                if ( String.valueOf(oncoKb.get("HUGOGENESYMBOLSEQNBR")).equals(String.valueOf(hgncSymbol.get("HUGOGENESYMBOLSEQNBR"))) ){
-                    rowMap.put(OmicCSVColumn.HGNC_SYMBOL, hgncSymbol.get("HUGOGENESYMBOLDESCRIPTION"));
-                }
-            });
+                        // Get Sample ID Column
+                        rowMap.put(OmicCSVColumn.SAMPLE_ID, sample.get("SAMPLEID"));
 
-            // Get Coding Sequence Change
-            rowMap.put(OmicCSVColumn.CODING_SEQUENCE_CHANGE,
-                       Optional.ofNullable(oncoKb.get("HGVSCDNACHANGE")).isPresent() ?
-                               oncoKb.get("HGVSCDNACHANGE").replace("c.","") : "");
+                        String samplePassage = sample.get("PASSAGEOFTHISSAMPLE");
 
-            // Get Amino Acid Change
-            rowMap.put(OmicCSVColumn.AMINO_ACID_CHANGE,
-                       Optional.ofNullable(oncoKb.get("HGVSPROTEINCHANGE")).isPresent() ?
-                               oncoKb.get("HGVSPROTEINCHANGE").replace("p.","") : "");
+                        // Get Sample Origin
+                        if ( isNumeric(samplePassage) ){
+                            rowMap.put(OmicCSVColumn.SAMPLE_ORIGIN, "engrafted tumor");
+                            rowMap.put(OmicCSVColumn.PASSAGE, samplePassage);
+                            validData.set(true);
+                        }else {
+                            if (sample.get("SAMPLEID").equals("ORIGINATOR")){
+                                rowMap.put(OmicCSVColumn.SAMPLE_ORIGIN, "patient tumor");
+                                rowMap.put(OmicCSVColumn.PASSAGE, "");
+                                validData.set(true);
+                            }else {
+                                validData.set(false);
+                            }
+                        }
 
-            // Get Consequence Column
-            variantClassData.forEach(variantClass -> {
-                if ( String.valueOf(oncoKb.get("VARIANTCLASSSEQNBR")).equals(String.valueOf(variantClass.get("VARIANTCLASSSEQNBR"))) ){
-                    rowMap.put(OmicCSVColumn.CONSEQUENCE, variantClass.get("VARIANTCLASSDESCRIPTION"));
-                }
-            });
+                        // Get Host Strain name Column
+                        rowMap.put(OmicCSVColumn.HOST_STRAIN_NAME, "NOD.Cg-Prkdcscid Il2rgtm1Wjl/SzJ");
+                    }
+                });
 
-            // Get Functional Prediction
-            rowMap.put(OmicCSVColumn.FUNCTIONAL_PREDICTION,
-                       Optional.ofNullable(oncoKb.get("POLYPHEN")).isPresent() ?
-                               String.format("%s|sift",oncoKb.get("POLYPHEN")) : "");
+                // Get Gene Symbol or HGNC Symbol
+                hgncSymbolData.forEach(hgncSymbol -> {
+                    if ( String.valueOf(oncoKb.get("HUGOGENESYMBOLSEQNBR")).equals(String.valueOf(hgncSymbol.get("HUGOGENESYMBOLSEQNBR"))) ){
+                        rowMap.put(OmicCSVColumn.HGNC_SYMBOL, hgncSymbol.get("HUGOGENESYMBOLDESCRIPTION"));
+                    }
+                });
+
+                // Get Coding Sequence Change
+                rowMap.put(OmicCSVColumn.CODING_SEQUENCE_CHANGE,
+                           Optional.ofNullable(oncoKb.get("HGVSCDNACHANGE")).isPresent() ?
+                                   oncoKb.get("HGVSCDNACHANGE").replace("c.","") : "");
+
+                // Get Amino Acid Change
+                rowMap.put(OmicCSVColumn.AMINO_ACID_CHANGE,
+                           Optional.ofNullable(oncoKb.get("HGVSPROTEINCHANGE")).isPresent() ?
+                                   oncoKb.get("HGVSPROTEINCHANGE").replace("p.","") : "");
+
+                // Get Consequence Column
+                variantClassData.forEach(variantClass -> {
+                    if ( String.valueOf(oncoKb.get("VARIANTCLASSSEQNBR")).equals(String.valueOf(variantClass.get("VARIANTCLASSSEQNBR"))) ){
+                        rowMap.put(OmicCSVColumn.CONSEQUENCE, variantClass.get("VARIANTCLASSDESCRIPTION"));
+                    }
+                });
 
-            // Read Depth
-            rowMap.put(OmicCSVColumn.READ_DEPTH, oncoKb.get("TOTALREADS"));
+                // Get Functional Prediction
+                rowMap.put(OmicCSVColumn.FUNCTIONAL_PREDICTION,
+                           Optional.ofNullable(oncoKb.get("POLYPHEN")).isPresent() ?
+                                   String.format("%s|sift",oncoKb.get("POLYPHEN")) : "");
 
-            // Get Allele Frequency
-            rowMap.put(OmicCSVColumn.ALLELE_FREQUENCY, oncoKb.get("VARIANTADELLEFREQ"));
+                // Read Depth
+                rowMap.put(OmicCSVColumn.READ_DEPTH, oncoKb.get("TOTALREADS"));
 
-            // Get Chromoseme Column
-            rowMap.put(OmicCSVColumn.CHROMOSOME,
-                       Optional.ofNullable(oncoKb.get("CHROMOSOME")).isPresent() ?
-                               oncoKb.get("CHROMOSOME").replace("chr","") : "");
+                // Get Allele Frequency
+                rowMap.put(OmicCSVColumn.ALLELE_FREQUENCY, oncoKb.get("VARIANTADELLEFREQ"));
 
-            // Seq Start Position
-            rowMap.put(OmicCSVColumn.SEQ_START_POSITION, oncoKb.get("STARTPOSITION"));
+                // Get Chromoseme Column
+                rowMap.put(OmicCSVColumn.CHROMOSOME,
+                           Optional.ofNullable(oncoKb.get("CHROMOSOME")).isPresent() ?
+                                   oncoKb.get("CHROMOSOME").replace("chr","") : "");
 
-            // Get Ref Allele
-            rowMap.put(OmicCSVColumn.REF_ALLELE, oncoKb.get("REFERENCEALLELE"));
+                // Seq Start Position
+                rowMap.put(OmicCSVColumn.SEQ_START_POSITION, oncoKb.get("STARTPOSITION"));
 
-            // Get Alt Allele
-            rowMap.put(OmicCSVColumn.ALT_ALLELE, oncoKb.get("ALTALLELE"));
+                // Get Ref Allele
+                rowMap.put(OmicCSVColumn.REF_ALLELE, oncoKb.get("REFERENCEALLELE"));
 
-            // Get Gene IDs
-            rowMap.put(OmicCSVColumn.UCSC_GENE_ID, "");
-            rowMap.put(OmicCSVColumn.NCBI_GENE_ID, "");
-            rowMap.put(OmicCSVColumn.ENSEMBL_GENE_ID, "");
-            rowMap.put(OmicCSVColumn.ENSEMBL_TRANSCRIPT_ID, "");
+                // Get Alt Allele
+                rowMap.put(OmicCSVColumn.ALT_ALLELE, oncoKb.get("ALTALLELE"));
 
+                // Get Gene IDs
+                rowMap.put(OmicCSVColumn.UCSC_GENE_ID, "");
+                rowMap.put(OmicCSVColumn.NCBI_GENE_ID, "");
+                rowMap.put(OmicCSVColumn.ENSEMBL_GENE_ID, "");
+                rowMap.put(OmicCSVColumn.ENSEMBL_TRANSCRIPT_ID, "");
 
-            // Get Variation Id
-            rowMap.put(OmicCSVColumn.RS_ID_VARIANT,
-                       Optional.ofNullable(oncoKb.get("EXISTINGVARIANT")).isPresent() ?
-                               oncoKb.get("EXISTINGVARIANT") : "");
 
-            // Get Genome Assembly
-            rowMap.put(OmicCSVColumn.GENOME_ASSEMBLY, "hg19");
+                // Get Variation Id
+                rowMap.put(OmicCSVColumn.RS_ID_VARIANT,
+                           Optional.ofNullable(oncoKb.get("EXISTINGVARIANT")).isPresent() ?
+                                   oncoKb.get("EXISTINGVARIANT") : "");
 
-            // Get Platform Column
-            rowMap.put(OmicCSVColumn.PLATFORM, "OncoKB Gene Panel");
+                // Get Genome Assembly
+                rowMap.put(OmicCSVColumn.GENOME_ASSEMBLY, "hg19");
 
+                // Get Platform Column
+                rowMap.put(OmicCSVColumn.PLATFORM, "OncoKB Gene Panel");
 
-            if (validData.get())
-                transformedData.add(rowMap);
 
+                if (validData.get())
+                    transformedData.add(rowMap);
+
+            }
+        } catch (IOException e) {
+            log.error("Cannot read {}", oncoKbUrl, e);
         }
 
 
@@ -844,6 +900,35 @@ public class TransformerService {
 
     public List transformPDMRGenomics(List<Map<String, String>> untransformedGenomicData){
 
+        return transformPDMRGenomics("PDMR genomics", untransformedGenomicData);
+    }
+
+    /**
+     * Transforms the rows of one PDMR genomics file in chunks of {@value #GENOMICS_CHUNK_SIZE} rows on the
+     * common pool, looking passages up in {@link #getPassageIndex()}. Rows keep their order.
+     */
+    public List<Map<OmicCSVColumn, String>> transformPDMRGenomics(String fileName, List<Map<String, String>> untransformedGenomicData){
+
+        long startedAt = System.currentTimeMillis();
+        Map<String, Map<String, String>> passages = getPassageIndex();
+
+        int rowCount = untransformedGenomicData.size();
+        int chunks = (rowCount + GENOMICS_CHUNK_SIZE - 1) / GENOMICS_CHUNK_SIZE;
+        List<Map<OmicCSVColumn, String>> transformedData = IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> transformPDMRGenomicRows(untransformedGenomicData.subList(
+                        chunk * GENOMICS_CHUNK_SIZE, Math.min(rowCount, (chunk + 1) * GENOMICS_CHUNK_SIZE)), passages))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+
+        log.info("Transformed {} of {} rows of {} in {} chunks in {} ms",
+                 transformedData.size(), rowCount, fileName, chunks, System.currentTimeMillis() - startedAt);
+        return transformedData;
+    }
+
+    private List<Map<OmicCSVColumn, String>> transformPDMRGenomicRows(List<Map<String, String>> untransformedGenomicData,
+                                                                     Map<String, Map<String, String>> passages){
+
         List<Map<OmicCSVColumn, String>> transformedData = new ArrayList<>();
 
         for (Map<String, String> data : untransformedGenomicData) {
@@ -872,8 +957,8 @@ public class TransformerService {
 
                 rowMap.put(OmicCSVColumn.SAMPLE_ORIGIN, "engrafted tumor");
 
-                String passage = getPassageByModelIDAndSampleID(modelID, sampleID);
-                rowMap.put(OmicCSVColumn.PASSAGE, passage);
+                String passage = passages.getOrDefault(modelID, Collections.emptyMap()).get(sampleID);
+                rowMap.put(OmicCSVColumn.PASSAGE, passage == null ? UNKNOWN_PASSAGE : passage);
 
             }else if (data.get(PdmrOmicCol.PDM_TYPE.get()).equals(PdmrOmicCol.PDM_TYPE_PATENT.get())){
 
@@ -1,5 +1,7 @@
 package org.pdxfinder.services;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -11,22 +13,29 @@ import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.pdxfinder.services.http.CachingHttpClient;
+import org.pdxfinder.services.http.HttpCacheMode;
+import org.pdxfinder.services.http.HttpResponseCache;
+import org.pdxfinder.services.http.RateLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PreDestroy;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /*
  * Created by abayomi on 12/02/2019.
@@ -40,6 +49,22 @@ public class UtilityService {
     private static final Logger log = LoggerFactory.getLogger(UtilityService.class);
     private ObjectMapper mapper = new ObjectMapper();
 
+    private static final Pattern LINE_BREAKS = Pattern.compile("[\\r\\n]");
+    private static final Pattern CSV_SEPARATOR = Pattern.compile(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
+    private static final TypeReference<Map<String, Object>> JSON_RECORD = new TypeReference<Map<String, Object>>() {};
+
+    @Value("${http-cache.dir:}")
+    private String httpCacheDir;
+
+    @Value("${http-cache.mode:online}")
+    private String httpCacheMode;
+
+    @Value("${http-cache.ttl-hours:-1}")
+    private long httpCacheTtlHours;
+
+    private volatile CachingHttpClient httpClient;
+    private HttpResponseCache httpResponseCache;
+
     //Delimiter used in CSV file
     private static final String COMMA_DELIMITER = ",";
     private static final String NEW_LINE_SEPARATOR = "\n";
@@ -69,6 +94,37 @@ public class UtilityService {
         return csvMaps;
     }
 
+    /**
+     * Streams the rows of a csv, json or Excel file one at a time instead of serializing the whole file.
+     * Csv and Excel rows are read-only views over a {@link HeaderIndex} shared by every row of the file.
+     * The stream keeps the file open until it is closed.
+     */
+    public Stream<Map<String, String>> streamDataRows(String fileName) throws IOException {
+
+        String fileExtension = getFileExtension(fileName);
+
+        if (fileExtension.equals("csv")) {
+
+            return streamCSVRows(new FileInputStream(fileName));
+        } else if (fileExtension.equals("json")) {
+
+            return (Stream) streamJSONRecords(fileName);
+        } else {
+
+            return streamExcelRows(new FileInputStream(fileName), 0, 1);
+        }
+    }
+
+    private static Runnable closing(Closeable resource) {
+        return () -> {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
     public String serializeToCsvWithIncludeNonEmpty(List<?> pojoList) throws IOException {
 
         CsvMapper csvMapper = new CsvMapper();
@@ -164,73 +220,69 @@ public class UtilityService {
     }
 
     public List<Map<String, String>> serializeExcelDataNoIterator(InputStream inputStream, int sheet, int startRow) {
-        List<String> tableHead = new ArrayList<>();
-        List<Map<String, String>> csvMap = new ArrayList<>();
-
-        startRow--;
-
-        try (Workbook workbook = WorkbookFactory.create(inputStream)){
-            Row row;
-            int rowCount = 0;
-            Sheet spreadsheet = workbook.getSheetAt(sheet);
-            Iterator<Row> rowIterator = spreadsheet.iterator();
 
+        List<Map<String, String>> csvMap = new ArrayList<>();
+        try (Stream<Map<String, String>> rows = streamExcelRows(inputStream, sheet, startRow)) {
+            rows.forEach(row -> csvMap.add(new LinkedHashMap<>(row)));
+        } catch (IOException ex) {
+            log.warn(ex.getMessage());
+        }
+        return csvMap;
+    }
 
-            while (rowIterator.hasNext()) // Read the head row
-            {
-                row = rowIterator.next();
+    /**
+     * Streams the rows of an Excel sheet below the head row {@code startRow} (1-based), skipping empty rows.
+     * Every cell is read as a string. Unnamed columns only appear in a row when one of them has a cell.
+     */
+    public Stream<Map<String, String>> streamExcelRows(InputStream inputStream, int sheet, int startRow) throws IOException {
+
+        Workbook workbook;
+        try (InputStream in = inputStream) {
+            workbook = WorkbookFactory.create(in);
+        } catch (InvalidFormatException e) {
+            throw new IOException(e);
+        }
 
-                if (rowCount == startRow) {
+        Iterator<Row> rowIterator = workbook.getSheetAt(sheet).iterator();
+        List<String> tableHead = new ArrayList<>();
+        for (int rowCount = 0; rowIterator.hasNext(); rowCount++) {
 
-                    Iterator<Cell> cellIterator = row.cellIterator();
-                    tableHead = getXlsTableHeadData(cellIterator);
-                    break;
-                }
-                rowCount++;
+            Row row = rowIterator.next();
+            if (rowCount == startRow - 1) {
+                getXlsTableHeadData(row.cellIterator()).forEach(column -> tableHead.add(column.trim()));
+                break;
             }
+        }
 
-            rowCount = 0;
-            for (Row dRow : spreadsheet) {
-
-                if (rowCount <= startRow) {
-                    rowCount++;
-                    continue;
-                }
-
-                Map<String, String> rowMap = new LinkedHashMap<>();
-                String rowDataTracker = "";
-                StringBuilder rowBuilder = new StringBuilder();
-
-                for (int i = 0; i < tableHead.size(); i++) {
-
-                    Cell nameCell = dRow.getCell(i, Row.RETURN_BLANK_AS_NULL);
-                    String key = tableHead.get(i).trim();
-
-                    if (nameCell != null) {
-
-                        nameCell.setCellType(Cell.CELL_TYPE_STRING);
-                        String data = nameCell.getStringCellValue();
-
-                        rowMap.put(key, data);
-                        rowBuilder.append(data);
+        HeaderIndex header = new HeaderIndex(tableHead);
+        Iterable<Row> dataRows = () -> rowIterator;
+        return StreamSupport.stream(dataRows.spliterator(), false)
+            .map(row -> excelRowValues(row, tableHead, header.indexOf("")))
+            .filter(Objects::nonNull)
+            .map(header::row)
+            .onClose(closing(workbook));
+    }
 
-                    } else {
-                        if (!key.equals("")) rowMap.put(key, "");
-                    }
-                }
+    // null when every cell of the row is empty; unnamed columns share the "" key, set from their last cell
+    private static String[] excelRowValues(Row row, List<String> tableHead, int unnamedPosition) {
 
-                rowDataTracker = rowBuilder.toString();
-                if (rowDataTracker.length() != 0) csvMap.add(rowMap);
+        String[] values = new String[tableHead.size()];
+        String unnamed = null;
+        boolean empty = true;
+        for (int i = 0; i < values.length; i++) {
 
-                rowCount++;
+            Cell cell = row.getCell(i, Row.RETURN_BLANK_AS_NULL);
+            if (cell == null) {
+                values[i] = tableHead.get(i).isEmpty() ? null : "";
+            } else {
+                cell.setCellType(Cell.CELL_TYPE_STRING);
+                values[i] = cell.getStringCellValue();
+                empty &= values[i].isEmpty();
+                if (tableHead.get(i).isEmpty()) unnamed = values[i];
             }
-
-            inputStream.close();
-        } catch (IOException | InvalidFormatException ex) {
-            log.warn(ex.getMessage());
         }
-
-        return csvMap;
+        if (unnamedPosition >= 0) values[unnamedPosition] = unnamed;
+        return empty ? null : values;
     }
 
     public void writeXLSXFile(List<Map<String, String>> dataList,String fileName, String sheetName) {
@@ -410,6 +462,35 @@ public class UtilityService {
 
     }
 
+    /**
+     * Streams the rows of a csv file with the same quoting rules as {@link #serializeCSVToMaps(DataInputStream)}.
+     * Blank lines are skipped and columns missing from a short row read as "".
+     */
+    public Stream<Map<String, String>> streamCSVRows(InputStream csvData) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(csvData, StandardCharsets.UTF_8));
+        String headLine = reader.readLine();
+        if (headLine == null) {
+            reader.close();
+            return Stream.empty();
+        }
+
+        HeaderIndex header = new HeaderIndex(Arrays.asList(csvRowValues(headLine)));
+        return reader.lines()
+            .filter(line -> !line.isEmpty())
+            .map(line -> header.row(csvRowValues(line)))
+            .onClose(closing(reader));
+    }
+
+    private static String[] csvRowValues(String line) {
+
+        String[] values = CSV_SEPARATOR.split(line);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values[i].trim().replace("\"", "");
+        }
+        return values;
+    }
+
 
     // SERIALIZE CSV TO ARRAY LIST
     public List<List<String>> serializeCSVToArrayList(String dataFile)
@@ -574,27 +655,67 @@ public class UtilityService {
 
     }
 
+    /**
+     * Streams the records of a json array, or of the first array under a key of a json object, one record at a time.
+     * The stream keeps the file open until it is closed.
+     */
+    public Stream<Map<String, Object>> streamJSONRecords(String jsonFile) throws IOException {
 
+        JsonParser parser = mapper.getFactory().createParser(new File(jsonFile));
+        if (parser.nextToken() == JsonToken.START_OBJECT) {
 
-    // PARSER : LOAD JSON NODES FROM  REMOTE JSON HTTP URL
-    public JsonNode readJsonURL(String apiLink) {
+            // records wrapped as {"key": [...]}
+            while (parser.nextToken() == JsonToken.FIELD_NAME && parser.nextToken() != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            }
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IOException(String.format("No json array of records in %s", jsonFile));
+        }
 
-        JsonNode jsonNode = null;
-        try {
+        Iterator<Map<String, Object>> records = new Iterator<Map<String, Object>>() {
+
+            private Map<String, Object> next;
+            private boolean done;
 
-            URL url = new URL(apiLink);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("Accept", "application/json");
+            @Override
+            public boolean hasNext() {
+                try {
+                    if (next == null && !done) {
+                        if (parser.nextToken() == JsonToken.START_OBJECT) {
+                            next = mapper.readValue(parser, JSON_RECORD);
+                        } else {
+                            done = true;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return next != null;
+            }
 
-            if (conn.getResponseCode() != 200) {
-                log.error("Failed : HTTP error code : {}", conn.getResponseCode());
+            @Override
+            public Map<String, Object> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Map<String, Object> record = next;
+                next = null;
+                return record;
             }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(records, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(closing(parser));
+    }
 
-            BufferedReader br = new BufferedReader(new InputStreamReader((conn.getInputStream())));
 
-            jsonNode = mapper.readTree(br);
-            conn.disconnect();
+
+    // PARSER : LOAD JSON NODES FROM  REMOTE JSON HTTP URL
+    public JsonNode readJsonURL(String apiLink) {
+
+        JsonNode jsonNode = null;
+        try {
+
+            jsonNode = mapper.readTree(getHttpClient().get(apiLink, "application/json"));
 
         } catch (IOException e) {
             log.warn(e.getMessage());
@@ -652,29 +773,56 @@ public class UtilityService {
     // PARSER : LOAD FILE CONTENT FROM HTTP URL
     public String parseURL(String urlStr) {
 
-        StringBuilder sb = new StringBuilder();
-
-        URL url = null;
         try {
-            url = new URL(urlStr);
-        } catch (MalformedURLException e) {
-            log.warn(e.getMessage());
+            // line breaks are dropped, as callers have always received the content as a single line
+            return LINE_BREAKS.matcher(getHttpClient().get(urlStr, null)).replaceAll("");
+
+        } catch (Exception e) {
+            log.error("Unable to read from URL " + urlStr, e);
         }
+        return "";
+    }
+
 
-        assert url != null;
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream()))){
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                sb.append(inputLine);
+    /**
+     * Client shared by {@link #parseURL} and {@link #readJsonURL}. When {@code http-cache.dir} is set, responses
+     * are recorded there and replayed according to {@code http-cache.mode} (online, offline or refresh).
+     */
+    public CachingHttpClient getHttpClient() {
+
+        CachingHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                if (httpClient == null) {
+                    httpClient = newHttpClient(new RateLimiter(0));
+                }
+                client = httpClient;
             }
+        }
+        return client;
+    }
 
-        } catch (Exception e) {
-            log.error("Unable to read from URL " + urlStr, e);
+
+    /**
+     * A client that records and replays through the same {@code http-cache.*} settings as {@link #getHttpClient},
+     * for crawls that pace their requests with their own rate limiter.
+     */
+    public synchronized CachingHttpClient newHttpClient(RateLimiter rateLimiter) {
+
+        if (httpResponseCache == null && httpCacheDir != null && !httpCacheDir.isEmpty()) {
+            httpResponseCache = new HttpResponseCache(new File(httpCacheDir), Duration.ofHours(httpCacheTtlHours));
+            log.info("Recording HTTP responses in {} ({} mode)", httpCacheDir, httpCacheMode);
         }
-        return sb.toString();
+        return new CachingHttpClient(httpResponseCache, HttpCacheMode.fromString(httpCacheMode), rateLimiter);
     }
 
 
+    @PreDestroy
+    public void logHttpCacheStatistics() {
+
+        if (httpClient != null) httpClient.logStatistics("UtilityService");
+    }
+
 
     // LOAD FILE CONTENT FROM LOCAL DIRECTORY
     public String parseFile(String path) {
@@ -0,0 +1,67 @@
+package org.pdxfinder.services.hgnc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookups over an HGNC download by approved symbol, previous symbol, synonym and accession.
+ * Previous symbols and synonyms can belong to several genes, so they resolve to lists.
+ */
+public class HgncIndex {
+
+    private final Map<String, HgncRecord> bySymbol = new HashMap<>();
+    private final Map<String, List<HgncRecord>> byPrevSymbol = new HashMap<>();
+    private final Map<String, List<HgncRecord>> bySynonym = new HashMap<>();
+    private final Map<String, HgncRecord> byHgncId = new HashMap<>();
+    private final Map<String, HgncRecord> byNcbiGeneId = new HashMap<>();
+    private final Map<String, HgncRecord> byEnsemblGeneId = new HashMap<>();
+
+    void add(HgncRecord record) {
+
+        bySymbol.put(record.getSymbol(), record);
+        record.getPrevSymbols().forEach(prevSymbol -> byPrevSymbol.computeIfAbsent(prevSymbol, k -> new ArrayList<>(1)).add(record));
+        record.getSynonyms().forEach(synonym -> bySynonym.computeIfAbsent(synonym, k -> new ArrayList<>(1)).add(record));
+        putIfNotEmpty(byHgncId, record.getHgncId(), record);
+        putIfNotEmpty(byNcbiGeneId, record.getNcbiGeneId(), record);
+        putIfNotEmpty(byEnsemblGeneId, record.getEnsemblGeneId(), record);
+    }
+
+    private static void putIfNotEmpty(Map<String, HgncRecord> index, String key, HgncRecord record) {
+        if (key != null && !key.isEmpty()) index.put(key, record);
+    }
+
+    public boolean containsSymbol(String symbol) {
+        return bySymbol.containsKey(symbol);
+    }
+
+    public HgncRecord getBySymbol(String symbol) {
+        return bySymbol.get(symbol);
+    }
+
+    public List<HgncRecord> getByPrevSymbol(String prevSymbol) {
+        return byPrevSymbol.getOrDefault(prevSymbol, Collections.emptyList());
+    }
+
+    public List<HgncRecord> getBySynonym(String synonym) {
+        return bySynonym.getOrDefault(synonym, Collections.emptyList());
+    }
+
+    public HgncRecord getByHgncId(String hgncId) {
+        return byHgncId.get(hgncId);
+    }
+
+    public HgncRecord getByNcbiGeneId(String ncbiGeneId) {
+        return byNcbiGeneId.get(ncbiGeneId);
+    }
+
+    public HgncRecord getByEnsemblGeneId(String ensemblGeneId) {
+        return byEnsemblGeneId.get(ensemblGeneId);
+    }
+
+    public int size() {
+        return bySymbol.size();
+    }
+}
@@ -0,0 +1,206 @@
+package org.pdxfinder.services.hgnc;
+
+import org.pdxfinder.services.http.HttpCacheMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams HGNC gene downloads for the marker loaders.
+ * <p>
+ * A source is either a local file (optionally gzipped) or an HGNC download URL. Downloads are saved once
+ * in the cache directory and streamed from there, so the marker load, the accession id update and the
+ * symbol validation share a single copy. Setting {@code hgnc.file} makes every consumer use that file.
+ * Columns are found by their header names, which lets the custom and legacy HGNC downloads be read alike.
+ */
+@Service
+public class HgncReader {
+
+    private static final Logger log = LoggerFactory.getLogger(HgncReader.class);
+
+    // column positions of DataUrl.HUGO_FILE_URL, used when the header is not recognised
+    private static final int[] DEFAULT_COLUMNS = {0, 1, 2, 4, 5, 9, 10};
+    private static final int HGNC_ID = 0, SYMBOL = 1, NAME = 2, PREV_SYMBOLS = 3, SYNONYMS = 4, ENSEMBL_ID = 5, NCBI_ID = 6;
+
+    @Value("${hgnc.file:}")
+    private String hgncFile;
+
+    @Value("${db-cache-dir:}")
+    private String cacheDir;
+
+    @Value("${hgnc.cache-ttl-hours:24}")
+    private long cacheTtlHours;
+
+    @Value("${http-cache.mode:online}")
+    private String httpCacheMode;
+
+    private final Map<String, HgncIndex> indexes = new HashMap<>();
+    private final Set<String> downloadedThisRun = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Passes every approved gene of {@code source} to {@code consumer}, one row at a time.
+     *
+     * @return the number of genes read
+     */
+    public int read(String source, Consumer<HgncRecord> consumer) throws IOException {
+
+        File file = resolve(source);
+        int genes = 0;
+        try (BufferedReader reader = open(file)) {
+
+            String header = reader.readLine();
+            if (header == null) return 0;
+            int[] columns = columns(header.split("\t", -1));
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+
+                HgncRecord record = parse(line.split("\t", -1), columns);
+                if (record != null) {
+                    consumer.accept(record);
+                    genes++;
+                }
+            }
+        }
+        return genes;
+    }
+
+    /**
+     * Returns the lookups over {@code source}, reading it on first use only.
+     */
+    public synchronized HgncIndex getIndex(String source) throws IOException {
+
+        String key = resolve(source).getAbsolutePath();
+        HgncIndex index = indexes.get(key);
+        if (index == null) {
+            HgncIndex newIndex = new HgncIndex();
+            read(source, newIndex::add);
+            log.info("Indexed {} HGNC genes", newIndex.size());
+            indexes.put(key, newIndex);
+            index = newIndex;
+        }
+        return index;
+    }
+
+    File resolve(String source) throws IOException {
+
+        if (hgncFile != null && !hgncFile.isEmpty()) return new File(hgncFile);
+        if (!source.startsWith("http://") && !source.startsWith("https://")) return new File(source);
+
+        File copy = new File(new File(cacheDirectory(), "hgnc"), "hgnc_" + Integer.toHexString(source.hashCode()) + ".txt");
+        HttpCacheMode mode = HttpCacheMode.fromString(httpCacheMode);
+        boolean fresh = copy.isFile() && System.currentTimeMillis() - copy.lastModified() < TimeUnit.HOURS.toMillis(cacheTtlHours);
+
+        if (mode == HttpCacheMode.OFFLINE || (mode == HttpCacheMode.ONLINE && fresh) || downloadedThisRun.contains(source)) {
+            if (!copy.isFile()) throw new FileNotFoundException("No downloaded HGNC file " + copy + " in offline mode");
+            return copy;
+        }
+        download(source, copy);
+        downloadedThisRun.add(source);
+        return copy;
+    }
+
+    private File cacheDirectory() {
+        return cacheDir == null || cacheDir.isEmpty() ? new File(System.getProperty("java.io.tmpdir")) : new File(cacheDir);
+    }
+
+    private void download(String source, File target) throws IOException {
+
+        log.info("Downloading HGNC genes to {}", target);
+        Files.createDirectories(target.getParentFile().toPath());
+        HttpURLConnection connection = (HttpURLConnection) new URL(source).openConnection();
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + connection.getResponseCode() + " from " + source);
+            }
+            File temporary = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+            try (InputStream in = connection.getInputStream()) {
+                Files.copy(in, temporary.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static BufferedReader open(File file) throws IOException {
+
+        InputStream in = Files.newInputStream(file.toPath());
+        if (file.getName().endsWith(".gz")) in = new GZIPInputStream(in);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    static int[] columns(String[] header) {
+
+        int[] columns = {-1, -1, -1, -1, -1, -1, -1};
+        for (int i = 0; i < header.length; i++) {
+
+            String name = header[i].trim().toLowerCase(Locale.ROOT);
+            if (name.startsWith("hgnc id")) setOnce(columns, HGNC_ID, i);
+            else if (name.startsWith("approved symbol")) setOnce(columns, SYMBOL, i);
+            else if (name.startsWith("approved name")) setOnce(columns, NAME, i);
+            else if (name.startsWith("previous symbol")) setOnce(columns, PREV_SYMBOLS, i);
+            else if (name.startsWith("alias symbol") || name.startsWith("synonyms")) setOnce(columns, SYNONYMS, i);
+            else if (name.startsWith("ensembl")) setOnce(columns, ENSEMBL_ID, i);
+            else if (name.startsWith("ncbi gene id") || name.startsWith("entrez gene id")) setOnce(columns, NCBI_ID, i);
+        }
+        if (columns[SYMBOL] == -1) {
+            log.warn("Unrecognised HGNC header, using the default column layout");
+            return DEFAULT_COLUMNS.clone();
+        }
+        return columns;
+    }
+
+    private static void setOnce(int[] columns, int field, int position) {
+        if (columns[field] == -1) columns[field] = position;
+    }
+
+    private static HgncRecord parse(String[] row, int[] columns) {
+
+        String symbol = cell(row, columns[SYMBOL]);
+        if (symbol.isEmpty()) return null;
+
+        return new HgncRecord(cell(row, columns[HGNC_ID]), symbol, cell(row, columns[NAME]),
+            cell(row, columns[ENSEMBL_ID]), cell(row, columns[NCBI_ID]),
+            list(cell(row, columns[PREV_SYMBOLS])), list(cell(row, columns[SYNONYMS])));
+    }
+
+    private static String cell(String[] row, int column) {
+        return column >= 0 && column < row.length ? row[column].trim() : "";
+    }
+
+    private static List<String> list(String cell) {
+
+        if (cell.isEmpty()) return Collections.emptyList();
+        List<String> values = new ArrayList<>();
+        for (String value : cell.split(",")) {
+            String trimmed = value.trim();
+            if (!trimmed.isEmpty()) values.add(trimmed);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,64 @@
+package org.pdxfinder.services.hgnc;
+
+import org.pdxfinder.graph.dao.Marker;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One approved gene row of an HGNC download.
+ */
+public class HgncRecord {
+
+    private final String hgncId;
+    private final String symbol;
+    private final String name;
+    private final String ensemblGeneId;
+    private final String ncbiGeneId;
+    private final List<String> prevSymbols;
+    private final List<String> synonyms;
+
+    public HgncRecord(String hgncId, String symbol, String name, String ensemblGeneId, String ncbiGeneId,
+                      List<String> prevSymbols, List<String> synonyms) {
+        this.hgncId = hgncId;
+        this.symbol = symbol;
+        this.name = name;
+        this.ensemblGeneId = ensemblGeneId;
+        this.ncbiGeneId = ncbiGeneId;
+        this.prevSymbols = Collections.unmodifiableList(prevSymbols);
+        this.synonyms = Collections.unmodifiableList(synonyms);
+    }
+
+    public Marker toMarker() {
+        return Marker.createMarker(symbol, ensemblGeneId, hgncId, ncbiGeneId,
+            synonyms.toArray(new String[0]), prevSymbols.toArray(new String[0]));
+    }
+
+    public String getHgncId() {
+        return hgncId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEnsemblGeneId() {
+        return ensemblGeneId;
+    }
+
+    public String getNcbiGeneId() {
+        return ncbiGeneId;
+    }
+
+    public List<String> getPrevSymbols() {
+        return prevSymbols;
+    }
+
+    public List<String> getSynonyms() {
+        return synonyms;
+    }
+}
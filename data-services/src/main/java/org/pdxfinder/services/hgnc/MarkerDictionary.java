@@ -0,0 +1,342 @@
+package org.pdxfinder.services.hgnc;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Read-only, memory-mapped lookup of approved marker symbols, previous symbols and synonyms.
+ * <p>
+ * The file holds a pool of interned UTF-8 strings and three tables sorted by key bytes, so lookups are
+ * binary searches over the mapped file and nothing is deserialised up front:
+ * <pre>
+ * magic, version, markerCount, prevCount, synonymCount, targetCount, poolSize     (ints)
+ * markers   markerCount x [symbol, hgncId, ncbiGeneId, ensemblGeneId]            (pool offsets)
+ * prev      prevCount    x [key, firstTarget, targetCount]
+ * synonyms  synonymCount x [key, firstTarget, targetCount]
+ * targets   targetCount  x marker ordinal
+ * pool      strings as [unsigned short length][UTF-8 bytes]
+ * </pre>
+ * A previous symbol or synonym with more than one target is ambiguous.
+ */
+public class MarkerDictionary {
+
+    private static final int MAGIC = 0x50445844;
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 7;
+    private static final int MARKER_INTS = 4;
+    private static final int ALIAS_INTS = 3;
+    private static final int[] NONE = new int[0];
+
+    private final ByteBuffer buffer;
+    private final int markerCount;
+    private final int prevCount;
+    private final int synonymCount;
+    private final int markersStart;
+    private final int prevStart;
+    private final int synonymsStart;
+    private final int targetsStart;
+    private final int poolStart;
+
+    private MarkerDictionary(ByteBuffer buffer) throws IOException {
+
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_INTS * 4 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a marker dictionary");
+        }
+        markerCount = buffer.getInt(8);
+        prevCount = buffer.getInt(12);
+        synonymCount = buffer.getInt(16);
+        int targetCount = buffer.getInt(20);
+
+        markersStart = HEADER_INTS * 4;
+        prevStart = markersStart + markerCount * MARKER_INTS * 4;
+        synonymsStart = prevStart + prevCount * ALIAS_INTS * 4;
+        targetsStart = synonymsStart + synonymCount * ALIAS_INTS * 4;
+        poolStart = targetsStart + targetCount * 4;
+        if (poolStart + buffer.getInt(24) != buffer.limit()) {
+            throw new IOException("Truncated marker dictionary");
+        }
+    }
+
+    public static MarkerDictionary open(File file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new MarkerDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getMarkerCount() {
+        return markerCount;
+    }
+
+    /**
+     * @return a SHA-256 hex digest of the whole file, which changes with any symbol, accession or alias
+     */
+    public String getFingerprint() {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(buffer.duplicate());
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    /**
+     * @return the ordinal of the approved {@code symbol}, or -1
+     */
+    public int findSymbol(String symbol) {
+        return search(markersStart, MARKER_INTS, markerCount, utf8(symbol));
+    }
+
+    /**
+     * @return the ordinals of the approved markers that had {@code symbol} as a previous symbol
+     */
+    public int[] findPrevSymbol(String symbol) {
+        return targets(prevStart, search(prevStart, ALIAS_INTS, prevCount, utf8(symbol)));
+    }
+
+    /**
+     * @return the ordinals of the approved markers that have {@code symbol} as a synonym
+     */
+    public int[] findSynonym(String symbol) {
+        return targets(synonymsStart, search(synonymsStart, ALIAS_INTS, synonymCount, utf8(symbol)));
+    }
+
+    public String getSymbol(int ordinal) {
+        return markerString(ordinal, 0);
+    }
+
+    public String getHgncId(int ordinal) {
+        return markerString(ordinal, 1);
+    }
+
+    public String getNcbiGeneId(int ordinal) {
+        return markerString(ordinal, 2);
+    }
+
+    public String getEnsemblGeneId(int ordinal) {
+        return markerString(ordinal, 3);
+    }
+
+    private String markerString(int ordinal, int field) {
+
+        int offset = buffer.getInt(markersStart + (ordinal * MARKER_INTS + field) * 4);
+        int length = buffer.getShort(poolStart + offset) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) bytes[i] = buffer.get(poolStart + offset + 2 + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int[] targets(int tableStart, int entry) {
+
+        if (entry < 0) return NONE;
+        int position = tableStart + entry * ALIAS_INTS * 4;
+        int first = buffer.getInt(position + 4);
+        int[] ordinals = new int[buffer.getInt(position + 8)];
+        for (int i = 0; i < ordinals.length; i++) ordinals[i] = buffer.getInt(targetsStart + (first + i) * 4);
+        return ordinals;
+    }
+
+    private int search(int tableStart, int entryInts, int entries, byte[] key) {
+
+        int low = 0;
+        int high = entries - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareToPool(buffer.getInt(tableStart + middle * entryInts * 4), key);
+            if (comparison < 0) low = middle + 1;
+            else if (comparison > 0) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    private int compareToPool(int offset, byte[] key) {
+
+        int start = poolStart + offset + 2;
+        int length = buffer.getShort(poolStart + offset) & 0xFFFF;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0) return difference;
+        }
+        return length - key.length;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final Comparator<byte[]> UNSIGNED_BYTES = (a, b) -> {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (difference != 0) return difference;
+        }
+        return a.length - b.length;
+    };
+
+
+    /**
+     * Collects markers and writes them as a dictionary file. When a symbol is added twice the last one wins.
+     */
+    public static class Builder {
+
+        private final Map<String, String[]> markers = new LinkedHashMap<>();
+        private final Map<String, List<String>> prevSymbols = new HashMap<>();
+        private final Map<String, List<String>> synonyms = new HashMap<>();
+
+        public Builder add(String symbol, String hgncId, String ncbiGeneId, String ensemblGeneId,
+                           Collection<String> markerPrevSymbols, Collection<String> markerSynonyms) {
+
+            if (symbol == null || symbol.isEmpty()) return this;
+            markers.put(symbol, new String[]{symbol, nullToEmpty(hgncId), nullToEmpty(ncbiGeneId), nullToEmpty(ensemblGeneId)});
+            addAliases(symbol, markerPrevSymbols, prevSymbols);
+            addAliases(symbol, markerSynonyms, synonyms);
+            return this;
+        }
+
+        public Builder add(HgncRecord record) {
+            return add(record.getSymbol(), record.getHgncId(), record.getNcbiGeneId(), record.getEnsemblGeneId(),
+                record.getPrevSymbols(), record.getSynonyms());
+        }
+
+        public int size() {
+            return markers.size();
+        }
+
+        private static void addAliases(String symbol, Collection<String> aliases, Map<String, List<String>> index) {
+
+            if (aliases == null) return;
+            for (String alias : aliases) {
+                if (alias == null || alias.trim().isEmpty()) continue;
+                List<String> targets = index.computeIfAbsent(alias.trim(), k -> new ArrayList<>(1));
+                if (!targets.contains(symbol)) targets.add(symbol);
+            }
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+
+        /**
+         * Writes the dictionary to a temporary file next to {@code file} and moves it into place.
+         */
+        public void write(File file) throws IOException {
+
+            Pool pool = new Pool();
+            TreeMap<byte[], String[]> sortedMarkers = new TreeMap<>(UNSIGNED_BYTES);
+            markers.values().forEach(marker -> sortedMarkers.put(utf8(marker[0]), marker));
+
+            Map<String, Integer> ordinals = new HashMap<>();
+            List<Integer> markerTable = new ArrayList<>();
+            for (String[] marker : sortedMarkers.values()) {
+                ordinals.put(marker[0], ordinals.size());
+                for (String value : marker) markerTable.add(pool.offset(value));
+            }
+
+            List<Integer> targets = new ArrayList<>();
+            List<Integer> prevTable = aliasTable(prevSymbols, ordinals, pool, targets);
+            List<Integer> synonymTable = aliasTable(synonyms, ordinals, pool, targets);
+
+            File parent = file.getAbsoluteFile().getParentFile();
+            Files.createDirectories(parent.toPath());
+            File temporary = File.createTempFile(file.getName(), ".tmp", parent);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(sortedMarkers.size());
+                out.writeInt(prevTable.size() / ALIAS_INTS);
+                out.writeInt(synonymTable.size() / ALIAS_INTS);
+                out.writeInt(targets.size());
+                out.writeInt(pool.size());
+                for (List<Integer> table : Arrays.asList(markerTable, prevTable, synonymTable, targets)) {
+                    for (int value : table) out.writeInt(value);
+                }
+                pool.writeTo(out);
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static List<Integer> aliasTable(Map<String, List<String>> aliases, Map<String, Integer> ordinals,
+                                                Pool pool, List<Integer> targets) {
+
+            TreeMap<byte[], List<String>> sorted = new TreeMap<>(UNSIGNED_BYTES);
+            aliases.forEach((alias, symbols) -> sorted.put(utf8(alias), symbols));
+
+            List<Integer> table = new ArrayList<>();
+            for (Map.Entry<byte[], List<String>> alias : sorted.entrySet()) {
+
+                int first = targets.size();
+                for (String symbol : alias.getValue()) {
+                    Integer ordinal = ordinals.get(symbol);
+                    if (ordinal != null) targets.add(ordinal);
+                }
+                table.add(pool.offset(new String(alias.getKey(), StandardCharsets.UTF_8)));
+                table.add(first);
+                table.add(targets.size() - first);
+            }
+            return table;
+        }
+    }
+
+
+    private static class Pool {
+
+        private final Map<String, Integer> offsets = new HashMap<>();
+        private final List<byte[]> strings = new ArrayList<>();
+        private int size;
+
+        int offset(String value) {
+
+            Integer offset = offsets.get(value);
+            if (offset == null) {
+                byte[] bytes = utf8(value);
+                if (bytes.length > 0xFFFF) bytes = Arrays.copyOf(bytes, 0xFFFF);
+                offset = size;
+                offsets.put(value, offset);
+                strings.add(bytes);
+                size += 2 + bytes.length;
+            }
+            return offset;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+
+            for (byte[] bytes : strings) {
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.pdxfinder.services.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP GET client that reads through an optional {@link HttpResponseCache} according to an
+ * {@link HttpCacheMode}, and counts cache hits, misses and bytes served from each side.
+ * <p>
+ * Requests that reach the network are paced by a {@link RateLimiter} and retried on HTTP 429 and 5xx.
+ * In online mode a stale entry is revalidated with its ETag, and used as-is if the server cannot be reached.
+ * Instances are thread safe.
+ */
+public class CachingHttpClient {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingHttpClient.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 30_000;
+    private static final int READ_TIMEOUT_MILLIS = 120_000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BACKOFF_MILLIS = 1000;
+
+    private final HttpResponseCache cache;
+    private final HttpCacheMode mode;
+    private final RateLimiter rateLimiter;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revalidated = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bytesFromCache = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+
+    /**
+     * @param cache where responses are recorded, or null to always go to the network without recording
+     */
+    public CachingHttpClient(HttpResponseCache cache, HttpCacheMode mode, RateLimiter rateLimiter) {
+        this.cache = cache;
+        this.mode = cache == null ? HttpCacheMode.REFRESH : mode;
+        this.rateLimiter = rateLimiter;
+    }
+
+    public CachingHttpClient(HttpResponseCache cache, HttpCacheMode mode) {
+        this(cache, mode, new RateLimiter(0));
+    }
+
+    /**
+     * Returns the body of {@code url}.
+     *
+     * @param accept value of the Accept header, or null to send none
+     * @throws IOException if the response is neither recorded nor downloadable, or in offline mode not recorded
+     */
+    public String get(String url, String accept) throws IOException {
+
+        Optional<HttpResponseCache.CachedResponse> cached =
+            cache == null || mode == HttpCacheMode.REFRESH ? Optional.empty() : cache.get(url);
+
+        if (cached.isPresent() && (mode == HttpCacheMode.OFFLINE || cache.isFresh(cached.get()))) {
+            return hit(cached.get().getBody());
+        }
+        if (mode == HttpCacheMode.OFFLINE) {
+            failures.increment();
+            throw new FileNotFoundException("No recorded response for " + url + " in offline mode");
+        }
+
+        try {
+            return download(url, accept, cached.orElse(null));
+        } catch (IOException e) {
+            failures.increment();
+            if (!cached.isPresent()) throw e;
+            log.warn("Using stale cached response for {}: {}", url, e.getMessage());
+            return hit(cached.get().getBody());
+        }
+    }
+
+    private String download(String url, String accept, HttpResponseCache.CachedResponse stale) throws IOException {
+
+        IOException lastFailure = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                rateLimiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted before fetching " + url, e);
+            }
+
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            if (accept != null) connection.setRequestProperty("Accept", accept);
+            if (stale != null && stale.getEtag() != null) connection.setRequestProperty("If-None-Match", stale.getEtag());
+
+            try {
+                int status = connection.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED && stale != null) {
+                    revalidated.increment();
+                    return hit(cache.touch(stale).getBody());
+                }
+                if (status == HttpURLConnection.HTTP_OK) {
+                    String body = read(connection);
+                    misses.increment();
+                    bytesDownloaded.add(body.getBytes(StandardCharsets.UTF_8).length);
+                    if (cache != null) cache.put(url, body, connection.getHeaderField("ETag"));
+                    return body;
+                }
+                lastFailure = new IOException("HTTP " + status + " from " + url);
+                if (status != 429 && status < 500) break;
+
+                log.warn("HTTP {} for {} (attempt {} of {})", status, url, attempt, MAX_ATTEMPTS);
+            } catch (IOException e) {
+                lastFailure = e;
+                log.warn("Cannot fetch {} (attempt {} of {}): {}", url, attempt, MAX_ATTEMPTS, e.getMessage());
+            } finally {
+                connection.disconnect();
+            }
+            if (attempt < MAX_ATTEMPTS) backOff(url, attempt);
+        }
+        throw lastFailure;
+    }
+
+    // waits longer after each failed attempt, for server errors and connection failures alike
+    private static void backOff(String url, int attempt) throws IOException {
+        try {
+            Thread.sleep(BACKOFF_MILLIS * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching " + url, e);
+        }
+    }
+
+    private String hit(String body) {
+        hits.increment();
+        bytesFromCache.add(body.getBytes(StandardCharsets.UTF_8).length);
+        return body;
+    }
+
+    public HttpCacheMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Counters since this client was created: hits, revalidated (included in hits), misses, failures,
+     * bytesFromCache and bytesDownloaded.
+     */
+    public Map<String, Long> getStatistics() {
+
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("hits", hits.sum());
+        statistics.put("revalidated", revalidated.sum());
+        statistics.put("misses", misses.sum());
+        statistics.put("failures", failures.sum());
+        statistics.put("bytesFromCache", bytesFromCache.sum());
+        statistics.put("bytesDownloaded", bytesDownloaded.sum());
+        return statistics;
+    }
+
+    public void logStatistics(String name) {
+
+        Map<String, Long> statistics = getStatistics();
+        if (statistics.values().stream().allMatch(count -> count == 0)) return;
+        log.info("{} HTTP ({} mode): {} hits ({} revalidated, {} bytes), {} misses ({} bytes downloaded), {} failures",
+            name, mode.name().toLowerCase(), statistics.get("hits"), statistics.get("revalidated"),
+            statistics.get("bytesFromCache"), statistics.get("misses"), statistics.get("bytesDownloaded"),
+            statistics.get("failures"));
+    }
+
+    private static String read(HttpURLConnection connection) throws IOException {
+
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
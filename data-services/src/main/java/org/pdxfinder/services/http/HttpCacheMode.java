@@ -0,0 +1,20 @@
+package org.pdxfinder.services.http;
+
+/**
+ * How a {@link CachingHttpClient} uses its {@link HttpResponseCache}.
+ */
+public enum HttpCacheMode {
+
+    /** Serve fresh recorded responses, fetch and record everything else. */
+    ONLINE,
+
+    /** Only replay recorded responses; never touch the network. */
+    OFFLINE,
+
+    /** Always fetch and re-record, ignoring what is cached. */
+    REFRESH;
+
+    public static HttpCacheMode fromString(String mode) {
+        return mode == null || mode.trim().isEmpty() ? ONLINE : valueOf(mode.trim().toUpperCase());
+    }
+}
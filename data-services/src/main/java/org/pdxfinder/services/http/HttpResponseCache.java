@@ -0,0 +1,178 @@
+package org.pdxfinder.services.http;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Content-addressed disk cache of HTTP response bodies.
+ * <p>
+ * Bodies are stored once under {@code content/<sha256 of body>}; each URL gets a small JSON entry named
+ * after the SHA-256 of the URL that points at its body and keeps the ETag, so stale entries can be
+ * revalidated instead of refetched. Identical responses (empty pages, repeated payloads) share one file.
+ */
+public class HttpResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpResponseCache.class);
+
+    private static final String CONTENT_DIR = "content";
+    // entries of other formats (such as the earlier ones that held the body inline) are treated as misses
+    static final int FORMAT = 2;
+
+    private final File directory;
+    // negative when entries never expire
+    private final long timeToLiveMillis;
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * @param timeToLive how long an entry stays fresh; a negative duration keeps entries fresh forever
+     */
+    public HttpResponseCache(File directory, Duration timeToLive) {
+        this.directory = directory;
+        this.timeToLiveMillis = timeToLive.isNegative() ? -1 : timeToLive.toMillis();
+    }
+
+    public Optional<CachedResponse> get(String url) {
+
+        File entry = entryFile(url);
+        if (!entry.isFile()) return Optional.empty();
+        try {
+            CachedResponse response = mapper.readValue(entry, CachedResponse.class);
+            if (!url.equals(response.getUrl())) return Optional.empty();
+            if (response.getFormat() != FORMAT || response.getContentHash() == null) {
+                log.debug("Ignoring cache entry of {} in an outdated format", url);
+                return Optional.empty();
+            }
+
+            File content = contentFile(response.getContentHash());
+            if (!content.isFile()) {
+                log.warn("Ignoring cache entry of {}: content {} is missing", url, response.getContentHash());
+                return Optional.empty();
+            }
+            response.body = new String(Files.readAllBytes(content.toPath()), StandardCharsets.UTF_8);
+            return Optional.of(response);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable cache entry {}: {}", entry, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public CachedResponse put(String url, String body, String etag) {
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        CachedResponse response = new CachedResponse(url, sha256(bytes), etag, System.currentTimeMillis());
+        response.body = body;
+        try {
+            File content = contentFile(response.getContentHash());
+            if (!content.isFile()) {
+                writeAtomically(content, bytes);
+            }
+            writeAtomically(entryFile(url), mapper.writeValueAsBytes(response));
+        } catch (IOException e) {
+            log.warn("Cannot cache response of {} in {}: {}", url, directory, e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Marks a stale entry as fresh again after the server confirmed it has not changed.
+     */
+    public CachedResponse touch(CachedResponse response) {
+        return put(response.getUrl(), response.getBody(), response.getEtag());
+    }
+
+    public boolean isFresh(CachedResponse response) {
+        return timeToLiveMillis < 0 || response.getFetchedAt() + timeToLiveMillis > System.currentTimeMillis();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    File entryFile(String url) {
+        return new File(directory, sha256(url.getBytes(StandardCharsets.UTF_8)) + ".json");
+    }
+
+    File contentFile(String contentHash) {
+        return new File(new File(new File(directory, CONTENT_DIR), contentHash.substring(0, 2)), contentHash);
+    }
+
+    private void writeAtomically(File target, byte[] bytes) throws IOException {
+
+        File parent = target.getParentFile();
+        Files.createDirectories(parent.toPath());
+        File temporary = File.createTempFile(target.getName(), ".tmp", parent);
+        Files.write(temporary.toPath(), bytes);
+        Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static String sha256(byte[] value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    public static class CachedResponse {
+
+        private int format;
+        private String url;
+        private String contentHash;
+        private String etag;
+        private long fetchedAt;
+        private transient String body;
+
+        public CachedResponse() {
+        }
+
+        public CachedResponse(String url, String contentHash, String etag, long fetchedAt) {
+            this.format = FORMAT;
+            this.url = url;
+            this.contentHash = contentHash;
+            this.etag = etag;
+            this.fetchedAt = fetchedAt;
+        }
+
+        public int getFormat() {
+            return format;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        @JsonIgnore
+        public String getBody() {
+            return body;
+        }
+    }
+}
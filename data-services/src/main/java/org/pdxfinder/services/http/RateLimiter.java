@@ -0,0 +1,30 @@
+package org.pdxfinder.services.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces calls evenly so no more than {@code permitsPerSecond} start in any second, across threads.
+ * A rate of zero or less disables the limit.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextFreeSlot = System.nanoTime();
+
+    public RateLimiter(double permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+    }
+
+    public void acquire() throws InterruptedException {
+
+        if (intervalNanos == 0) return;
+        long wait = reserve() - System.nanoTime();
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    private synchronized long reserve() {
+        long slot = Math.max(nextFreeSlot, System.nanoTime());
+        nextFreeSlot = slot + intervalNanos;
+        return slot;
+    }
+}
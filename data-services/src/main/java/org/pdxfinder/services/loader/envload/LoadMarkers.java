@@ -1,21 +1,18 @@
 package org.pdxfinder.services.loader.envload;
 
-import org.apache.commons.lang3.StringUtils;
 import org.pdxfinder.graph.dao.Marker;
 import org.pdxfinder.services.DataImportService;
+import org.pdxfinder.services.hgnc.HgncReader;
+import org.pdxfinder.services.hgnc.MarkerDictionary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 @Service
@@ -24,97 +21,51 @@ public class LoadMarkers {
     private Logger log = LoggerFactory.getLogger(LoadMarkers.class);
 
     private DataImportService dataImportService;
+    private HgncReader hgncReader;
 
-    public LoadMarkers(DataImportService dataImportService) {
+    @Value("${hgnc.batch-size:2000}")
+    private int batchSize = 2000;
+
+    public LoadMarkers(DataImportService dataImportService, HgncReader hgncReader) {
         this.dataImportService = dataImportService;
+        this.hgncReader = hgncReader;
     }
 
+    /**
+     * Streams the HGNC genes of {@code dataURL} (a download URL or a local file) into the graph,
+     * saving markers in batches of {@code hgnc.batch-size}, then writes the marker dictionary for symbol lookups.
+     */
     public void loadGenes(String dataURL) {
         Instant start = Instant.now();
 
-        log.info("Downloading latest marker data from {}...", dataURL.substring(0, 50));
-        BufferedReader reader = downloadDataFromURL(dataURL);
-        List<Marker> markers = parseMarkers(reader);
-        dataImportService.saveAllMarkers(markers);
-
-        Instant finish = Instant.now();
-        log.info("{} markers retrieved and loaded in {} seconds",
-            markers.size(),
-            Duration.between(start, finish).getSeconds());
-    }
-
-    private BufferedReader downloadDataFromURL(String dataURL){
-        BufferedReader reader = null;
-        try{
-            URL url = new URL(dataURL);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-
-            if (conn.getResponseCode() != 200) {
-                log.error("Failed : HTTP error code : {}", conn.getResponseCode());
-            }
-            reader = new BufferedReader(new InputStreamReader(
-                    (conn.getInputStream())));
-        } catch (IOException e) {
-            log.error("There was an error attempting to connect to {}", dataURL, e);
-        }
-        return reader;
-    }
-
-    private List<Marker> parseMarkers(BufferedReader reader) {
-        List<Marker> markers = new ArrayList<>();
-        int rowNumber = 0;
-
-        String line;
-        String[] rowData = new String[0];
-        String[] prevSymbols;
-        String[] synonyms;
-
-        String symbol;
-        String hgncId;
-        String ensemblId;
-        String ncbiId;
-
-        if (reader == null)
-            throw new IllegalArgumentException("Buffered Reader cannot be null");
-
+        log.info("Loading latest marker data from {}...", dataURL.substring(0, Math.min(50, dataURL.length())));
+        List<Marker> batch = new ArrayList<>(batchSize);
+        MarkerDictionary.Builder dictionary = new MarkerDictionary.Builder();
+        int markers;
         try {
-            while ((line = reader.readLine()) != null) {
-                rowNumber ++;
-                if (rowNumber == 1) continue; // Skip header
-
-                rowData = line.split("\t");
-                symbol = parseHugoFile(rowData, 1);
-                if (StringUtils.isNotEmpty(symbol)) {
-
-                    hgncId = parseHugoFile(rowData, 0);
-                    prevSymbols = parseHugoFile(rowData, 4).split(",");
-                    synonyms = parseHugoFile(rowData, 5).split(",");
-                    ensemblId = parseHugoFile(rowData, 9);
-                    ncbiId = parseHugoFile(rowData, 10);
-
-                    markers.add(Marker.createMarker(symbol, ensemblId, hgncId, ncbiId, synonyms, prevSymbols));
-                    if (rowNumber % 200 == 0)
-                        System.out.print(String.format("Parsed %s markers...\r", rowNumber));
+            markers = hgncReader.read(dataURL, record -> {
+                batch.add(record.toMarker());
+                dictionary.add(record);
+                if (batch.size() >= batchSize) {
+                    saveBatch(batch);
                 }
-            }
-        } catch (Exception e) {
-            log.error("Error parsing HGNC file for row {}", Arrays.toString(rowData), e);
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read HGNC marker data from " + dataURL, e);
         }
+        saveBatch(batch);
+        dataImportService.saveMarkerDictionary(dictionary);
 
-        return markers;
-    }
-
-    private String parseHugoFile(String[] rowData, int column){
-        String cellValue = "";
-        if (cellIsNotEmptyAndIsCorrectLen(rowData, column)) {
-            cellValue = rowData[column];
-        }
-        return cellValue;
+        Instant finish = Instant.now();
+        log.info("{} markers retrieved and loaded in {} seconds",
+            markers,
+            Duration.between(start, finish).getSeconds());
     }
 
-    private boolean cellIsNotEmptyAndIsCorrectLen(String[] rowData, int column){
-        return rowData.length > column && rowData[column] != null && !rowData[column].isEmpty();
+    private void saveBatch(List<Marker> batch) {
+        if (batch.isEmpty()) return;
+        dataImportService.saveAllMarkers(new ArrayList<>(batch));
+        batch.clear();
     }
 
 }
@@ -5,12 +5,15 @@ import org.pdxfinder.graph.dao.OntologyTerm;
 import org.pdxfinder.services.DataImportService;
 import org.pdxfinder.services.UtilityService;
 import org.pdxfinder.services.constants.DataUrl;
+import org.pdxfinder.services.ontology.NcitReleaseImporter;
+import org.pdxfinder.services.ontology.OntologyBranch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
 import java.net.URLEncoder;
+import java.nio.file.Path;
 import java.time.*;
 import java.util.*;
 
@@ -22,13 +25,34 @@ public class LoadNCIT {
 
     private static final String UTF8 = "UTF-8";
     private static final String EMBEDDED = "_embedded";
+    private static final String DISEASE_ROOT_LABEL = "Cancer"; // Neoplasm
+    private static final String MALIGNANT_NEOPLASM = "(.*)Malignant(.*)Neoplasm(.*)";
 
     private DataImportService dataImportService;
     private UtilityService utilityService;
+    private NcitReleaseImporter ncitReleaseImporter;
 
-    public LoadNCIT(DataImportService dataImportService, UtilityService utilityService) {
+    public LoadNCIT(DataImportService dataImportService,
+                    UtilityService utilityService,
+                    NcitReleaseImporter ncitReleaseImporter) {
         this.dataImportService = dataImportService;
         this.utilityService = utilityService;
+        this.ncitReleaseImporter = ncitReleaseImporter;
+    }
+
+
+    /**
+     * Offline counterpart of {@link #loadOntology(String)}: imports the disease branch from a local
+     * NCIT OBO/OWL release, with the same labels, synonyms and parent links.
+     */
+    public void loadOntologyFromRelease(Path release, String branchUrl) throws IOException {
+
+        log.info("Loading all Neoplasm ontology subnodes from {}", release);
+
+        OntologyBranch diseases = new OntologyBranch(
+            branchUrl, "diagnosis", OntologyBranch.Scope.ROOT_AND_DESCENDANTS, true,
+            term -> term.getUrl().equals(branchUrl) ? DISEASE_ROOT_LABEL : diagnosisLabel(term.getLabel()));
+        ncitReleaseImporter.importBranches(release, Collections.singletonList(diseases));
     }
 
 
@@ -41,7 +65,7 @@ public class LoadNCIT {
         Set<String> loadedTerms = new HashSet<>();
         Set<OntologyTerm> discoveredTerms = new HashSet<>();
 
-        String diseaseRootLabel = "Cancer"; // Neoplasm
+        String diseaseRootLabel = DISEASE_ROOT_LABEL;
 
         int requestCounter = 0;
         int replacedTerms = 0;
@@ -107,21 +131,11 @@ public class LoadNCIT {
 
                     log.debug("TERM: {}", termLabel);
 
-                    // Changes Malignant * Neoplasm to * Cancer
-                    String pattern = "(.*)Malignant(.*)Neoplasm(.*)";
-                    String updatedTermlabel = null;
-
-                    if (termLabel.matches(pattern)) {
-                        updatedTermlabel = (termLabel.replaceAll(pattern, "\t$1$2Cancer$3")).trim();
-                        log.trace("Replacing term label '{}' with '{}'", termLabel, updatedTermlabel);
-                        replacedTerms ++;
-                    }
-
-                    termLabel = termLabel.replaceAll(",", "");
+                    if (termLabel.matches(MALIGNANT_NEOPLASM)) replacedTerms++;
 
                     OntologyTerm newTerm = dataImportService.getOntologyTerm(
                         term.getString("iri"),
-                        updatedTermlabel != null ? updatedTermlabel : termLabel);
+                        diagnosisLabel(termLabel));
 
                     JSONArray synonyms = term.getJSONArray("synonyms");
                     Set<String> synonymsSet = new HashSet<>();
@@ -154,6 +168,19 @@ public class LoadNCIT {
 
     }
 
+    /**
+     * Changes Malignant * Neoplasm to * Cancer, otherwise drops commas from the label.
+     */
+    static String diagnosisLabel(String termLabel) {
+
+        if (termLabel.matches(MALIGNANT_NEOPLASM)) {
+            String updatedTermlabel = (termLabel.replaceAll(MALIGNANT_NEOPLASM, "\t$1$2Cancer$3")).trim();
+            log.trace("Replacing term label '{}' with '{}'", termLabel, updatedTermlabel);
+            return updatedTermlabel;
+        }
+        return termLabel.replaceAll(",", "");
+    }
+
     public void loadNCITPreDef(String ncitFile){
 
         String currentLine;
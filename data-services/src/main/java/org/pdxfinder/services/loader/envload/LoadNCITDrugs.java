@@ -2,11 +2,18 @@ package org.pdxfinder.services.loader.envload;
 
 import org.pdxfinder.services.DataImportService;
 import org.pdxfinder.services.UtilityService;
+import org.pdxfinder.services.http.CachingHttpClient;
+import org.pdxfinder.services.http.RateLimiter;
+import org.pdxfinder.services.ontology.NcitReleaseImporter;
+import org.pdxfinder.services.ontology.OlsCrawler;
 import org.pdxfinder.services.ontology.Ontolia;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
+
 @Service
 public class LoadNCITDrugs {
 
@@ -15,17 +22,34 @@ public class LoadNCITDrugs {
 
     private DataImportService dataImportService;
     private UtilityService utilityService;
+    private NcitReleaseImporter ncitReleaseImporter;
+
+    @Value("${ols.max-concurrent-requests:4}")
+    private int olsMaxConcurrentRequests;
 
-    public LoadNCITDrugs(DataImportService dataImportService, UtilityService utilityService) {
+    @Value("${ols.requests-per-second:10}")
+    private double olsRequestsPerSecond;
+
+    public LoadNCITDrugs(DataImportService dataImportService,
+                         UtilityService utilityService,
+                         NcitReleaseImporter ncitReleaseImporter) {
         this.dataImportService = dataImportService;
         this.utilityService = utilityService;
+        this.ncitReleaseImporter = ncitReleaseImporter;
     }
 
     public void loadRegimens(){
+        loadRegimens(null);
+    }
+
+    /**
+     * Loads treatments and regimens from a local NCIT release, or from OLS when {@code ncitRelease} is null.
+     */
+    public void loadRegimens(Path ncitRelease){
 
         long startTime = System.currentTimeMillis();
 
-        Ontolia ontolia = new Ontolia(utilityService, dataImportService);
+        Ontolia ontolia = new Ontolia(utilityService, dataImportService, ncitReleaseImporter, ncitRelease, createOlsCrawler());
         ontolia.run();
 
         long totalTime = System.currentTimeMillis() - startTime;
@@ -36,4 +60,10 @@ public class LoadNCITDrugs {
         log.info(" finished after {} {} minute(s) and {} second(s)", this.getClass().getSimpleName(), minutes, seconds);
     }
 
+    private OlsCrawler createOlsCrawler() {
+
+        CachingHttpClient httpClient = utilityService.newHttpClient(new RateLimiter(olsRequestsPerSecond));
+        return new OlsCrawler(httpClient, olsMaxConcurrentRequests);
+    }
+
 }
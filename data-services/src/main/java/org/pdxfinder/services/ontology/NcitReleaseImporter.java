@@ -0,0 +1,139 @@
+package org.pdxfinder.services.ontology;
+
+import org.neo4j.ogm.session.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Imports NCIT branches from a local release file instead of crawling OLS.
+ * <p>
+ * The file is streamed twice: the first pass keeps only the parent/child urls, which is enough to
+ * work out the terms of every requested branch; the second pass writes those terms in batches,
+ * after which the SUBCLASS_OF links between imported terms are written.
+ */
+@Service
+public class NcitReleaseImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(NcitReleaseImporter.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String SAVE_TERMS =
+        "UNWIND {terms} AS term " +
+        "MERGE (ot:OntologyTerm {url: term.url}) " +
+        "ON CREATE SET ot.directMappedSamplesNumber = 0, ot.indirectMappedSamplesNumber = 0 " +
+        "SET ot.label = term.label, ot.type = term.type, ot.synonyms = term.synonyms, " +
+        "ot.description = term.description, ot.allowAsSuggestion = term.allowAsSuggestion";
+
+    private static final String LINK_PARENTS =
+        "UNWIND {links} AS link " +
+        "MATCH (child:OntologyTerm {url: link.child}) " +
+        "MATCH (parent:OntologyTerm {url: link.parent}) " +
+        "MERGE (child)-[:SUBCLASS_OF]->(parent)";
+
+    private NcitReleaseReader reader = new NcitReleaseReader();
+    private Session session;
+
+    public NcitReleaseImporter(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Imports the terms of {@code branches}; a term reachable from several branches takes the
+     * type of the first one. Returns the number of imported terms by type.
+     */
+    public Map<String, Integer> importBranches(Path release, List<OntologyBranch> branches) throws IOException {
+
+        Instant start = Instant.now();
+        log.info("Importing {} NCIT branches from {}", branches.size(), release);
+
+        Map<String, List<String>> childrenByParent = new HashMap<>();
+        reader.read(release, term -> {
+            for (String parentUrl : term.getParentUrls()) {
+                childrenByParent.computeIfAbsent(parentUrl, k -> new ArrayList<>(2)).add(term.getUrl());
+            }
+        });
+        Map<String, OntologyBranch> branchByUrl = selectTerms(branches, childrenByParent);
+
+        Map<String, Integer> importedByType = new LinkedHashMap<>();
+        List<Map<String, Object>> terms = new ArrayList<>();
+        reader.read(release, term -> {
+            OntologyBranch branch = branchByUrl.get(term.getUrl());
+            if (branch == null) return;
+            terms.add(toParameters(term, branch));
+            importedByType.merge(branch.getType(), 1, Integer::sum);
+            if (terms.size() >= BATCH_SIZE) write(SAVE_TERMS, "terms", terms);
+        });
+        write(SAVE_TERMS, "terms", terms);
+
+        List<Map<String, Object>> links = new ArrayList<>();
+        int linkCount = 0;
+        for (Map.Entry<String, List<String>> entry : childrenByParent.entrySet()) {
+            if (!branchByUrl.containsKey(entry.getKey())) continue;
+            for (String childUrl : entry.getValue()) {
+                if (!branchByUrl.containsKey(childUrl)) continue;
+                Map<String, Object> link = new HashMap<>();
+                link.put("child", childUrl);
+                link.put("parent", entry.getKey());
+                links.add(link);
+                linkCount++;
+                if (links.size() >= BATCH_SIZE) write(LINK_PARENTS, "links", links);
+            }
+        }
+        write(LINK_PARENTS, "links", links);
+
+        log.info("Imported {} NCIT terms and {} parent links in {} s",
+            importedByType, linkCount, Duration.between(start, Instant.now()).getSeconds());
+        return importedByType;
+    }
+
+    static Map<String, OntologyBranch> selectTerms(List<OntologyBranch> branches, Map<String, List<String>> childrenByParent) {
+
+        Map<String, OntologyBranch> branchByUrl = new HashMap<>();
+        for (OntologyBranch branch : branches) {
+
+            if (branch.includesRoot()) branchByUrl.putIfAbsent(branch.getRootUrl(), branch);
+            if (!branch.includesDescendants()) continue;
+
+            Set<String> visited = new HashSet<>();
+            Deque<String> queue = new ArrayDeque<>(childrenByParent.getOrDefault(branch.getRootUrl(), Collections.emptyList()));
+            while (!queue.isEmpty()) {
+                String url = queue.poll();
+                if (!visited.add(url)) continue;
+
+                List<String> children = childrenByParent.getOrDefault(url, Collections.emptyList());
+                if (branch.getScope() != OntologyBranch.Scope.LEAF_DESCENDANTS || children.isEmpty()) {
+                    branchByUrl.putIfAbsent(url, branch);
+                }
+                queue.addAll(children);
+            }
+        }
+        return branchByUrl;
+    }
+
+    private static Map<String, Object> toParameters(NcitTerm term, OntologyBranch branch) {
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("url", term.getUrl());
+        parameters.put("label", branch.formatLabel(term));
+        parameters.put("type", branch.getType());
+        parameters.put("synonyms", new ArrayList<>(term.getSynonyms()));
+        parameters.put("description", term.getDescription());
+        parameters.put("allowAsSuggestion", branch.isAllowAsSuggestion());
+        return parameters;
+    }
+
+    private void write(String statement, String parameter, List<Map<String, Object>> rows) {
+
+        if (rows.isEmpty()) return;
+        session.query(statement, Collections.singletonMap(parameter, rows));
+        rows.clear();
+    }
+}
@@ -0,0 +1,200 @@
+package org.pdxfinder.services.ontology;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams the classes of a local NCIT release, either the OBO flavour ({@code ncit.obo}) or an
+ * RDF/XML OWL file ({@code ncit.owl} from OBO Foundry or the NCI {@code Thesaurus.owl}), optionally
+ * gzipped. Only the class being parsed is held in memory.
+ */
+public class NcitReleaseReader {
+
+    static final String OBO_PURL = "http://purl.obolibrary.org/obo/";
+
+    private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String RDFS_NS = "http://www.w3.org/2000/01/rdf-schema#";
+    private static final String OWL_NS = "http://www.w3.org/2002/07/owl#";
+    private static final String OBO_IN_OWL_NS = "http://www.geneontology.org/formats/oboInOwl#";
+    private static final String XML_NS = "http://www.w3.org/XML/1998/namespace";
+
+    private static final Pattern THESAURUS_CODE = Pattern.compile(".*Thesaurus\\.owl[#/](C\\d+)$");
+    private static final Pattern OBO_QUOTED = Pattern.compile("^\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+    public void read(Path release, Consumer<NcitTerm> consumer) throws IOException {
+
+        try (InputStream in = open(release)) {
+            if (release.getFileName().toString().contains(".obo")) {
+                readObo(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), consumer);
+            } else {
+                readOwl(in, consumer);
+            }
+        }
+    }
+
+    private InputStream open(Path release) throws IOException {
+
+        InputStream in = new BufferedInputStream(Files.newInputStream(release), 1 << 16);
+        return release.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+
+    void readObo(BufferedReader reader, Consumer<NcitTerm> consumer) throws IOException {
+
+        NcitTerm term = null;
+        boolean inTermStanza = false;
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+
+            line = line.trim();
+            if (line.startsWith("[")) {
+                emit(term, consumer);
+                term = null;
+                inTermStanza = line.equals("[Term]");
+                continue;
+            }
+            int colon = line.indexOf(':');
+            if (!inTermStanza || colon < 0) continue;
+
+            String tag = line.substring(0, colon);
+            String value = line.substring(colon + 1).trim();
+
+            if (tag.equals("id")) {
+                term = new NcitTerm(oboIdToUrl(value));
+            } else if (term == null) {
+                continue;
+            } else if (tag.equals("name")) {
+                term.setLabel(value);
+            } else if (tag.equals("def")) {
+                term.setDescription(unquote(value));
+            } else if (tag.equals("synonym")) {
+                term.addSynonym(unquote(value));
+            } else if (tag.equals("is_a")) {
+                term.addParentUrl(oboIdToUrl(value.split("[\\s!{]")[0]));
+            } else if (tag.equals("is_obsolete")) {
+                term.setObsolete(value.startsWith("true"));
+            }
+        }
+        emit(term, consumer);
+    }
+
+    void readOwl(InputStream in, Consumer<NcitTerm> consumer) throws IOException {
+
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(in, StandardCharsets.UTF_8.name());
+            String base = "";
+            int depth = 0;
+            NcitTerm term = null;
+            String property = null;
+            StringBuilder text = new StringBuilder();
+
+            while (xml.hasNext()) {
+                int event = xml.next();
+
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 1) {
+                        base = valueOrEmpty(xml.getAttributeValue(XML_NS, "base"));
+                    } else if (depth == 2 && isElement(xml, OWL_NS, "Class")) {
+                        String about = xml.getAttributeValue(RDF_NS, "about");
+                        term = about == null ? null : new NcitTerm(iriToUrl(resolve(base, about)));
+                    } else if (depth == 3 && term != null) {
+                        String resource = xml.getAttributeValue(RDF_NS, "resource");
+                        if (isElement(xml, RDFS_NS, "subClassOf") && resource != null) {
+                            term.addParentUrl(iriToUrl(resolve(base, resource)));
+                        }
+                        property = xml.getNamespaceURI() + xml.getLocalName();
+                        text.setLength(0);
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS && depth == 3 && property != null) {
+                    text.append(xml.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == 3 && term != null && property != null) {
+                        setOwlProperty(term, property, text.toString().trim());
+                        property = null;
+                    } else if (depth == 2) {
+                        emit(term, consumer);
+                        term = null;
+                    }
+                    depth--;
+                }
+            }
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot parse OWL release: " + e.getMessage(), e);
+        }
+    }
+
+    private void setOwlProperty(NcitTerm term, String property, String value) {
+
+        if (value.isEmpty()) return;
+
+        switch (property) {
+            case RDFS_NS + "label":
+                if (term.getLabel() == null) term.setLabel(value);
+                break;
+            case OBO_IN_OWL_NS + "hasExactSynonym":
+            case OBO_IN_OWL_NS + "hasRelatedSynonym":
+            case OBO_IN_OWL_NS + "hasNarrowSynonym":
+            case OBO_IN_OWL_NS + "hasBroadSynonym":
+                term.addSynonym(value);
+                break;
+            case OBO_PURL + "IAO_0000115":
+                term.setDescription(value);
+                break;
+            case OWL_NS + "deprecated":
+                term.setObsolete(Boolean.parseBoolean(value));
+                break;
+            default:
+                // NCI Thesaurus annotations: P90 FULL_SYN, P97 DEFINITION
+                if (property.endsWith("Thesaurus.owl#P90")) term.addSynonym(value);
+                else if (property.endsWith("Thesaurus.owl#P97") && term.getDescription() == null) term.setDescription(value);
+        }
+    }
+
+    private static void emit(NcitTerm term, Consumer<NcitTerm> consumer) {
+        if (term != null && term.getLabel() != null && !term.isObsolete()) consumer.accept(term);
+    }
+
+    private static boolean isElement(XMLStreamReader xml, String namespace, String localName) {
+        return namespace.equals(xml.getNamespaceURI()) && localName.equals(xml.getLocalName());
+    }
+
+    private static String resolve(String base, String iri) {
+        return iri.startsWith("#") ? base + iri : iri;
+    }
+
+    private static String valueOrEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    static String oboIdToUrl(String id) {
+        if (id.startsWith("http")) return id;
+        return OBO_PURL + id.replace(':', '_');
+    }
+
+    static String iriToUrl(String iri) {
+        Matcher thesaurusCode = THESAURUS_CODE.matcher(iri);
+        return thesaurusCode.matches() ? OBO_PURL + "NCIT_" + thesaurusCode.group(1) : iri;
+    }
+
+    private static String unquote(String value) {
+        Matcher quoted = OBO_QUOTED.matcher(value);
+        if (!quoted.find()) return value;
+        return quoted.group(1).replaceAll("\\\\(.)", "$1");
+    }
+}
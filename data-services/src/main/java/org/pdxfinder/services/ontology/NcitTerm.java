@@ -0,0 +1,68 @@
+package org.pdxfinder.services.ontology;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One class read from an NCIT release file, identified by its OBO purl
+ * (http://purl.obolibrary.org/obo/NCIT_Cxxxx) so it lines up with terms loaded from OLS.
+ */
+public class NcitTerm {
+
+    private String url;
+    private String label;
+    private String description;
+    private boolean obsolete;
+    private Set<String> synonyms = new LinkedHashSet<>();
+    private List<String> parentUrls = new ArrayList<>();
+
+    public NcitTerm(String url) {
+        this.url = url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public boolean isObsolete() {
+        return obsolete;
+    }
+
+    public void setObsolete(boolean obsolete) {
+        this.obsolete = obsolete;
+    }
+
+    public Set<String> getSynonyms() {
+        return synonyms;
+    }
+
+    public void addSynonym(String synonym) {
+        synonyms.add(synonym);
+    }
+
+    public List<String> getParentUrls() {
+        return parentUrls;
+    }
+
+    public void addParentUrl(String parentUrl) {
+        parentUrls.add(parentUrl);
+    }
+}
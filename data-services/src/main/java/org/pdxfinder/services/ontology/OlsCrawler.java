@@ -0,0 +1,75 @@
+package org.pdxfinder.services.ontology;
+
+import org.pdxfinder.services.http.CachingHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches OLS API pages on a bounded pool. Caching, rate limiting and retries are left to the
+ * {@link CachingHttpClient}, so fresh responses are replayed from disk, stale ones are revalidated
+ * with their ETag, and a stale entry is still used when OLS cannot be reached.
+ */
+public class OlsCrawler implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(OlsCrawler.class);
+
+    private final CachingHttpClient httpClient;
+    private final ExecutorService executor;
+
+    public OlsCrawler(CachingHttpClient httpClient, int maxConcurrentRequests) {
+        this.httpClient = httpClient;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, maxConcurrentRequests), runnable -> {
+            Thread thread = new Thread(runnable, "ols-crawler-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts fetching every url; the futures are returned in the order of {@code urls} so callers
+     * can process pages in order while later pages are still downloading.
+     */
+    public List<CompletableFuture<String>> fetchAll(List<String> urls) {
+
+        List<CompletableFuture<String>> pages = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            pages.add(CompletableFuture.supplyAsync(() -> fetch(url), executor));
+        }
+        return pages;
+    }
+
+    /**
+     * Returns the body of {@code url}, or an empty string if it could not be fetched.
+     */
+    public String fetch(String url) {
+
+        try {
+            return httpClient.get(url, "application/json");
+        } catch (IOException e) {
+            log.error("Failed to fetch {}: {}", url, e.getMessage());
+            return "";
+        }
+    }
+
+    public CachingHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public void logStatistics() {
+        httpClient.logStatistics("OLS");
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
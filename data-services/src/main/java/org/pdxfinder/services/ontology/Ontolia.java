@@ -4,12 +4,18 @@ import com.github.openjson.*;
 import org.pdxfinder.graph.dao.OntologyTerm;
 import org.pdxfinder.services.DataImportService;
 import org.pdxfinder.services.UtilityService;
+import org.pdxfinder.services.http.CachingHttpClient;
+import org.pdxfinder.services.http.HttpCacheMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /*
  * Created by csaba on 30/08/2019.
@@ -38,6 +44,13 @@ public class Ontolia {
 
     private static final String ontologyUrl = "https://www.ebi.ac.uk/ols/api/ontologies/ncit/terms/";
 
+    private static final List<String> treatmentBranchUrls = Arrays.asList(
+        chemicalModifierBranchUrl, dietarySupplementBranchUrl, drugOrChemByStructBranchUrl, industrialAidBranchUrl,
+        pharmaSubstanceBranchUrl, physiologyBranchUrl, geneProductBranchUrl, hematopoieticBranchUrl,
+        therapeuticProceduresBranchUrl, clinicalStudyBranchUrl);
+
+    private static final int TERM_BATCH_SIZE = 1000;
+
 
     private List<String> unlinkedRegimens;
     private List<String> unlinkedRegimensSynonyms;
@@ -52,6 +65,10 @@ public class Ontolia {
 
     private UtilityService utilityService;
     private DataImportService dataImportService;
+    private NcitReleaseImporter ncitReleaseImporter;
+    // a File rather than a Path: the OGM domain scan of org.pdxfinder cannot describe Path fields
+    private File ncitRelease;
+    private OlsCrawler olsCrawler;
 
 
     private List<String> customRegimenList = new ArrayList<>(Arrays.asList("http://purl.obolibrary.org/obo/NCIT_C11197"));
@@ -61,8 +78,26 @@ public class Ontolia {
 
     public Ontolia(UtilityService utilityService, DataImportService dataImportService) {
 
+        this(utilityService, dataImportService, null, null, new OlsCrawler(new CachingHttpClient(null, HttpCacheMode.REFRESH), 1));
+    }
+
+
+    /**
+     * When {@code ncitRelease} is set, the treatment and regimen branches are imported from that
+     * local NCIT release file instead of OLS. Otherwise the branches are crawled with {@code olsCrawler},
+     * which is closed at the end of {@link #run()}.
+     */
+    public Ontolia(UtilityService utilityService,
+                   DataImportService dataImportService,
+                   NcitReleaseImporter ncitReleaseImporter,
+                   Path ncitRelease,
+                   OlsCrawler olsCrawler) {
+
         this.utilityService = utilityService;
         this.dataImportService = dataImportService;
+        this.ncitReleaseImporter = ncitReleaseImporter;
+        this.ncitRelease = ncitRelease == null ? null : ncitRelease.toFile();
+        this.olsCrawler = olsCrawler;
 
         loadedTreatmentTerms = new HashMap<>();
         loadedTreatmentTermsSynonyms = new HashMap<>();
@@ -75,6 +110,26 @@ public class Ontolia {
 
     public void run() {
 
+        if (ncitRelease != null) {
+
+            log.info("Loading treatments and regimens from {}", ncitRelease);
+            loadNCITTermsFromRelease();
+        } else {
+
+            try (OlsCrawler crawler = olsCrawler) {
+                loadNCITTermsFromOLS();
+                crawler.logStatistics();
+            }
+        }
+
+        log.info("Linking drug regimens to individual drugs");
+        linkRegimens();
+
+        log.info("Saving treatment links to regimens");
+        saveRegimensWithTreatments();
+    }
+
+    private void loadNCITTermsFromOLS() {
 
         log.info("Loading Chemical Modifiers from NCIT.");
         loadNCITTermsFromBranch("treatment", chemicalModifierBranchUrl, true);
@@ -111,112 +166,69 @@ public class Ontolia {
 
         log.info("Loading custom regimens from NCIT");
         loadCustomList("treatment regimen", customRegimenList, false);
-
-        log.info("Linking drug regimens to individual drugs");
-        linkRegimens();
-
-        log.info("Saving treatment links to regimens");
-        saveRegimensWithTreatments();
     }
 
-    private void loadNCITTermsFromBranch(String type, String branchRootUrl, boolean mapSynonyms) {
-
-        int totalDrugs = 0;
-        int totalPages = 0;
-        boolean totalPagesDetermined = false;
-
-
-        for (int currentPage = 0; currentPage <= totalPages; currentPage++) {
+    private void loadNCITTermsFromRelease() {
 
-            String encodedTermUrl = "";
-            try {
-                //have to double encode the url to get the desired result
-                encodedTermUrl = URLEncoder.encode(branchRootUrl, "UTF-8");
-                encodedTermUrl = URLEncoder.encode(encodedTermUrl, "UTF-8");
-
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
-            }
-
-            String url = ontologyUrl + encodedTermUrl + "/hierarchicalDescendants?size=500&page=" + currentPage;
-
-            String json = utilityService.parseURL(url);
-
-            try {
-                JSONObject job = new JSONObject(json);
-
-                String embedded = job.getString("_embedded");
-
-                JSONObject job2 = new JSONObject(embedded);
-                JSONArray terms = job2.getJSONArray("terms");
+        List<OntologyBranch> branches = new ArrayList<>();
+        for (String branchUrl : treatmentBranchUrls) {
+            branches.add(new OntologyBranch(branchUrl, "treatment", OntologyBranch.Scope.DESCENDANTS, false));
+        }
+        branches.add(new OntologyBranch(regimenBranchUrl, "treatment regimen", OntologyBranch.Scope.LEAF_DESCENDANTS, false));
+        for (String regimenUrl : customRegimenList) {
+            branches.add(new OntologyBranch(regimenUrl, "treatment regimen", OntologyBranch.Scope.ROOT, false));
+        }
 
-                for (int j = 0; j < terms.length(); j++) {
+        try {
+            ncitReleaseImporter.importBranches(ncitRelease.toPath(), branches);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot import NCIT release " + ncitRelease, e);
+        }
 
-                    JSONObject term = terms.getJSONObject(j);
+        loadSavedTerms("treatment", loadedTreatmentTerms, true);
+        loadSavedTerms("treatment regimen", loadedRegimenTerms, false);
+    }
 
-                    boolean hasChildren = Boolean.parseBoolean(term.getString("has_children"));
+    private void loadSavedTerms(String type, Map<String, OntologyTerm> loadedTerms, boolean mapSynonyms) {
 
-                    //if the current node has previously been created, skip
-                    if (type.equals("treatment") && loadedTreatmentTerms.containsKey(term.getString("label").toLowerCase()))
-                        continue;
-                    if (type.equals("treatment regimen") && loadedRegimenTerms.containsKey(term.getString("label").toLowerCase()))
-                        continue;
+        int termNumber = dataImportService.getOntologyTermNumberByType(type);
+        for (int i = 0; i < termNumber; i += TERM_BATCH_SIZE) {
 
-                    OntologyTerm ot = new OntologyTerm();
-                    ot.setType(type);
-                    ot.setLabel(term.getString("label"));
-                    ot.setUrl(term.getString("iri"));
-                    ot.setAllowAsSuggestion(false);
+            for (OntologyTerm ot : dataImportService.getAllOntologyTermsByTypeFromTo(type, i, TERM_BATCH_SIZE)) {
 
-                    if (term.has("description")) {
-                        ot.setDescription(term.getString("description"));
+                loadedTerms.putIfAbsent(ot.getLabel().toLowerCase(), ot);
+                if (mapSynonyms && ot.getSynonyms() != null) {
+                    for (String synonym : ot.getSynonyms()) {
+                        loadedTreatmentTermsSynonyms.put(synonym.toLowerCase(), ot);
                     }
+                }
+            }
+        }
+        log.info("Loaded {} {} terms", loadedTerms.size(), type);
+    }
 
-                    if (term.has("synonyms")) {
-                        JSONArray synonyms = term.getJSONArray("synonyms");
-                        Set<String> synonymsSet = new HashSet<>();
-
-                        for (int i = 0; i < synonyms.length(); i++) {
-                            synonymsSet.add(synonyms.getString(i));
-                        }
-
-                        ot.setSynonyms(synonymsSet);
-
-                        if (mapSynonyms) {
+    private void loadNCITTermsFromBranch(String type, String branchRootUrl, boolean mapSynonyms) {
 
-                            for (int i = 0; i < synonyms.length(); i++) {
-                                loadedTreatmentTermsSynonyms.put(synonyms.getString(i).toLowerCase(), ot);
-                            }
-                        }
-                    }
+        int totalDrugs = 0;
 
-                    OntologyTerm savedOt = dataImportService.saveOntologyTerm(ot);
+        for (CompletableFuture<String> page : fetchDescendantPages(branchRootUrl)) {
 
-                    if (type.equals("treatment")) loadedTreatmentTerms.put(ot.getLabel().toLowerCase(), savedOt);
-                    if (type.equals("treatment regimen")) loadedRegimenTerms.put(ot.getLabel().toLowerCase(), savedOt);
+            JSONArray terms = getDescendantTerms(page.join());
 
+            for (int j = 0; j < terms.length(); j++) {
 
-                    totalDrugs++;
+                JSONObject term = terms.getJSONObject(j);
 
-                    if (totalDrugs != 0 && totalDrugs % 500 == 0) {
-                        log.info("Loaded " + totalDrugs + " drugs from NCIT.");
-                    }
+                //if the current node has previously been created, skip
+                if (isLoaded(type, term)) continue;
 
-                }
+                saveTerm(type, term, mapSynonyms);
+                totalDrugs++;
 
-                if (!totalPagesDetermined) {
-                    String page = job.getString("page");
-                    JSONObject pageObj = new JSONObject(page);
-                    totalPages = Integer.parseInt(pageObj.getString("totalPages")) - 1;
-                    totalPagesDetermined = true;
+                if (totalDrugs % 500 == 0) {
+                    log.info("Loaded " + totalDrugs + " drugs from NCIT.");
                 }
-
-
-            } catch (Exception e) {
-                log.error("", e);
-
             }
-
         }
 
         log.info("Finished loading " + totalDrugs + " drugs from NCIT.");
@@ -225,107 +237,27 @@ public class Ontolia {
     private void loadNCITLeafDrugs(String type, String branchRootUrl, boolean mapSynonyms) {
 
         int totalDrugs = 0;
-        int totalPages = 0;
-        boolean totalPagesDetermined = false;
 
+        for (CompletableFuture<String> page : fetchDescendantPages(branchRootUrl)) {
 
-        for (int currentPage = 0; currentPage <= totalPages; currentPage++) {
+            JSONArray terms = getDescendantTerms(page.join());
 
-            String encodedTermUrl = "";
-            try {
-                //have to double encode the url to get the desired result
-                encodedTermUrl = URLEncoder.encode(branchRootUrl, "UTF-8");
-                encodedTermUrl = URLEncoder.encode(encodedTermUrl, "UTF-8");
+            for (int j = 0; j < terms.length(); j++) {
 
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
-            }
+                JSONObject term = terms.getJSONObject(j);
 
-            String url = ontologyUrl + encodedTermUrl + "/hierarchicalDescendants?size=500&page=" + currentPage;
+                boolean hasChildren = Boolean.parseBoolean(term.getString("has_children"));
 
-            String json = utilityService.parseURL(url);
-
-            try {
-                JSONObject job = new JSONObject(json);
-
-                String embedded = job.getString("_embedded");
-
-                JSONObject job2 = new JSONObject(embedded);
-                JSONArray terms = job2.getJSONArray("terms");
-
-                for (int j = 0; j < terms.length(); j++) {
-
-                    JSONObject term = terms.getJSONObject(j);
-
-                    boolean hasChildren = Boolean.parseBoolean(term.getString("has_children"));
-
-                    if (!hasChildren) {
-
-                        //if the current node has previously been created, skip
-                        if (type.equals("treatment") && loadedTreatmentTerms.containsKey(term.getString("label").toLowerCase()))
-                            continue;
-                        if (type.equals("treatment regimen") && loadedRegimenTerms.containsKey(term.getString("label").toLowerCase()))
-                            continue;
-
-                        OntologyTerm ot = new OntologyTerm();
-                        ot.setType(type);
-                        ot.setLabel(term.getString("label"));
-                        ot.setUrl(term.getString("iri"));
-                        ot.setAllowAsSuggestion(false);
-
-                        if (term.has("description")) {
-                            ot.setDescription(term.getString("description"));
-                        }
-
-                        if (term.has("synonyms")) {
-                            JSONArray synonyms = term.getJSONArray("synonyms");
-                            Set<String> synonymsSet = new HashSet<>();
-
-                            for (int i = 0; i < synonyms.length(); i++) {
-                                synonymsSet.add(synonyms.getString(i));
-                            }
-
-                            ot.setSynonyms(synonymsSet);
-
-                            if (mapSynonyms) {
-
-                                for (int i = 0; i < synonyms.length(); i++) {
-                                    loadedTreatmentTermsSynonyms.put(synonyms.getString(i).toLowerCase(), ot);
-                                }
-                            }
-                        }
-
-                        OntologyTerm savedOt = dataImportService.saveOntologyTerm(ot);
-
-                        if (type.equals("treatment")) loadedTreatmentTerms.put(ot.getLabel().toLowerCase(), savedOt);
-                        if (type.equals("treatment regimen"))
-                            loadedRegimenTerms.put(ot.getLabel().toLowerCase(), savedOt);
-
-
-                        totalDrugs++;
-
-                    }
-
-                    if (totalDrugs != 0 && totalDrugs % 500 == 0) {
-                        log.info("Loaded " + totalDrugs + " drugs from NCIT.");
-                    }
+                //only leaf nodes are loaded; skip the ones previously created
+                if (hasChildren || isLoaded(type, term)) continue;
 
+                saveTerm(type, term, mapSynonyms);
+                totalDrugs++;
 
+                if (totalDrugs % 500 == 0) {
+                    log.info("Loaded " + totalDrugs + " drugs from NCIT.");
                 }
-
-                if (!totalPagesDetermined) {
-                    String page = job.getString("page");
-                    JSONObject pageObj = new JSONObject(page);
-                    totalPages = Integer.parseInt(pageObj.getString("totalPages")) - 1;
-                    totalPagesDetermined = true;
-                }
-
-
-            } catch (Exception e) {
-                log.error("", e);
-
             }
-
         }
 
         log.info("Finished loading " + totalDrugs + " drugs from NCIT.");
@@ -334,66 +266,115 @@ public class Ontolia {
 
     private void loadCustomList(String type, List<String> list, boolean mapSynonyms) {
 
-
+        List<String> urls = new ArrayList<>();
         for (String termUrl : list) {
+            urls.add(ontologyUrl + encodeTermUrl(termUrl));
+        }
 
-            String encodedTermUrl = "";
-            try {
-                //have to double encode the url to get the desired result
-                encodedTermUrl = URLEncoder.encode(termUrl, "UTF-8");
-                encodedTermUrl = URLEncoder.encode(encodedTermUrl, "UTF-8");
+        List<CompletableFuture<String>> responses = olsCrawler.fetchAll(urls);
+        for (int i = 0; i < responses.size(); i++) {
 
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
+            try {
+                saveTerm(type, new JSONObject(responses.get(i).join()), mapSynonyms);
+            } catch (Exception e) {
+                log.error("Cannot load {} from {}", list.get(i), urls.get(i), e);
             }
+        }
+    }
 
-            String url = ontologyUrl + encodedTermUrl;
 
-            String json = utilityService.parseURL(url);
+    /**
+     * Fetches the first page of descendants to learn the page count, then requests the remaining
+     * pages concurrently. The futures are in page order so terms are still saved in OLS order.
+     */
+    private List<CompletableFuture<String>> fetchDescendantPages(String branchRootUrl) {
 
-            try {
-                JSONObject term = new JSONObject(json);
+        String url = ontologyUrl + encodeTermUrl(branchRootUrl) + "/hierarchicalDescendants?size=500&page=";
+        String firstPage = olsCrawler.fetch(url + 0);
 
+        List<CompletableFuture<String>> pages = new ArrayList<>();
+        pages.add(CompletableFuture.completedFuture(firstPage));
 
-                OntologyTerm ot = new OntologyTerm();
-                ot.setType(type);
-                ot.setLabel(term.getString("label"));
-                ot.setUrl(term.getString("iri"));
-                ot.setAllowAsSuggestion(false);
+        int totalPages;
+        try {
+            JSONObject pageObj = new JSONObject(new JSONObject(firstPage).getString("page"));
+            totalPages = Integer.parseInt(pageObj.getString("totalPages"));
+        } catch (Exception e) {
+            log.error("Cannot read the descendant page count of {}", branchRootUrl, e);
+            return pages;
+        }
 
-                if (term.has("description")) {
-                    ot.setDescription(term.getString("description"));
-                }
+        List<String> otherPages = new ArrayList<>();
+        for (int currentPage = 1; currentPage < totalPages; currentPage++) {
+            otherPages.add(url + currentPage);
+        }
+        pages.addAll(olsCrawler.fetchAll(otherPages));
+        return pages;
+    }
 
-                if (term.has("synonyms")) {
-                    JSONArray synonyms = term.getJSONArray("synonyms");
-                    Set<String> synonymsSet = new HashSet<>();
+    private JSONArray getDescendantTerms(String json) {
 
-                    for (int i = 0; i < synonyms.length(); i++) {
-                        synonymsSet.add(synonyms.getString(i));
-                    }
+        try {
+            JSONObject job = new JSONObject(json);
+            JSONObject embedded = new JSONObject(job.getString("_embedded"));
+            return embedded.getJSONArray("terms");
+        } catch (Exception e) {
+            log.error("", e);
+            return new JSONArray();
+        }
+    }
 
-                    ot.setSynonyms(synonymsSet);
+    private String encodeTermUrl(String termUrl) {
 
-                    if (mapSynonyms) {
+        try {
+            //have to double encode the url to get the desired result
+            return URLEncoder.encode(URLEncoder.encode(termUrl, "UTF-8"), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-                        for (int i = 0; i < synonyms.length(); i++) {
-                            loadedTreatmentTermsSynonyms.put(synonyms.getString(i).toLowerCase(), ot);
-                        }
-                    }
-                }
+    private boolean isLoaded(String type, JSONObject term) {
 
-                OntologyTerm savedOt = dataImportService.saveOntologyTerm(ot);
+        String label = term.getString("label").toLowerCase();
+        return (type.equals("treatment") && loadedTreatmentTerms.containsKey(label))
+            || (type.equals("treatment regimen") && loadedRegimenTerms.containsKey(label));
+    }
 
-                if (type.equals("treatment")) loadedTreatmentTerms.put(ot.getLabel().toLowerCase(), savedOt);
-                if (type.equals("treatment regimen")) loadedRegimenTerms.put(ot.getLabel().toLowerCase(), savedOt);
+    private void saveTerm(String type, JSONObject term, boolean mapSynonyms) {
 
+        OntologyTerm ot = new OntologyTerm();
+        ot.setType(type);
+        ot.setLabel(term.getString("label"));
+        ot.setUrl(term.getString("iri"));
+        ot.setAllowAsSuggestion(false);
 
-            } catch (Exception e) {
+        if (term.has("description")) {
+            ot.setDescription(term.getString("description"));
+        }
+
+        if (term.has("synonyms")) {
+            JSONArray synonyms = term.getJSONArray("synonyms");
+            Set<String> synonymsSet = new HashSet<>();
 
-                e.printStackTrace();
+            for (int i = 0; i < synonyms.length(); i++) {
+                synonymsSet.add(synonyms.getString(i));
+            }
+
+            ot.setSynonyms(synonymsSet);
+
+            if (mapSynonyms) {
+
+                for (int i = 0; i < synonyms.length(); i++) {
+                    loadedTreatmentTermsSynonyms.put(synonyms.getString(i).toLowerCase(), ot);
+                }
             }
         }
+
+        OntologyTerm savedOt = dataImportService.saveOntologyTerm(ot);
+
+        if (type.equals("treatment")) loadedTreatmentTerms.put(ot.getLabel().toLowerCase(), savedOt);
+        if (type.equals("treatment regimen")) loadedRegimenTerms.put(ot.getLabel().toLowerCase(), savedOt);
     }
 
     private void linkRegimens() {
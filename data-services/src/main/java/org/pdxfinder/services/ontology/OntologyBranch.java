@@ -0,0 +1,66 @@
+package org.pdxfinder.services.ontology;
+
+/**
+ * A part of the NCIT hierarchy to import: which terms under {@code rootUrl} to take, the
+ * {@code OntologyTerm.type} they get and how their labels are written.
+ */
+public class OntologyBranch {
+
+    public enum Scope {
+        ROOT,
+        ROOT_AND_DESCENDANTS,
+        DESCENDANTS,
+        LEAF_DESCENDANTS
+    }
+
+    public interface LabelFormatter {
+        String format(NcitTerm term);
+    }
+
+    private final String rootUrl;
+    private final String type;
+    private final Scope scope;
+    private final boolean allowAsSuggestion;
+    private final LabelFormatter labelFormatter;
+
+    public OntologyBranch(String rootUrl, String type, Scope scope, boolean allowAsSuggestion) {
+        this(rootUrl, type, scope, allowAsSuggestion, NcitTerm::getLabel);
+    }
+
+    public OntologyBranch(String rootUrl, String type, Scope scope, boolean allowAsSuggestion,
+                          LabelFormatter labelFormatter) {
+        this.rootUrl = rootUrl;
+        this.type = type;
+        this.scope = scope;
+        this.allowAsSuggestion = allowAsSuggestion;
+        this.labelFormatter = labelFormatter;
+    }
+
+    public String getRootUrl() {
+        return rootUrl;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public boolean isAllowAsSuggestion() {
+        return allowAsSuggestion;
+    }
+
+    String formatLabel(NcitTerm term) {
+        return labelFormatter.format(term);
+    }
+
+    boolean includesRoot() {
+        return scope == Scope.ROOT || scope == Scope.ROOT_AND_DESCENDANTS;
+    }
+
+    boolean includesDescendants() {
+        return scope != Scope.ROOT;
+    }
+}
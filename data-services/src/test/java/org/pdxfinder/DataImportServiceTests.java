@@ -1,22 +1,39 @@
 package org.pdxfinder;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
+import org.neo4j.ogm.model.Result;
+import org.neo4j.ogm.session.Session;
 import org.pdxfinder.graph.dao.DataProjection;
 import org.pdxfinder.graph.dao.Group;
+import org.pdxfinder.graph.dao.Marker;
 import org.pdxfinder.graph.dao.Patient;
 import org.pdxfinder.graph.dao.PatientSnapshot;
 import org.pdxfinder.graph.repositories.*;
 import org.pdxfinder.services.DataImportService;
+import org.pdxfinder.services.dto.NodeSuggestionDTO;
+import org.pdxfinder.services.hgnc.MarkerDictionary;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
 
 public class DataImportServiceTests extends BaseTest {
@@ -46,6 +63,7 @@ public class DataImportServiceTests extends BaseTest {
     @Mock private CurrentTreatmentRepository currentTreatmentRepository;
     @Mock private ExternalUrlRepository externalUrlRepository;
     @Mock private TreatmentRepository treatmentRepository;
+    @Mock private Session session;
 
     @Spy
     @InjectMocks
@@ -69,6 +87,9 @@ public class DataImportServiceTests extends BaseTest {
             COLLECTION_DATE, COLLECTION_EVENT, ELAPSED_TIME);
     private PatientSnapshot actualSnapshot;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Before
     public void init(){
         actualSnapshot = null;
@@ -168,7 +189,53 @@ public class DataImportServiceTests extends BaseTest {
         Assert.assertEquals("test", dataImportService.saveDataProjection(dataProjection).getLabel());
     }
 
+    @Test
+    public void Given_SavedDictionaryWithStampedFingerprint_When_MarkerSuggested_Then_DictionaryReused() throws IOException {
 
-}
+        File file = saveDictionary("KRAS");
+        stampDictionary(MarkerDictionary.open(file).getFingerprint());
+
+        NodeSuggestionDTO suggestion = dataImportService.getSuggestedMarker("test", "TEST", "model", "KRAS", "mutation", "platform");
+
+        Assert.assertEquals("KRAS", ((Marker) suggestion.getNode()).getHgncSymbol());
+        verify(markerRepository, never()).getAllMarkersSkipLimit(any(Integer.class), any(Integer.class));
+    }
+
+    @Test
+    public void Given_SavedDictionaryOfOtherMarkersWithSameCount_When_MarkerSuggested_Then_DictionaryRebuilt() throws IOException {
+
+        saveDictionary("KRAS");
+        stampDictionary("fingerprint-of-a-later-marker-load");
+        Marker braf = new Marker();
+        braf.setHgncSymbol("BRAF");
+        when(markerRepository.getAllMarkersSkipLimit(0, 400)).thenReturn(Collections.singletonList(braf));
 
+        NodeSuggestionDTO suggestion = dataImportService.getSuggestedMarker("test", "TEST", "model", "BRAF", "mutation", "platform");
 
+        Assert.assertEquals("BRAF", ((Marker) suggestion.getNode()).getHgncSymbol());
+        verify(session).query(anyString(), eq(Collections.singletonMap("fingerprint", MarkerDictionary.open(
+            new File(temporaryFolder.getRoot(), "markers.dict")).getFingerprint())));
+    }
+
+    private File saveDictionary(String symbol) throws IOException {
+
+        File file = new File(temporaryFolder.getRoot(), "markers.dict");
+        new MarkerDictionary.Builder()
+            .add(symbol, null, null, null, Collections.emptyList(), Collections.emptyList())
+            .write(file);
+        ReflectionTestUtils.setField(dataImportService, "markerRepository", markerRepository);
+        ReflectionTestUtils.setField(dataImportService, "session", session);
+        ReflectionTestUtils.setField(dataImportService, "markerDictionaryFile", file.getAbsolutePath());
+        ReflectionTestUtils.setField(dataImportService, "markerDictionary", null);
+        when(markerRepository.getMarkerCount()).thenReturn(1);
+        return file;
+    }
+
+    private void stampDictionary(String fingerprint) {
+
+        Result result = mock(Result.class);
+        when(result.queryResults()).thenReturn(Collections.singletonList(Collections.singletonMap("fingerprint", fingerprint)));
+        when(session.query(anyString(), anyMap())).thenReturn(result);
+    }
+
+}
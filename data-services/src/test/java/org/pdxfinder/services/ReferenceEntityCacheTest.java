@@ -0,0 +1,75 @@
+package org.pdxfinder.services;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pdxfinder.graph.dao.Tissue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReferenceEntityCacheTest {
+
+    private ReferenceEntityCache<String, Tissue> cache;
+    private AtomicInteger repositoryCalls;
+
+    @Before
+    public void setUp() {
+        cache = new ReferenceEntityCache<>("Tissue");
+        repositoryCalls = new AtomicInteger();
+    }
+
+    private Tissue findOrCreate(String name) {
+        repositoryCalls.incrementAndGet();
+        return new Tissue(name);
+    }
+
+    @Test
+    public void Given_SameKeyTwice_When_Get_Then_LoaderCalledOnceAndSameEntityReturned() {
+
+        Tissue first = cache.get("Breast", this::findOrCreate);
+        Tissue second = cache.get("Breast", this::findOrCreate);
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, repositoryCalls.get());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(0.5, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void Given_NullKey_When_Get_Then_LoaderCalledEveryTime() {
+
+        cache.get(null, this::findOrCreate);
+        cache.get(null, this::findOrCreate);
+
+        Assert.assertEquals(2, repositoryCalls.get());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void Given_PopulatedCache_When_Evicted_Then_EntitiesDroppedAndCountersKept() {
+
+        cache.get("Breast", this::findOrCreate);
+        cache.get("Breast", this::findOrCreate);
+        cache.evict();
+
+        Assert.assertEquals(0, cache.size());
+        cache.get("Breast", this::findOrCreate);
+        Assert.assertEquals(2, repositoryCalls.get());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void Given_PopulatedCache_When_Cleared_Then_EntitiesAndCountersReset() {
+
+        cache.get("Breast", this::findOrCreate);
+        cache.get("Breast", this::findOrCreate);
+        cache.clear();
+
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getHits());
+        cache.get("Breast", this::findOrCreate);
+        Assert.assertEquals(2, repositoryCalls.get());
+    }
+}
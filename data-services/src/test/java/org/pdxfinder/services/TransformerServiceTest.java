@@ -0,0 +1,86 @@
+package org.pdxfinder.services;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.pdxfinder.BaseTest;
+import org.pdxfinder.rdbms.dao.PdmrPdxInfo;
+import org.pdxfinder.rdbms.dao.Sample;
+import org.pdxfinder.rdbms.repositories.TransPdxInfoRepository;
+import org.pdxfinder.services.constants.OmicCSVColumn;
+import org.pdxfinder.services.constants.PdmrOmicCol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+
+public class TransformerServiceTest extends BaseTest {
+
+    @Mock
+    private TransPdxInfoRepository transPdxInfoRepository;
+
+    private TransformerService transformerService;
+
+    @Before
+    public void init() {
+        transformerService = new TransformerService(transPdxInfoRepository, null, null, null, null);
+        List<PdmrPdxInfo> models = Arrays.asList(
+            model("P1-S1", sample("X1", "2"), sample("X2", "4")),
+            model("P2-S2", sample("X3", "1")));
+        when(transPdxInfoRepository.findAll()).thenReturn(models);
+    }
+
+    @Test
+    public void Given_RowsOverSeveralChunks_When_transformPDMRGenomics_Then_PassagesFromIndexAndRowOrderKept() {
+
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (int i = 0; i < 25000; i++) {
+            rows.add(i % 2 == 0 ? row("P1", "S1", "PDX", "X2") : row("P2", "S2", "PDX", "X3"));
+        }
+        rows.add(row("P1", "S1", "PDX", "X9"));
+        rows.add(row("P1", "S1", PdmrOmicCol.PDM_TYPE_PATENT.get(), "ORIG"));
+        rows.add(row("P1", "S1", "Cell line", "X1"));
+
+        List<Map<OmicCSVColumn, String>> transformed = transformerService.transformPDMRGenomics("mutations.csv", rows);
+
+        Assert.assertEquals(25002, transformed.size());
+        Assert.assertEquals("4", transformed.get(0).get(OmicCSVColumn.PASSAGE));
+        Assert.assertEquals("1", transformed.get(1).get(OmicCSVColumn.PASSAGE));
+        Assert.assertEquals("P2-S2", transformed.get(24999).get(OmicCSVColumn.MODEL_ID));
+        Assert.assertEquals("XXXX", transformed.get(25000).get(OmicCSVColumn.PASSAGE));
+        Assert.assertEquals("patient tumor", transformed.get(25001).get(OmicCSVColumn.SAMPLE_ORIGIN));
+
+        transformerService.transformPDMRGenomics(rows);
+        verify(transPdxInfoRepository, times(1)).findAll();
+        verify(transPdxInfoRepository, never()).findByModelID(anyString());
+    }
+
+    private static PdmrPdxInfo model(String modelId, Sample... samples) {
+        PdmrPdxInfo pdmrPdxInfo = mock(PdmrPdxInfo.class);
+        when(pdmrPdxInfo.getModelID()).thenReturn(modelId);
+        when(pdmrPdxInfo.getSamples()).thenReturn(Arrays.asList(samples));
+        return pdmrPdxInfo;
+    }
+
+    private static Sample sample(String sampleId, String passage) {
+        Sample sample = new Sample();
+        sample.setSampleID(sampleId);
+        sample.setPassage(passage);
+        return sample;
+    }
+
+    private static Map<String, String> row(String patientId, String specimenId, String pdmType, String sampleId) {
+        Map<String, String> row = new HashMap<>();
+        row.put(PdmrOmicCol.PATIENT_ID.get(), patientId);
+        row.put(PdmrOmicCol.SPECIMEN_ID.get(), specimenId);
+        row.put(PdmrOmicCol.PDM_TYPE.get(), pdmType);
+        row.put(PdmrOmicCol.SAMPLE_ID.get(), sampleId);
+        row.put(PdmrOmicCol.GENE.get(), "KRAS");
+        return row;
+    }
+}
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.io.FileUtils;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -18,9 +20,14 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.*;
@@ -286,4 +293,103 @@ public class UtilityServiceTest extends BaseTest {
 
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void given_CSVFile_When_StreamDataRowsInvoked_Then_RowsShareHeaderAndKeepQuotedCommas() throws IOException {
+
+        File csv = temporaryFolder.newFile("genomics.csv");
+        Files.write(csv.toPath(), String.join("\n",
+            "Model ID,\"Gene\",Comment",
+            "M1,KRAS,\"G12D, activating\"",
+            "",
+            "M2,BRAF").getBytes(StandardCharsets.UTF_8));
+
+        List<Map<String, String>> rows;
+        try (Stream<Map<String, String>> stream = utilityService.streamDataRows(csv.getAbsolutePath())) {
+            rows = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(2, rows.size());
+        assertEquals(Arrays.asList("Model ID", "Gene", "Comment"), new ArrayList<>(rows.get(0).keySet()));
+        assertEquals("G12D, activating", rows.get(0).get("Comment"));
+        assertEquals("BRAF", rows.get(1).get("Gene"));
+        assertEquals("", rows.get(1).get("Comment"));
+        assertNull(rows.get(1).get("Passage"));
+        assertEquals(utilityService.serializeCSVToMaps(csv.getAbsolutePath()).get(0), rows.get(0));
+    }
+
+    @Test
+    public void given_ExcelFile_When_StreamDataRowsInvoked_Then_EmptyRowsSkippedAndCellsReadAsText() throws IOException {
+
+        File xlsx = temporaryFolder.newFile("mapping.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = new FileOutputStream(xlsx)) {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue(" Model ID ");
+            sheet.getRow(0).createCell(1).setCellValue("Passage");
+            sheet.createRow(1).createCell(0).setCellValue("M1");
+            sheet.getRow(1).createCell(1).setCellValue(3);
+            sheet.createRow(2);
+            sheet.createRow(3).createCell(1).setCellValue("P4");
+            workbook.write(out);
+        }
+
+        List<Map<String, String>> rows;
+        try (Stream<Map<String, String>> stream = utilityService.streamDataRows(xlsx.getAbsolutePath())) {
+            rows = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(Arrays.asList(excelRow("M1", "3.0"), excelRow("", "P4")), rows);
+        assertEquals(Arrays.asList("Model ID", "Passage"), new ArrayList<>(rows.get(0).keySet()));
+    }
+
+    @Test
+    public void given_ExcelFileWithUnnamedColumns_When_SerializeExcelDataNoIteratorInvoked_Then_EmptyUnnamedCellsSkipped() throws IOException {
+
+        File xlsx = temporaryFolder.newFile("unnamed.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = new FileOutputStream(xlsx)) {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("Model ID");
+            sheet.getRow(0).createCell(1).setCellValue("");
+            sheet.getRow(0).createCell(2).setCellValue("Passage");
+            sheet.createRow(1).createCell(0).setCellValue("M1");
+            sheet.getRow(1).createCell(2).setCellValue("P1");
+            sheet.createRow(2).createCell(0).setCellValue("M2");
+            sheet.getRow(2).createCell(1).setCellValue("note");
+            workbook.write(out);
+        }
+
+        List<Map<String, String>> rows = utilityService.serializeExcelDataNoIterator(xlsx.getAbsolutePath(), 0, 1);
+
+        Map<String, String> noted = new LinkedHashMap<>();
+        noted.put("Model ID", "M2");
+        noted.put("", "note");
+        noted.put("Passage", "");
+        assertEquals(Arrays.asList(excelRow("M1", "P1"), noted), rows);
+        assertFalse(rows.get(0).containsKey(""));
+    }
+
+    private static Map<String, String> excelRow(String modelId, String passage) {
+        Map<String, String> row = new LinkedHashMap<>();
+        row.put("Model ID", modelId);
+        row.put("Passage", passage);
+        return row;
+    }
+
+    @Test
+    public void given_JsonRecordsUnderKey_When_StreamJSONRecordsInvoked_Then_RecordsReadOneByOne() throws IOException {
+
+        File json = temporaryFolder.newFile("records.json");
+        Files.write(json.toPath(), ("{\"meta\": {\"count\": 2}, \"rows\": [" +
+            "{\"SAMPLEID\": \"S1\", \"PASSAGE\": 2}, {\"SAMPLEID\": \"S2\", \"GENE\": {\"symbol\": \"KRAS\"}}]}")
+            .getBytes(StandardCharsets.UTF_8));
+
+        List<Map<String, Object>> records;
+        try (Stream<Map<String, Object>> stream = utilityService.streamJSONRecords(json.getAbsolutePath())) {
+            records = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(2, records.size());
+        assertEquals(2, records.get(0).get("PASSAGE"));
+        assertEquals(utilityService.serializeJSONToMaps(json.getAbsolutePath(), "rows"), records);
+    }
+}
@@ -0,0 +1,44 @@
+package org.pdxfinder.services.hgnc;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class HgncReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private HgncReader reader = new HgncReader();
+
+    @Test
+    public void Given_LegacyHgncDownload_When_Indexed_Then_GenesFoundBySymbolPrevSymbolSynonymAndAccession() throws IOException {
+
+        File hgncFile = temporaryFolder.newFile("hgnc_legacy.txt");
+        Files.write(hgncFile.toPath(), String.join("\n",
+            "HGNC ID\tApproved Symbol\tPrevious Symbols\tSynonyms\tEntrez Gene ID\tEnsembl Gene ID",
+            "HGNC:5\tA1BG\t\t\t1\tENSG00000121410",
+            "HGNC:24086\tA1CF\t\tACF, ASP, ACF64\t29974\tENSG00000148584",
+            "HGNC:7\tA2M\tCPAMD5\tFWP007, S863-7\t2\tENSG00000175899",
+            "HGNC:8\tA2MP1\tA2MP\t\t3\tENSG00000256069",
+            "\t\t\t\t\t").getBytes(StandardCharsets.UTF_8));
+
+        HgncIndex index = reader.getIndex(hgncFile.getAbsolutePath());
+
+        Assert.assertEquals(4, index.size());
+        Assert.assertTrue(index.containsSymbol("A1BG"));
+        Assert.assertEquals("A1CF", index.getBySynonym("ASP").get(0).getSymbol());
+        Assert.assertEquals("A2M", index.getByPrevSymbol("CPAMD5").get(0).getSymbol());
+        Assert.assertEquals("A2MP1", index.getByNcbiGeneId("3").getSymbol());
+        Assert.assertEquals("A2M", index.getByHgncId("HGNC:7").getSymbol());
+        Assert.assertEquals("A1BG", index.getByEnsemblGeneId("ENSG00000121410").getSymbol());
+        Assert.assertTrue(index.getBySynonym("UNKNOWN").isEmpty());
+        Assert.assertSame(index, reader.getIndex(hgncFile.getAbsolutePath()));
+    }
+}
@@ -0,0 +1,54 @@
+package org.pdxfinder.services.hgnc;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class MarkerDictionaryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void Given_WrittenDictionary_When_Opened_Then_SymbolsPrevSymbolsAndSynonymsResolve() throws IOException {
+
+        File file = new File(temporaryFolder.getRoot(), "markers.dict");
+        new MarkerDictionary.Builder()
+            .add("KRAS", "HGNC:6407", "3845", "ENSG00000133703", Arrays.asList("KRAS2"), Arrays.asList("KRAS1", "RASK2"))
+            .add("BRAF", "HGNC:1097", "673", "ENSG00000157764", Collections.emptyList(), Arrays.asList("BRAF1", "RAFB1"))
+            .add("NRAS", "HGNC:7989", "4893", null, Arrays.asList("NRAS1"), Arrays.asList("RASK2"))
+            .add("HLA-DRB1", "HGNC:4948", "3123", "", Collections.emptyList(), Arrays.asList("HLA-DR1B", "ÄMLAUT"))
+            .write(file);
+
+        MarkerDictionary dictionary = MarkerDictionary.open(file);
+
+        Assert.assertEquals(4, dictionary.getMarkerCount());
+
+        int kras = dictionary.findSymbol("KRAS");
+        Assert.assertEquals("KRAS", dictionary.getSymbol(kras));
+        Assert.assertEquals("HGNC:6407", dictionary.getHgncId(kras));
+        Assert.assertEquals("3845", dictionary.getNcbiGeneId(kras));
+        Assert.assertEquals("", dictionary.getEnsemblGeneId(dictionary.findSymbol("NRAS")));
+        Assert.assertEquals(-1, dictionary.findSymbol("KRAS2"));
+
+        Assert.assertArrayEquals(new int[]{kras}, dictionary.findPrevSymbol("KRAS2"));
+        Assert.assertEquals(0, dictionary.findPrevSymbol("BRAF1").length);
+
+        int[] ambiguous = dictionary.findSynonym("RASK2");
+        Assert.assertEquals(2, ambiguous.length);
+        Assert.assertEquals("BRAF", dictionary.getSymbol(dictionary.findSynonym("RAFB1")[0]));
+        Assert.assertEquals("HLA-DRB1", dictionary.getSymbol(dictionary.findSynonym("ÄMLAUT")[0]));
+    }
+
+    @Test(expected = IOException.class)
+    public void Given_OtherFile_When_Opened_Then_Rejected() throws IOException {
+
+        MarkerDictionary.open(temporaryFolder.newFile("not-a-dictionary.dict"));
+    }
+}
@@ -0,0 +1,151 @@
+package org.pdxfinder.services.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingHttpClientTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private HttpServer server;
+    private AtomicInteger requests = new AtomicInteger();
+    private AtomicInteger unavailableRequests = new AtomicInteger();
+    private HttpResponseCache cache;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/genes", exchange -> {
+            byte[] body = ("{\"request\":" + requests.incrementAndGet() + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/unavailable", exchange -> {
+            unavailableRequests.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+
+        url = "http://localhost:" + server.getAddress().getPort() + "/genes";
+        cache = new HttpResponseCache(temporaryFolder.newFolder(), Duration.ofHours(-1));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void Given_OnlineMode_When_UrlRequestedTwice_Then_SecondResponseReplayed() throws IOException {
+
+        CachingHttpClient client = new CachingHttpClient(cache, HttpCacheMode.ONLINE);
+
+        Assert.assertEquals("{\"request\":1}", client.get(url, null));
+        Assert.assertEquals("{\"request\":1}", client.get(url, null));
+
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(1L, (long) client.getStatistics().get("hits"));
+        Assert.assertEquals(1L, (long) client.getStatistics().get("misses"));
+        Assert.assertEquals(13L, (long) client.getStatistics().get("bytesFromCache"));
+        Assert.assertEquals(13L, (long) client.getStatistics().get("bytesDownloaded"));
+    }
+
+    @Test
+    public void Given_RecordedResponse_When_OfflineMode_Then_ReplayedWithoutNetwork() throws IOException {
+
+        new CachingHttpClient(cache, HttpCacheMode.ONLINE).get(url, null);
+        server.stop(0);
+
+        CachingHttpClient offline = new CachingHttpClient(cache, HttpCacheMode.OFFLINE);
+
+        Assert.assertEquals("{\"request\":1}", offline.get(url, null));
+        try {
+            offline.get(url + "/unrecorded", null);
+            Assert.fail("Offline mode must not go to the network");
+        } catch (FileNotFoundException expected) {
+            Assert.assertEquals(1L, (long) offline.getStatistics().get("failures"));
+        }
+    }
+
+    @Test
+    public void Given_RecordedResponse_When_RefreshMode_Then_RefetchedAndReRecorded() throws IOException {
+
+        new CachingHttpClient(cache, HttpCacheMode.ONLINE).get(url, null);
+
+        Assert.assertEquals("{\"request\":2}", new CachingHttpClient(cache, HttpCacheMode.REFRESH).get(url, null));
+        Assert.assertEquals("{\"request\":2}", new CachingHttpClient(cache, HttpCacheMode.OFFLINE).get(url, null));
+    }
+
+    @Test
+    public void Given_IdenticalBodies_When_Recorded_Then_ContentStoredOnce() {
+
+        HttpResponseCache.CachedResponse first = cache.put(url + "?page=1", "{}", null);
+        HttpResponseCache.CachedResponse second = cache.put(url + "?page=2", "{}", null);
+
+        Assert.assertEquals(first.getContentHash(), second.getContentHash());
+        Assert.assertEquals("{}", cache.get(url + "?page=2").get().getBody());
+        Assert.assertEquals(1, cache.contentFile(first.getContentHash()).getParentFile().list().length);
+    }
+
+    @Test
+    public void Given_EntryWithInlineBody_When_Read_Then_TreatedAsMissAndRefetched() throws IOException {
+
+        String inlineBody = "{\"url\":\"" + url + "\",\"body\":\"{\\\"request\\\":0}\",\"etag\":null,\"fetchedAt\":"
+            + System.currentTimeMillis() + "}";
+        Files.write(cache.entryFile(url).toPath(), inlineBody.getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertFalse(cache.get(url).isPresent());
+        Assert.assertEquals("{\"request\":1}", new CachingHttpClient(cache, HttpCacheMode.ONLINE).get(url, null));
+        Assert.assertEquals("{\"request\":1}", cache.get(url).get().getBody());
+    }
+
+    @Test
+    public void Given_ServerUnavailable_When_Fetched_Then_RetriedWithBackoffAndNoWaitAfterLastAttempt() {
+
+        CachingHttpClient client = new CachingHttpClient(null, HttpCacheMode.ONLINE);
+        long startedAt = System.currentTimeMillis();
+        try {
+            client.get(url.replace("/genes", "/unavailable"), null);
+            Assert.fail("HTTP 503 must fail once the attempts are used up");
+        } catch (IOException expected) {
+            long elapsed = System.currentTimeMillis() - startedAt;
+            Assert.assertEquals(3, unavailableRequests.get());
+            Assert.assertTrue("waited " + elapsed + " ms", elapsed >= 3000 && elapsed < 5500);
+        }
+    }
+
+    @Test
+    public void Given_ConnectionRefused_When_Fetched_Then_RetriedWithBackoff() {
+
+        server.stop(0);
+        CachingHttpClient client = new CachingHttpClient(null, HttpCacheMode.ONLINE);
+        long startedAt = System.currentTimeMillis();
+        try {
+            client.get(url, null);
+            Assert.fail("An unreachable server must fail once the attempts are used up");
+        } catch (IOException expected) {
+            long elapsed = System.currentTimeMillis() - startedAt;
+            Assert.assertTrue("waited " + elapsed + " ms", elapsed >= 3000 && elapsed < 5500);
+        }
+    }
+}
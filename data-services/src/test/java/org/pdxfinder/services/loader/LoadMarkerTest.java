@@ -1,17 +1,28 @@
 package org.pdxfinder.services.loader;
 
+import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
-import org.mockito.InjectMocks;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.pdxfinder.BaseTest;
 import org.pdxfinder.graph.dao.Marker;
 import org.pdxfinder.services.DataImportService;
-import org.pdxfinder.services.constants.DataUrl;
+import org.pdxfinder.services.hgnc.HgncReader;
 import org.pdxfinder.services.loader.envload.LoadMarkers;
+import org.springframework.test.util.ReflectionTestUtils;
 
-import static org.mockito.Matchers.anyListOf;
-import static org.mockito.Mockito.doReturn;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 public class LoadMarkerTest extends BaseTest {
@@ -19,38 +30,52 @@ public class LoadMarkerTest extends BaseTest {
     @Mock
     private DataImportService dataImportService;
 
-    @InjectMocks
     private LoadMarkers loadMarkers;
 
-    private String hgncName = "TEST_MARKER_NAME";
-    private String hgncSymbol = "TEST_MARKER_SYMBOL";
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
-    private Marker marker = new Marker();
+    private File hgncFile;
 
     @Before
-    public void setup() {
-
-        marker.setHgncSymbol(hgncSymbol);
-        marker.setHgncName(hgncName);
-
-        // given
-        Marker expectedMarker = marker;
-        doReturn(expectedMarker).when(dataImportService).saveMarker(expectedMarker);
+    public void setup() throws IOException {
+
+        loadMarkers = new LoadMarkers(dataImportService, new HgncReader());
+        ReflectionTestUtils.setField(loadMarkers, "batchSize", 2);
+
+        // same column layout as DataUrl.HUGO_FILE_URL
+        hgncFile = temporaryFolder.newFile("hgnc.txt");
+        Files.write(hgncFile.toPath(), String.join("\n",
+            "HGNC ID\tApproved symbol\tApproved name\tStatus\tPrevious symbols\tAlias symbols\tAccession numbers\tRefSeq IDs\tAlias names\tEnsembl gene ID\tNCBI Gene ID",
+            "HGNC:1097\tBRAF\tB-Raf proto-oncogene\tApproved\t\tBRAF1, RAFB1\tM95712\tNM_004333\t\tENSG00000157764\t673",
+            "HGNC:6407\tKRAS\tKRAS proto-oncogene\tApproved\tKRAS2\tKRAS1\tM54968\tNM_004985\t\tENSG00000133703\t3845",
+            "HGNC:7989\tNRAS\tNRAS proto-oncogene\tApproved\t\t\tX02751\tNM_002524\t\tENSG00000213281\t4893",
+            "").getBytes(StandardCharsets.UTF_8));
     }
 
 
+    @SuppressWarnings("unchecked")
     @Test
-    public void given_MarkerDataUrl_When_LoadGenesInvoked_Then_saveMarkers() throws Exception {
-
-        // given
-        String markerDataUrl = DataUrl.HUGO_FILE_URL.get();
+    public void given_MarkerDataFile_When_LoadGenesInvoked_Then_markersSavedInBatches() {
 
         // When
-        loadMarkers.loadGenes(markerDataUrl);
+        loadMarkers.loadGenes(hgncFile.getAbsolutePath());
 
         // Then
-        verify(dataImportService).saveAllMarkers(anyListOf(Marker.class));
-
+        ArgumentCaptor<Collection<Marker>> batches = ArgumentCaptor.forClass((Class) Collection.class);
+        verify(dataImportService, times(2)).saveAllMarkers(batches.capture());
+
+        List<Marker> markers = new ArrayList<>();
+        batches.getAllValues().forEach(markers::addAll);
+        Assert.assertEquals(3, markers.size());
+
+        Marker braf = markers.get(0);
+        Assert.assertEquals("BRAF", braf.getHgncSymbol());
+        Assert.assertEquals("HGNC:1097", braf.getHgncId());
+        Assert.assertEquals("ENSG00000157764", braf.getEnsemblGeneId());
+        Assert.assertEquals("673", braf.getNcbiGeneId());
+        Assert.assertTrue(braf.getAliasSymbols().contains("RAFB1"));
+        Assert.assertTrue(markers.get(1).getPrevSymbols().contains("KRAS2"));
     }
 
 }
@@ -3,15 +3,23 @@ package org.pdxfinder.services;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
-import org.mockito.InjectMocks;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.pdxfinder.BaseTest;
-import org.pdxfinder.graph.dao.Marker;
+import org.pdxfinder.services.hgnc.HgncReader;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.Mockito.*;
 
@@ -19,17 +27,26 @@ public class omicTransformationServiceTest extends BaseTest {
 
     @Mock DataImportService dataImportService;
 
-    @InjectMocks OmicTransformationService omicTransformationService;
+    private OmicTransformationService omicTransformationService;
+    private HgncReader hgncReader;
 
     private static final String DUMMY_NCBI_ID = "9999999";
     private static final String EXPECTED_SYMBOL = "TEST";
-    private Marker marker;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
     @Before
-    public void init(){
-        marker = new Marker();
-        marker.setHgncSymbol("TEST");
+    public void init() throws IOException {
+        File hgncFile = temporaryFolder.newFile("hgnc.txt");
+        Files.write(hgncFile.toPath(), String.join("\n",
+            "HGNC ID\tApproved Symbol\tPrevious Symbols\tSynonyms\tEntrez Gene ID\tEnsembl Gene ID",
+            "HGNC:5\tA1BG\t\t\t1\tENSG00000121410",
+            "HGNC:7\tA2M\tCPAMD5\tFWP007\t2\tENSG00000175899",
+            "HGNC:99\t" + EXPECTED_SYMBOL + "\t\t\t" + DUMMY_NCBI_ID + "\t").getBytes(StandardCharsets.UTF_8));
+        hgncReader = spy(new HgncReader());
+        ReflectionTestUtils.setField(hgncReader, "hgncFile", hgncFile.getAbsolutePath());
+        omicTransformationService = new OmicTransformationService(dataImportService, hgncReader);
     }
 
     @After
@@ -40,48 +57,63 @@ public class omicTransformationServiceTest extends BaseTest {
 
     @Test
     public void Given_ncbiGene_When_ncbiGeneIdToHgncSymbol_Then_returnHgncSymbol(){
-        when(dataImportService.getMarkerbyNcbiGeneId(DUMMY_NCBI_ID)).thenReturn(marker);
         String actualSymbol = omicTransformationService.ncbiGeneIdToHgncSymbol(DUMMY_NCBI_ID);
         //then
         Assert.assertEquals(EXPECTED_SYMBOL, actualSymbol);
     }
 
-
     @Test
-    public void Given_twoIdenticalNcbiGenes_When_ncbiGeneIdToHgncSymbolIsCalledTwice_Then_onlyCallDbOnce(){
-        when(dataImportService.getMarkerbyNcbiGeneId(DUMMY_NCBI_ID)).thenReturn(marker);
-        omicTransformationService.ncbiGeneIdToHgncSymbol(DUMMY_NCBI_ID);
-        String actualSymbol = omicTransformationService.ncbiGeneIdToHgncSymbol(DUMMY_NCBI_ID);
+    public void Given_hgncGenes_When_ncbiGeneIdToHgncSymbol_Then_resolvedFromSharedIndexWithoutTheGraph() throws IOException {
+        Assert.assertEquals("A2M", omicTransformationService.ncbiGeneIdToHgncSymbol("2"));
+        Assert.assertEquals("A1BG", omicTransformationService.ncbiGeneIdToHgncSymbol("1"));
         //then
-        verify(dataImportService, times(1)).getMarkerbyNcbiGeneId(DUMMY_NCBI_ID);
-        Assert.assertEquals(EXPECTED_SYMBOL, actualSymbol);
+        verify(hgncReader, times(1)).getIndex(anyString());
+        verify(dataImportService, never()).getHgncSymbolsByNcbiGeneId();
+        Assert.assertSame(hgncReader.getIndex("ignored, hgnc.file is set"),
+            ReflectionTestUtils.getField(omicTransformationService, "hgncIndex"));
     }
 
     @Test
-    public void Given_listOfUniqNcbiGenes_When_convertListOfNcbiToHgncIsCalled_Then_callNcbiGeneIdToHgncSymbolForEach(){
-        when(dataImportService.getMarkerbyNcbiGeneId(anyString())).thenReturn(marker);
+    public void Given_listOfUniqNcbiGenes_When_convertListOfNcbiToHgncIsCalled_Then_genesIndexedOnce() throws IOException {
         List<String> ncbiGenes = new ArrayList<>();
         for(int i = 0; i < 5; i++){
             ncbiGenes.add(String.valueOf(i));
         }
         omicTransformationService.convertListOfNcbiToHgnc(ncbiGenes);
         //then
-        verify(dataImportService, times(5)).getMarkerbyNcbiGeneId(anyString());
-
+        verify(hgncReader, times(1)).getIndex(anyString());
+        verify(dataImportService, never()).getMarkerbyNcbiGeneId(anyString());
     }
+
     @Test
-    public void Given_listOfIdenticaNcbiGenes_When_convertListOfNcbiToHgncIsCalled_Then_callNcbiGeneIdToHgncSymbolOnce(){
-        when(dataImportService.getMarkerbyNcbiGeneId(anyString())).thenReturn(marker);
-        List<String> ncbiGenes = new ArrayList<>();
-        for(int i = 0; i < 5; i++){
-            ncbiGenes.add(String.valueOf(1000));
-        }
-        omicTransformationService.convertListOfNcbiToHgnc(ncbiGenes);
+    public void Given_unknownNcbiGenes_When_ncbiGeneIdToHgncSymbol_Then_emptySymbolAndOneSummaryOfUnresolvedIds(){
+        Assert.assertEquals("", omicTransformationService.ncbiGeneIdToHgncSymbol("3"));
+        omicTransformationService.ncbiGeneIdToHgncSymbol("4");
+        omicTransformationService.ncbiGeneIdToHgncSymbol("3");
+        omicTransformationService.ncbiGeneIdToHgncSymbol(DUMMY_NCBI_ID);
         //then
-        verify(dataImportService, times(1)).getMarkerbyNcbiGeneId(anyString());
-
+        Assert.assertEquals(2, omicTransformationService.logUnresolvedNcbiGeneIds());
+        Assert.assertEquals(0, omicTransformationService.logUnresolvedNcbiGeneIds());
     }
 
+    @Test
+    public void Given_unreadableHgncGenes_When_ncbiGeneIdToHgncSymbol_Then_resolvedFromGraphOnceItHasMarkers() throws IOException {
+        doThrow(new IOException("HGNC unreachable")).when(hgncReader).getIndex(anyString());
+        when(dataImportService.getHgncSymbolsByNcbiGeneId())
+            .thenReturn(Collections.emptyMap())
+            .thenReturn(symbols());
+
+        Assert.assertEquals("", omicTransformationService.ncbiGeneIdToHgncSymbol(DUMMY_NCBI_ID));
+        Assert.assertEquals(EXPECTED_SYMBOL, omicTransformationService.ncbiGeneIdToHgncSymbol(DUMMY_NCBI_ID));
+        Assert.assertEquals(EXPECTED_SYMBOL, omicTransformationService.ncbiGeneIdToHgncSymbol(DUMMY_NCBI_ID));
+        //then
+        verify(dataImportService, times(2)).getHgncSymbolsByNcbiGeneId();
+        verify(hgncReader, times(1)).getIndex(anyString());
+    }
 
-
+    private static Map<String, String> symbols() {
+        Map<String, String> symbols = new HashMap<>();
+        symbols.put(DUMMY_NCBI_ID, EXPECTED_SYMBOL);
+        return symbols;
+    }
 }
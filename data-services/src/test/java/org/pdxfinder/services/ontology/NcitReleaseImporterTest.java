@@ -0,0 +1,105 @@
+package org.pdxfinder.services.ontology;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.ogm.session.Session;
+import org.pdxfinder.BaseTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+public class NcitReleaseImporterTest extends BaseTest {
+
+    private static final String NCIT = "http://purl.obolibrary.org/obo/NCIT_";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Autowired
+    private Session session;
+
+    private NcitReleaseImporter importer;
+    private File release;
+
+    @Before
+    public void setup() throws IOException {
+
+        importer = new NcitReleaseImporter(session);
+        release = temporaryFolder.newFile("ncit.obo.gz");
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(release)), StandardCharsets.UTF_8)) {
+            writer.write(term("C3262", "Neoplasm") +
+                term("C2916", "Carcinoma", "C3262") +
+                term("C4872", "Breast Carcinoma", "C2916") +
+                term("C1908", "Drug") +
+                term("C1647", "Trastuzumab", "C1908") +
+                term("C12218", "Regimen") +
+                term("C10000", "AC Regimen", "C12218") +
+                term("C10001", "AC-T Regimen", "C10000"));
+        }
+    }
+
+    @Test
+    public void Given_BranchRoots_When_ImportBranches_Then_SelectedTermsAndParentLinksSaved() throws IOException {
+
+        Map<String, Integer> imported = importer.importBranches(release.toPath(), Arrays.asList(
+            new OntologyBranch(NCIT + "C3262", "diagnosis", OntologyBranch.Scope.ROOT_AND_DESCENDANTS, true),
+            new OntologyBranch(NCIT + "C1908", "treatment", OntologyBranch.Scope.DESCENDANTS, false),
+            new OntologyBranch(NCIT + "C12218", "treatment regimen", OntologyBranch.Scope.LEAF_DESCENDANTS, false)));
+
+        Assert.assertEquals(Integer.valueOf(3), imported.get("diagnosis"));
+        Assert.assertEquals(Integer.valueOf(1), imported.get("treatment"));
+        Assert.assertEquals(Integer.valueOf(1), imported.get("treatment regimen"));
+
+        Map<String, Object> breastCarcinoma = single(
+            "MATCH (ot:OntologyTerm {url: {url}})-[:SUBCLASS_OF]->(parent:OntologyTerm) " +
+            "RETURN ot.label AS label, ot.type AS type, ot.synonyms AS synonyms, parent.label AS parent",
+            NCIT + "C4872");
+        Assert.assertEquals("Breast Carcinoma", breastCarcinoma.get("label"));
+        Assert.assertEquals("diagnosis", breastCarcinoma.get("type"));
+        Assert.assertArrayEquals(new String[]{"Breast Carcinoma synonym"}, (String[]) breastCarcinoma.get("synonyms"));
+        Assert.assertEquals("Carcinoma", breastCarcinoma.get("parent"));
+
+        Map<String, Object> regimens = single(
+            "MATCH (ot:OntologyTerm) WHERE ot.type = 'treatment regimen' OR ot.url = {url} " +
+            "RETURN collect(ot.label) AS labels", NCIT + "C1908");
+        Assert.assertArrayEquals(new String[]{"AC-T Regimen"}, (String[]) regimens.get("labels"));
+    }
+
+    @Test
+    public void Given_ImportedRelease_When_ImportedAgain_Then_NoDuplicateTermsOrLinks() throws IOException {
+
+        List<OntologyBranch> branches = Collections.singletonList(
+            new OntologyBranch(NCIT + "C3262", "diagnosis", OntologyBranch.Scope.ROOT_AND_DESCENDANTS, true,
+                term -> term.getLabel().toUpperCase()));
+        importer.importBranches(release.toPath(), branches);
+        importer.importBranches(release.toPath(), branches);
+
+        Map<String, Object> counts = single(
+            "MATCH (ot:OntologyTerm) WHERE ot.url STARTS WITH {url} OPTIONAL MATCH (ot)-[r:SUBCLASS_OF]->() " +
+            "RETURN count(DISTINCT ot) AS terms, count(r) AS links, collect(DISTINCT ot.label) AS labels", NCIT);
+        Assert.assertEquals(3L, ((Number) counts.get("terms")).longValue());
+        Assert.assertEquals(2L, ((Number) counts.get("links")).longValue());
+        Assert.assertTrue(Arrays.asList((String[]) counts.get("labels")).contains("NEOPLASM"));
+    }
+
+
+    private Map<String, Object> single(String cypher, String url) {
+        return session.query(cypher, Collections.singletonMap("url", url)).queryResults().iterator().next();
+    }
+
+    private static String term(String code, String label, String... parents) {
+
+        StringBuilder stanza = new StringBuilder("[Term]\nid: NCIT:").append(code).append("\nname: ").append(label).append('\n');
+        stanza.append("synonym: \"").append(label).append(" synonym\" EXACT []\n");
+        for (String parent : parents) {
+            stanza.append("is_a: NCIT:").append(parent).append('\n');
+        }
+        return stanza.append('\n').toString();
+    }
+}
@@ -0,0 +1,90 @@
+package org.pdxfinder.services.ontology;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class NcitReleaseReaderTest {
+
+    private static final String NCIT = "http://purl.obolibrary.org/obo/NCIT_";
+
+    private NcitReleaseReader reader = new NcitReleaseReader();
+
+    @Test
+    public void Given_OboRelease_When_Read_Then_TermsWithSynonymsAndParentsReturned() throws IOException {
+
+        String obo = "format-version: 1.2\n" +
+            "ontology: ncit\n\n" +
+            "[Term]\n" +
+            "id: NCIT:C4872\n" +
+            "name: Breast Carcinoma\n" +
+            "def: \"A carcinoma that arises from the \\\"breast\\\".\" []\n" +
+            "synonym: \"Carcinoma of Breast\" EXACT []\n" +
+            "synonym: \"Breast Cancer\" EXACT []\n" +
+            "is_a: NCIT:C2916 ! Carcinoma\n" +
+            "is_a: NCIT:C9335 {source=\"x\"} ! Breast Neoplasm\n\n" +
+            "[Term]\n" +
+            "id: NCIT:C1\n" +
+            "name: Obsolete term\n" +
+            "is_obsolete: true\n\n" +
+            "[Typedef]\n" +
+            "id: part_of\n" +
+            "name: part of\n";
+
+        List<NcitTerm> terms = new ArrayList<>();
+        reader.readObo(new BufferedReader(new StringReader(obo)), terms::add);
+
+        Assert.assertEquals(1, terms.size());
+        NcitTerm term = terms.get(0);
+        Assert.assertEquals(NCIT + "C4872", term.getUrl());
+        Assert.assertEquals("Breast Carcinoma", term.getLabel());
+        Assert.assertEquals("A carcinoma that arises from the \"breast\".", term.getDescription());
+        Assert.assertEquals(Arrays.asList("Carcinoma of Breast", "Breast Cancer"), new ArrayList<>(term.getSynonyms()));
+        Assert.assertEquals(Arrays.asList(NCIT + "C2916", NCIT + "C9335"), term.getParentUrls());
+    }
+
+    @Test
+    public void Given_ThesaurusOwlRelease_When_Read_Then_ClassesMappedToOboUrls() throws IOException {
+
+        String owl = "<?xml version=\"1.0\"?>\n" +
+            "<!DOCTYPE rdf:RDF [<!ENTITY ncit \"http://ncicb.nci.nih.gov/xml/owl/EVS/Thesaurus.owl#\">]>\n" +
+            "<rdf:RDF xmlns=\"http://ncicb.nci.nih.gov/xml/owl/EVS/Thesaurus.owl#\"\n" +
+            "     xml:base=\"http://ncicb.nci.nih.gov/xml/owl/EVS/Thesaurus.owl\"\n" +
+            "     xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n" +
+            "     xmlns:owl=\"http://www.w3.org/2002/07/owl#\"\n" +
+            "     xmlns:rdfs=\"http://www.w3.org/2000/01/rdf-schema#\">\n" +
+            "  <owl:Class rdf:about=\"#C1647\">\n" +
+            "    <rdfs:label>Trastuzumab</rdfs:label>\n" +
+            "    <rdfs:subClassOf rdf:resource=\"&ncit;C1505\"/>\n" +
+            "    <rdfs:subClassOf><owl:Restriction><owl:onProperty rdf:resource=\"#R1\"/>" +
+            "<owl:someValuesFrom rdf:resource=\"#C9\"/></owl:Restriction></rdfs:subClassOf>\n" +
+            "    <P90>Herceptin</P90>\n" +
+            "    <P97>A humanized monoclonal antibody.</P97>\n" +
+            "  </owl:Class>\n" +
+            "  <owl:Class rdf:about=\"#C2\">\n" +
+            "    <rdfs:label>Retired concept</rdfs:label>\n" +
+            "    <owl:deprecated>true</owl:deprecated>\n" +
+            "  </owl:Class>\n" +
+            "</rdf:RDF>\n";
+
+        List<NcitTerm> terms = new ArrayList<>();
+        reader.readOwl(new ByteArrayInputStream(owl.getBytes(StandardCharsets.UTF_8)), terms::add);
+
+        Assert.assertEquals(1, terms.size());
+        NcitTerm term = terms.get(0);
+        Assert.assertEquals(NCIT + "C1647", term.getUrl());
+        Assert.assertEquals("Trastuzumab", term.getLabel());
+        Assert.assertEquals("A humanized monoclonal antibody.", term.getDescription());
+        Assert.assertEquals(Collections.singleton("Herceptin"), term.getSynonyms());
+        Assert.assertEquals(Collections.singletonList(NCIT + "C1505"), term.getParentUrls());
+    }
+}
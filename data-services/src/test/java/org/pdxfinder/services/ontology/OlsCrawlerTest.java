@@ -0,0 +1,56 @@
+package org.pdxfinder.services.ontology;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pdxfinder.services.http.CachingHttpClient;
+import org.pdxfinder.services.http.HttpCacheMode;
+import org.pdxfinder.services.http.HttpResponseCache;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class OlsCrawlerTest {
+
+    // nothing listens on port 1, so any request that reaches the network fails
+    private static final String UNREACHABLE = "http://localhost:1/ols/api/ontologies/ncit/terms/";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void Given_CachedPages_When_FetchAll_Then_PagesReplayedFromDiskInOrder() throws IOException {
+
+        HttpResponseCache cache = new HttpResponseCache(temporaryFolder.newFolder(), Duration.ofHours(1));
+        cache.put(UNREACHABLE + "?page=0", "{\"page\":0}", "\"etag-0\"");
+        cache.put(UNREACHABLE + "?page=1", "{\"page\":1}", null);
+
+        try (OlsCrawler crawler = new OlsCrawler(new CachingHttpClient(cache, HttpCacheMode.ONLINE), 2)) {
+
+            List<CompletableFuture<String>> pages = crawler.fetchAll(Arrays.asList(UNREACHABLE + "?page=0", UNREACHABLE + "?page=1"));
+
+            Assert.assertEquals("{\"page\":0}", pages.get(0).join());
+            Assert.assertEquals("{\"page\":1}", pages.get(1).join());
+            Assert.assertEquals(2L, (long) crawler.getHttpClient().getStatistics().get("hits"));
+            Assert.assertEquals(0L, (long) crawler.getHttpClient().getStatistics().get("misses"));
+        }
+    }
+
+    @Test
+    public void Given_StaleEntry_When_OlsUnreachable_Then_StaleBodyReturned() throws IOException {
+
+        HttpResponseCache cache = new HttpResponseCache(temporaryFolder.newFolder(), Duration.ZERO);
+        cache.put(UNREACHABLE + "C12218", "{\"label\":\"Regimen\"}", "\"etag\"");
+
+        try (OlsCrawler crawler = new OlsCrawler(new CachingHttpClient(cache, HttpCacheMode.ONLINE), 1)) {
+
+            Assert.assertEquals("{\"label\":\"Regimen\"}", crawler.fetch(UNREACHABLE + "C12218"));
+            Assert.assertEquals("", crawler.fetch(UNREACHABLE + "C1"));
+            Assert.assertEquals(2L, (long) crawler.getHttpClient().getStatistics().get("failures"));
+        }
+    }
+}
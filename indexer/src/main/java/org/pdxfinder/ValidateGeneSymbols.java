@@ -1,10 +1,12 @@
 package org.pdxfinder;
 
 import com.github.openjson.*;
-import org.pdxfinder.accessionidtatamodel.AccessionData;
 import org.pdxfinder.graph.dao.ModelCreation;
 import org.pdxfinder.services.DataImportService;
 import org.pdxfinder.services.UtilityService;
+import org.pdxfinder.services.constants.DataUrl;
+import org.pdxfinder.services.hgnc.HgncIndex;
+import org.pdxfinder.services.hgnc.HgncReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,10 +14,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -26,10 +25,9 @@ import java.util.*;
 public class ValidateGeneSymbols {
 
 
-    private static final String DATA_FILE_URL = "http://www.genenames.org/cgi-bin/download?col=gd_hgnc_id&col=gd_app_sym&col=gd_prev_sym&col=gd_aliases&col=md_eg_id&col=md_ensembl_id&status=Approved&status_opt=2&where=&order_by=gd_app_sym_sort&format=text&limit=&hgnc_dbtag=on&submit=submit";
-
     private final static Logger log = LoggerFactory.getLogger(ValidateGeneSymbols.class);
     private DataImportService dataImportService;
+    private HgncReader hgncReader;
     private Set<String> cnvSymbols;
     private Set<String> rnaseqSymbols;
     private List<String> cnvSymbolsWithIssues;
@@ -45,8 +43,9 @@ public class ValidateGeneSymbols {
     private String rnaSeqURL;
 
     @Autowired
-    public ValidateGeneSymbols(DataImportService dataImportService) {
+    public ValidateGeneSymbols(DataImportService dataImportService, HgncReader hgncReader) {
         this.dataImportService = dataImportService;
+        this.hgncReader = hgncReader;
         this.cnvSymbols = new HashSet<>();
         this.rnaseqSymbols = new HashSet<>();
         this.cnvSymbolsWithIssues = new ArrayList<>();
@@ -71,113 +70,6 @@ public class ValidateGeneSymbols {
     }
 
 
-    private HashMap<String, AccessionData> loadHugoDatabase(){
-
-        String[] rowData;
-        String[] prevSymbols;
-        String[] synonyms;
-        HashMap<String, AccessionData> hmap = new HashMap<>();
-        String symbol, hgncId, entrezId, ensemblId = "";
-
-        int rows = 0;
-        int symbolConflicts = 0;
-        String symbolConf = "";
-
-        try{
-
-            URL url = new URL(DATA_FILE_URL);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            //conn.addRequestProperty("Enctype","application/x-www-form-urlencoded");
-
-            if(conn.getResponseCode() != 200){
-                throw new RuntimeException("Failed : HTTP error code : "
-                        + conn.getResponseCode());
-            }
-
-            BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    (conn.getInputStream())));
-
-            String line = reader.readLine();
-            while((line = reader.readLine()) != null){
-                //HGNC_ID APPR_SYMBOL PREV_SYMBOLS SYNONYMS ENTREZ_ID ENSEMBL_ID
-
-                rowData = line.split("\t");
-                //rowData[1] = symbol, if it is not empty and if it is not a withdrawn symbol
-                if(rowData[1] != null && !rowData[1].isEmpty() ){
-
-                    symbol = rowData[1];
-
-                    if(rowData[0] != null && !rowData[0].isEmpty()){
-                        hgncId = rowData[0];
-                    }
-                    else{
-                        hgncId = "";
-                    }
-
-                    if(rowData.length>2 && rowData[2] != null && !rowData[2].isEmpty()){
-                        prevSymbols = rowData[2].split(", ");
-                    }
-                    else{
-                        prevSymbols= new String[0];
-                    }
-
-                    if(rowData.length>3 && rowData[3] != null && !rowData[3].isEmpty()){
-                        synonyms = rowData[3].split(", ");
-                    }
-                    else{
-                        synonyms = new String[0];
-                    }
-
-                    if(rowData.length>4 && rowData[4] != null && !rowData[4].isEmpty()){
-                        entrezId = rowData[4];
-                    }
-                    else{
-                        entrezId = "";
-                    }
-
-                    if(rowData.length>5 && rowData[5] != null && !rowData[5].isEmpty()){
-                        ensemblId = rowData[5];
-                    }
-                    else{
-                        ensemblId = "";
-                    }
-
-                    //put it in the hashmap with all of its prev symbols
-
-                    AccessionData ad = new AccessionData(symbol, hgncId, entrezId, ensemblId);
-
-                    if(synonyms.length>0){
-                        for(int i=0;i<synonyms.length;i++)
-                            ad.addSynonym(synonyms[i]);
-                    }
-
-                    if(prevSymbols.length>0){
-                        for(int i=0;i<prevSymbols.length;i++)
-                            ad.addPrevSymbol(prevSymbols[i]);
-                    }
-
-                    System.out.println(symbol+" "+hgncId+" "+entrezId+" "+ ensemblId);
-                    hmap.put(symbol,ad);
-
-                }
-                rows++;
-            }
-
-        }
-        catch (Exception e){
-            e.printStackTrace();
-        }
-
-        System.out.println("Symbol conflicts: "+symbolConflicts);
-        System.out.println("Last conflict:"+symbolConf);
-        System.out.println("Rows: "+rows);
-        System.out.println("Symbols incl. prev symbols: "+hmap.size());
-
-        return hmap;
-    }
-
-
     private void getCnvDataFromURL(String modelId){
 
         String json = utilityService.parseURL(cnvURL+modelId);
@@ -239,11 +131,11 @@ public class ValidateGeneSymbols {
 
     }
 
-    private void compareSymbols(HashMap<String, AccessionData> hugoDB){
+    private void compareSymbols(HgncIndex hugoDB){
 
         for(String cnvSymbol:this.cnvSymbols){
 
-            if(!hugoDB.containsKey(cnvSymbol)){
+            if(!hugoDB.containsSymbol(cnvSymbol)){
                 cnvSymbolsWithIssues.add(cnvSymbol);
             }
         }
@@ -251,7 +143,7 @@ public class ValidateGeneSymbols {
 
         for(String rnaseqSymbol:this.rnaseqSymbols){
 
-            if(!hugoDB.containsKey(rnaseqSymbol)){
+            if(!hugoDB.containsSymbol(rnaseqSymbol)){
 
                 rnaseqSymbolsWithIssues.add(rnaseqSymbol);
             }
@@ -281,7 +173,13 @@ public class ValidateGeneSymbols {
     private void validateSymbols(){
 
         Collection<ModelCreation> models = dataImportService.findAllModels();
-        HashMap<String, AccessionData> hugoDB = loadHugoDatabase();
+        HgncIndex hugoDB;
+        try {
+            hugoDB = hgncReader.getIndex(DataUrl.HUGO_FILE_URL.get());
+        } catch (IOException e) {
+            log.error("Cannot read the HGNC genes", e);
+            return;
+        }
 
         for(ModelCreation m:models){
 
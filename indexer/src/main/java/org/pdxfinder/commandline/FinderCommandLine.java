@@ -30,6 +30,7 @@ import picocli.CommandLine.Option;
     mixinStandardHelpOptions = true,
     subcommands = {
         FinderCommandLine.Load.class,
+        FinderCommandLine.Validate.class,
         FinderCommandLine.Export.class,
         FinderCommandLine.ExportMappings.class,
         FinderCommandLine.Transform.class,
@@ -79,6 +80,16 @@ public class FinderCommandLine implements Callable<Integer> {
                 description = "Implement Post data loading Steps")
         private boolean postLoadRequested;
 
+        @Option(names = {"--resume"},
+                description = "Skip the load stages that completed in the last run with the same options")
+        private boolean resume;
+
+        @Option(names = {"--only-stage"}, arity = "1..*", paramLabel = "STAGE",
+                description = "Run only the listed load stages, e.g. markers, disease-terms, regimens, " +
+                        "provider-<NAME>, load-metrics, link-samples, link-treatments, data-projections, " +
+                        "data-visibility, mapping-db")
+        private String[] onlyStages;
+
         @Option(names = {"--spring.data.neo4j.uri"}, paramLabel = "Neo4j DB Directory", description = "Embedded Neo4j Database location", hidden = true)
         private String springDataNeo4jUri;
 
@@ -119,14 +130,16 @@ public class FinderCommandLine implements Callable<Integer> {
             log.info("Loading using supplied parameters:\n{}", this);
             List<DataProvider> providersRequested = getListOfRequestedProviders();
 
-            finderLoader.run(
+            boolean completed = finderLoader.run(
                     providersRequested,
                     dataDirectory,
                     loadCacheRequested,
                     postLoadRequested,
-                    initializeMappingDB
+                    initializeMappingDB,
+                    resume,
+                    onlyStages == null ? new ArrayList<>() : Arrays.asList(onlyStages)
             );
-            return 0;
+            return completed ? 0 : 1;
         }
 
         List<DataProvider> getListOfRequestedProviders() {
@@ -154,6 +167,8 @@ public class FinderCommandLine implements Callable<Integer> {
                 .add("dataDirectory=" + dataDirectory)
                 .add("initializeMappingDB=" + initializeMappingDB)
                 .add("postLoadRequested=" + postLoadRequested)
+                .add("resume=" + resume)
+                .add("onlyStages=" + Arrays.toString(onlyStages))
                 .add("springDataNeo4jUri='" + springDataNeo4jUri + "'")
                 .add("debReload='" + debReload + "'")
                 .add("springDatasourceUrl='" + springDatasourceUrl + "'")
@@ -161,6 +176,57 @@ public class FinderCommandLine implements Callable<Integer> {
         }
     }
 
+    @Component
+    @Order(value = -100)
+    @Command(name = "validate",
+        description = "Checks UPDOG submissions without loading them into the PDX Finder",
+        mixinStandardHelpOptions = true,
+        exitCodeOnExecutionException = 34)
+
+    static class Validate implements Callable<Integer> {
+
+        Logger log = LoggerFactory.getLogger(Validate.class);
+
+        @Autowired
+        private FinderValidator finderValidator;
+
+        @Option(
+            names = {"-d", "--data-dir"},
+            required = true,
+            description = "Path of the PDX Finder data directory " +
+                "(default: [${DEFAULT-VALUE}], set in application.properties)")
+        private File dataDirectory;
+
+        @ArgGroup(multiplicity = "0..1")
+        Load.Exclusive datasetRequested = new Load.Exclusive();
+
+        @Override
+        public Integer call() throws IOException {
+            List<DataProvider> providersRequested = getListOfRequestedProviders();
+            log.info("Validating submissions for {}", providersRequested);
+            return finderValidator.run(providersRequested, dataDirectory) ? 0 : 1;
+        }
+
+        List<DataProvider> getListOfRequestedProviders() {
+
+            Optional<DataProvider[]> dataProviders = Optional.ofNullable(
+                    datasetRequested.getDataProvider()
+            );
+
+            Optional<DataProviderGroup> dataProviderGroup = Optional.ofNullable(
+                    datasetRequested.getDataProviderGroup()
+            );
+
+            if (dataProviders.isPresent()) {
+                return Arrays.asList(dataProviders.get());
+            } else if (dataProviderGroup.isPresent()) {
+                return DataProviderGroup.getProvidersFrom(dataProviderGroup.get());
+            } else {
+                return DataProviderGroup.getProvidersFrom(DataProviderGroup.UPDOG);
+            }
+        }
+    }
+
     @Component
     @Order(value = -100)
     @Command(name = "exportMapping",
@@ -284,8 +350,7 @@ public class FinderCommandLine implements Callable<Integer> {
         }
         @Override
         public Integer call() throws IOException {
-            finderExporter.run(dataDirectory, datasetRequested.getProvider(), datasetRequested.isLoadAll(), isHarmonized);
-            return 0;
+            return finderExporter.run(dataDirectory, datasetRequested.getProvider(), datasetRequested.isLoadAll(), isHarmonized) ? 0 : 1;
         }
 
         @Override
@@ -12,7 +12,6 @@ import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.List;
 
 @Component
@@ -31,14 +30,18 @@ public class FinderExporter {
         this.dataImportService = dataImportService;
         this.universalDataExporter = universalDataExporter;
     }
-    public void run(File dataDirectory, String provider, boolean loadAll, boolean isHarmonized) throws IOException {
+    /**
+     * @return false when a provider or one of its export files could not be exported
+     */
+    public boolean run(File dataDirectory, String provider, boolean loadAll, boolean isHarmonized) throws IOException {
         resolveRootDir(dataDirectory);
         if(loadAll){
-            exportAllGroups(rootDir, isHarmonized);
+            return exportAllGroups(rootDir, isHarmonized);
         }
         else if (StringUtils.isNotEmpty(provider)) {
-            export(rootDir, provider, isHarmonized);
+            return export(rootDir, provider, isHarmonized);
         }
+        return true;
     }
 
     public void resolveRootDir(File dataDirectory) throws IOException {
@@ -51,24 +54,20 @@ public class FinderExporter {
         }
     }
 
-    public void exportAllGroups(File rootDir, boolean isUnharmonized){
+    public boolean exportAllGroups(File rootDir, boolean isUnharmonized){
         List<Group> allProviders = dataImportService.getAllProviderGroups();
-        allProviders.forEach(g -> {
-            try {
-                export(rootDir, g.getAbbreviation(),isUnharmonized);
-            } catch (IOException e) {
-                log.error(Arrays.toString(e.getStackTrace()));
-            }
-        });
+        if (allProviders.isEmpty()) return true;
+        return universalDataExporter.exportAllFromGroups(rootDir.getAbsolutePath() + "/export", allProviders,
+            isUnharmonized, rootDir + "/template") == 0;
     }
 
-    public void export(File rootDir, String dataSourceAbbrev, boolean isHarmonized) throws IOException {
+    public boolean export(File rootDir, String dataSourceAbbrev, boolean isHarmonized) {
         Group ds = dataImportService.findProviderGroupByAbbrev(dataSourceAbbrev);
         if(ds == null) {
             log.error("Datasource {} not found. ",dataSourceAbbrev);
-            return;
+            return false;
         }
-        universalDataExporter.exportAllFromGroup(rootDir.getAbsolutePath() + "/export", ds, isHarmonized, rootDir + "/template");
+        return universalDataExporter.exportAllFromGroup(rootDir.getAbsolutePath() + "/export", ds, isHarmonized, rootDir + "/template") == 0;
     }
 
     public void setDefaultDirectory(String defaultDirectory) {
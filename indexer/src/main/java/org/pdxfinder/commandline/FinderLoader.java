@@ -1,10 +1,18 @@
 package org.pdxfinder.commandline;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import org.apache.commons.collections4.CollectionUtils;
+import org.neo4j.ogm.model.Result;
+import org.neo4j.ogm.session.Session;
+import org.pdxfinder.dataloaders.updog.LoadMetrics;
 import org.pdxfinder.dataloaders.updog.Updog;
 import org.pdxfinder.mapping.InitMappingDatabase;
 import org.pdxfinder.mapping.LinkSamplesToNCITTerms;
@@ -28,6 +36,20 @@ import org.springframework.stereotype.Component;
 @Component
 public class FinderLoader {
 
+    static final String MARKERS = "markers";
+    static final String DISEASE_TERMS = "disease-terms";
+    static final String REGIMENS = "regimens";
+    static final String LOAD_METRICS = "load-metrics";
+    static final String LINK_SAMPLES = "link-samples";
+    static final String LINK_TREATMENTS = "link-treatments";
+    static final String DATA_PROJECTIONS = "data-projections";
+    static final String DATA_VISIBILITY = "data-visibility";
+    static final String MAPPING_DB = "mapping-db";
+
+    // identifies the database the load checkpoints belong to; a new or another database gets a new id
+    private static final String DATABASE_ID =
+        "MERGE (m:LoadCheckpointMarker) ON CREATE SET m.databaseId = {id} RETURN m.databaseId AS databaseId";
+
     // Cache loading Components
     private LoadMarkers loadMarkers;
     private LoadNCITDrugs loadNCITDrugs;
@@ -35,6 +57,7 @@ public class FinderLoader {
 
     // DataProvider Loading Components
     private Updog updog;
+    private LoadMetrics loadMetrics;
 
     // PostLoad Components
     private LinkSamplesToNCITTerms linkSamplesToNCITTerms;
@@ -46,11 +69,14 @@ public class FinderLoader {
 
     private DataImportService dataImportService;
 
+    private Session session;
+
     @Autowired
     public FinderLoader(LoadMarkers loadMarkers,
                         LoadNCITDrugs loadNCITDrugs,
                         LoadNCIT loadNCIT,
                         Updog updog,
+                        LoadMetrics loadMetrics,
 
                         LinkSamplesToNCITTerms linkSamplesToNCITTerms,
                         LinkTreatmentsToNCITTerms linkTreatmentsToNCITTerms,
@@ -58,13 +84,15 @@ public class FinderLoader {
                         SetDataVisibility setDataVisibility,
                         DataImportService dataImportService,
                         ApplicationContext applicationContext,
-                        InitMappingDatabase initMappingDatabase) {
+                        InitMappingDatabase initMappingDatabase,
+                        Session session) {
 
         this.loadMarkers = loadMarkers;
         this.loadNCITDrugs = loadNCITDrugs;
         this.loadNCIT = loadNCIT;
 
         this.updog = updog;
+        this.loadMetrics = loadMetrics;
 
         this.linkSamplesToNCITTerms = linkSamplesToNCITTerms;
         this.linkTreatmentsToNCITTerms = linkTreatmentsToNCITTerms;
@@ -74,6 +102,7 @@ public class FinderLoader {
         this.initMappingDatabase = initMappingDatabase;
 
         this.dataImportService = dataImportService;
+        this.session = session;
     }
 
     private Logger log = LoggerFactory.getLogger(FinderLoader.class);
@@ -83,6 +112,15 @@ public class FinderLoader {
     private File databaseURI;
     @Value("${ncitpredef.file}")
     private String ncitFile;
+    @Value("${ncit.release.file:}")
+    private String ncitReleaseFile;
+
+    @Value("${db-cache-dir:}")
+    private String dbCacheDir;
+    @Value("${load.stage-threads:2}")
+    private int stageThreads;
+
+    private final Object updogLock = new Object();
 
     void run(
             List<DataProvider> dataProviders,
@@ -91,103 +129,183 @@ public class FinderLoader {
             boolean postLoadRequested,
             boolean initializeMappingDb
     ) {
+        run(dataProviders, dataDirectory, loadCacheRequested, postLoadRequested, initializeMappingDb,
+            false, Collections.emptyList());
+    }
 
-        loadCache(loadCacheRequested);
-        loadRequestedPdxData(dataProviders, dataDirectory);
-        postLoad(dataProviders, postLoadRequested);
-        initializeMappingDb(initializeMappingDb);
+    /**
+     * Runs the load as a graph of stages: the cache stages run side by side, each provider waits for the
+     * caches, and the post-load steps run once the providers finished, also when some of them failed. Every
+     * stage is checkpointed in {@code db-cache-dir} for the database being loaded, so with {@code resume} the
+     * stages that completed for the same request are skipped. A provider stage that failed is not run again
+     * on the same database, as its partial models would be duplicated.
+     *
+     * @param onlyStages the stages to run regardless of their dependencies, or empty for all of them
+     * @return false when a stage failed or was blocked by a failed stage
+     */
+    boolean run(
+            List<DataProvider> dataProviders,
+            File dataDirectory,
+            boolean loadCacheRequested,
+            boolean postLoadRequested,
+            boolean initializeMappingDb,
+            boolean resume,
+            List<String> onlyStages
+    ) {
+        List<LoaderStage> stages = loadStages(dataProviders, dataDirectory, loadCacheRequested,
+            postLoadRequested, initializeMappingDb);
+
+        List<String> unsuccessful = new LoaderStageRunner(stageThreads > 0 ? stageThreads : 1)
+            .run(stages, loadCheckpoints(), resume, onlyStages);
+        if (!unsuccessful.isEmpty()) {
+            log.error("Load stages not completed: {}. Fix the cause and rerun with --resume; " +
+                "a failed provider stage leaves partial data, so reload that provider into a clean database", unsuccessful);
         }
+        return unsuccessful.isEmpty();
+    }
 
+    List<LoaderStage> loadStages(
+            List<DataProvider> providers,
+            File dataDirectory,
+            boolean loadCacheRequested,
+            boolean postLoadRequested,
+            boolean initializeMappingDb
+    ) {
+        List<LoaderStage> stages = new ArrayList<>();
+        String reload = "reload=" + loadCacheRequested;
+
+        stages.add(new LoaderStage(MARKERS, reload, () -> loadMarkers(loadCacheRequested)));
+        stages.add(new LoaderStage(DISEASE_TERMS, reload + ",ncit=" + ncitReleaseFile, () -> loadDiseaseTerms(loadCacheRequested)));
+        stages.add(new LoaderStage(REGIMENS, reload + ",ncit=" + ncitReleaseFile, () -> loadRegimens(loadCacheRequested)));
+
+        if (providers.isEmpty()) {
+            log.info("Skipping PDX dataset loading - No providers requested");
+        } else {
+            log.info("Running requested PDX dataset loaders {}...", providers);
+            dataImportService.clearReferenceEntityCaches();
+            loadMetrics.reset();
+        }
+        List<String> providerStages = new ArrayList<>();
+        for (DataProvider provider : providers) {
+            String name = "provider-" + provider;
+            stages.add(new LoaderStage(name, "dataDirectory=" + dataDirectory,
+                () -> callRelevantLoader(provider, dataDirectory), MARKERS, DISEASE_TERMS, REGIMENS)
+                .notRetriedAfterFailure());
+            providerStages.add(name);
+        }
+        if (!providers.isEmpty()) {
+            stages.add(new LoaderStage(LOAD_METRICS, "providers=" + providers, () -> writeLoadMetrics(dataDirectory))
+                .runsAfter(providerStages.toArray(new String[0])));
+        }
+
+        if (CollectionUtils.isNotEmpty(providers) || postLoadRequested) {
+            String[] linkDependencies = providers.isEmpty()
+                ? new String[]{DISEASE_TERMS, REGIMENS}
+                : new String[]{DISEASE_TERMS, REGIMENS, LOAD_METRICS};
+            String inputs = "providers=" + providers;
+            stages.add(new LoaderStage(LINK_SAMPLES, inputs, () -> postLoadStep(linkSamplesToNCITTerms::run), linkDependencies));
+            stages.add(new LoaderStage(LINK_TREATMENTS, inputs, () -> postLoadStep(linkTreatmentsToNCITTerms::run), linkDependencies));
+            stages.add(new LoaderStage(DATA_PROJECTIONS, inputs, () -> postLoadStep(createDataProjections::run), LINK_SAMPLES, LINK_TREATMENTS));
+            stages.add(new LoaderStage(DATA_VISIBILITY, inputs, () -> postLoadStep(setDataVisibility::run), DATA_PROJECTIONS));
+        }
 
-    private void loadCache(boolean loadCacheRequested) {
-        log.info("Loading cache ...");
-        loadMarkers(loadCacheRequested);
-        loadDiseaseTerms(loadCacheRequested);
-        loadRegimens(loadCacheRequested);
+        if (initializeMappingDb) {
+            String[] dependencies = stages.stream().anyMatch(stage -> stage.getName().equals(LINK_SAMPLES))
+                ? new String[]{LINK_SAMPLES, LINK_TREATMENTS}
+                : new String[0];
+            stages.add(new LoaderStage(MAPPING_DB, "", () -> postLoadStep(initMappingDatabase::run), dependencies));
+        }
+        return stages;
     }
 
-    private void loadMarkers(boolean loadCacheRequested) {
-        if (dataImportService.markerCacheIsEmpty() || loadCacheRequested) {
-            try {
-                loadMarkers.loadGenes(DataUrl.HUGO_FILE_URL.get());
-            } catch (Exception e) {
-                log.error("Failed to load markers", e);
+    private LoaderCheckpoints loadCheckpoints() {
+
+        if (dbCacheDir == null || dbCacheDir.isEmpty()) {
+            return new LoaderCheckpoints(null);
+        }
+        String databaseId = null;
+        try {
+            Result result = session.query(DATABASE_ID, Collections.singletonMap("id", UUID.randomUUID().toString()));
+            for (Map<String, Object> row : result.queryResults()) {
+                databaseId = (String) row.get("databaseId");
             }
+        } catch (RuntimeException e) {
+            log.warn("Cannot identify the database, load checkpoints are not kept: {}", e.getMessage());
         }
+        if (databaseId == null) {
+            return new LoaderCheckpoints(null);
+        }
+        return new LoaderCheckpoints(new File(dbCacheDir, "load-checkpoints.json"), databaseId);
     }
 
-    private void loadDiseaseTerms(boolean loadCacheRequested) {
+    private String loadMarkers(boolean loadCacheRequested) {
+        if (dataImportService.markerCacheIsEmpty() || loadCacheRequested) {
+            loadMarkers.loadGenes(DataUrl.HUGO_FILE_URL.get());
+            return "loaded";
+        }
+        return "cached";
+    }
+
+    private String loadDiseaseTerms(boolean loadCacheRequested) throws Exception {
         if (dataImportService.ontologyCacheIsEmpty() || loadCacheRequested) {
-            try {
+            if (ncitReleaseRequested()) {
+                loadNCIT.loadOntologyFromRelease(Paths.get(ncitReleaseFile), DataUrl.DISEASES_BRANCH_URL.get());
+            } else {
                 loadNCIT.loadOntology(DataUrl.DISEASES_BRANCH_URL.get());
-            } catch (Exception e) {
-                log.error("Failed to load disease ontology terms", e);
             }
+            return "loaded";
         }
+        return "cached";
     }
 
-    private void loadRegimens(boolean loadCacheRequested) {
+    private String loadRegimens(boolean loadCacheRequested) throws Exception {
         if (dataImportService.ontologyCacheIsEmptyByType("treatment") || loadCacheRequested) {
-            try {
+            if (ncitReleaseRequested()) {
+                loadNCITDrugs.loadRegimens(Paths.get(ncitReleaseFile));
+            } else {
                 loadNCITDrugs.loadRegimens();
-            } catch (Exception e) {
-                log.error("Failed to load regimen ontology terms", e);
             }
+            return "loaded";
         }
+        return "cached";
     }
 
-    private void loadRequestedPdxData(
-            List<DataProvider> providers,
-            File dataDirectory
-    ) {
-        if (providers.isEmpty()) {
-            log.info("Skipping PDX dataset loading - No providers requested");
-        } else {
-            log.info("Running requested PDX dataset loaders {}...", providers);
-            for (DataProvider i : providers)
-                callRelevantLoader(i, dataDirectory);
-        }
+    private boolean ncitReleaseRequested() {
+        return ncitReleaseFile != null && !ncitReleaseFile.trim().isEmpty();
     }
 
-
-    private void callRelevantLoader(
+    private String callRelevantLoader(
             DataProvider dataProvider,
             File dataDirectory
-    ) {
+    ) throws Exception {
         List<DataProvider> updogProviders = DataProviderGroup.getProvidersFrom(DataProviderGroup.UPDOG);
-        try {
-
-            if (updogProviders.contains(dataProvider)) {
-                Path updogDirectory = Paths.get(
-                        dataDirectory.toString(),
-                        "/data/UPDOG",
-                        dataProvider.toString());
+        if (!updogProviders.contains(dataProvider)) {
+            return "no loader";
+        }
+        Path updogDirectory = Paths.get(
+                dataDirectory.toString(),
+                "/data/UPDOG",
+                dataProvider.toString());
+        // Updog keeps per-provider state, so providers are loaded one at a time
+        synchronized (updogLock) {
+            try {
                 updog.run(updogDirectory, dataProvider.toString());
+            } finally {
+                dataImportService.evictReferenceEntities();
             }
-
-
-        } catch (Exception e) {
-            log.error("Error calling the loader for {}:", dataProvider, e);
         }
+        return updogDirectory.toString();
     }
 
-    private void postLoad(List<DataProvider> providers, boolean postLoadRequested) {
-
-        log.info("Running Post load Steps ...");
-
-
-        if (CollectionUtils.isNotEmpty(providers) || postLoadRequested) {
-            linkSamplesToNCITTerms.run();
-            linkTreatmentsToNCITTerms.run();
-            createDataProjections.run();
-            setDataVisibility.run();
-        }
+    private String writeLoadMetrics(File dataDirectory) throws IOException {
+        dataImportService.logReferenceEntityCacheStatistics();
+        loadMetrics.logSummary();
+        loadMetrics.writeSummary(dataDirectory);
+        return null;
     }
 
-    private void initializeMappingDb(boolean initMappingDb) {
-        if (initMappingDb)
-            initMappingDatabase.run();
+    private String postLoadStep(Runnable step) {
+        step.run();
+        return null;
     }
-
-
 }
@@ -0,0 +1,85 @@
+package org.pdxfinder.commandline;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.pdxfinder.dataloaders.updog.UpdogValidator;
+import org.pdxfinder.dataloaders.updog.ValidationError;
+import org.pdxfinder.services.constants.DataProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class FinderValidator {
+
+    private static final Logger log = LoggerFactory.getLogger(FinderValidator.class);
+
+    private UpdogValidator updogValidator;
+
+    @Autowired
+    public FinderValidator(UpdogValidator updogValidator) {
+        this.updogValidator = updogValidator;
+    }
+
+    boolean run(List<DataProvider> dataProviders, File dataDirectory) throws IOException {
+        long start = System.currentTimeMillis();
+        Map<String, List<ValidationError>> report = validate(dataProviders, dataDirectory);
+
+        long errorCount = report.values().stream()
+            .flatMap(List::stream)
+            .filter(ValidationError::isError)
+            .count();
+        report.forEach((provider, errors) -> log.info("{}: {} issues", provider, errors.size()));
+        log.info("Validated {} providers in {} ms, {} errors found",
+            report.size(), System.currentTimeMillis() - start, errorCount);
+
+        writeReport(report, dataDirectory);
+        return errorCount == 0;
+    }
+
+    Map<String, List<ValidationError>> validate(List<DataProvider> dataProviders, File dataDirectory) {
+        Map<String, List<ValidationError>> report = new ConcurrentHashMap<>();
+        dataProviders.parallelStream().forEach(dataProvider -> {
+            Path updogDirectory = Paths.get(dataDirectory.toString(), "/data/UPDOG", dataProvider.toString());
+            if (!updogDirectory.toFile().isDirectory()) {
+                log.warn("Skipping {}: no submission found in {}", dataProvider, updogDirectory);
+                return;
+            }
+            try {
+                report.put(dataProvider.toString(), updogValidator.validate(updogDirectory, dataProvider.toString()));
+            } catch (Exception e) {
+                log.error("Error validating {}:", dataProvider, e);
+                report.put(dataProvider.toString(), Collections.singletonList(new ValidationError(
+                    dataProvider.toString(),
+                    ValidationError.Severity.ERROR,
+                    ValidationError.Check.TABLE_STRUCTURE,
+                    null, null, null,
+                    "Submission could not be read: " + e.getMessage())));
+            }
+        });
+        return new TreeMap<>(report);
+    }
+
+    private void writeReport(Map<String, List<ValidationError>> report, File dataDirectory) throws IOException {
+        String timeStamp = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss").format(new Date());
+        File reportFile = Paths.get(dataDirectory.toString(), "logs", "validation_" + timeStamp + ".json").toFile();
+        if (!reportFile.getParentFile().exists() && !reportFile.getParentFile().mkdirs()) {
+            log.warn("Cannot save validation report, need write permission to {}", reportFile.getParent());
+            return;
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(reportFile, report);
+        log.info("Validation report saved to {}", reportFile);
+    }
+
+}
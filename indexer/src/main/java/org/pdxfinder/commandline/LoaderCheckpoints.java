@@ -0,0 +1,190 @@
+package org.pdxfinder.commandline;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Outcome of each {@link LoaderStage} of the last load, kept as JSON so an interrupted load can resume.
+ * The file records the id of the database it was written against, and its checkpoints are dropped when
+ * loading into another or a freshly created database. With no file every checkpoint lives in memory only.
+ */
+class LoaderCheckpoints {
+
+    private static final Logger log = LoggerFactory.getLogger(LoaderCheckpoints.class);
+
+    enum Status {
+        COMPLETED,
+        FAILED,
+        BLOCKED
+    }
+
+    private final File file;
+    private final String databaseId;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Checkpoint> checkpoints = new LinkedHashMap<>();
+
+    LoaderCheckpoints(File file) {
+        this(file, null);
+    }
+
+    /**
+     * @param databaseId identifies the database being loaded; checkpoints saved for another one are ignored
+     */
+    LoaderCheckpoints(File file, String databaseId) {
+        this.file = file;
+        this.databaseId = databaseId;
+        if (file != null && file.isFile()) {
+            try {
+                SavedCheckpoints saved = mapper.readValue(file, SavedCheckpoints.class);
+                if (Objects.equals(databaseId, saved.getDatabaseId())) {
+                    checkpoints.putAll(saved.getStages());
+                } else {
+                    log.info("Ignoring load checkpoints {} saved for another database", file);
+                }
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable load checkpoints {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    synchronized boolean isCompleted(LoaderStage stage) {
+        Checkpoint checkpoint = checkpoints.get(stage.getName());
+        return checkpoint != null
+            && checkpoint.getStatus() == Status.COMPLETED
+            && stage.getInputs().equals(checkpoint.getInputs());
+    }
+
+    synchronized Checkpoint get(String stageName) {
+        return checkpoints.get(stageName);
+    }
+
+    synchronized void record(LoaderStage stage, Status status, long startedAt, long finishedAt, String outputs) {
+
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.setStatus(status);
+        checkpoint.setInputs(stage.getInputs());
+        checkpoint.setOutputs(outputs);
+        checkpoint.setStartedAt(startedAt);
+        checkpoint.setFinishedAt(finishedAt);
+        checkpoint.setDurationMillis(finishedAt - startedAt);
+        checkpoints.put(stage.getName(), checkpoint);
+        save();
+    }
+
+    /**
+     * Forgets the outcome of {@code stageNames}, so a resumed load runs them again.
+     */
+    synchronized void invalidate(Collection<String> stageNames) {
+
+        if (checkpoints.keySet().removeAll(stageNames)) {
+            save();
+        }
+    }
+
+    private void save() {
+
+        if (file == null) return;
+        try {
+            Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+            File temporary = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+            SavedCheckpoints saved = new SavedCheckpoints();
+            saved.setDatabaseId(databaseId);
+            saved.setStages(checkpoints);
+            mapper.writerWithDefaultPrettyPrinter().writeValue(temporary, saved);
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Cannot save load checkpoints to {}: {}", file, e.getMessage());
+        }
+    }
+
+
+    static class SavedCheckpoints {
+
+        private String databaseId;
+        private Map<String, Checkpoint> stages = new LinkedHashMap<>();
+
+        public String getDatabaseId() {
+            return databaseId;
+        }
+
+        public void setDatabaseId(String databaseId) {
+            this.databaseId = databaseId;
+        }
+
+        public Map<String, Checkpoint> getStages() {
+            return stages;
+        }
+
+        public void setStages(Map<String, Checkpoint> stages) {
+            this.stages = stages;
+        }
+    }
+
+
+    static class Checkpoint {
+
+        private Status status;
+        private String inputs;
+        private String outputs;
+        private long startedAt;
+        private long finishedAt;
+        private long durationMillis;
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public void setStatus(Status status) {
+            this.status = status;
+        }
+
+        public String getInputs() {
+            return inputs;
+        }
+
+        public void setInputs(String inputs) {
+            this.inputs = inputs;
+        }
+
+        public String getOutputs() {
+            return outputs;
+        }
+
+        public void setOutputs(String outputs) {
+            this.outputs = outputs;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        public void setStartedAt(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        public long getFinishedAt() {
+            return finishedAt;
+        }
+
+        public void setFinishedAt(long finishedAt) {
+            this.finishedAt = finishedAt;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public void setDurationMillis(long durationMillis) {
+            this.durationMillis = durationMillis;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.pdxfinder.commandline;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A named step of a {@link FinderLoader} run. A stage starts once every stage it depends on has
+ * completed, and once every stage it {@link #runsAfter runs after} has finished whether or not it
+ * succeeded; {@code inputs} describes what the stage was run with so a checkpoint is only reused for
+ * the same request. A stage {@link #notRetriedAfterFailure not retried after failure} leaves partial
+ * data when it fails, so it is not run again on the same database.
+ */
+class LoaderStage {
+
+    @FunctionalInterface
+    interface Action {
+        /**
+         * @return a short description of what the stage produced, or null
+         */
+        Object run() throws Exception;
+    }
+
+    private final String name;
+    private final String inputs;
+    private final Action action;
+    private final Set<String> dependsOn;
+    private final Set<String> runsAfter;
+    private final boolean retriedAfterFailure;
+
+    LoaderStage(String name, String inputs, Action action, String... dependsOn) {
+        this(name, inputs, action, new LinkedHashSet<>(Arrays.asList(dependsOn)), new LinkedHashSet<>(), true);
+    }
+
+    private LoaderStage(String name, String inputs, Action action, Set<String> dependsOn, Set<String> runsAfter,
+                        boolean retriedAfterFailure) {
+        this.name = name;
+        this.inputs = inputs;
+        this.action = action;
+        this.dependsOn = Collections.unmodifiableSet(dependsOn);
+        this.runsAfter = Collections.unmodifiableSet(runsAfter);
+        this.retriedAfterFailure = retriedAfterFailure;
+    }
+
+    /**
+     * @return this stage, also waiting for {@code stages} to finish but still run when they fail
+     */
+    LoaderStage runsAfter(String... stages) {
+        Set<String> after = new LinkedHashSet<>(runsAfter);
+        after.addAll(Arrays.asList(stages));
+        return new LoaderStage(name, inputs, action, new LinkedHashSet<>(dependsOn), after, retriedAfterFailure);
+    }
+
+    /**
+     * @return this stage, not run again once it failed on the same database
+     */
+    LoaderStage notRetriedAfterFailure() {
+        return new LoaderStage(name, inputs, action, new LinkedHashSet<>(dependsOn), new LinkedHashSet<>(runsAfter), false);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getInputs() {
+        return inputs;
+    }
+
+    Action getAction() {
+        return action;
+    }
+
+    Set<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    Set<String> getRunsAfter() {
+        return runsAfter;
+    }
+
+    boolean isRetriedAfterFailure() {
+        return retriedAfterFailure;
+    }
+
+    /**
+     * @return the stages this one waits for, whether or not their failure blocks it
+     */
+    Set<String> getPredecessors() {
+        Set<String> predecessors = new LinkedHashSet<>(dependsOn);
+        predecessors.addAll(runsAfter);
+        return predecessors;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,249 @@
+package org.pdxfinder.commandline;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.pdxfinder.commandline.LoaderCheckpoints.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs {@link LoaderStage}s in dependency order on a bounded pool, so stages that do not depend on
+ * each other run at the same time. Each finished stage is recorded in the {@link LoaderCheckpoints}.
+ * <p>
+ * A failed stage does not stop independent stages, but the stages that depend on it are not run;
+ * stages that only run after it still do. Running a stage invalidates the checkpoints of everything
+ * downstream of it. With {@code resume} a stage that already completed with the same inputs is skipped;
+ * with {@code onlyStages} just those stages run, whatever their dependencies' state. A stage that is not
+ * retried after failure and has a failed checkpoint is reported as unsuccessful instead of being run.
+ */
+class LoaderStageRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LoaderStageRunner.class);
+
+    private final int threads;
+
+    LoaderStageRunner(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @return the stages that failed or could not run because a dependency failed
+     */
+    List<String> run(List<LoaderStage> stages, LoaderCheckpoints checkpoints, boolean resume, Collection<String> onlyStages) {
+
+        Map<String, LoaderStage> byName = index(stages);
+        Set<String> selected = select(byName, onlyStages);
+
+        Map<String, Set<String>> waitingFor = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (String name : selected) {
+            Set<String> dependencies = new HashSet<>(byName.get(name).getPredecessors());
+            dependencies.retainAll(selected);
+            waitingFor.put(name, dependencies);
+            dependencies.forEach(dependency -> dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(name));
+        }
+
+        List<String> unsuccessful = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<String> completion = new ExecutorCompletionService<>(executor);
+        int running = 0;
+        try {
+            List<String> ready = readyStages(waitingFor);
+            while (!ready.isEmpty() || running > 0) {
+
+                for (String name : ready) {
+                    waitingFor.remove(name);
+                    LoaderStage stage = byName.get(name);
+                    if (resume && checkpoints.isCompleted(stage)) {
+                        log.info("Stage {} already completed, skipping", name);
+                        release(name, dependents, waitingFor);
+                    } else if (!stage.isRetriedAfterFailure() && failedBefore(name, checkpoints)) {
+                        log.error("Stage {} failed in an earlier run and may have left partial data, " +
+                            "it is only run again on a clean database", name);
+                        unsuccessful.add(name);
+                        block(name, byName, dependents, waitingFor, checkpoints, unsuccessful);
+                    } else {
+                        checkpoints.invalidate(downstream(name, byName));
+                        completion.submit(() -> execute(stage, checkpoints) ? name : "!" + name);
+                        running++;
+                    }
+                }
+
+                if (running > 0 && readyStages(waitingFor).isEmpty()) {
+                    String result = completion.take().get();
+                    running--;
+                    boolean success = !result.startsWith("!");
+                    String name = success ? result : result.substring(1);
+                    if (success) {
+                        release(name, dependents, waitingFor);
+                    } else {
+                        unsuccessful.add(name);
+                        block(name, byName, dependents, waitingFor, checkpoints, unsuccessful);
+                    }
+                }
+                ready = readyStages(waitingFor);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running load stages", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load stage crashed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        logSummary(stages, selected, checkpoints);
+        return unsuccessful;
+    }
+
+    private static void logSummary(List<LoaderStage> stages, Set<String> selected, LoaderCheckpoints checkpoints) {
+
+        StringBuilder summary = new StringBuilder("Load stages:");
+        for (LoaderStage stage : stages) {
+            if (!selected.contains(stage.getName())) continue;
+            LoaderCheckpoints.Checkpoint checkpoint = checkpoints.get(stage.getName());
+            summary.append(String.format("%n  %-30s %-10s %8d ms  %s", stage.getName(),
+                checkpoint == null ? "" : checkpoint.getStatus(),
+                checkpoint == null ? 0 : checkpoint.getDurationMillis(),
+                checkpoint == null || checkpoint.getOutputs() == null ? "" : checkpoint.getOutputs()));
+        }
+        log.info("{}", summary);
+    }
+
+    private boolean execute(LoaderStage stage, LoaderCheckpoints checkpoints) {
+
+        log.info("Stage {} started", stage.getName());
+        long startedAt = System.currentTimeMillis();
+        try {
+            Object outputs = stage.getAction().run();
+            long finishedAt = System.currentTimeMillis();
+            checkpoints.record(stage, Status.COMPLETED, startedAt, finishedAt, outputs == null ? null : outputs.toString());
+            log.info("Stage {} completed in {} s", stage.getName(), (finishedAt - startedAt) / 1000);
+            return true;
+        } catch (Exception e) {
+            checkpoints.record(stage, Status.FAILED, startedAt, System.currentTimeMillis(), String.valueOf(e));
+            log.error("Stage {} failed", stage.getName(), e);
+            return false;
+        }
+    }
+
+    private static boolean failedBefore(String name, LoaderCheckpoints checkpoints) {
+
+        LoaderCheckpoints.Checkpoint checkpoint = checkpoints.get(name);
+        return checkpoint != null && checkpoint.getStatus() == Status.FAILED;
+    }
+
+    private static void release(String name, Map<String, List<String>> dependents, Map<String, Set<String>> waitingFor) {
+
+        for (String dependent : dependents.getOrDefault(name, new ArrayList<>())) {
+            Set<String> dependencies = waitingFor.get(dependent);
+            if (dependencies != null) dependencies.remove(name);
+        }
+    }
+
+    private static void block(String failed, Map<String, LoaderStage> byName, Map<String, List<String>> dependents,
+                              Map<String, Set<String>> waitingFor, LoaderCheckpoints checkpoints, List<String> unsuccessful) {
+
+        for (String dependent : dependents.getOrDefault(failed, new ArrayList<>())) {
+            if (!byName.get(dependent).getDependsOn().contains(failed)) {
+                Set<String> dependencies = waitingFor.get(dependent);
+                if (dependencies != null) dependencies.remove(failed);
+                continue;
+            }
+            if (waitingFor.remove(dependent) == null) continue;
+            long now = System.currentTimeMillis();
+            checkpoints.record(byName.get(dependent), Status.BLOCKED, now, now, "needs " + failed);
+            log.warn("Stage {} not run because {} failed", dependent, failed);
+            unsuccessful.add(dependent);
+            block(dependent, byName, dependents, waitingFor, checkpoints, unsuccessful);
+        }
+    }
+
+    /**
+     * @return every stage that directly or indirectly waits for {@code name}, selected for this run or not
+     */
+    private static Set<String> downstream(String name, Map<String, LoaderStage> byName) {
+
+        Set<String> downstream = new HashSet<>();
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            for (LoaderStage stage : byName.values()) {
+                if (downstream.contains(stage.getName())) continue;
+                Set<String> predecessors = stage.getPredecessors();
+                if (predecessors.contains(name) || predecessors.stream().anyMatch(downstream::contains)) {
+                    grew = downstream.add(stage.getName()) || grew;
+                }
+            }
+        }
+        return downstream;
+    }
+
+    private static List<String> readyStages(Map<String, Set<String>> waitingFor) {
+
+        List<String> ready = new ArrayList<>();
+        waitingFor.forEach((name, dependencies) -> {
+            if (dependencies.isEmpty()) ready.add(name);
+        });
+        return ready;
+    }
+
+    private static Map<String, LoaderStage> index(List<LoaderStage> stages) {
+
+        Map<String, LoaderStage> byName = new LinkedHashMap<>();
+        for (LoaderStage stage : stages) {
+            if (byName.put(stage.getName(), stage) != null) {
+                throw new IllegalArgumentException("Duplicate load stage " + stage.getName());
+            }
+        }
+        for (LoaderStage stage : stages) {
+            for (String dependency : stage.getPredecessors()) {
+                if (!byName.containsKey(dependency)) {
+                    throw new IllegalArgumentException("Stage " + stage.getName() + " depends on unknown stage " + dependency);
+                }
+            }
+        }
+        checkAcyclic(byName);
+        return byName;
+    }
+
+    private static void checkAcyclic(Map<String, LoaderStage> byName) {
+
+        Set<String> done = new HashSet<>();
+        for (String name : byName.keySet()) {
+            visit(name, byName, done, new HashSet<>());
+        }
+    }
+
+    private static void visit(String name, Map<String, LoaderStage> byName, Set<String> done, Set<String> path) {
+
+        if (done.contains(name)) return;
+        if (!path.add(name)) throw new IllegalArgumentException("Load stages have a dependency cycle through " + name);
+        for (String dependency : byName.get(name).getPredecessors()) {
+            visit(dependency, byName, done, path);
+        }
+        path.remove(name);
+        done.add(name);
+    }
+
+    private static Set<String> select(Map<String, LoaderStage> byName, Collection<String> onlyStages) {
+
+        if (onlyStages == null || onlyStages.isEmpty()) return new HashSet<>(byName.keySet());
+        for (String name : onlyStages) {
+            if (!byName.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown load stage " + name + ", expected one of " + byName.keySet());
+            }
+        }
+        return new HashSet<>(onlyStages);
+    }
+}
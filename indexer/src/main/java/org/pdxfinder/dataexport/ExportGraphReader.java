@@ -0,0 +1,179 @@
+package org.pdxfinder.dataexport;
+
+import org.neo4j.ogm.session.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bulk, projection-style reads of a provider's export data. Each method is a fixed number of queries per
+ * provider, or per batch of models, returning plain values keyed by model instead of one repository call per
+ * sample or entity graph. Providers are matched on the stored {@code dataSource}, so its index can be used.
+ */
+@Component
+public class ExportGraphReader {
+
+    static final String PATIENT_ORIGIN = "patient";
+    static final String XENOGRAFT_ORIGIN = "xenograft";
+
+    private static final String MODEL_IDS_BY_SAMPLE =
+        "MATCH (s:Sample)-[:IMPLANTED_IN]-(mod:ModelCreation) " +
+        "WHERE mod.dataSource = {dataSource} " +
+        "RETURN s.sourceSampleId AS sampleId, mod.sourcePdxId AS modelId";
+
+    private static final String MODEL_IDS_AFTER =
+        "MATCH (mod:ModelCreation) " +
+        "WHERE mod.dataSource = {dataSource} AND mod.sourcePdxId > {after} " +
+        "RETURN DISTINCT mod.sourcePdxId AS modelId ORDER BY modelId LIMIT {limit}";
+
+    private static final String PATIENT_OMIC_DATA =
+        "MATCH (mod:ModelCreation)-[:IMPLANTED_IN]-(s:Sample)-[:CHARACTERIZED_BY]-(mc:MolecularCharacterization) " +
+        "WHERE mod.dataSource = {dataSource} AND mod.sourcePdxId IN {modelIds} AND mc.type = {type} " +
+        "MATCH (mc)-[:ASSOCIATED_WITH]-(ma:MarkerAssociation) " +
+        "OPTIONAL MATCH (mc)-[:PLATFORM_USED]-(pl:Platform) " +
+        "RETURN mod.sourcePdxId AS modelId, s.sourceSampleId AS sampleId, '' AS hostStrain, '' AS passage, " +
+        "pl.name AS platform, ma.molecularDataString AS data";
+
+    private static final String XENOGRAFT_OMIC_DATA =
+        "MATCH (mod:ModelCreation)-[:SPECIMENS]-(sp:Specimen)-[:SAMPLED_FROM]-(s:Sample)-[:CHARACTERIZED_BY]-(mc:MolecularCharacterization) " +
+        "WHERE mod.dataSource = {dataSource} AND mod.sourcePdxId IN {modelIds} AND mc.type = {type} " +
+        "MATCH (mc)-[:ASSOCIATED_WITH]-(ma:MarkerAssociation) " +
+        "OPTIONAL MATCH (sp)-[:HOST_STRAIN]-(hs:HostStrain) " +
+        "OPTIONAL MATCH (mc)-[:PLATFORM_USED]-(pl:Platform) " +
+        "RETURN mod.sourcePdxId AS modelId, s.sourceSampleId AS sampleId, hs.symbol AS hostStrain, sp.passage AS passage, " +
+        "pl.name AS platform, ma.molecularDataString AS data";
+
+    private Session session;
+
+    @Autowired
+    public ExportGraphReader(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * @return the model id of every patient sample of {@code dataSource}, keyed by source sample id
+     */
+    public Map<String, String> findModelIdsBySampleId(String dataSource) {
+        Map<String, String> modelIds = new HashMap<>();
+        for (Map<String, Object> row : session.query(MODEL_IDS_BY_SAMPLE, dataSourceParameters(dataSource)).queryResults()) {
+            modelIds.put(asString(row.get("sampleId")), asString(row.get("modelId")));
+        }
+        return modelIds;
+    }
+
+    /**
+     * Pages through the models of {@code dataSource} by id, so a provider's models can be read in batches.
+     *
+     * @return up to {@code limit} model ids sorted after {@code afterModelId}, which is empty for the first page
+     */
+    public List<String> findModelIds(String dataSource, String afterModelId, int limit) {
+        Map<String, Object> parameters = dataSourceParameters(dataSource);
+        parameters.put("after", afterModelId);
+        parameters.put("limit", limit);
+
+        List<String> modelIds = new ArrayList<>();
+        for (Map<String, Object> row : session.query(MODEL_IDS_AFTER, parameters).queryResults()) {
+            modelIds.add(asString(row.get("modelId")));
+        }
+        return modelIds;
+    }
+
+    /**
+     * Reads the encoded molecular data of one characterization type for {@code modelIds} of {@code dataSource},
+     * in two queries. Each model lists its patient sample data before its xenograft data, and models are
+     * sorted by id; models without data of that type are left out.
+     */
+    public Map<String, List<OmicSource>> findOmicSourcesByModel(String dataSource, List<String> modelIds, String molcharType) {
+        Map<String, Object> parameters = dataSourceParameters(dataSource);
+        parameters.put("modelIds", modelIds);
+        parameters.put("type", molcharType);
+
+        Map<String, List<OmicSource>> sources = new TreeMap<>();
+        addOmicSources(sources, PATIENT_OMIC_DATA, parameters, PATIENT_ORIGIN);
+        addOmicSources(sources, XENOGRAFT_OMIC_DATA, parameters, XENOGRAFT_ORIGIN);
+        return sources;
+    }
+
+    private void addOmicSources(Map<String, List<OmicSource>> sources, String query, Map<String, Object> parameters, String origin) {
+        for (Map<String, Object> row : session.query(query, parameters).queryResults()) {
+            OmicSource source = new OmicSource(
+                asString(row.get("modelId")),
+                asString(row.get("sampleId")),
+                origin,
+                asString(row.get("hostStrain")),
+                asString(row.get("passage")),
+                asString(row.get("platform")),
+                (String) row.get("data"));
+            sources.computeIfAbsent(source.getModelId(), k -> new ArrayList<>()).add(source);
+        }
+    }
+
+    private static Map<String, Object> dataSourceParameters(String dataSource) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("dataSource", dataSource);
+        return parameters;
+    }
+
+    private static String asString(Object value) {
+        return value == null ? UniversalDataExtractionServices.EMPTY : value.toString();
+    }
+
+
+    /**
+     * The encoded molecular data of one marker association, with the sample details every export row repeats.
+     */
+    public static class OmicSource {
+
+        private final String modelId;
+        private final String sampleId;
+        private final String origin;
+        private final String hostStrainSymbol;
+        private final String passage;
+        private final String platform;
+        private final String molecularData;
+
+        OmicSource(String modelId, String sampleId, String origin, String hostStrainSymbol, String passage,
+                   String platform, String molecularData) {
+            this.modelId = modelId;
+            this.sampleId = sampleId;
+            this.origin = origin;
+            this.hostStrainSymbol = hostStrainSymbol;
+            this.passage = passage;
+            this.platform = platform;
+            this.molecularData = molecularData;
+        }
+
+        public String getModelId() {
+            return modelId;
+        }
+
+        public String getSampleId() {
+            return sampleId;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public String getHostStrainSymbol() {
+            return hostStrainSymbol;
+        }
+
+        public String getPassage() {
+            return passage;
+        }
+
+        public String getPlatform() {
+            return platform;
+        }
+
+        public String getMolecularData() {
+            return molecularData;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.pdxfinder.dataexport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs provider x data type export jobs on a bounded pool. Every job writes its own file and reads
+ * disjoint graph data, so the jobs share nothing. Jobs run outside any transaction, so each graph read
+ * gets its own short-lived session and the entities of a large provider are not held for the whole job.
+ * A failed job is logged and the others carry on; a summary of rows and throughput is logged at the end.
+ */
+class ExportScheduler implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportScheduler.class);
+
+    @FunctionalInterface
+    interface ExportJob {
+        /**
+         * @return the number of rows exported
+         */
+        int run() throws Exception;
+    }
+
+    private final ExecutorService executor;
+    private final List<JobResult> results = new ArrayList<>();
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final AtomicInteger submitted = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final long startedAt = System.currentTimeMillis();
+
+    ExportScheduler(int threads) {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads));
+    }
+
+    void submit(String provider, String dataType, ExportJob job) {
+
+        JobResult result = new JobResult(provider, dataType);
+        results.add(result);
+        submitted.incrementAndGet();
+        futures.add(executor.submit(() -> run(result, job)));
+    }
+
+    private void run(JobResult result, ExportJob job) {
+
+        long jobStartedAt = System.currentTimeMillis();
+        try {
+            result.rows = job.run();
+            result.millis = System.currentTimeMillis() - jobStartedAt;
+            log.info("Exported {}/{}: {} {} ({} rows in {} ms)",
+                finished.incrementAndGet(), submitted.get(), result.provider, result.dataType, result.rows, result.millis);
+        } catch (Exception e) {
+            result.error = e;
+            result.millis = System.currentTimeMillis() - jobStartedAt;
+            log.error("Export {}/{} failed: {} {} after {} ms",
+                finished.incrementAndGet(), submitted.get(), result.provider, result.dataType, result.millis, e);
+        }
+    }
+
+    /**
+     * Waits for every submitted job and logs the summary.
+     *
+     * @return the number of jobs that failed
+     */
+    int awaitCompletion() {
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for export jobs", e);
+            } catch (ExecutionException e) {
+                log.error("Export job crashed", e.getCause());
+            }
+        }
+        logSummary();
+        return (int) results.stream().filter(result -> result.error != null).count();
+    }
+
+    private void logSummary() {
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+        long totalRows = 0;
+        StringBuilder summary = new StringBuilder("Export summary:");
+        for (JobResult result : results) {
+            totalRows += result.rows;
+            summary.append(String.format("%n  %-15s %-18s %10d rows %8d ms %s", result.provider, result.dataType,
+                result.rows, result.millis, result.error == null ? "" : "FAILED"));
+        }
+        summary.append(String.format("%n  %d jobs, %d rows in %.1f s (%.0f rows/s)",
+            results.size(), totalRows, elapsed / 1000.0, totalRows * 1000.0 / elapsed));
+        log.info("{}", summary);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+
+    private static class JobResult {
+
+        private final String provider;
+        private final String dataType;
+        private volatile int rows;
+        private volatile long millis;
+        private volatile Exception error;
+
+        JobResult(String provider, String dataType) {
+            this.provider = provider;
+            this.dataType = dataType;
+        }
+    }
+}
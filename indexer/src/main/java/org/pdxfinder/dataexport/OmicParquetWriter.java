@@ -0,0 +1,573 @@
+package org.pdxfinder.dataexport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the rows of one omic export as an Apache Parquet file, so downstream tools (pyarrow, pandas, R arrow,
+ * DuckDB, Spark) load typed columns instead of re-parsing the TSV. Every column is optional: string columns are
+ * dictionary encoded UTF8, {@link ColumnType#INT64} and {@link ColumnType#DOUBLE} columns are stored as numbers,
+ * with empty or non-numeric values written as nulls. Rows are buffered into row groups of {@code rowGroupRows},
+ * each column chunk a single, optionally gzip compressed, data page with min, max and null count statistics.
+ */
+public class OmicParquetWriter implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(OmicParquetWriter.class);
+
+    public enum ColumnType { STRING, INT64, DOUBLE }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+    // the indexer version from the jar manifest, which classes run outside the jar do not have
+    private static final String CREATED_BY = String.format("pdxfinder version %s (build indexer)",
+            Optional.ofNullable(OmicParquetWriter.class.getPackage().getImplementationVersion()).orElse("unknown"));
+
+    // enum values of parquet.thrift
+    private static final int PHYSICAL_INT64 = 2;
+    private static final int PHYSICAL_DOUBLE = 5;
+    private static final int PHYSICAL_BYTE_ARRAY = 6;
+    private static final int CONVERTED_UTF8 = 0;
+    private static final int REPETITION_OPTIONAL = 1;
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_PLAIN_DICTIONARY = 2;
+    private static final int ENCODING_RLE = 3;
+    private static final int CODEC_UNCOMPRESSED = 0;
+    private static final int CODEC_GZIP = 2;
+    private static final int PAGE_DATA = 0;
+    private static final int PAGE_DICTIONARY = 2;
+
+    private final Path file;
+    private final OutputStream out;
+    private final Column[] columns;
+    private final int rowGroupRows;
+    private final boolean gzip;
+    private final List<RowGroup> rowGroups = new ArrayList<>();
+    private long position;
+    private int rowsInGroup;
+    private int rowCount;
+
+    public OmicParquetWriter(Path file, List<String> columnNames, List<ColumnType> columnTypes,
+                             int rowGroupRows, boolean gzip) throws IOException {
+        if (columnNames.size() != columnTypes.size()) {
+            throw new IllegalArgumentException("Expected a type for each of the columns " + columnNames);
+        }
+        this.file = file;
+        this.rowGroupRows = Math.max(1, rowGroupRows);
+        this.gzip = gzip;
+        this.columns = new Column[columnNames.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(columnNames.get(i), columnTypes.get(i), this.rowGroupRows);
+        }
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        write(MAGIC);
+    }
+
+    public void writeRows(List<List<String>> rows) throws IOException {
+        if (rows != null) {
+            for (List<String> row : rows) {
+                writeRow(row);
+            }
+        }
+    }
+
+    /**
+     * Adds a row, matched to the columns by position. Missing trailing values are nulls, extra values are ignored.
+     */
+    public void writeRow(List<String> row) throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].add(i < row.size() ? row.get(i) : null);
+        }
+        rowCount++;
+        if (++rowsInGroup == rowGroupRows) {
+            flushRowGroup();
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getRowGroupCount() {
+        return rowGroups.size();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rowsInGroup > 0) {
+                flushRowGroup();
+            }
+            byte[] footer = fileMetaData();
+            write(footer);
+            write(littleEndian(footer.length, 4));
+            write(MAGIC);
+        } finally {
+            out.close();
+        }
+        for (Column column : columns) {
+            if (column.notNumeric > 0) {
+                log.warn("{} values of column {} in {} were not numeric and were exported as nulls",
+                        column.notNumeric, column.name, file.getFileName());
+            }
+        }
+    }
+
+    private void flushRowGroup() throws IOException {
+        RowGroup rowGroup = new RowGroup(rowsInGroup);
+        for (Column column : columns) {
+            rowGroup.chunks.add(writeColumnChunk(column));
+            rowGroup.totalByteSize += rowGroup.chunks.get(rowGroup.chunks.size() - 1).uncompressedSize;
+            column.reset();
+        }
+        rowGroups.add(rowGroup);
+        rowsInGroup = 0;
+    }
+
+    private ColumnChunk writeColumnChunk(Column column) throws IOException {
+        ColumnChunk chunk = new ColumnChunk(column);
+        boolean dictionaryEncoded = column.type == ColumnType.STRING && !column.dictionary.isEmpty();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (dictionaryEncoded) {
+            for (byte[] value : column.dictionary) {
+                body.write(littleEndian(value.length, 4));
+                body.write(value);
+            }
+            chunk.dictionaryPageOffset = position;
+            writePage(chunk, PAGE_DICTIONARY, body.toByteArray(), column.dictionary.size(), ENCODING_PLAIN_DICTIONARY);
+            body.reset();
+        }
+
+        byte[] definitionLevels = hybridEncode(column.defined, rowsInGroup, 1);
+        body.write(littleEndian(definitionLevels.length, 4));
+        body.write(definitionLevels);
+        if (dictionaryEncoded) {
+            int bitWidth = bitWidth(column.dictionary.size() - 1);
+            body.write(bitWidth);
+            body.write(hybridEncode(column.indices, column.valueCount, bitWidth));
+        } else {
+            for (int i = 0; i < column.valueCount; i++) {
+                body.write(littleEndian(column.type == ColumnType.DOUBLE
+                        ? Double.doubleToLongBits(column.doubles[i]) : column.longs[i], 8));
+            }
+        }
+        chunk.dataPageOffset = position;
+        chunk.encodings = dictionaryEncoded
+                ? new int[]{ENCODING_PLAIN_DICTIONARY, ENCODING_RLE}
+                : new int[]{ENCODING_PLAIN, ENCODING_RLE};
+        writePage(chunk, PAGE_DATA, body.toByteArray(), rowsInGroup,
+                dictionaryEncoded ? ENCODING_PLAIN_DICTIONARY : ENCODING_PLAIN);
+        return chunk;
+    }
+
+    private void writePage(ColumnChunk chunk, int pageType, byte[] page, int valueCount, int encoding) throws IOException {
+        byte[] stored = gzip ? gzip(page) : page;
+        ThriftCompactWriter header = new ThriftCompactWriter().structBegin()
+                .i32Field(1, pageType)
+                .i32Field(2, page.length)
+                .i32Field(3, stored.length);
+        if (pageType == PAGE_DATA) {
+            header.structField(5)
+                    .i32Field(1, valueCount)
+                    .i32Field(2, encoding)
+                    .i32Field(3, ENCODING_RLE)
+                    .i32Field(4, ENCODING_RLE)
+                    .structEnd();
+        } else {
+            header.structField(7)
+                    .i32Field(1, valueCount)
+                    .i32Field(2, encoding)
+                    .structEnd();
+        }
+        byte[] headerBytes = header.structEnd().toByteArray();
+        write(headerBytes);
+        write(stored);
+        chunk.uncompressedSize += headerBytes.length + page.length;
+        chunk.compressedSize += headerBytes.length + stored.length;
+    }
+
+    private byte[] fileMetaData() {
+        ThriftCompactWriter meta = new ThriftCompactWriter().structBegin()
+                .i32Field(1, 1)
+                .listField(2, ThriftCompactWriter.TYPE_STRUCT, columns.length + 1);
+        meta.structBegin().stringField(4, "schema").i32Field(5, columns.length).structEnd();
+        for (Column column : columns) {
+            meta.structBegin()
+                    .i32Field(1, column.physicalType())
+                    .i32Field(3, REPETITION_OPTIONAL)
+                    .stringField(4, column.name);
+            if (column.type == ColumnType.STRING) {
+                meta.i32Field(6, CONVERTED_UTF8);
+            }
+            meta.structEnd();
+        }
+        meta.i64Field(3, rowCount)
+                .listField(4, ThriftCompactWriter.TYPE_STRUCT, rowGroups.size());
+        for (RowGroup rowGroup : rowGroups) {
+            meta.structBegin().listField(1, ThriftCompactWriter.TYPE_STRUCT, rowGroup.chunks.size());
+            for (ColumnChunk chunk : rowGroup.chunks) {
+                writeColumnChunkMetaData(meta, chunk);
+            }
+            meta.i64Field(2, rowGroup.totalByteSize)
+                    .i64Field(3, rowGroup.rowCount)
+                    .structEnd();
+        }
+        meta.stringField(6, CREATED_BY)
+                .listField(7, ThriftCompactWriter.TYPE_STRUCT, columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            // TypeDefinedOrder, so readers trust the min and max statistics
+            meta.structBegin().structField(1).structEnd().structEnd();
+        }
+        return meta.structEnd().toByteArray();
+    }
+
+    private void writeColumnChunkMetaData(ThriftCompactWriter meta, ColumnChunk chunk) {
+        long firstPageOffset = chunk.dictionaryPageOffset != null ? chunk.dictionaryPageOffset : chunk.dataPageOffset;
+        meta.structBegin()
+                .i64Field(2, firstPageOffset)
+                .structField(3)
+                .i32Field(1, chunk.physicalType)
+                .listField(2, ThriftCompactWriter.TYPE_I32, chunk.encodings.length);
+        for (int encoding : chunk.encodings) {
+            meta.i32(encoding);
+        }
+        meta.listField(3, ThriftCompactWriter.TYPE_BINARY, 1).string(chunk.columnName)
+                .i32Field(4, gzip ? CODEC_GZIP : CODEC_UNCOMPRESSED)
+                .i64Field(5, chunk.valueCount)
+                .i64Field(6, chunk.uncompressedSize)
+                .i64Field(7, chunk.compressedSize)
+                .i64Field(9, chunk.dataPageOffset);
+        if (chunk.dictionaryPageOffset != null) {
+            meta.i64Field(11, chunk.dictionaryPageOffset);
+        }
+        meta.structField(12).i64Field(3, chunk.nullCount);
+        if (chunk.min != null) {
+            meta.binaryField(5, chunk.max).binaryField(6, chunk.min);
+        }
+        meta.structEnd().structEnd().structEnd();
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        position += bytes.length;
+    }
+
+    /**
+     * Run length / bit-packing hybrid encoding of {@code count} values: one run when they are all equal,
+     * otherwise bit-packed runs of up to 504 values.
+     */
+    static byte[] hybridEncode(int[] values, int count, int bitWidth) {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        if (count == 0) {
+            return encoded.toByteArray();
+        }
+        boolean repeated = true;
+        for (int i = 1; i < count && repeated; i++) {
+            repeated = values[i] == values[0];
+        }
+        if (repeated) {
+            writeUnsignedVarint(encoded, count << 1);
+            for (int b = 0; b < (bitWidth + 7) / 8; b++) {
+                encoded.write(values[0] >>> (8 * b));
+            }
+            return encoded.toByteArray();
+        }
+        for (int start = 0; start < count; start += 504) {
+            int runLength = Math.min(504, count - start);
+            int groups = (runLength + 7) / 8;
+            writeUnsignedVarint(encoded, groups << 1 | 1);
+            long buffer = 0;
+            int bufferedBits = 0;
+            for (int i = 0; i < groups * 8; i++) {
+                long value = i < runLength ? values[start + i] & 0xFFFFFFFFL : 0;
+                buffer |= value << bufferedBits;
+                bufferedBits += bitWidth;
+                while (bufferedBits >= 8) {
+                    encoded.write((int) buffer);
+                    buffer >>>= 8;
+                    bufferedBits -= 8;
+                }
+            }
+        }
+        return encoded.toByteArray();
+    }
+
+    private static void writeUnsignedVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int bitWidth(int maxValue) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(maxValue));
+    }
+
+    private static byte[] littleEndian(long value, int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (value >>> (8 * i));
+        }
+        return bytes;
+    }
+
+    private static byte[] gzip(byte[] page) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(page.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(compressed)) {
+            gzipOut.write(page);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int cmp = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+
+    /**
+     * The values of one column in the current row group. Only non-null values are kept, in row order.
+     */
+    private static final class Column {
+
+        private final String name;
+        private final ColumnType type;
+        private final int[] defined;
+        private final Map<ByteKey, Integer> dictionaryIndex = new HashMap<>();
+        private final List<byte[]> dictionary = new ArrayList<>();
+        private int[] indices;
+        private long[] longs;
+        private double[] doubles;
+        private int valueCount;
+        private int rows;
+        private long notNumeric;
+
+        private Column(String name, ColumnType type, int rowGroupRows) {
+            this.name = name;
+            this.type = type;
+            this.defined = new int[rowGroupRows];
+            int initialCapacity = Math.min(rowGroupRows, 1024);
+            switch (type) {
+                case INT64: longs = new long[initialCapacity]; break;
+                case DOUBLE: doubles = new double[initialCapacity]; break;
+                default: indices = new int[initialCapacity];
+            }
+        }
+
+        private void add(String value) {
+            boolean isSet = value != null && !value.trim().isEmpty();
+            if (isSet) {
+                switch (type) {
+                    case INT64: isSet = addLong(value.trim()); break;
+                    case DOUBLE: isSet = addDouble(value.trim()); break;
+                    default: addString(value);
+                }
+            }
+            defined[rows++] = isSet ? 1 : 0;
+        }
+
+        private void addString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            Integer index = dictionaryIndex.putIfAbsent(new ByteKey(bytes), dictionary.size());
+            if (index == null) {
+                index = dictionary.size();
+                dictionary.add(bytes);
+            }
+            if (valueCount == indices.length) {
+                indices = Arrays.copyOf(indices, valueCount * 2);
+            }
+            indices[valueCount++] = index;
+        }
+
+        private boolean addLong(String value) {
+            long parsed;
+            try {
+                parsed = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                Double decimal = parseDouble(value);
+                if (decimal == null || decimal != Math.rint(decimal) || Math.abs(decimal) >= 0x1p63) {
+                    notNumeric++;
+                    return false;
+                }
+                parsed = decimal.longValue();
+            }
+            if (valueCount == longs.length) {
+                longs = Arrays.copyOf(longs, valueCount * 2);
+            }
+            longs[valueCount++] = parsed;
+            return true;
+        }
+
+        private boolean addDouble(String value) {
+            Double parsed = parseDouble(value);
+            if (parsed == null) {
+                notNumeric++;
+                return false;
+            }
+            if (valueCount == doubles.length) {
+                doubles = Arrays.copyOf(doubles, valueCount * 2);
+            }
+            doubles[valueCount++] = parsed;
+            return true;
+        }
+
+        private static Double parseDouble(String value) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private int physicalType() {
+            switch (type) {
+                case INT64: return PHYSICAL_INT64;
+                case DOUBLE: return PHYSICAL_DOUBLE;
+                default: return PHYSICAL_BYTE_ARRAY;
+            }
+        }
+
+        private void reset() {
+            dictionaryIndex.clear();
+            dictionary.clear();
+            valueCount = 0;
+            rows = 0;
+        }
+    }
+
+
+    private static final class ByteKey {
+
+        private final byte[] bytes;
+        private final int hash;
+
+        private ByteKey(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ByteKey && Arrays.equals(bytes, ((ByteKey) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+
+    /**
+     * Where one column chunk was written, and the statistics of its values.
+     */
+    private static final class ColumnChunk {
+
+        private final String columnName;
+        private final int physicalType;
+        private final long valueCount;
+        private final long nullCount;
+        private byte[] min;
+        private byte[] max;
+        private int[] encodings;
+        private Long dictionaryPageOffset;
+        private long dataPageOffset;
+        private long uncompressedSize;
+        private long compressedSize;
+
+        private ColumnChunk(Column column) {
+            this.columnName = column.name;
+            this.physicalType = column.physicalType();
+            this.valueCount = column.rows;
+            this.nullCount = column.rows - column.valueCount;
+            switch (column.type) {
+                case INT64: longStatistics(column); break;
+                case DOUBLE: doubleStatistics(column); break;
+                default: stringStatistics(column);
+            }
+        }
+
+        private void longStatistics(Column column) {
+            if (column.valueCount > 0) {
+                long lowest = Long.MAX_VALUE;
+                long highest = Long.MIN_VALUE;
+                for (int i = 0; i < column.valueCount; i++) {
+                    lowest = Math.min(lowest, column.longs[i]);
+                    highest = Math.max(highest, column.longs[i]);
+                }
+                min = littleEndian(lowest, 8);
+                max = littleEndian(highest, 8);
+            }
+        }
+
+        private void doubleStatistics(Column column) {
+            double lowest = Double.NaN;
+            double highest = Double.NaN;
+            for (int i = 0; i < column.valueCount; i++) {
+                double value = column.doubles[i];
+                if (!Double.isNaN(value)) {
+                    lowest = Double.isNaN(lowest) ? value : Math.min(lowest, value);
+                    highest = Double.isNaN(highest) ? value : Math.max(highest, value);
+                }
+            }
+            if (!Double.isNaN(lowest)) {
+                // the format asks for -0.0 as a zero min and +0.0 as a zero max
+                min = littleEndian(Double.doubleToLongBits(lowest == 0.0 ? -0.0 : lowest), 8);
+                max = littleEndian(Double.doubleToLongBits(highest == 0.0 ? 0.0 : highest), 8);
+            }
+        }
+
+        private void stringStatistics(Column column) {
+            for (byte[] value : column.dictionary) {
+                if (min == null || compareUnsigned(value, min) < 0) {
+                    min = value;
+                }
+                if (max == null || compareUnsigned(value, max) > 0) {
+                    max = value;
+                }
+            }
+        }
+    }
+
+
+    private static final class RowGroup {
+
+        private final int rowCount;
+        private final List<ColumnChunk> chunks = new ArrayList<>();
+        private long totalByteSize;
+
+        private RowGroup(int rowCount) {
+            this.rowCount = rowCount;
+        }
+    }
+}
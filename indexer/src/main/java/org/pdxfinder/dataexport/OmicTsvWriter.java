@@ -0,0 +1,88 @@
+package org.pdxfinder.dataexport;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes one omic TSV export file through a single buffered channel that stays open for the whole
+ * extraction, optionally gzip compressed. Rows use the layout of the template headers: every cell
+ * followed by a tab, every row by a newline.
+ */
+public class OmicTsvWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path file;
+    private final Writer writer;
+    private int rowCount;
+
+    public OmicTsvWriter(Path file, boolean gzip) throws IOException {
+        this.file = file;
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        OutputStream out = Channels.newOutputStream(channel);
+        if (gzip) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    public void writeHeaders(Sheet template) throws IOException {
+        Row headers = template.getRow(0);
+        if (headers != null) {
+            for (int j = 0; j < headers.getLastCellNum(); j++) {
+                Cell cell = headers.getCell(j);
+                if (cell != null) {
+                    writer.write(cell.toString());
+                    writer.write('\t');
+                }
+            }
+        }
+        writer.write('\n');
+    }
+
+    public void writeRows(List<List<String>> rows) throws IOException {
+        if (rows != null) {
+            for (List<String> row : rows) {
+                writeRow(row);
+            }
+        }
+    }
+
+    public void writeRow(List<String> row) throws IOException {
+        for (String value : row) {
+            writer.write(value == null ? "null" : value);
+            writer.write('\t');
+        }
+        writer.write('\n');
+        rowCount++;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,111 @@
+package org.pdxfinder.dataexport;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The subset of the Thrift compact protocol needed to write Parquet page headers and file metadata.
+ * Fields of a struct must be written in increasing field id order.
+ */
+final class ThriftCompactWriter {
+
+    static final int TYPE_I32 = 5;
+    static final int TYPE_I64 = 6;
+    static final int TYPE_BINARY = 8;
+    static final int TYPE_LIST = 9;
+    static final int TYPE_STRUCT = 12;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final Deque<Integer> enclosingFieldIds = new ArrayDeque<>();
+    private int lastFieldId;
+
+    ThriftCompactWriter structBegin() {
+        enclosingFieldIds.push(lastFieldId);
+        lastFieldId = 0;
+        return this;
+    }
+
+    ThriftCompactWriter structEnd() {
+        out.write(0);
+        lastFieldId = enclosingFieldIds.pop();
+        return this;
+    }
+
+    ThriftCompactWriter i32Field(int id, int value) {
+        fieldHeader(id, TYPE_I32);
+        return i32(value);
+    }
+
+    ThriftCompactWriter i64Field(int id, long value) {
+        fieldHeader(id, TYPE_I64);
+        varint((value << 1) ^ (value >> 63));
+        return this;
+    }
+
+    ThriftCompactWriter binaryField(int id, byte[] value) {
+        fieldHeader(id, TYPE_BINARY);
+        return binary(value);
+    }
+
+    ThriftCompactWriter stringField(int id, String value) {
+        return binaryField(id, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    ThriftCompactWriter structField(int id) {
+        fieldHeader(id, TYPE_STRUCT);
+        return structBegin();
+    }
+
+    ThriftCompactWriter listField(int id, int elementType, int size) {
+        fieldHeader(id, TYPE_LIST);
+        if (size < 15) {
+            out.write(size << 4 | elementType);
+        } else {
+            out.write(0xF0 | elementType);
+            varint(size);
+        }
+        return this;
+    }
+
+    /** A list element or field value of type i32. */
+    ThriftCompactWriter i32(int value) {
+        varint(Integer.toUnsignedLong((value << 1) ^ (value >> 31)));
+        return this;
+    }
+
+    /** A list element or field value of type binary or string. */
+    ThriftCompactWriter binary(byte[] value) {
+        varint(value.length);
+        out.write(value, 0, value.length);
+        return this;
+    }
+
+    ThriftCompactWriter string(String value) {
+        return binary(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private void fieldHeader(int id, int type) {
+        int delta = id - lastFieldId;
+        if (delta > 0 && delta <= 15) {
+            out.write(delta << 4 | type);
+        } else {
+            out.write(type);
+            i32(id);
+        }
+        lastFieldId = id;
+    }
+
+    private void varint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
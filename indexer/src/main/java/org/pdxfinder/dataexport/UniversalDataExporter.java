@@ -9,13 +9,16 @@ import org.pdxfinder.services.DataImportService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class UniversalDataExporter {
@@ -25,6 +28,9 @@ public class UniversalDataExporter {
     private UniversalDataExtractionServices extractionServices;
     private DataImportService dataImportService;
 
+    @Value("${export.threads:4}")
+    private int exportThreads;
+
     @Autowired
     UniversalDataExporter(UniversalDataWriterServices writerUtilities, UniversalDataExtractionServices extractionUtilities, DataImportService dataImportService){
         this.writerUtilities = writerUtilities;
@@ -32,27 +38,58 @@ public class UniversalDataExporter {
         this.dataImportService = dataImportService;
     }
 
-    public void exportAllFromGroup(String exportDir, Group dataSource, boolean isHarmonized, String templateDir) throws IOException {
+    public int exportAllFromGroup(String exportDir, Group dataSource, boolean isHarmonized, String templateDir) {
+        return exportAllFromGroups(exportDir, Collections.singletonList(dataSource), isHarmonized, templateDir);
+    }
+
+    /**
+     * Exports every provider, fanning the metadata, sample platform and each omic and treatment file of every
+     * provider out to {@code export.threads} workers. A provider that cannot be set up for export is logged and
+     * skipped, and the other providers' exports carry on.
+     *
+     * @return the number of providers and export jobs that failed
+     */
+    public int exportAllFromGroups(String exportDir, List<Group> dataSources, boolean isHarmonized, String templateDir) {
+        int failures = 0;
+        try (ExportScheduler scheduler = new ExportScheduler(exportThreads)) {
+            for (Group dataSource : dataSources) {
+                try {
+                    scheduleGroupExport(scheduler, exportDir, dataSource, isHarmonized, templateDir);
+                } catch (IOException | RuntimeException e) {
+                    log.error("Cannot export {}", dataSource.getAbbreviation(), e);
+                    failures++;
+                }
+            }
+            failures += scheduler.awaitCompletion();
+        }
+        if (failures > 0) {
+            log.error("{} provider export(s) or export job(s) failed", failures);
+        }
+        return failures;
+    }
+
+    private void scheduleGroupExport(ExportScheduler scheduler, String exportDir, Group dataSource, boolean isHarmonized, String templateDir) throws IOException {
         String exportProviderDir = Paths.get(String.format("%s/%s/",exportDir ,dataSource.getAbbreviation())).toString();
+        // each job gets its own template workbook, templates are not shared between threads
         ExporterTemplates templates = new ExporterTemplates(templateDir, isHarmonized);
-        MetadataSheets providerSheets = new MetadataSheets();
         writerUtilities.createExportDirectories(exportProviderDir);
-
-        try {
-            exportMetadata(providerSheets,templates, dataSource, isHarmonized, exportProviderDir);
-            exportSamplePlatform(templates, dataSource, exportProviderDir);
-            exportAllOmicSheets(templates, dataSource, exportProviderDir);
-
-        } catch(IOException e) {
-            log.error("IO error while exporting data for {} \n {}",dataSource.getAbbreviation(), e.toString());
-        }
+        String provider = dataSource.getAbbreviation();
+
+        scheduler.submit(provider, "metadata", () -> {
+            MetadataSheets providerSheets = new MetadataSheets();
+            exportMetadata(providerSheets, templates, dataSource, isHarmonized, exportProviderDir);
+            return countRows(providerSheets);
+        });
+        scheduler.submit(provider, "sampleplatform", () -> exportSamplePlatform(templates, dataSource, exportProviderDir));
+        scheduleAllOmicSheets(scheduler, templates, dataSource, exportProviderDir);
     }
 
-    public void exportSamplePlatform(ExporterTemplates templates, Group group, String exportProviderDir) throws IOException {
+    public int exportSamplePlatform(ExporterTemplates templates, Group group, String exportProviderDir) throws IOException {
         List<List<String>> samplePlatform = extractionServices.extractSamplePlatform(group);
         XSSFWorkbook samplePlatformTemplate = templates.getTemplate(TSV.templateNames.sampleplatform_template.name());
         String samplePlatformURI = String.format("%s/%s_sampleplatform.xlsx", exportProviderDir, group.getAbbreviation());
         saveSamplePlatformToXlsx(samplePlatformTemplate, samplePlatform, samplePlatformURI);
+        return samplePlatform.size();
     }
 
     public void exportMetadata(MetadataSheets providerSheets, ExporterTemplates templates, Group dataSource, boolean isHarmonized, String exportProviderDir) throws IOException {
@@ -62,27 +99,26 @@ public class UniversalDataExporter {
 
     private void saveMetadataToXlsx(MetadataSheets providerData, ExporterTemplates templates, String exportProviderDir, Group dataSource) throws IOException {
         XSSFWorkbook metadataTemplate = templates.getTemplate(TSV.templateNames.metadata_template.name());
-        int sheetNumber = 0;
-        for(TSV.metadataSheetNames sheetName: TSV.metadataSheetNames.values()){
-            writerUtilities.updateXlsxSheetWithData(metadataTemplate.getSheetAt(sheetNumber),
-                    providerData.get(sheetName.name()),  6, 2);
-            sheetNumber++;
-        }
         if(allMetadataSheetsHaveData(providerData)) {
+            Map<Integer, List<List<String>>> dataBySheet = new LinkedHashMap<>();
+            int sheetNumber = 0;
+            for(TSV.metadataSheetNames sheetName: TSV.metadataSheetNames.values()){
+                dataBySheet.put(sheetNumber, providerData.get(sheetName.name()));
+                sheetNumber++;
+            }
             String metadataFileURI = String.format("%s/%s_metadata.xlsx", exportProviderDir, dataSource.getAbbreviation());
-            writerUtilities.writXlsxFromWorkbook(metadataTemplate, metadataFileURI);
+            writerUtilities.writeXlsxFromTemplate(metadataTemplate, dataBySheet, 6, 2, metadataFileURI);
         } else { log.error("Empty or Null metadata sheet. Skipping export of Metadata."); }
     }
 
     private void saveSamplePlatformToXlsx(XSSFWorkbook samplePlatformTemplate, List<List<String>> samplePlatform, String samplePlatformURI) throws IOException {
-        writerUtilities.updateXlsxSheetWithData(samplePlatformTemplate.getSheetAt(0),
-                samplePlatform, 6, 1);
         if(!samplePlatform.isEmpty()){
-            writerUtilities.writXlsxFromWorkbook(samplePlatformTemplate, samplePlatformURI);
+            writerUtilities.writeXlsxFromTemplate(samplePlatformTemplate, Collections.singletonMap(0, samplePlatform),
+                    6, 1, samplePlatformURI);
         }
     }
 
-    private void exportAllOmicSheets(ExporterTemplates templates, Group dataSource, String exportProviderDir) throws IOException {
+    private void scheduleAllOmicSheets(ExportScheduler scheduler, ExporterTemplates templates, Group dataSource, String exportProviderDir) {
         XSSFWorkbook mutationTemplate = templates.getTemplate(TSV.templateNames.mutation_template.name());
         XSSFWorkbook cnaTemplate = templates.getTemplate(TSV.templateNames.cna_template.name());
         XSSFWorkbook cytoTemplate = templates.getTemplate(TSV.templateNames.cytogenetics_template.name());
@@ -101,38 +137,61 @@ public class UniversalDataExporter {
         Path cytoExportURI = Paths.get(String.format("%s/%s/%s_%s.tsv",exportProviderDir,cyto, dataSource.getAbbreviation() , cyto));
         Path dosingExportURI = Paths.get(String.format("%s/%s/%s_%s.tsv", exportProviderDir, dosing, dataSource.getAbbreviation(), dosing));
         Path treatmentExportURI = Paths.get(String.format("%s/%s/%s_%s.tsv", exportProviderDir, treatment, dataSource.getAbbreviation(), treatment));
-        extractAndSaveOmicByBatch(TSV.molecular_characterisation_type.mut.mcType ,mutationTemplate, mutExportURI,dataSource);
-        extractAndSaveOmicByBatch(TSV.molecular_characterisation_type.cna.mcType ,cnaTemplate, cnaExportURI, dataSource);
-        extractAndSaveOmicByBatch(TSV.molecular_characterisation_type.cyto.mcType ,cytoTemplate, cytoExportURI, dataSource);
-        extractAndSaveOmicByBatch(TSV.molecular_characterisation_type.expression.mcType ,exprTemplate, expressionExportURI,dataSource);
-        extractAndSaveOmicByBatch(dosing, dosingTemplate, dosingExportURI, dataSource);
-        extractAndSaveOmicByBatch(treatment, treatmentTemplate, treatmentExportURI, dataSource);
+        String provider = dataSource.getAbbreviation();
+        scheduler.submit(provider, mut, () -> extractAndSaveOmicInBulk(TSV.molecular_characterisation_type.mut.mcType ,mutationTemplate, mutExportURI,dataSource));
+        scheduler.submit(provider, cna, () -> extractAndSaveOmicInBulk(TSV.molecular_characterisation_type.cna.mcType ,cnaTemplate, cnaExportURI, dataSource));
+        scheduler.submit(provider, cyto, () -> extractAndSaveOmicInBulk(TSV.molecular_characterisation_type.cyto.mcType ,cytoTemplate, cytoExportURI, dataSource));
+        scheduler.submit(provider, expression, () -> extractAndSaveOmicInBulk(TSV.molecular_characterisation_type.expression.mcType ,exprTemplate, expressionExportURI,dataSource));
+        scheduler.submit(provider, dosing, () -> extractAndSaveOmicByBatch(dosing, dosingTemplate, dosingExportURI, dataSource));
+        scheduler.submit(provider, treatment, () -> extractAndSaveOmicByBatch(treatment, treatmentTemplate, treatmentExportURI, dataSource));
     }
 
-    public void extractAndSaveOmicByBatch(String molecularType, XSSFWorkbook template, Path exportURI, Group dataSource) throws IOException {
-        String parentDirectory = exportURI.getParent().toString();
-        String fileURI = exportURI.toString();
+    public int extractAndSaveOmicByBatch(String molecularType, XSSFWorkbook template, Path exportURI, Group dataSource) throws IOException {
         Sheet templateSheet = template.getSheetAt(0);
-        List<ModelCreation> models;
-        models = getModelsByMolecularTypeAndDataSource(molecularType, dataSource);
-        if(!models.isEmpty()) {
-            writerUtilities.createExportDirectories(parentDirectory);
-            writerUtilities.saveHeadersToTsv(templateSheet, exportURI.toString());
-            List<List<String>> modelsOmicData = new ArrayList<>();
-            int counter = 0;
+        List<ModelCreation> models = getModelsByMolecularTypeAndDataSource(molecularType, dataSource);
+        if (models.isEmpty()) {
+            return 0;
+        }
+        try (OmicTsvWriter writer = writerUtilities.openOmicTsvWriter(exportURI.toString(), templateSheet)) {
             for (ModelCreation model : models) {
-                modelsOmicData.addAll(extractionServices.extractModelsOmicData(model, molecularType));
-                if (counter % 10 == 0) {
-                    writerUtilities.appendDataToOmicTsvFile(modelsOmicData, fileURI);
-                    modelsOmicData.clear();
-                }
-                counter++;
+                writer.writeRows(extractionServices.extractModelsOmicData(model, molecularType));
             }
-            if (!modelsOmicData.isEmpty()) {
-                writerUtilities.appendDataToOmicTsvFile(modelsOmicData, fileURI);
-                modelsOmicData.clear();
+            return writer.getRowCount();
+        }
+    }
+
+    /**
+     * Like {@link #extractAndSaveOmicByBatch} for molecular characterization types, but reads the provider's data in
+     * bulk rather than as model entity graphs. The file, and its Parquet copy when enabled, is only created when there
+     * is data to export.
+     */
+    public int extractAndSaveOmicInBulk(String molecularType, XSSFWorkbook template, Path exportURI, Group dataSource) throws IOException {
+        Sheet templateSheet = template.getSheetAt(0);
+        OmicTsvWriter[] writer = new OmicTsvWriter[1];
+        OmicParquetWriter[] parquetWriter = new OmicParquetWriter[1];
+        try {
+            extractionServices.extractOmicDataByModel(dataSource, molecularType, (modelId, rows) -> {
+                if (writer[0] == null) {
+                    writer[0] = writerUtilities.openOmicTsvWriter(exportURI.toString(), templateSheet);
+                    parquetWriter[0] = writerUtilities.openOmicParquetWriter(exportURI.toString(), templateSheet);
+                }
+                writer[0].writeRows(rows);
+                if (parquetWriter[0] != null) {
+                    parquetWriter[0].writeRows(rows);
+                }
+            });
+        } finally {
+            try {
+                if (writer[0] != null) {
+                    writer[0].close();
+                }
+            } finally {
+                if (parquetWriter[0] != null) {
+                    parquetWriter[0].close();
+                }
             }
         }
+        return writer[0] == null ? 0 : writer[0].getRowCount();
     }
 
     List<ModelCreation> getModelsByMolecularTypeAndDataSource(String molecularType, Group dataSource) {
@@ -149,6 +208,15 @@ public class UniversalDataExporter {
     }
 
 
+    private int countRows(MetadataSheets providerData) {
+        int rows = 0;
+        for(TSV.metadataSheetNames sheetName: TSV.metadataSheetNames.values()){
+            List<List<String>> sheet = providerData.get(sheetName.name());
+            if (sheet != null) rows += sheet.size();
+        }
+        return rows;
+    }
+
     private boolean allMetadataSheetsHaveData(MetadataSheets providerData){
         for(TSV.metadataSheetNames sheetName: TSV.metadataSheetNames.values()){
             if (providerData.get(sheetName.name()) == null || providerData.get(sheetName.name()).isEmpty() ) {
@@ -6,8 +6,10 @@ import org.pdxfinder.services.DataImportService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -20,6 +22,10 @@ public class UniversalDataExtractionServices {
     private static final Logger log = LoggerFactory.getLogger(UniversalDataExtractionServices.class);
 
     private DataImportService dataImportService;
+    private ExportGraphReader exportGraphReader;
+
+    @Value("${export.omic-model-batch-size:100}")
+    private int omicModelBatchSize = 100;
 
     public static final String MODEL_ID = "modelId";
     public static final String PROVIDER_TYPE = "providerType";
@@ -38,9 +44,18 @@ public class UniversalDataExtractionServices {
 
     static final String EMPTY = "";
     
+    /**
+     * Receives the export rows of one model at a time.
+     */
+    @FunctionalInterface
+    public interface ModelRowsConsumer {
+        void accept(String modelId, List<List<String>> rows) throws IOException;
+    }
+
     @Autowired
-    public UniversalDataExtractionServices(DataImportService dataImportService) {
+    public UniversalDataExtractionServices(DataImportService dataImportService, ExportGraphReader exportGraphReader) {
         this.dataImportService = dataImportService;
+        this.exportGraphReader = exportGraphReader;
     }
 
     public MetadataSheets extractMetadata(Group group, MetadataSheets sheets, boolean isHarmonized){
@@ -92,6 +107,7 @@ public class UniversalDataExtractionServices {
 
     public List<List<String>> extractSampleSheet(Group group, boolean isHarmonized){
         List<Patient> patients = dataImportService.findPatientTumorAtCollectionDataByDS(group);
+        Map<String, String> modelIdsBySample = exportGraphReader.findModelIdsBySampleId(group.getAbbreviation());
         List<List<String>> sampleSheetDataExport = new ArrayList<>();
         for(Patient patient : patients){
             String patientId = patient.getExternalId();
@@ -117,7 +133,7 @@ public class UniversalDataExtractionServices {
                     String treatmentNaive = patientSnapshot.getTreatmentNaive();
                     String isPatientTreated = EMPTY;
                     String wasPatientTreated = EMPTY;
-                    String modelId = getModelIdBySample(sample);
+                    String modelId = getModelIdBySample(sample, modelIdsBySample);
 
                     dataRow.add(patientId);
                     dataRow.add(sampleId);
@@ -168,13 +184,11 @@ public class UniversalDataExtractionServices {
         return sample.getDiagnosis();
     }
 
-    private String getModelIdBySample(Sample sample){
-        String modelId = EMPTY;
-        try {
-            modelId = dataImportService.findModelBySample(sample).getSourcePdxId();
-        }
-        catch (Exception e){
+    private String getModelIdBySample(Sample sample, Map<String, String> modelIdsBySample){
+        String modelId = modelIdsBySample.get(sample.getSourceSampleId());
+        if (modelId == null) {
             log.error("Could not find Model associated with Sample: {} ", sample.getSourceSampleId());
+            modelId = EMPTY;
         }
         return modelId;
     }
@@ -358,6 +372,48 @@ public class UniversalDataExtractionServices {
         return modelsOmicExportSheet;
     }
 
+    /**
+     * Extracts the {@code molcharType} rows of every model of {@code group}, reading the encoded data of
+     * {@code export.omic-model-batch-size} models at a time and handing the rows to {@code consumer} model by
+     * model, so one batch of encoded data and one model's rows are held at a time.
+     *
+     * @return the number of models with data
+     */
+    public int extractOmicDataByModel(Group group, String molcharType, ModelRowsConsumer consumer) throws IOException {
+        int modelsWithData = 0;
+        List<String> modelIds = exportGraphReader.findModelIds(group.getAbbreviation(), EMPTY, omicModelBatchSize);
+        while (!modelIds.isEmpty()) {
+            Map<String, List<ExportGraphReader.OmicSource>> sourcesByModel =
+                exportGraphReader.findOmicSourcesByModel(group.getAbbreviation(), modelIds, molcharType);
+            for (Map.Entry<String, List<ExportGraphReader.OmicSource>> model : sourcesByModel.entrySet()) {
+                List<List<String>> rows = new ArrayList<>();
+                for (ExportGraphReader.OmicSource source : model.getValue()) {
+                    for (MolecularData md : decodeMolecularData(source)) {
+                        rows.add(omicRow(model.getKey(), source.getSampleId(), source.getOrigin(), source.getHostStrainSymbol(),
+                            PATIENT_ORIGIN.equals(source.getOrigin()) ? EMPTY : source.getPassage(), source.getPlatform(), molcharType, md));
+                    }
+                }
+                consumer.accept(model.getKey(), rows);
+            }
+            modelsWithData += sourcesByModel.size();
+            if (modelIds.size() < omicModelBatchSize) break;
+            modelIds = exportGraphReader.findModelIds(group.getAbbreviation(), modelIds.get(modelIds.size() - 1), omicModelBatchSize);
+        }
+        return modelsWithData;
+    }
+
+    private List<MolecularData> decodeMolecularData(ExportGraphReader.OmicSource source) {
+        MarkerAssociation ma = new MarkerAssociation();
+        ma.setMolecularDataString(source.getMolecularData());
+        try {
+            return ma.decodeMolecularData();
+        } catch (Exception e) {
+            log.error("Error decoding molecular Data on sample Id {} " +
+                    "for model {}", source.getSampleId(), source.getModelId());
+            return new ArrayList<>();
+        }
+    }
+
     private List<List<String>> extractDrugDosing(ModelCreation model){
        List<List<String>> drugDosingTable  =new ArrayList<>();
         if(model.getTreatmentSummary() != null && model.getTreatmentSummary().getTreatmentProtocols() != null) {
@@ -449,93 +505,99 @@ public class UniversalDataExtractionServices {
                 molecularData = new ArrayList<>();
             }
             for (MolecularData md : molecularData) {
-                List<String> rowData = new ArrayList<>();
-                rowData.add(model.getSourcePdxId());
-                rowData.add(sampleId);
-                rowData.add(sampleOrigin);
-                rowData.add(getHostStrainNameSymbol(specimen));
-                rowData.add(getPassage(sampleOrigin, specimen));
-                switch (molcharType) {
-                    case "mutation":
-                        rowData.add(md.getMarker());
-                        rowData.add(md.getBiotype());
-                        rowData.add(md.getCodingSequenceChange());
-                        rowData.add(md.getVariantClass());
-                        rowData.add(md.getCodonChange());
-                        rowData.add(md.getAminoAcidChange());
-                        rowData.add(md.getConsequence());
-                        rowData.add(md.getFunctionalPrediction());
-                        rowData.add(md.getReadDepth());
-                        rowData.add(md.getAlleleFrequency());
-                        rowData.add(md.getChromosome());
-                        rowData.add(md.getSeqStartPosition());
-                        rowData.add(md.getRefAllele());
-                        rowData.add(md.getAltAllele());
-                        rowData.add(md.getUcscGeneId());
-                        rowData.add(md.getNcbiGeneId());
-                        rowData.add(md.getNcbiTranscriptId());
-                        rowData.add(md.getEnsemblGeneId());
-                        rowData.add(md.getEnsemblTranscriptId());
-                        rowData.add(md.getExistingVariations());
-                        rowData.add(md.getGenomeAssembly());
-                        rowData.add(mc.getPlatform().getName());
-                        break;
-                    case "copy number alteration":
-                        rowData.add(md.getChromosome());
-                        rowData.add(md.getSeqStartPosition());
-                        rowData.add(md.getSeqEndPosition());
-                        rowData.add(md.getMarker());
-                        rowData.add(md.getUcscGeneId());
-                        rowData.add(md.getNcbiGeneId());
-                        rowData.add(md.getEnsemblGeneId());
-                        rowData.add(md.getCnaLog10RCNA());
-                        rowData.add(md.getCnaLog2RCNA());
-                        rowData.add(md.getFold_change());
-                        rowData.add(md.getCnaCopyNumberStatus());
-                        rowData.add(md.getCnaGisticValue());
-                        rowData.add(md.getCnaPicnicValue());
-                        rowData.add(md.getGenomeAssembly());
-                        rowData.add(mc.getPlatform().getName());
-                        break;
-                    case "cytogenetics":
-                        rowData.add(EMPTY);
-                        rowData.add(md.getMarker());
-                        rowData.add(md.getCytogeneticsResult());
-                        rowData.add(md.getMarkerStatusComment());
-                        rowData.add(mc.getPlatform().getName());
-                        rowData.add(EMPTY);
-                        rowData.add(EMPTY);
-                        break;
-                    case "expression":
-                        rowData.add(md.getChromosome());
-                        rowData.add(EMPTY);
-                        rowData.add(md.getSeqStartPosition());
-                        rowData.add(md.getSeqEndPosition());
-                        rowData.add(md.getMarker());
-                        rowData.add(EMPTY);
-                        rowData.add(EMPTY);
-                        rowData.add(EMPTY);
-                        rowData.add(md.getRnaSeqCoverage());
-                        rowData.add(md.getRnaSeqFPKM());
-                        rowData.add(md.getRnaSeqTPM());
-                        rowData.add(md.getRnaSeqCount());
-                        rowData.add(md.getAffyHGEAProbeId());
-                        rowData.add(md.getAffyHGEAExpressionValue());
-                        rowData.add(md.getIlluminaHGEAProbeId());
-                        rowData.add(md.getIlluminaHGEAExpressionValue());
-                        rowData.add(md.getZscore());
-                        rowData.add(md.getGenomeAssembly());
-                        rowData.add(mc.getPlatform().getName());
-                        break;
-                    default:
-                        throw new IllegalArgumentException("Inappropriate molecular data type passed");
-                }
-                sheetData.add(rowData);
+                sheetData.add(omicRow(model.getSourcePdxId(), sampleId, sampleOrigin, getHostStrainNameSymbol(specimen),
+                        getPassage(sampleOrigin, specimen), mc.getPlatform().getName(), molcharType, md));
             }
         }
         return sheetData;
     }
 
+    private List<String> omicRow(String modelId, String sampleId, String sampleOrigin, String hostStrainSymbol,
+                                 String passage, String platform, String molcharType, MolecularData md) {
+        List<String> rowData = new ArrayList<>();
+        rowData.add(modelId);
+        rowData.add(sampleId);
+        rowData.add(sampleOrigin);
+        rowData.add(hostStrainSymbol);
+        rowData.add(passage);
+        switch (molcharType) {
+            case "mutation":
+                rowData.add(md.getMarker());
+                rowData.add(md.getBiotype());
+                rowData.add(md.getCodingSequenceChange());
+                rowData.add(md.getVariantClass());
+                rowData.add(md.getCodonChange());
+                rowData.add(md.getAminoAcidChange());
+                rowData.add(md.getConsequence());
+                rowData.add(md.getFunctionalPrediction());
+                rowData.add(md.getReadDepth());
+                rowData.add(md.getAlleleFrequency());
+                rowData.add(md.getChromosome());
+                rowData.add(md.getSeqStartPosition());
+                rowData.add(md.getRefAllele());
+                rowData.add(md.getAltAllele());
+                rowData.add(md.getUcscGeneId());
+                rowData.add(md.getNcbiGeneId());
+                rowData.add(md.getNcbiTranscriptId());
+                rowData.add(md.getEnsemblGeneId());
+                rowData.add(md.getEnsemblTranscriptId());
+                rowData.add(md.getExistingVariations());
+                rowData.add(md.getGenomeAssembly());
+                rowData.add(platform);
+                break;
+            case "copy number alteration":
+                rowData.add(md.getChromosome());
+                rowData.add(md.getSeqStartPosition());
+                rowData.add(md.getSeqEndPosition());
+                rowData.add(md.getMarker());
+                rowData.add(md.getUcscGeneId());
+                rowData.add(md.getNcbiGeneId());
+                rowData.add(md.getEnsemblGeneId());
+                rowData.add(md.getCnaLog10RCNA());
+                rowData.add(md.getCnaLog2RCNA());
+                rowData.add(md.getFold_change());
+                rowData.add(md.getCnaCopyNumberStatus());
+                rowData.add(md.getCnaGisticValue());
+                rowData.add(md.getCnaPicnicValue());
+                rowData.add(md.getGenomeAssembly());
+                rowData.add(platform);
+                break;
+            case "cytogenetics":
+                rowData.add(EMPTY);
+                rowData.add(md.getMarker());
+                rowData.add(md.getCytogeneticsResult());
+                rowData.add(md.getMarkerStatusComment());
+                rowData.add(platform);
+                rowData.add(EMPTY);
+                rowData.add(EMPTY);
+                break;
+            case "expression":
+                rowData.add(md.getChromosome());
+                rowData.add(EMPTY);
+                rowData.add(md.getSeqStartPosition());
+                rowData.add(md.getSeqEndPosition());
+                rowData.add(md.getMarker());
+                rowData.add(EMPTY);
+                rowData.add(EMPTY);
+                rowData.add(EMPTY);
+                rowData.add(md.getRnaSeqCoverage());
+                rowData.add(md.getRnaSeqFPKM());
+                rowData.add(md.getRnaSeqTPM());
+                rowData.add(md.getRnaSeqCount());
+                rowData.add(md.getAffyHGEAProbeId());
+                rowData.add(md.getAffyHGEAExpressionValue());
+                rowData.add(md.getIlluminaHGEAProbeId());
+                rowData.add(md.getIlluminaHGEAExpressionValue());
+                rowData.add(md.getZscore());
+                rowData.add(md.getGenomeAssembly());
+                rowData.add(platform);
+                break;
+            default:
+                throw new IllegalArgumentException("Inappropriate molecular data type passed");
+        }
+        return rowData;
+    }
+
     private String getHostStrainNameSymbol(Specimen specimen) {
         String hostStrainSymbol = EMPTY;
         if (specimen != null && specimen.getHostStrain() != null && specimen.getHostStrain().getSymbol() != null) {
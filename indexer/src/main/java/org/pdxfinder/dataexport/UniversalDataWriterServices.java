@@ -1,19 +1,31 @@
 package org.pdxfinder.dataexport;
 
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.pdxfinder.TSV;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedWriter;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static java.util.Objects.nonNull;
 
@@ -22,12 +34,83 @@ public class UniversalDataWriterServices {
 
     private static final Logger log = LoggerFactory.getLogger(UniversalDataWriterServices.class);
 
+    @Value("${export.gzip-tsv:false}")
+    private boolean gzipTsv;
+
+    @Value("${export.xlsx-row-window:100}")
+    private int xlsxRowWindow;
+
+    @Value("${export.parquet:false}")
+    private boolean parquet;
+
+    @Value("${export.parquet-row-group-rows:50000}")
+    private int parquetRowGroupRows;
+
+    @Value("${export.parquet-compression:gzip}")
+    private String parquetCompression;
+
+    private static final Set<String> PARQUET_INT64_COLUMNS = new HashSet<>(Arrays.asList(
+            TSV.Mutation.read_depth.name(),
+            TSV.Mutation.seq_start_position.name(),
+            TSV.CopyNumberAlteration.seq_end_position.name()));
+
+    private static final Set<String> PARQUET_DOUBLE_COLUMNS = new HashSet<>(Arrays.asList(
+            TSV.Mutation.allele_frequency.name(),
+            TSV.CopyNumberAlteration.log10r_cna.name(),
+            TSV.CopyNumberAlteration.log2r_cna.name(),
+            TSV.CopyNumberAlteration.fold_change.name(),
+            TSV.CopyNumberAlteration.gistic_value.name(),
+            TSV.CopyNumberAlteration.picnic_value.name(),
+            TSV.Expression.rnaseq_coverage.name(),
+            TSV.Expression.rnaseq_fpkm.name(),
+            TSV.Expression.rnaseq_tpm.name(),
+            TSV.Expression.rnaseq_count.name(),
+            TSV.Expression.affy_hgea_expression_value.name(),
+            TSV.Expression.illumina_hgea_expression_value.name(),
+            TSV.Expression.z_score.name()));
+
     public void writXlsxFromWorkbook(XSSFWorkbook dataWorkbook, String fileLocation) throws IOException {
         FileOutputStream fileOut = new FileOutputStream(fileLocation);
         dataWorkbook.write(fileOut);
         fileOut.close();
     }
 
+    /**
+     * Writes {@code data} into the sheets of {@code template} and saves the result to {@code fileLocation},
+     * streaming the data rows through a window of {@code export.xlsx-row-window} rows so only the template
+     * stays in memory. Template rows above {@code startRow} (headers and their styles) are kept as they are.
+     *
+     * @param dataBySheet rows to write, keyed by sheet index
+     */
+    public void writeXlsxFromTemplate(XSSFWorkbook template, Map<Integer, List<List<String>>> dataBySheet,
+                                      int startRow, int startColumn, String fileLocation) throws IOException {
+        for (Integer sheetIndex : dataBySheet.keySet()) {
+            removeRowsFrom(template.getSheetAt(sheetIndex), startRow - 1);
+        }
+        SXSSFWorkbook workbook = new SXSSFWorkbook(template, xlsxRowWindow > 0 ? xlsxRowWindow : 100);
+        try {
+            for (Map.Entry<Integer, List<List<String>>> sheetData : dataBySheet.entrySet()) {
+                updateXlsxSheetWithData(workbook.getSheetAt(sheetData.getKey()), sheetData.getValue(), startRow, startColumn);
+            }
+            try (FileOutputStream fileOut = new FileOutputStream(fileLocation)) {
+                workbook.write(fileOut);
+            }
+        } finally {
+            workbook.dispose();
+        }
+    }
+
+    private void removeRowsFrom(XSSFSheet sheet, int firstRowIndex) {
+        // streamed rows can only be appended after the rows the template already holds
+        List<Row> dataRows = new ArrayList<>();
+        for (Row row : sheet) {
+            if (row.getRowNum() >= firstRowIndex) {
+                dataRows.add(row);
+            }
+        }
+        dataRows.forEach(sheet::removeRow);
+    }
+
     public void updateXlsxSheetWithData(Sheet sheet, List<List<String>> data, int startRow, int startColumn) {
         if (nonNull(data)) {
             for (int i = 0; i < data.size(); i++) {
@@ -64,6 +147,57 @@ public class UniversalDataWriterServices {
         }
         }
 
+    /**
+     * Opens {@code exportFileLocation} for streaming rows, with the template headers already written.
+     * With {@code export.gzip-tsv} the file is gzip compressed and gets a .gz suffix.
+     */
+    public OmicTsvWriter openOmicTsvWriter(String exportFileLocation, Sheet template) throws IOException {
+        Path file = Paths.get(gzipTsv ? exportFileLocation + ".gz" : exportFileLocation);
+        createExportDirectories(file.toAbsolutePath().getParent().toString());
+        OmicTsvWriter writer = new OmicTsvWriter(file, gzipTsv);
+        try {
+            writer.writeHeaders(template);
+        } catch (IOException e) {
+            writer.close();
+            throw e;
+        }
+        return writer;
+    }
+
+    /**
+     * With {@code export.parquet}, opens a Parquet file beside {@code exportFileLocation} for the same rows as its TSV,
+     * named after the template headers. Positions, read depth and the measurement columns are typed numbers, the
+     * rest strings. Returns null when Parquet export is off or the template has no headers.
+     */
+    public OmicParquetWriter openOmicParquetWriter(String exportFileLocation, Sheet template) throws IOException {
+        if (!parquet) {
+            return null;
+        }
+        List<String> columns = new ArrayList<>();
+        Row headers = template.getRow(0);
+        if (headers != null) {
+            for (int j = 0; j < headers.getLastCellNum(); j++) {
+                Cell cell = headers.getCell(j);
+                if (cell != null) {
+                    columns.add(cell.toString().trim());
+                }
+            }
+        }
+        if (columns.isEmpty()) {
+            log.warn("No template headers to name the columns of {}, skipping its Parquet export", exportFileLocation);
+            return null;
+        }
+        List<OmicParquetWriter.ColumnType> types = new ArrayList<>();
+        for (String column : columns) {
+            types.add(PARQUET_INT64_COLUMNS.contains(column) ? OmicParquetWriter.ColumnType.INT64
+                    : PARQUET_DOUBLE_COLUMNS.contains(column) ? OmicParquetWriter.ColumnType.DOUBLE
+                    : OmicParquetWriter.ColumnType.STRING);
+        }
+        Path file = Paths.get(exportFileLocation.replaceFirst("\\.tsv$", "") + ".parquet");
+        createExportDirectories(file.toAbsolutePath().getParent().toString());
+        return new OmicParquetWriter(file, columns, types, parquetRowGroupRows, !"none".equalsIgnoreCase(parquetCompression));
+    }
+
     public void saveHeadersToTsv(Sheet template, String exportFileLocation) {
         try (FileWriter fileWriter = new FileWriter(exportFileLocation)) {
             saveHeadersToTsv(template, fileWriter);
@@ -73,7 +207,7 @@ public class UniversalDataWriterServices {
     }
 
     public void appendDataToOmicTsvFile(List<List<String>> exportSheet, String exportFileLocation) {
-        try(FileWriter fileWriter = new FileWriter(exportFileLocation, true)) {
+        try(Writer fileWriter = new BufferedWriter(new FileWriter(exportFileLocation, true))) {
             if (exportSheet != null) {
                 writeDataToTsv(exportSheet, fileWriter);
             }
@@ -82,7 +216,7 @@ public class UniversalDataWriterServices {
         }
     }
 
-    private void saveHeadersToTsv(Sheet xlsxTemplate, FileWriter fileWriter) throws IOException {
+    private void saveHeadersToTsv(Sheet xlsxTemplate, Writer fileWriter) throws IOException {
         for (int j = 0; j < xlsxTemplate.getRow(0).getLastCellNum(); j++) {
             Cell cell;
             try {
@@ -98,7 +232,7 @@ public class UniversalDataWriterServices {
         fileWriter.append("\n");
     }
 
-    private void writeDataToTsv(List<List<String>> data, FileWriter fileWriter) throws IOException {
+    private void writeDataToTsv(List<List<String>> data, Writer fileWriter) throws IOException {
         for (int rowIndex = 0; rowIndex < data.size(); rowIndex++) {
             for (int columnIndex = 0; columnIndex < data.get(rowIndex).size(); columnIndex++) {
                 try {
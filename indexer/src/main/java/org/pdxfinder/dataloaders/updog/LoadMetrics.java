@@ -0,0 +1,191 @@
+package org.pdxfinder.dataloaders.updog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per provider, per stage timers and counters for UPDOG loads. Every timed stage is also emitted
+ * as a {@link LoadStageEvent} so a load can be profiled with JDK Flight Recorder.
+ * Marker lookups and molecular data flushes happen inside the create stage, so their time is
+ * included in both their own stage and CREATE.
+ */
+@Component
+public class LoadMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadMetrics.class);
+
+    public enum Stage {
+        READ,
+        CLEAN,
+        CREATE,
+        MARKER_LOOKUP,
+        PERSIST
+    }
+
+    private final Map<String, Map<Stage, StageStatistics>> statistics = new ConcurrentHashMap<>();
+
+    public StageTimer start(String provider, Stage stage) {
+        return new StageTimer(provider, stage);
+    }
+
+    public void record(String provider, Stage stage, long nanos, long rows, long nodes, long bytes) {
+        statistics
+            .computeIfAbsent(provider, k -> new ConcurrentHashMap<>())
+            .computeIfAbsent(stage, k -> new StageStatistics())
+            .add(nanos, rows, nodes, bytes);
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+
+    public Map<String, Map<Stage, StageStatistics>> getStatistics() {
+        Map<String, Map<Stage, StageStatistics>> sorted = new TreeMap<>();
+        statistics.forEach((provider, stages) -> sorted.put(provider, new EnumMap<>(stages)));
+        return sorted;
+    }
+
+    public Map<Stage, StageStatistics> getTotals() {
+        Map<Stage, StageStatistics> totals = new EnumMap<>(Stage.class);
+        statistics.values().forEach(stages -> stages.forEach((stage, stageStatistics) ->
+            totals.computeIfAbsent(stage, k -> new StageStatistics()).add(stageStatistics)));
+        return totals;
+    }
+
+    public void logSummary() {
+        getStatistics().forEach((provider, stages) -> stages.forEach((stage, stageStatistics) ->
+            log.info("{} {}: {}", provider, stage, stageStatistics)));
+    }
+
+    public void writeSummary(File dataDirectory) throws IOException {
+        if (statistics.isEmpty()) return;
+        String timeStamp = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss").format(new Date());
+        File summaryFile = Paths.get(dataDirectory.toString(), "logs", "load_metrics_" + timeStamp + ".json").toFile();
+        if (!summaryFile.getParentFile().exists() && !summaryFile.getParentFile().mkdirs()) {
+            log.warn("Cannot save load metrics, need write permission to {}", summaryFile.getParent());
+            return;
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("providers", getStatistics());
+        summary.put("totals", getTotals());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(summaryFile, summary);
+        log.info("Load metrics saved to {}", summaryFile);
+    }
+
+    public class StageTimer implements AutoCloseable {
+
+        private final String provider;
+        private final Stage stage;
+        private final LoadStageEvent event = new LoadStageEvent();
+        private final long start;
+        private long rows;
+        private long nodes;
+        private long bytes;
+
+        private StageTimer(String provider, Stage stage) {
+            this.provider = provider;
+            this.stage = stage;
+            event.begin();
+            start = System.nanoTime();
+        }
+
+        public StageTimer addRows(long rows) {
+            this.rows += rows;
+            return this;
+        }
+
+        public StageTimer addNodes(long nodes) {
+            this.nodes += nodes;
+            return this;
+        }
+
+        public StageTimer addBytes(long bytes) {
+            this.bytes += bytes;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            record(provider, stage, System.nanoTime() - start, rows, nodes, bytes);
+            event.end();
+            if (event.shouldCommit()) {
+                event.provider = provider;
+                event.stage = stage.name();
+                event.rows = rows;
+                event.nodes = nodes;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+    }
+
+    public static class StageStatistics {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder nodes = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        void add(long nanos, long rows, long nodes, long bytes) {
+            this.calls.increment();
+            this.nanos.add(nanos);
+            this.rows.add(rows);
+            this.nodes.add(nodes);
+            this.bytes.add(bytes);
+        }
+
+        void add(StageStatistics other) {
+            calls.add(other.getCalls());
+            nanos.add(other.nanos.sum());
+            rows.add(other.getRows());
+            nodes.add(other.getNodes());
+            bytes.add(other.getBytes());
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos.sum());
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getNodes() {
+            return nodes.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        public long getRowsPerSecond() {
+            long elapsed = nanos.sum();
+            return elapsed == 0 ? 0 : getRows() * TimeUnit.SECONDS.toNanos(1) / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d ms over %d calls, %d rows (%d rows/s), %d nodes, %d bytes",
+                getMillis(), getCalls(), getRows(), getRowsPerSecond(), getNodes(), getBytes());
+        }
+    }
+}
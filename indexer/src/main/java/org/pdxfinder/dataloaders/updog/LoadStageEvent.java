@@ -0,0 +1,31 @@
+package org.pdxfinder.dataloaders.updog;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.pdxfinder.LoadStage")
+@Label("Load Stage")
+@Category({"PDX Finder", "Loader"})
+@Description("A timed stage of an UPDOG provider load")
+public class LoadStageEvent extends Event {
+
+    @Label("Provider")
+    String provider;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,25 @@
+package org.pdxfinder.dataloaders.updog;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("org.pdxfinder.MarkerLookup")
+@Label("Marker Lookup")
+@Category({"PDX Finder", "Loader"})
+@Description("Resolution of a submitted gene symbol to a marker, recorded when slower than the threshold")
+@Threshold("1 ms")
+public class MarkerLookupEvent extends Event {
+
+    @Label("Provider")
+    public String provider;
+
+    @Label("Symbol")
+    public String symbol;
+
+    @Label("Resolved")
+    public boolean resolved;
+}
@@ -88,6 +88,35 @@ public class Reader {
         return paths;
     }
 
+    /**
+     * Total size of the files {@link #readAllTsvFilesIn} reads: the matching files directly in {@code targetDirectory}.
+     */
+    long totalSizeOf(Path targetDirectory, PathMatcher filter) {
+        try (Stream<Path> files = Files.list(targetDirectory)) {
+            return files
+                .filter(filter::matches)
+                .mapToLong(path -> path.toFile().length())
+                .sum();
+        } catch (IOException e) {
+            log.error("There was an error listing the files for {}", targetDirectory, e);
+        }
+        return 0;
+    }
+
+    /**
+     * Total size of the files {@link #readAllTreatmentFilesIn} reads from the treatment and drug subdirectories.
+     */
+    long totalTreatmentSizeOf(Path targetDirectory, PathMatcher filter) {
+        long size = 0;
+        for (String s : allowedTreatmentData) {
+            Optional<Path> subDirectory = getSubDirectory(targetDirectory, s);
+            if (subDirectory.isPresent()) {
+                size += totalSizeOf(subDirectory.get(), filter);
+            }
+        }
+        return size;
+    }
+
     public Table readOmicTable(Path path) {
         return TableUtilities.readTsvOrReturnEmpty(path.toFile());
     }
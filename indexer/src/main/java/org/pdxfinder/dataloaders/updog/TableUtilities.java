@@ -25,8 +25,7 @@ public final class TableUtilities {
 
     public static Table readTsvOrReturnEmpty(File file) {
         Table dataTable = Table.create();
-        log.trace("Reading tsv file {}", file);
-        System.out.print(String.format("Reading tsv file %s\r", file));
+        log.debug("Reading tsv file {}", file);
         try { dataTable = readTsv(file); }
         catch (IOException e) { log.error("There was an error reading the tsv file" , e); }
         return dataTable;
@@ -88,8 +87,11 @@ public final class TableUtilities {
     }
 
     public static Table removeRowsMissingRequiredColumnValue(Table table, String requiredColumn) {
-        Selection missing = table.column(requiredColumn).isMissing();
-        return table.dropWhere(missing);
+        return table.dropWhere(findRowsMissingRequiredColumnValue(table, requiredColumn));
+    }
+
+    public static Selection findRowsMissingRequiredColumnValue(Table table, String requiredColumn) {
+        return table.column(requiredColumn).isMissing();
     }
 
     public static Table removeRowsMissingRequiredColumnValue(Table table, StringColumn requiredColumn) {
@@ -5,6 +5,8 @@ import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.util.HashMap;
 import java.util.Map;
+import org.pdxfinder.dataloaders.updog.LoadMetrics.Stage;
+import org.pdxfinder.dataloaders.updog.LoadMetrics.StageTimer;
 import org.pdxfinder.dataloaders.updog.domainobjectcreation.DomainObjectCreator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,16 +19,22 @@ public class Updog {
     private Reader reader;
     private TableSetCleaner tableSetCleaner;
     private DomainObjectCreator domainObjectCreator;
+    private LoadMetrics loadMetrics;
     private static final Logger log = LoggerFactory.getLogger(Updog.class);
 
+    static final String PDX_TABLE_FILES = "glob:**{metadata-,sampleplatform}*.tsv";
+    static final String TREATMENT_TABLE_FILES = "glob:**{treatment,drug}*.tsv";
+
     public Updog(
         Reader reader,
         TableSetCleaner tableSetCleaner,
-        DomainObjectCreator domainObjectCreator
+        DomainObjectCreator domainObjectCreator,
+        LoadMetrics loadMetrics
     ) {
         this.reader = reader;
         this.tableSetCleaner = tableSetCleaner;
         this.domainObjectCreator = domainObjectCreator;
+        this.loadMetrics = loadMetrics;
     }
 
     public void run(Path updogProviderDirectory, String provider) {
@@ -36,12 +44,19 @@ public class Updog {
         Map<String, Table> combinedTableSet = new HashMap<>();
         log.info("Using UPDOG to import {} PDX data from [{}]", provider, updogProviderDirectory);
 
-        pdxTableSet = readPdxTablesFromPath(updogProviderDirectory);
-        pdxTableSet = tableSetCleaner.cleanPdxTables(pdxTableSet);
-
+        try (StageTimer timer = loadMetrics.start(provider, Stage.READ)) {
+            pdxTableSet = readPdxTablesFromPath(updogProviderDirectory);
+            treatmentTableSet = readTreatmentTablesFromPath(updogProviderDirectory);
+            timer.addRows(rowCount(pdxTableSet) + rowCount(treatmentTableSet))
+                .addBytes(reader.totalSizeOf(updogProviderDirectory, matcher(PDX_TABLE_FILES))
+                    + reader.totalTreatmentSizeOf(updogProviderDirectory, matcher(TREATMENT_TABLE_FILES)));
+        }
+        try (StageTimer timer = loadMetrics.start(provider, Stage.CLEAN)) {
+            pdxTableSet = tableSetCleaner.cleanPdxTables(pdxTableSet);
+            treatmentTableSet = tableSetCleaner.cleanTreatmentTables(treatmentTableSet);
+            timer.addRows(rowCount(pdxTableSet) + rowCount(treatmentTableSet));
+        }
         omicsTableSet = new HashMap<>();
-        treatmentTableSet = readTreatmentTablesFromPath(updogProviderDirectory);
-        treatmentTableSet = tableSetCleaner.cleanTreatmentTables(treatmentTableSet);
 
         combinedTableSet.putAll(pdxTableSet);
         combinedTableSet.putAll(treatmentTableSet);
@@ -50,12 +65,18 @@ public class Updog {
     }
 
     private Map<String, Table> readPdxTablesFromPath(Path updogProviderDirectory) {
-        PathMatcher metadataFiles = FileSystems.getDefault().getPathMatcher("glob:**{metadata-,sampleplatform}*.tsv");
-        return reader.readAllTsvFilesIn(updogProviderDirectory, metadataFiles);
+        return reader.readAllTsvFilesIn(updogProviderDirectory, matcher(PDX_TABLE_FILES));
     }
 
     private Map<String, Table> readTreatmentTablesFromPath(Path updogProviderDirectory) {
-        PathMatcher metadataFiles = FileSystems.getDefault().getPathMatcher("glob:**{treatment,drug}*.tsv");
-        return reader.readAllTreatmentFilesIn(updogProviderDirectory, metadataFiles);
+        return reader.readAllTreatmentFilesIn(updogProviderDirectory, matcher(TREATMENT_TABLE_FILES));
+    }
+
+    private static PathMatcher matcher(String glob) {
+        return FileSystems.getDefault().getPathMatcher(glob);
+    }
+
+    private static long rowCount(Map<String, Table> tableSet) {
+        return tableSet.values().stream().mapToLong(Table::rowCount).sum();
     }
 }
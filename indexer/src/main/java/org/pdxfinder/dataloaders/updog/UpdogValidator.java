@@ -0,0 +1,305 @@
+package org.pdxfinder.dataloaders.updog;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.lang3.StringUtils;
+import org.pdxfinder.TSV;
+import org.pdxfinder.dataloaders.updog.ValidationError.Check;
+import org.pdxfinder.dataloaders.updog.ValidationError.Severity;
+import org.pdxfinder.services.DataImportService;
+import org.pdxfinder.services.dto.NodeSuggestionDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import tech.tablesaw.api.Table;
+
+/**
+ * Dry-run counterpart of {@link Updog}: reads and cleans a provider submission exactly as the
+ * loader does, but only reports problems instead of creating domain objects. Nothing is written
+ * to the graph; marker resolution reads from the marker cache already held in memory.
+ */
+@Component
+public class UpdogValidator {
+
+    private Reader reader;
+    private TableSetCleaner tableSetCleaner;
+    private DataImportService dataImportService;
+    private static final Logger log = LoggerFactory.getLogger(UpdogValidator.class);
+
+    private static final String LOADER = "metadata-loader.tsv";
+    private static final String PATIENT = "metadata-patient.tsv";
+    private static final String SAMPLE = "metadata-sample.tsv";
+    private static final String MODEL = "metadata-model.tsv";
+    private static final String MODEL_VALIDATION = "metadata-model_validation.tsv";
+    private static final String SHARING = "metadata-sharing.tsv";
+    private static final String SAMPLE_PLATFORM = "sampleplatform-data.tsv";
+    private static final String PATIENT_TREATMENT = "patienttreatment-Sheet1.tsv";
+    private static final String DRUG_DOSING = "drugdosing-Sheet1.tsv";
+
+    private static final Map<String, List<String>> requiredColumns = new LinkedHashMap<>();
+    static {
+        requiredColumns.put(LOADER, Arrays.asList(
+            TSV.Metadata.name.name(),
+            TSV.Metadata.abbreviation.name()));
+        requiredColumns.put(PATIENT, Collections.singletonList(
+            TSV.Metadata.patient_id.name()));
+        requiredColumns.put(SAMPLE, Arrays.asList(
+            TSV.Metadata.patient_id.name(),
+            TSV.Metadata.sample_id.name(),
+            TSV.Metadata.model_id.name()));
+        requiredColumns.put(MODEL, Arrays.asList(
+            TSV.Metadata.model_id.name(),
+            TSV.Metadata.host_strain_full.name(),
+            TSV.Metadata.passage_number.name()));
+        requiredColumns.put(MODEL_VALIDATION, Collections.singletonList(
+            TSV.Metadata.model_id.name()));
+        requiredColumns.put(SHARING, Collections.singletonList(
+            TSV.Metadata.model_id.name()));
+    }
+
+    public UpdogValidator(
+        Reader reader,
+        TableSetCleaner tableSetCleaner,
+        DataImportService dataImportService
+    ) {
+        this.reader = reader;
+        this.tableSetCleaner = tableSetCleaner;
+        this.dataImportService = dataImportService;
+    }
+
+    public List<ValidationError> validate(Path updogProviderDirectory, String provider) {
+        log.info("Validating {} PDX data in [{}]", provider, updogProviderDirectory);
+
+        Map<String, Table> pdxTableSet = reader.readAllTsvFilesIn(
+            updogProviderDirectory,
+            FileSystems.getDefault().getPathMatcher(Updog.PDX_TABLE_FILES));
+        Map<String, Table> treatmentTableSet = reader.readAllTreatmentFilesIn(
+            updogProviderDirectory,
+            FileSystems.getDefault().getPathMatcher(Updog.TREATMENT_TABLE_FILES));
+
+        Map<String, Table> combinedTableSet = new HashMap<>();
+        combinedTableSet.putAll(tableSetCleaner.cleanPdxTables(pdxTableSet));
+        combinedTableSet.putAll(tableSetCleaner.cleanTreatmentTables(treatmentTableSet));
+
+        List<ValidationError> errors = validateTableSet(combinedTableSet, provider);
+        if (tableHasRows(combinedTableSet, MODEL)) {
+            errors.addAll(validateOmicFiles(updogProviderDirectory, provider, combinedTableSet));
+        }
+        log.info("Validated {}: {} issues found", provider, errors.size());
+        return errors;
+    }
+
+    List<ValidationError> validateTableSet(Map<String, Table> tableSet, String provider) {
+        List<ValidationError> errors = new ArrayList<>(checkTableStructure(tableSet, provider));
+        if (errors.isEmpty()) {
+            errors.addAll(checkRequiredValues(tableSet, provider));
+            errors.addAll(checkCrossReferences(tableSet, provider));
+        }
+        return errors;
+    }
+
+    List<ValidationError> checkTableStructure(Map<String, Table> tableSet, String provider) {
+        List<ValidationError> errors = new ArrayList<>();
+        requiredColumns.forEach((tableName, columns) -> {
+            Table table = tableSet.get(tableName);
+            if (table == null) {
+                errors.add(error(provider, Check.TABLE_STRUCTURE, tableName, null, null,
+                    "Required table is missing"));
+                return;
+            }
+            for (String column : columns) {
+                if (!table.columnNames().contains(column)) {
+                    errors.add(error(provider, Check.TABLE_STRUCTURE, tableName, column, null,
+                        "Required column is missing"));
+                }
+            }
+        });
+        if (tableSet.containsKey(LOADER) && tableSet.get(LOADER).isEmpty()) {
+            errors.add(error(provider, Check.TABLE_STRUCTURE, LOADER, null, null,
+                "Loader table has no provider row"));
+        }
+        return errors;
+    }
+
+    List<ValidationError> checkRequiredValues(Map<String, Table> tableSet, String provider) {
+        List<ValidationError> errors = new ArrayList<>();
+        requiredColumns.forEach((tableName, columns) -> {
+            Table table = tableSet.get(tableName);
+            for (String column : columns) {
+                for (int row : TableUtilities.findRowsMissingRequiredColumnValue(table, column)) {
+                    errors.add(error(provider, Check.REQUIRED_VALUE, tableName, column, row,
+                        "Required value is missing"));
+                }
+            }
+        });
+        return errors;
+    }
+
+    List<ValidationError> checkCrossReferences(Map<String, Table> tableSet, String provider) {
+        List<ValidationError> errors = new ArrayList<>();
+        String modelId = TSV.Metadata.model_id.name();
+        String patientId = TSV.Metadata.patient_id.name();
+
+        Set<String> models = columnValues(tableSet.get(MODEL), modelId);
+        Set<String> patients = columnValues(tableSet.get(PATIENT), patientId);
+
+        errors.addAll(checkReferences(tableSet.get(SAMPLE), patientId, patients, PATIENT, provider));
+        errors.addAll(checkReferences(tableSet.get(SAMPLE), modelId, models, MODEL, provider));
+        errors.addAll(checkReferences(tableSet.get(SHARING), modelId, models, MODEL, provider));
+        errors.addAll(checkReferences(tableSet.get(MODEL_VALIDATION), modelId, models, MODEL, provider));
+        errors.addAll(checkReferences(tableSet.get(SAMPLE_PLATFORM), modelId, models, MODEL, provider));
+        errors.addAll(checkReferences(tableSet.get(DRUG_DOSING), modelId, models, MODEL, provider));
+        errors.addAll(checkReferences(tableSet.get(PATIENT_TREATMENT), patientId, patients, PATIENT, provider));
+        errors.addAll(checkSpecimenReferences(
+            tableSet.get(SAMPLE_PLATFORM),
+            getSpecimenKeys(tableSet.get(MODEL)),
+            columnValues(tableSet.get(SAMPLE), modelId),
+            provider));
+        return errors;
+    }
+
+    private List<ValidationError> checkReferences(
+        Table table,
+        String column,
+        Set<String> referencedIds,
+        String referencedTable,
+        String provider
+    ) {
+        List<ValidationError> errors = new ArrayList<>();
+        if (table == null || !table.columnNames().contains(column)) return errors;
+        for (int row = 0; row < table.rowCount(); row++) {
+            String id = cellAsText(table, column, row);
+            if (StringUtils.isNotBlank(id) && !referencedIds.contains(id)) {
+                errors.add(error(provider, Check.CROSS_REFERENCE, table.name(), column, row,
+                    String.format("%s is not defined in %s", id, referencedTable)));
+            }
+        }
+        return errors;
+    }
+
+    private List<ValidationError> checkSpecimenReferences(
+        Table table,
+        Set<String> specimenKeys,
+        Set<String> modelsWithPatientSample,
+        String provider
+    ) {
+        List<ValidationError> errors = new ArrayList<>();
+        if (table == null || !table.columnNames().containsAll(Arrays.asList(
+            TSV.Mutation.model_id.name(),
+            TSV.Mutation.sample_origin.name(),
+            TSV.Mutation.passage.name()))) return errors;
+
+        for (int row = 0; row < table.rowCount(); row++) {
+            String modelId = cellAsText(table, TSV.Mutation.model_id.name(), row);
+            String sampleOrigin = cellAsText(table, TSV.Mutation.sample_origin.name(), row);
+            if ("patient".equalsIgnoreCase(sampleOrigin) && !modelsWithPatientSample.contains(modelId)) {
+                errors.add(error(provider, Check.CROSS_REFERENCE, table.name(), TSV.Mutation.model_id.name(),
+                    row, String.format("No patient sample is defined for model %s", modelId)));
+            } else if ("xenograft".equalsIgnoreCase(sampleOrigin)) {
+                String passage = cellAsText(table, TSV.Mutation.passage.name(), row);
+                if (!specimenKeys.contains(specimenKey(modelId, passage))) {
+                    errors.add(new ValidationError(provider, Severity.WARNING, Check.CROSS_REFERENCE,
+                        table.name(), TSV.Mutation.passage.name(), row,
+                        String.format("Passage %s is not listed for model %s, a new specimen will be created",
+                            passage, modelId)));
+                }
+            }
+        }
+        return errors;
+    }
+
+    List<ValidationError> validateOmicFiles(Path updogProviderDirectory, String provider, Map<String, Table> tableSet) {
+        List<ValidationError> errors = new ArrayList<>();
+        Set<String> models = columnValues(tableSet.get(MODEL), TSV.Metadata.model_id.name());
+        Map<String, String> checkedSymbols = new HashMap<>();
+
+        for (Path omicFile : reader.getOmicFilePaths(updogProviderDirectory)) {
+            Table omicTable = tableSetCleaner.cleanOmicsTable(reader.readOmicTable(omicFile));
+            omicTable.setName(omicFile.getFileName().toString());
+            String dataType = reader.getOmicDataType(omicFile);
+
+            errors.addAll(checkReferences(omicTable, TSV.Mutation.model_id.name(), models, MODEL, provider));
+            errors.addAll(checkMarkers(omicTable, dataType, provider, checkedSymbols));
+        }
+        return errors;
+    }
+
+    private List<ValidationError> checkMarkers(
+        Table omicTable,
+        String dataType,
+        String provider,
+        Map<String, String> checkedSymbols
+    ) {
+        List<ValidationError> errors = new ArrayList<>();
+        String symbolColumn = TSV.Mutation.symbol.name();
+        if (!omicTable.columnNames().contains(symbolColumn)) {
+            errors.add(error(provider, Check.TABLE_STRUCTURE, omicTable.name(), symbolColumn, null,
+                "Required column is missing"));
+            return errors;
+        }
+        boolean hasPlatform = omicTable.columnNames().contains(TSV.Mutation.platform.name());
+        Set<String> reported = new HashSet<>();
+        for (int row = 0; row < omicTable.rowCount(); row++) {
+            String symbol = cellAsText(omicTable, symbolColumn, row);
+            if (StringUtils.isBlank(symbol) || reported.contains(symbol)) continue;
+
+            String platform = hasPlatform ? cellAsText(omicTable, TSV.Mutation.platform.name(), row) : "";
+            String unresolved = checkedSymbols.computeIfAbsent(symbol, s -> {
+                NodeSuggestionDTO suggestion = dataImportService.getSuggestedMarker(
+                    getClass().getSimpleName(), provider, "", s, dataType, platform);
+                return suggestion.getNode() == null ? suggestion.getLogEntity().getMessage() : "";
+            });
+            if (!unresolved.isEmpty()) {
+                reported.add(symbol);
+                errors.add(error(provider, Check.MARKER_RESOLUTION, omicTable.name(), symbolColumn,
+                    row, unresolved));
+            }
+        }
+        return errors;
+    }
+
+    private Set<String> getSpecimenKeys(Table modelTable) {
+        Set<String> keys = new HashSet<>();
+        for (int row = 0; row < modelTable.rowCount(); row++) {
+            String modelId = cellAsText(modelTable, TSV.Metadata.model_id.name(), row);
+            for (String passage : cellAsText(modelTable, TSV.Metadata.passage_number.name(), row).split(",")) {
+                keys.add(specimenKey(modelId, passage));
+            }
+        }
+        return keys;
+    }
+
+    private String specimenKey(String modelId, String passage) {
+        return modelId + "__" + passage.trim();
+    }
+
+    private Set<String> columnValues(Table table, String column) {
+        Set<String> values = new HashSet<>();
+        if (table != null && table.columnNames().contains(column)) {
+            values.addAll(table.column(column).asStringColumn().asSet());
+        }
+        return values;
+    }
+
+    private String cellAsText(Table table, String column, int row) {
+        return table.column(column).getString(row);
+    }
+
+    private boolean tableHasRows(Map<String, Table> tableSet, String tableName) {
+        return tableSet.containsKey(tableName) && !tableSet.get(tableName).isEmpty();
+    }
+
+    private ValidationError error(String provider, Check check, String table, String column, Integer row, String message) {
+        return new ValidationError(provider, Severity.ERROR, check, table, column, row, message);
+    }
+
+}
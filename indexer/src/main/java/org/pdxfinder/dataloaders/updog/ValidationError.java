@@ -0,0 +1,91 @@
+package org.pdxfinder.dataloaders.updog;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.util.StringJoiner;
+
+public class ValidationError {
+
+    public enum Severity {
+        ERROR,
+        WARNING
+    }
+
+    public enum Check {
+        TABLE_STRUCTURE,
+        REQUIRED_VALUE,
+        CROSS_REFERENCE,
+        MARKER_RESOLUTION
+    }
+
+    private String provider;
+    private Severity severity;
+    private Check check;
+    private String table;
+    private String column;
+    private Integer row;
+    private String message;
+
+    public ValidationError(
+        String provider,
+        Severity severity,
+        Check check,
+        String table,
+        String column,
+        Integer row,
+        String message
+    ) {
+        this.provider = provider;
+        this.severity = severity;
+        this.check = check;
+        this.table = table;
+        this.column = column;
+        this.row = row;
+        this.message = message;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    public Check getCheck() {
+        return check;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Integer getRow() {
+        return row;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @JsonIgnore
+    public boolean isError() {
+        return severity == Severity.ERROR;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ValidationError.class.getSimpleName() + "[", "]")
+            .add("provider='" + provider + "'")
+            .add("severity=" + severity)
+            .add("check=" + check)
+            .add("table='" + table + "'")
+            .add("column='" + column + "'")
+            .add("row=" + row)
+            .add("message='" + message + "'")
+            .toString();
+    }
+}
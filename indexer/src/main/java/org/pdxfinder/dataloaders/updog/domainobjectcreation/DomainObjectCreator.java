@@ -2,6 +2,10 @@ package org.pdxfinder.dataloaders.updog.domainobjectcreation;
 
 import org.apache.commons.lang3.StringUtils;
 import org.pdxfinder.TSV;
+import org.pdxfinder.dataloaders.updog.LoadMetrics;
+import org.pdxfinder.dataloaders.updog.LoadMetrics.Stage;
+import org.pdxfinder.dataloaders.updog.LoadMetrics.StageTimer;
+import org.pdxfinder.dataloaders.updog.MarkerLookupEvent;
 import org.pdxfinder.dataloaders.updog.Reader;
 import org.pdxfinder.dataloaders.updog.TableSetCleaner;
 import org.pdxfinder.graph.dao.*;
@@ -9,6 +13,7 @@ import org.pdxfinder.services.DataImportService;
 import org.pdxfinder.services.dto.NodeSuggestionDTO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import tech.tablesaw.api.ColumnType;
 import tech.tablesaw.api.Row;
@@ -16,6 +21,7 @@ import tech.tablesaw.api.Table;
 
 import java.nio.file.Path;
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,12 +29,18 @@ public class DomainObjectCreator {
 
     private Map<String, Map<String, Object>> domainObjects;
     private Map<String, Set<Long>> sampleMolcharMap;
+    private Set<String> stagedModelIds;
+    private long stagedBytes;
+    private long stagingBudgetBytes = DEFAULT_STAGING_BUDGET_MB * BYTES_PER_MB;
     private DataImportService dataImportService;
     private GroupCreator groupCreator;
     private PatientCreator patientCreator;
     private ModelCreationCreator modelCreationCreator;
     private Reader reader;
     private TableSetCleaner tableSetCleaner;
+    private LoadMetrics loadMetrics;
+    private String loadingProvider = "";
+    private long savedMolchars;
     private static final Logger log = LoggerFactory.getLogger(DomainObjectCreator.class);
 
     Map<String, Table> pdxDataTables;
@@ -46,13 +58,21 @@ public class DomainObjectCreator {
     private static final String PLATFORMS = "platform";
     private static final String NOT_SPECIFIED = "Not Specified";
 
+    private static final long DEFAULT_STAGING_BUDGET_MB = 512;
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+    // Rough heap cost of one omic cell once it is held as a MolecularData field
+    private static final long ESTIMATED_BYTES_PER_CELL = 64;
+    private static final int MOLCHAR_BATCH_SIZE = 1000;
+    private static final Pattern SAMPLE_KEY_INVALID_CHARS = Pattern.compile("[^A-Za-z0-9 _-]");
+
     public DomainObjectCreator(
         DataImportService dataImportService,
         GroupCreator groupCreator,
         PatientCreator patientCreator,
         ModelCreationCreator modelCreationCreator,
         Reader reader,
-        TableSetCleaner tableSetCleaner
+        TableSetCleaner tableSetCleaner,
+        LoadMetrics loadMetrics
     ) {
         this.dataImportService = dataImportService;
         this.groupCreator = groupCreator;
@@ -60,34 +80,63 @@ public class DomainObjectCreator {
         this.modelCreationCreator = modelCreationCreator;
         this.reader = reader;
         this.tableSetCleaner = tableSetCleaner;
+        this.loadMetrics = loadMetrics;
         domainObjects = new HashMap<>();
         sampleMolcharMap = new HashMap<>();
+        stagedModelIds = new LinkedHashSet<>();
+    }
+
+    @Value("${updog.staging-budget-mb:512}")
+    void setStagingBudgetMb(long stagingBudgetMb) {
+        this.stagingBudgetBytes = stagingBudgetMb * BYTES_PER_MB;
     }
 
     public void loadDomainObjects(Map<String, Table> pdxDataTables, Path targetDirectory) {
         //: Do not change the order of these unless you want to risk 1. the universe to collapse OR 2. missing nodes in the db
 
         this.pdxDataTables = pdxDataTables;
+        this.loadingProvider = targetDirectory.getFileName().toString();
         domainObjects = new HashMap<>();
-        createProvider(pdxDataTables);
-        createPatientData(pdxDataTables);
-        createModelData(pdxDataTables);
-        createSampleData(pdxDataTables);
-        createSharingData(pdxDataTables);
-        createSamplePlatformData(pdxDataTables);
-        createTreatmentData(pdxDataTables);
-        createDrugDosingData(pdxDataTables);
+        stagedModelIds.clear();
+        stagedBytes = 0;
+        try (StageTimer timer = loadMetrics.start(loadingProvider, Stage.CREATE)) {
+            createProvider(pdxDataTables);
+            createPatientData(pdxDataTables);
+            createModelData(pdxDataTables);
+            createSampleData(pdxDataTables);
+            createSharingData(pdxDataTables);
+            createSamplePlatformData(pdxDataTables);
+            createTreatmentData(pdxDataTables);
+            createDrugDosingData(pdxDataTables);
+            timer.addRows(pdxDataTables.values().stream().mapToLong(Table::rowCount).sum())
+                .addNodes(domainObjects.values().stream().mapToLong(Map::size).sum());
+        }
 
         List<Path> omicFiles = reader.getOmicFilePaths(targetDirectory);
         for(Path omicFile: omicFiles) {
-            Table omicTable = reader.readOmicTable(omicFile);
-            omicTable = tableSetCleaner.cleanOmicsTable(omicTable);
+            Table omicTable;
+            try (StageTimer timer = loadMetrics.start(loadingProvider, Stage.READ)) {
+                omicTable = reader.readOmicTable(omicFile);
+                timer.addRows(omicTable.rowCount()).addBytes(omicFile.toFile().length());
+            }
+            try (StageTimer timer = loadMetrics.start(loadingProvider, Stage.CLEAN)) {
+                omicTable = tableSetCleaner.cleanOmicsTable(omicTable);
+                timer.addRows(omicTable.rowCount());
+            }
             String dataType = reader.getOmicDataType(omicFile);
-            createMolecularData(omicTable, dataType);
-            persistMolecularData(false);
+            try (StageTimer timer = loadMetrics.start(loadingProvider, Stage.CREATE)) {
+                createMolecularData(omicTable, dataType);
+                timer.addRows(omicTable.rowCount());
+            }
+        }
+        try (StageTimer timer = loadMetrics.start(loadingProvider, Stage.PERSIST)) {
+            long molcharsBefore = savedMolchars;
+            long modelsAndPatients = domainObjects.getOrDefault(MODELS, Collections.emptyMap()).size()
+                + domainObjects.getOrDefault(PATIENTS, Collections.emptyMap()).size();
+            persistMolecularData(true);
+            persistNodes();
+            timer.addNodes(savedMolchars - molcharsBefore + modelsAndPatients);
         }
-        persistMolecularData(true);
-        persistNodes();
     }
 
 
@@ -469,26 +518,69 @@ public class DomainObjectCreator {
         }
     }
 
-    private void createMolecularData(Table table, String molcharType){
-
-       MarkerAssociation markerAssociation = null;
-        for (Row row : table) {
+    /**
+     * Molecular data is built one model at a time. Once a model's rows are processed its
+     * molecular characterizations are complete for this table, so they are staged and written
+     * to the graph whenever the staged data exceeds the memory budget.
+     */
+    void createMolecularData(Table table, String molcharType){
+
+        MarkerAssociation markerAssociation = null;
+        Row row = new Row(table);
+        for (Map.Entry<String, List<Integer>> modelRows : groupRowsByModel(table).entrySet()) {
+            for (int rowNumber : modelRows.getValue()) {
+
+                if (rowNumber != 1) {
+                    row.at(rowNumber);
+                    MolecularCharacterization molecularCharacterization = getMolcharByType(row, molcharType);
+                    markerAssociation = molecularCharacterization.getFirstMarkerAssociation();
+                    if (markerAssociation == null) {
+                        markerAssociation = new MarkerAssociation();
+                        molecularCharacterization.addMarkerAssociation(markerAssociation);
+                    }
 
-            if(row.getRowNumber() != 1){
-                MolecularCharacterization molecularCharacterization = getMolcharByType(row, molcharType);
-                markerAssociation = molecularCharacterization.getFirstMarkerAssociation();
-                if(markerAssociation == null){
-                    markerAssociation = new MarkerAssociation();
-                    molecularCharacterization.addMarkerAssociation(markerAssociation);
+                    MolecularData molecularData = createMolecularDataObject(molecularCharacterization, row);
+                    if (molecularData.hasMarker())
+                        markerAssociation.addMolecularData(molecularData);
                 }
+            }
+            stageModel(modelRows.getKey(), ESTIMATED_BYTES_PER_CELL * modelRows.getValue().size() * table.columnCount());
+        }
+        flushStagedModels();
+    }
 
+    private Map<String, List<Integer>> groupRowsByModel(Table table) {
+        Map<String, List<Integer>> rowsByModel = new LinkedHashMap<>();
+        for (Row row : table) {
+            rowsByModel
+                .computeIfAbsent(getCellAsText(row, TSV.Mutation.model_id.name()), k -> new ArrayList<>())
+                .add(row.getRowNumber());
+        }
+        return rowsByModel;
+    }
 
-                MolecularData molecularData = createMolecularDataObject(molecularCharacterization, row);
-                if (molecularData.hasMarker())
-                    markerAssociation.addMolecularData(molecularData);
+    private void stageModel(String modelId, long estimatedBytes) {
+        stagedModelIds.add(modelId);
+        stagedBytes += estimatedBytes;
+        if (stagedBytes >= stagingBudgetBytes) {
+            flushStagedModels();
+        }
+    }
 
+    private void flushStagedModels() {
+        if (stagedModelIds.isEmpty()) return;
+        log.info("Flushing molecular data for {} models (~{} MB staged)",
+            stagedModelIds.size(), stagedBytes / BYTES_PER_MB);
+        try (StageTimer timer = loadMetrics.start(loadingProvider, Stage.PERSIST)) {
+            long molcharsBefore = savedMolchars;
+            for (String modelId : stagedModelIds) {
+                ModelCreation model = (ModelCreation) getDomainObject(MODELS, modelId);
+                if (model != null) persistMolecularDataFor(model, false);
             }
+            timer.addNodes(savedMolchars - molcharsBefore).addBytes(stagedBytes);
         }
+        stagedModelIds.clear();
+        stagedBytes = 0;
     }
 
     private MolecularCharacterization getMolcharByType(Row row, String molCharType) {
@@ -602,6 +694,9 @@ public class DomainObjectCreator {
         String modelId = getCellAsText(row, "model_id");
         Group provider = (Group) domainObjects.get(PROVIDER_GROUPS).get(FIRST);
         String dataSource = provider.getAbbreviation();
+        MarkerLookupEvent lookupEvent = new MarkerLookupEvent();
+        lookupEvent.begin();
+        long lookupStart = System.nanoTime();
         NodeSuggestionDTO nodeSuggestionDTO = dataImportService.getSuggestedMarker(
             this.getClass().getSimpleName(),
             dataSource,
@@ -609,6 +704,14 @@ public class DomainObjectCreator {
             hgncSymbol,
             molecularCharacterization.getType(),
             molecularCharacterization.getPlatform().getName());
+        loadMetrics.record(loadingProvider, Stage.MARKER_LOOKUP, System.nanoTime() - lookupStart, 1, 0, 0);
+        lookupEvent.end();
+        if (lookupEvent.shouldCommit()) {
+            lookupEvent.provider = dataSource;
+            lookupEvent.symbol = hgncSymbol;
+            lookupEvent.resolved = nodeSuggestionDTO.getNode() != null;
+            lookupEvent.commit();
+        }
         if (nodeSuggestionDTO.getNode() != null) {
             logMarkerSuggestions(nodeSuggestionDTO);
             molecularData = createMolecularData(
@@ -858,30 +961,32 @@ public class DomainObjectCreator {
 
     private void persistMolecularData(boolean persistEmptyMolchars){
 
-        Iterator<Map.Entry<String, Object>> iter = domainObjects.get(MODELS).entrySet().iterator();
-        while (iter.hasNext()) {
-            Map.Entry<String,Object> entry = iter.next();
-            ModelCreation model = (ModelCreation) entry.getValue();
-            //persist molchar data for patient sample
-            Sample patientSample = model.getSample();
-            String patientSampleKey = model.getSourcePdxId()+ "__patient";
-            encodeMolecularDataFor(patientSample, patientSampleKey, persistEmptyMolchars);
-
-            //persist molchar data for xenograft sample(s)
-            if (model.hasSpecimens())
-                for (Specimen s : model.getSpecimens()) {
-                    String passage = s.getPassage();
-                    String hostStrain = s.getHostStrain().getSymbol();
-                    String xenoSampleKey = model.getSourcePdxId()+"__xenograft__"+passage+"__"+hostStrain;
-                    encodeMolecularDataFor(s.getSample(), xenoSampleKey, persistEmptyMolchars);
-                }
+        for (Object model : domainObjects.get(MODELS).values()) {
+            persistMolecularDataFor((ModelCreation) model, persistEmptyMolchars);
         }
     }
 
+    private void persistMolecularDataFor(ModelCreation model, boolean persistEmptyMolchars) {
+        //persist molchar data for patient sample
+        Sample patientSample = model.getSample();
+        String patientSampleKey = model.getSourcePdxId()+ "__patient";
+        encodeMolecularDataFor(patientSample, patientSampleKey, persistEmptyMolchars);
+
+        //persist molchar data for xenograft sample(s)
+        if (model.hasSpecimens())
+            for (Specimen s : model.getSpecimens()) {
+                String passage = s.getPassage();
+                String hostStrain = s.getHostStrain().getSymbol();
+                String xenoSampleKey = model.getSourcePdxId()+"__xenograft__"+passage+"__"+hostStrain;
+                encodeMolecularDataFor(s.getSample(), xenoSampleKey, persistEmptyMolchars);
+            }
+    }
+
 
 
     private void persistNodes() {
 
+        Map<Long, MolecularCharacterization> molcharsById = getMolcharsById(sampleMolcharMap.values());
         Iterator<Map.Entry<String, Object>> iter = domainObjects.get(MODELS).entrySet().iterator();
         while (iter.hasNext()) {
             Map.Entry<String,Object> entry = iter.next();
@@ -889,7 +994,7 @@ public class DomainObjectCreator {
             //persist molchar data for patient sample
             Sample patientSample = model.getSample();
             String patientSampleKey = model.getSourcePdxId()+ "__patient";
-            linkMolcharDataToSample(patientSample, patientSampleKey);
+            linkMolcharDataToSample(patientSample, patientSampleKey, molcharsById);
 
             //persist molchar data for xenograft sample(s)
             if (model.hasSpecimens())
@@ -897,7 +1002,7 @@ public class DomainObjectCreator {
                     String passage = s.getPassage();
                     String hostStrain = s.getHostStrain().getSymbol();
                     String xenoSampleKey = model.getSourcePdxId()+"__xenograft__"+passage+"__"+hostStrain;
-                    linkMolcharDataToSample(s.getSample(), xenoSampleKey);
+                    linkMolcharDataToSample(s.getSample(), xenoSampleKey, molcharsById);
                 }
             dataImportService.saveModelCreation(model);
         }
@@ -907,6 +1012,21 @@ public class DomainObjectCreator {
 
     }
 
+    private Map<Long, MolecularCharacterization> getMolcharsById(Collection<Set<Long>> molcharIdSets) {
+
+        List<Long> molcharIds = molcharIdSets.stream().flatMap(Set::stream).collect(Collectors.toList());
+        Map<Long, MolecularCharacterization> molcharsById = new HashMap<>();
+        for (int i = 0; i < molcharIds.size(); i += MOLCHAR_BATCH_SIZE) {
+            Set<Long> batch = new HashSet<>(molcharIds.subList(i, Math.min(i + MOLCHAR_BATCH_SIZE, molcharIds.size())));
+            for (MolecularCharacterization mc : dataImportService.getMolcharsById(batch)) {
+                molcharsById.put(mc.getId(), mc);
+            }
+        }
+        log.info("Resolved {} molecular characterizations in {} queries",
+            molcharsById.size(), (molcharIds.size() + MOLCHAR_BATCH_SIZE - 1) / MOLCHAR_BATCH_SIZE);
+        return molcharsById;
+    }
+
     public void persistPatients(){
 
         log.info("Persisiting patients");
@@ -927,17 +1047,21 @@ public class DomainObjectCreator {
     }
 
 
-    private void linkMolcharDataToSample(Sample sample, String sampleKey){
-        sampleKey = sampleKey.replaceAll("[^A-Za-z0-9 _-]", "");
-        if(sampleMolcharMap.containsKey(sampleKey)) {
-            Set<Long> molcharIds = sampleMolcharMap.get(sampleKey);
-            Set<MolecularCharacterization> molchars = dataImportService.getMolcharsById(molcharIds);
+    private void linkMolcharDataToSample(Sample sample, String sampleKey,
+                                         Map<Long, MolecularCharacterization> molcharsById){
+        Set<Long> molcharIds = sampleMolcharMap.get(sanitizeSampleKey(sampleKey));
+        if (molcharIds != null) {
+            Set<MolecularCharacterization> molchars = new HashSet<>();
+            for (Long molcharId : molcharIds) {
+                MolecularCharacterization mc = molcharsById.get(molcharId);
+                if (mc != null) molchars.add(mc);
+            }
             sample.setMolecularCharacterizations(molchars);
         }
-        else{
-            //log.error("Molchar not found for: "+sampleKey);
+    }
 
-        }
+    private String sanitizeSampleKey(String sampleKey) {
+        return SAMPLE_KEY_INVALID_CHARS.matcher(sampleKey).replaceAll("");
     }
 
 
@@ -972,6 +1096,7 @@ public class DomainObjectCreator {
                         encodeMolecularDataFor(mc, sampleKey);
                         Long molcharId = dataImportService.saveMolecularCharacterization(mc).getId();
                         addIdToSampleMolcharMap(sampleKey, molcharId);
+                        savedMolchars++;
                         iter.remove();
                     }
                 }
@@ -990,16 +1115,7 @@ public class DomainObjectCreator {
     }
 
     private void addIdToSampleMolcharMap(String sampleKey, Long molcharId){
-        sampleKey = sampleKey.replaceAll("[^A-Za-z0-9 _-]", "");
-        if(sampleMolcharMap.containsKey(sampleKey)){
-            sampleMolcharMap.get(sampleKey).add(molcharId);
-        }
-        else{
-            Set<Long> s = new HashSet();
-            s.add(molcharId);
-            sampleMolcharMap.put(sampleKey, s);
-
-        }
+        sampleMolcharMap.computeIfAbsent(sanitizeSampleKey(sampleKey), k -> new HashSet<>()).add(molcharId);
     }
 
 
@@ -11,6 +11,7 @@ import org.springframework.stereotype.Service;
 import tech.tablesaw.api.Row;
 import tech.tablesaw.api.Table;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -44,13 +45,14 @@ public class ModelCreationCreator {
 
         Set<ModelCreation> modelCreations = new HashSet<>();
         Table modelTable = tableSet.get("metadata-model.tsv");
+        Map<String, Specimen> specimensByPassageAndHostStrain = indexSpecimens(specimens);
 
         for (Row row : modelTable) {
             String modelId = row.getString(TSV.Metadata.model_id.name());
             String hostStrainNomenclature = row.getString(TSV.Metadata.host_strain_full.name());
             String passageNumber = row.getString(TSV.Metadata.passage_number.name());
 
-            Specimen specimen = getSpecimenFromSet(passageNumber, hostStrainNomenclature, specimens);
+            Specimen specimen = getSpecimen(passageNumber, hostStrainNomenclature, specimensByPassageAndHostStrain);
 
             ModelCreation modelCreation = new ModelCreation();
             modelCreation.setSourcePdxId(modelId);
@@ -63,12 +65,27 @@ public class ModelCreationCreator {
         return modelCreations;
     }
 
-    public Specimen getSpecimenFromSet(String passageNumber, String hostStrainNomenclature, Set<Specimen> specimenSet) {
-        for (Specimen s : specimenSet) {
-            if (s.getPassage().equals(passageNumber) &&
-                s.getHostStrain().getSymbol().equals(hostStrainNomenclature)) return s;
+    static Map<String, Specimen> indexSpecimens(Set<Specimen> specimens) {
+        Map<String, Specimen> specimensByPassageAndHostStrain = new HashMap<>();
+        for (Specimen s : specimens) {
+            if (s.getHostStrain() == null) continue;
+            specimensByPassageAndHostStrain.putIfAbsent(
+                specimenKey(s.getPassage(), s.getHostStrain().getSymbol()), s);
         }
-        return new Specimen();
+        return specimensByPassageAndHostStrain;
+    }
+
+    public Specimen getSpecimen(
+        String passageNumber,
+        String hostStrainNomenclature,
+        Map<String, Specimen> specimensByPassageAndHostStrain
+    ) {
+        Specimen specimen = specimensByPassageAndHostStrain.get(specimenKey(passageNumber, hostStrainNomenclature));
+        return specimen != null ? specimen : new Specimen();
+    }
+
+    private static String specimenKey(String passage, String hostStrainSymbol) {
+        return passage + "__" + hostStrainSymbol;
     }
 
 }
@@ -0,0 +1,99 @@
+package org.pdxfinder.mapping;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Propagates direct sample mapping counts up the SUBCLASS_OF hierarchy. Every ancestor of a
+ * directly mapped term receives that term's count once, however many paths lead to it, which
+ * matches the per term breadth first walk this replaces.
+ */
+final class IndirectMappingCounts {
+
+    private IndirectMappingCounts() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * @param directCounts    direct mapping count by term id, for terms with at least one mapping
+     * @param parentsByChild  SUBCLASS_OF parents by term id
+     * @return the indirect count to add, by term id, for every term that has one
+     */
+    static Map<Long, Long> compute(Map<Long, Integer> directCounts, Map<Long, List<Long>> parentsByChild) {
+
+        List<Long> directTerms = new ArrayList<>(directCounts.keySet());
+        Map<Long, BitSet> reachedFrom = new HashMap<>();
+        Deque<Long> toVisit = new ArrayDeque<>();
+        for (int i = 0; i < directTerms.size(); i++) {
+            BitSet own = new BitSet();
+            own.set(i);
+            reachedFrom.put(directTerms.get(i), own);
+            toVisit.add(directTerms.get(i));
+        }
+
+        // Restrict the sweep to the ancestors of directly mapped terms
+        Map<Long, Integer> pendingChildren = new HashMap<>();
+        while (!toVisit.isEmpty()) {
+            Long term = toVisit.poll();
+            for (Long parent : parentsOf(term, parentsByChild)) {
+                pendingChildren.merge(parent, 1, Integer::sum);
+                if (reachedFrom.putIfAbsent(parent, new BitSet()) == null) {
+                    toVisit.add(parent);
+                }
+            }
+        }
+
+        Deque<Long> ready = new ArrayDeque<>();
+        reachedFrom.keySet().stream().filter(t -> !pendingChildren.containsKey(t)).forEach(ready::add);
+        while (!ready.isEmpty()) {
+            Long term = ready.poll();
+            for (Long parent : parentsOf(term, parentsByChild)) {
+                reachedFrom.get(parent).or(reachedFrom.get(term));
+                if (pendingChildren.merge(parent, -1, Integer::sum) == 0) {
+                    pendingChildren.remove(parent);
+                    ready.add(parent);
+                }
+            }
+        }
+        propagateThroughCycles(pendingChildren, reachedFrom, parentsByChild);
+
+        Map<Long, Long> indirectCounts = new HashMap<>();
+        reachedFrom.forEach((term, sources) -> {
+            long count = 0;
+            for (int i = sources.nextSetBit(0); i >= 0; i = sources.nextSetBit(i + 1)) {
+                if (!directTerms.get(i).equals(term)) count += directCounts.get(directTerms.get(i));
+            }
+            if (count > 0) indirectCounts.put(term, count);
+        });
+        return indirectCounts;
+    }
+
+    private static void propagateThroughCycles(
+        Map<Long, Integer> remaining,
+        Map<Long, BitSet> reachedFrom,
+        Map<Long, List<Long>> parentsByChild
+    ) {
+        boolean changed = !remaining.isEmpty();
+        while (changed) {
+            changed = false;
+            for (Long term : remaining.keySet()) {
+                for (Long parent : parentsOf(term, parentsByChild)) {
+                    BitSet parentSources = reachedFrom.get(parent);
+                    int before = parentSources.cardinality();
+                    parentSources.or(reachedFrom.get(term));
+                    changed |= parentSources.cardinality() != before;
+                }
+            }
+        }
+    }
+
+    private static List<Long> parentsOf(Long term, Map<Long, List<Long>> parentsByChild) {
+        return parentsByChild.getOrDefault(term, Collections.emptyList());
+    }
+}
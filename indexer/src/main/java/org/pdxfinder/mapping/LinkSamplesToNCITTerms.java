@@ -1,9 +1,7 @@
 package org.pdxfinder.mapping;
 
+import org.neo4j.ogm.session.Session;
 import org.pdxfinder.rdbms.dao.MappingEntity;
-import org.pdxfinder.graph.dao.OntologyTerm;
-import org.pdxfinder.graph.dao.Sample;
-import org.pdxfinder.graph.dao.SampleToOntologyRelationship;
 import org.pdxfinder.ontologymapping.MissingMapping;
 import org.pdxfinder.rdbms.repositories.MappingEntityRepository;
 import org.pdxfinder.services.DataImportService;
@@ -25,6 +23,51 @@ public class LinkSamplesToNCITTerms {
     private final static Logger log = LoggerFactory.getLogger(LinkSamplesToNCITTerms.class);
     private DataImportService dataImportService;
     private MappingService mappingService;
+    private Session session;
+
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String HUMAN_SAMPLES_AFTER_ID =
+        "MATCH (:PatientSnapshot)--(s:Sample) WHERE id(s) > {lastSampleId} " +
+        "WITH DISTINCT s ORDER BY id(s) LIMIT {pageSize} " +
+        "OPTIONAL MATCH (s)-[:ORIGIN_TISSUE]-(t:Tissue) " +
+        "OPTIONAL MATCH (s)-[:OF_TYPE]-(tt:TumorType) " +
+        "RETURN id(s) AS id, s.dataSource AS dataSource, s.diagnosis AS diagnosis, " +
+        "head(collect(t.name)) AS originTissue, head(collect(tt.name)) AS tumorType " +
+        "ORDER BY id";
+
+    private static final String DIRECTLY_MAPPED_TERMS =
+        "MATCH (ot:OntologyTerm) WHERE ot.directMappedSamplesNumber > 0 " +
+        "RETURN id(ot) AS id, ot.directMappedSamplesNumber AS direct";
+
+    private static final String SUBCLASS_EDGES =
+        "MATCH (child:OntologyTerm)-[:SUBCLASS_OF]->(parent:OntologyTerm) " +
+        "RETURN id(child) AS child, id(parent) AS parent";
+
+    private static final String UPDATE_INDIRECT_COUNTS =
+        "UNWIND {updates} AS update " +
+        "MATCH (ot:OntologyTerm) WHERE id(ot) = update.termId " +
+        "SET ot.indirectMappedSamplesNumber = update.indirect, " +
+        "ot.allowAsSuggestion = true";
+
+    private static final String RESET_STALE_INDIRECT_COUNTS =
+        "MATCH (ot:OntologyTerm) WHERE ot.indirectMappedSamplesNumber > 0 AND NOT id(ot) IN {termIds} " +
+        "SET ot.indirectMappedSamplesNumber = 0";
+
+    // a sample maps to one term: links to any other term are dropped, so reruns replace rather than add links
+    private static final String LINK_SAMPLES_TO_TERMS =
+        "UNWIND {links} AS link " +
+        "MATCH (s:Sample) WHERE id(s) = link.sampleId " +
+        "MATCH (ot:OntologyTerm) WHERE id(ot) = link.termId " +
+        "OPTIONAL MATCH (s)-[stale:MAPPED_TO]->(other:OntologyTerm) WHERE id(other) <> link.termId " +
+        "DELETE stale " +
+        "WITH DISTINCT s, ot, link " +
+        "MERGE (s)-[r:MAPPED_TO]->(ot) " +
+        "SET r.type = link.type, r.justification = link.justification";
+
+    private static final String COUNT_DIRECT_MAPPINGS =
+        "MATCH (ot:OntologyTerm) WHERE ot.directMappedSamplesNumber > 0 OR (ot)<-[:MAPPED_TO]-(:Sample) " +
+        "SET ot.directMappedSamplesNumber = size((ot)<-[:MAPPED_TO]-(:Sample))";
 
     private Map<String, MissingMapping> missingMappings;
     private Set<String> missingTerms;
@@ -32,9 +75,11 @@ public class LinkSamplesToNCITTerms {
     @Autowired
     public LinkSamplesToNCITTerms(DataImportService dataImportService,
                                   MappingService mappingService,
-                                  MappingEntityRepository mappingEntityRepository) {
+                                  MappingEntityRepository mappingEntityRepository,
+                                  Session session) {
         this.dataImportService = dataImportService;
         this.mappingService = mappingService;
+        this.session = session;
     }
 
     public void run() {
@@ -56,42 +101,33 @@ public class LinkSamplesToNCITTerms {
     }
 
 
-    private void mapSamplesToTerms() {
-
-
-        int batchSize = 50;
-        int startNode = 0;
-        int maxSamplesNumber = dataImportService.getHumanSamplesNumber();
+    void mapSamplesToTerms() {
 
         this.missingMappings = new HashMap<>();
         this.missingTerms = new HashSet<>();
 
+        Map<String, Long> termIdsByUrl = OntologyTermIds.byUrl(session);
+        Map<String, Optional<MappingEntity>> mappingsBySampleAttributes = new HashMap<>();
+        long startTime = System.currentTimeMillis();
+        long lastSampleId = -1;
+        int linkedSamples = 0;
 
-        while (startNode < maxSamplesNumber) {
-
-            log.info("Mapping " + batchSize + " samples from " + startNode);
-            Collection<Sample> samples = dataImportService.findHumanSamplesFromTo(startNode, batchSize);
-
-            for (Sample sample : samples) {
-
-                String dataSource = "";
-                String diagnosis = "";
-                String originTissue = "";
-                String tumorType = "";
-
-                dataSource = sample.getDataSource();
-                diagnosis = sample.getDiagnosis();
-
+        List<Map<String, Object>> samples = findHumanSamplesAfter(lastSampleId);
+        while (!samples.isEmpty()) {
 
-                if (sample.getOriginTissue() != null) {
-                    originTissue = sample.getOriginTissue().getName();
-                }
+            List<Map<String, Object>> links = new ArrayList<>();
+            for (Map<String, Object> sample : samples) {
 
-                if (sample.getType() != null) {
-                    tumorType = sample.getType().getName();
-                }
+                lastSampleId = ((Number) sample.get("id")).longValue();
+                String dataSource = (String) sample.get("dataSource");
+                String diagnosis = (String) sample.get("diagnosis");
+                String originTissue = Objects.toString(sample.get("originTissue"), "");
+                String tumorType = Objects.toString(sample.get("tumorType"), "");
 
-                MappingEntity me = mappingService.getDiagnosisMapping(dataSource, diagnosis, originTissue, tumorType);
+                MappingEntity me = mappingsBySampleAttributes.computeIfAbsent(
+                    String.join("__", dataSource, diagnosis, originTissue, tumorType),
+                    k -> Optional.ofNullable(mappingService.getDiagnosisMapping(dataSource, diagnosis, originTissue, tumorType)))
+                    .orElse(null);
 
                 if(me == null){
 
@@ -102,26 +138,33 @@ public class LinkSamplesToNCITTerms {
                 }
                  else {
 
-                    OntologyTerm ot = dataImportService.findOntologyTermByUrl(me.getMappedTermUrl());
-
+                    Long termId = termIdsByUrl.get(me.getMappedTermUrl());
 
-                    if (ot == null) {
+                    if (termId == null) {
 
-                        log.warn("Missing ontology term: " + me.getMappedTermLabel());
-                        this.missingTerms.add(me.getMappedTermLabel());
+                        if (this.missingTerms.add(me.getMappedTermLabel())) {
+                            log.warn("Missing ontology term: " + me.getMappedTermLabel());
+                        }
                     } else {
-                        ot.setDirectMappedSamplesNumber(ot.getDirectMappedSamplesNumber() + 1);
-                        SampleToOntologyRelationship r = new SampleToOntologyRelationship(me.getMapType(), me.getJustification(), sample, ot);
-                        sample.setSampleToOntologyRelationShip(r);
-                        ot.setSampleMappedTo(r);
-                        dataImportService.saveSample(sample);
-                        dataImportService.saveOntologyTerm(ot);
-                        //log.info("Mapping "+diagnosis+" to "+mappingRule.getOntologyTerm());
+                        Map<String, Object> link = new HashMap<>();
+                        link.put("sampleId", lastSampleId);
+                        link.put("termId", termId);
+                        link.put("type", me.getMapType());
+                        link.put("justification", me.getJustification());
+                        links.add(link);
                     }
                 }
             }
-            startNode += batchSize;
+
+            if (!links.isEmpty()) {
+                session.query(LINK_SAMPLES_TO_TERMS, Collections.singletonMap("links", links));
+                linkedSamples += links.size();
+            }
+            log.info("Linked {} samples to ontology terms ({} samples/s)",
+                linkedSamples, perSecond(linkedSamples, startTime));
+            samples = findHumanSamplesAfter(lastSampleId);
         }
+        session.query(COUNT_DIRECT_MAPPINGS, Collections.emptyMap());
 
 
         if (this.missingMappings.size() > 0) {
@@ -132,6 +175,21 @@ public class LinkSamplesToNCITTerms {
         }
     }
 
+    private List<Map<String, Object>> findHumanSamplesAfter(long lastSampleId) {
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("lastSampleId", lastSampleId);
+        parameters.put("pageSize", PAGE_SIZE);
+        List<Map<String, Object>> samples = new ArrayList<>();
+        session.query(HUMAN_SAMPLES_AFTER_ID, parameters, true).queryResults().forEach(samples::add);
+        return samples;
+    }
+
+    private static long perSecond(int count, long startTime) {
+        long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+        return count * 1000L / elapsed;
+    }
+
     private void insertMissingMapping(String id, MissingMapping mm) {
 
         if (!this.missingMappings.containsKey(id)) {
@@ -156,52 +214,39 @@ public class LinkSamplesToNCITTerms {
 
 
 
-    private void updateIndirectMappingData() {
+    void updateIndirectMappingData() {
 
-        Collection<OntologyTerm> termsWithDirectMappings = dataImportService.getAllOntologyTermsWithNotZeroDirectMapping();
-        int remainingTermsToUpdate = termsWithDirectMappings.size();
-        log.info("Found " + remainingTermsToUpdate + " terms with direct number. Updating graph...");
-
-        for (OntologyTerm ot : termsWithDirectMappings) {
-
-            ot.setAllowAsSuggestion(true);
-            Set<OntologyTerm> discoveredTerms = new HashSet<>();
-            Set<String> visitedTerms = new HashSet<>();
-            Collection<OntologyTerm> parents = dataImportService.getAllDirectParents(ot.getUrl());
-
-            if (parents != null) {
-
-                discoveredTerms.addAll(parents);
-            }
-
-            while (discoveredTerms.size() > 0) {
-                OntologyTerm currentParentTerm = discoveredTerms.iterator().next();
-
-                if (visitedTerms.contains(currentParentTerm.getUrl())) {
-                    discoveredTerms.remove(currentParentTerm);
-                    continue;
-                }
-
-                visitedTerms.add(currentParentTerm.getUrl());
-                //update indirect number
-                currentParentTerm.setIndirectMappedSamplesNumber(currentParentTerm.getIndirectMappedSamplesNumber() + ot.getDirectMappedSamplesNumber());
-                currentParentTerm.setAllowAsSuggestion(true);
-
-                dataImportService.saveOntologyTerm(currentParentTerm);
-                //get parents
-                parents = dataImportService.getAllDirectParents(currentParentTerm.getUrl());
-
-                if (parents != null) {
+        long startTime = System.currentTimeMillis();
+        Map<Long, Integer> directCounts = new HashMap<>();
+        for (Map<String, Object> term : session.query(DIRECTLY_MAPPED_TERMS, Collections.emptyMap(), true).queryResults()) {
+            directCounts.put(((Number) term.get("id")).longValue(), ((Number) term.get("direct")).intValue());
+        }
+        log.info("Found " + directCounts.size() + " terms with direct number. Updating graph...");
 
-                    discoveredTerms.addAll(parents);
-                }
+        Map<Long, List<Long>> parentsByChild = new HashMap<>();
+        for (Map<String, Object> edge : session.query(SUBCLASS_EDGES, Collections.emptyMap(), true).queryResults()) {
+            parentsByChild
+                .computeIfAbsent(((Number) edge.get("child")).longValue(), k -> new ArrayList<>())
+                .add(((Number) edge.get("parent")).longValue());
+        }
 
-                discoveredTerms.remove(currentParentTerm);
+        Map<Long, Long> indirectCounts = IndirectMappingCounts.compute(directCounts, parentsByChild);
 
-            }
-            remainingTermsToUpdate--;
-            log.info("Updated subgraph for " + ot.getLabel() + ", " + remainingTermsToUpdate + " term(s) remained");
+        Set<Long> changedTerms = new HashSet<>(directCounts.keySet());
+        changedTerms.addAll(indirectCounts.keySet());
+        List<Map<String, Object>> updates = new ArrayList<>();
+        for (Long termId : changedTerms) {
+            Map<String, Object> update = new HashMap<>();
+            update.put("termId", termId);
+            update.put("indirect", indirectCounts.getOrDefault(termId, 0L));
+            updates.add(update);
         }
+        session.query(UPDATE_INDIRECT_COUNTS, Collections.singletonMap("updates", updates));
+        session.query(RESET_STALE_INDIRECT_COUNTS, Collections.singletonMap("termIds", new ArrayList<>(changedTerms)));
+
+        log.info("Updated {} terms from {} subclass relationships in {} ms",
+            updates.size(), parentsByChild.values().stream().mapToInt(List::size).sum(),
+            System.currentTimeMillis() - startTime);
     }
 
 
@@ -1,14 +1,11 @@
 package org.pdxfinder.mapping;
 
-import org.pdxfinder.graph.dao.Group;
-import org.pdxfinder.graph.dao.OntologyTerm;
-import org.pdxfinder.graph.dao.Treatment;
-import org.pdxfinder.graph.dao.TreatmentToOntologyRelationship;
+import org.neo4j.ogm.session.Session;
 import org.pdxfinder.rdbms.dao.MappingEntity;
-import org.pdxfinder.services.DataImportService;
 import org.pdxfinder.services.MappingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -22,11 +19,41 @@ public class LinkTreatmentsToNCITTerms {
 
     private final static Logger log = LoggerFactory.getLogger(LinkTreatmentsToNCITTerms.class);
     private MappingService mappingService;
-    private DataImportService dataImportService;
-
-    public LinkTreatmentsToNCITTerms(MappingService mappingService, DataImportService dataImportService) {
+    private Session session;
+
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String PATIENT_TREATMENTS_AFTER_ID =
+        "MATCH (gr:Group)--(:Patient)--(:PatientSnapshot)--(:TreatmentSummary)" +
+        "-[:TREATMENT_PROTOCOL]-(:TreatmentProtocol)-[:TREATMENT_COMPONENT]-(:TreatmentComponent)--(tr:Treatment) " +
+        "WHERE gr.type = 'Provider' AND id(tr) > {lastTreatmentId} " +
+        "RETURN DISTINCT id(tr) AS id, tr.name AS name, gr.abbreviation AS dataSource " +
+        "ORDER BY id LIMIT {pageSize}";
+
+    private static final String MODEL_TREATMENTS_AFTER_ID =
+        "MATCH (mod:ModelCreation)--(:TreatmentSummary)" +
+        "-[:TREATMENT_PROTOCOL]-(:TreatmentProtocol)-[:TREATMENT_COMPONENT]-(:TreatmentComponent)--(tr:Treatment) " +
+        "WHERE id(tr) > {lastTreatmentId} " +
+        "RETURN DISTINCT id(tr) AS id, tr.name AS name, mod.dataSource AS dataSource " +
+        "ORDER BY id LIMIT {pageSize}";
+
+    private static final String LINK_TREATMENTS_TO_TERMS =
+        "UNWIND {links} AS link " +
+        "MATCH (tr:Treatment) WHERE id(tr) = link.treatmentId " +
+        "MATCH (ot:OntologyTerm) WHERE id(ot) = link.termId " +
+        "MERGE (tr)-[r:MAPPED_TO]->(ot) " +
+        "SET r.type = link.type, r.justification = link.justification";
+
+    private int pageSize = PAGE_SIZE;
+    private Map<String, Optional<MappingEntity>> mappingsByTreatment;
+    private Map<String, Long> termIdsByUrl;
+    private Set<String> missingMappings;
+    private Set<String> missingTerms;
+
+    @Autowired
+    public LinkTreatmentsToNCITTerms(MappingService mappingService, Session session) {
         this.mappingService = mappingService;
-        this.dataImportService = dataImportService;
+        this.session = session;
     }
 
 
@@ -50,90 +77,97 @@ public class LinkTreatmentsToNCITTerms {
     }
 
 
+    void mapTreatmentsToTerms(){
 
-    private void mapTreatmentsToTerms(){
-
-
-        int batchSize = 50;
-        int startNode = 0;
-
+        this.mappingsByTreatment = new HashMap<>();
+        this.termIdsByUrl = OntologyTermIds.byUrl(session);
+        this.missingMappings = new TreeSet<>();
+        this.missingTerms = new TreeSet<>();
 
+        //STEP1: Look up patient treatments and link them to ontology terms
+        int linked = linkTreatments(PATIENT_TREATMENTS_AFTER_ID);
+        log.info("Linked {} patient treatments to ontology terms", linked);
 
-        List<Group> providerGroups = dataImportService.getAllProviderGroups();
+        //STEP2: Look up drug dosing and link them to ontology terms
+        linked = linkTreatments(MODEL_TREATMENTS_AFTER_ID);
+        log.info("Linked {} drug dosing treatments to ontology terms", linked);
 
-        for(Group group: providerGroups){
-
-            //STEP1: Look up patient treatments and link them to ontology terms
+        if (!missingMappings.isEmpty()) {
+            log.warn("No mapping rule found for {} treatments: {}", missingMappings.size(), missingMappings);
+        }
+        if (!missingTerms.isEmpty()) {
+            log.error("Failed to find {} ontology terms: {}", missingTerms.size(), missingTerms);
+        }
+    }
 
-            String dataSource = group.getAbbreviation();
+    /**
+     * Walks the treatments returned by {@code treatmentsAfterId} in node id order, so every page
+     * starts right after the last treatment seen and no offset has to be carried between providers.
+     */
+    private int linkTreatments(String treatmentsAfterId) {
 
-            int maxTreatmentNumber = dataImportService.findPatientTreatmentNumber(dataSource);
+        long lastTreatmentId = -1;
+        int linkedTreatments = 0;
 
-            if(maxTreatmentNumber > 0) {
-                log.info("Mapping patient treatments for "+dataSource + ", "+maxTreatmentNumber+" patient treatment summaries.");
-            }
-            else{
+        List<Map<String, Object>> treatments = findTreatmentsAfter(treatmentsAfterId, lastTreatmentId);
+        while (!treatments.isEmpty()) {
 
-                log.info("No patient treatment data for "+dataSource);
+            List<Map<String, Object>> links = new ArrayList<>();
+            for (Map<String, Object> treatment : treatments) {
 
+                lastTreatmentId = ((Number) treatment.get("id")).longValue();
+                Map<String, Object> link = getLink(
+                    lastTreatmentId, (String) treatment.get("dataSource"), (String) treatment.get("name"));
+                if (link != null) links.add(link);
             }
 
-            while(startNode < maxTreatmentNumber){
-
-                Collection<Treatment> treatments = dataImportService.getPatientTreatmentFrom(startNode, batchSize, dataSource);
-
-                addRelationshipToTreatments(treatments, dataSource);
-
-                startNode += batchSize;
+            if (!links.isEmpty()) {
+                session.query(LINK_TREATMENTS_TO_TERMS, Collections.singletonMap("links", links));
+                linkedTreatments += links.size();
             }
+            treatments = findTreatmentsAfter(treatmentsAfterId, lastTreatmentId);
+        }
+        return linkedTreatments;
+    }
 
-            //STEP2: Look up drug dosing and link them to ontology terms
-
-            maxTreatmentNumber = dataImportService.findDrugDosingStudyNumberByDataSource(dataSource);
-            startNode = 0;
-
-            if(maxTreatmentNumber > 0) log.info("Mapping drug dosing for "+dataSource);
-
-            while(startNode < maxTreatmentNumber){
-
-                Collection<Treatment> treatments = dataImportService.getModelTreatmentFrom(startNode, batchSize, dataSource);
+    private Map<String, Object> getLink(long treatmentId, String dataSource, String treatmentName) {
 
-                addRelationshipToTreatments(treatments, dataSource);
+        MappingEntity me = mappingsByTreatment.computeIfAbsent(
+            mappingService.getTreatmentMappingKey(dataSource, treatmentName),
+            k -> Optional.ofNullable(mappingService.getTreatmentMapping(dataSource, treatmentName)))
+            .orElse(null);
 
-                startNode += batchSize;
-            }
+        if (me == null) {
+            missingMappings.add(dataSource + " " + treatmentName);
+            return null;
+        }
 
+        Long termId = termIdsByUrl.get(me.getMappedTermUrl());
+        if (termId == null) {
+            missingTerms.add(me.getMappedTermLabel());
+            return null;
         }
 
+        Map<String, Object> link = new HashMap<>();
+        link.put("treatmentId", treatmentId);
+        link.put("termId", termId);
+        link.put("type", me.getMapType());
+        link.put("justification", me.getJustification());
+        return link;
     }
 
+    private List<Map<String, Object>> findTreatmentsAfter(String treatmentsAfterId, long lastTreatmentId) {
 
-    public void addRelationshipToTreatments(Collection<Treatment> treatments, String dataSource){
-
-        List<String> missingOntologyTerms = new ArrayList<>();
-        for(Treatment treatment : treatments){
-            MappingEntity me = mappingService.getTreatmentMapping(dataSource, treatment.getName());
-            if(me == null){
-                log.warn("No mapping rule found for "+dataSource+" "+treatment.getName());
-            }
-            else{
-                OntologyTerm ontologyTerm = dataImportService.findOntologyTermByUrl(me.getMappedTermUrl());
-                if (Objects.isNull(ontologyTerm)) {
-                    missingOntologyTerms.add(me.getMappedTermLabel());
-                } else {
-                    TreatmentToOntologyRelationship r = new TreatmentToOntologyRelationship();
-                    r.setType(me.getMapType());
-                    r.setJustification(me.getJustification());
-                    r.setOntologyTerm(ontologyTerm);
-                    r.setTreatment(treatment);
-                    treatment.setTreatmentToOntologyRelationship(r);
-                    dataImportService.saveTreatment(treatment);
-                }
-            }
-        }
-        log.error("Failed to find {} ontology terms: {}", missingOntologyTerms.size(), missingOntologyTerms);
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("lastTreatmentId", lastTreatmentId);
+        parameters.put("pageSize", pageSize);
+        List<Map<String, Object>> treatments = new ArrayList<>();
+        session.query(treatmentsAfterId, parameters, true).queryResults().forEach(treatments::add);
+        return treatments;
     }
 
-
+    void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
 
 }
@@ -0,0 +1,32 @@
+package org.pdxfinder.mapping;
+
+import org.neo4j.ogm.session.Session;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Node ids of the ontology terms, keyed by term url, so the linking steps can write MAPPED_TO relationships
+ * by id in bulk instead of loading each term as an entity.
+ */
+final class OntologyTermIds {
+
+    private static final String ONTOLOGY_TERM_IDS =
+        "MATCH (ot:OntologyTerm) RETURN ot.url AS url, id(ot) AS id";
+
+    private OntologyTermIds() {
+    }
+
+    /**
+     * @return the node id of every ontology term by url; when a url repeats, the first term returned wins
+     */
+    static Map<String, Long> byUrl(Session session) {
+
+        Map<String, Long> termIdsByUrl = new HashMap<>();
+        for (Map<String, Object> term : session.query(ONTOLOGY_TERM_IDS, Collections.emptyMap(), true).queryResults()) {
+            termIdsByUrl.putIfAbsent((String) term.get("url"), ((Number) term.get("id")).longValue());
+        }
+        return termIdsByUrl;
+    }
+}
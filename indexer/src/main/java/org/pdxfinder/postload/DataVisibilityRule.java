@@ -0,0 +1,70 @@
+package org.pdxfinder.postload;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One entry of the {@code data-visibility.rules} setting, written as
+ * {@code dataSource:molcharType:visible|hidden}. A molchar type of {@code *} matches every
+ * molecular characterization of the data source.
+ */
+public class DataVisibilityRule {
+
+    static final String ANY_TYPE = "*";
+
+    private final String dataSource;
+    private final String molcharType;
+    private final boolean visible;
+
+    public DataVisibilityRule(String dataSource, String molcharType, boolean visible) {
+        this.dataSource = dataSource;
+        this.molcharType = molcharType;
+        this.visible = visible;
+    }
+
+    public static DataVisibilityRule parse(String rule) {
+        String[] parts = rule.trim().split("\\s*:\\s*");
+        if (parts.length != 3 || parts[0].isEmpty() || parts[1].isEmpty()) {
+            throw new IllegalArgumentException(
+                "Data visibility rule must look like dataSource:molcharType:visible|hidden, got " + rule);
+        }
+        switch (parts[2].toLowerCase()) {
+            case "visible":
+                return new DataVisibilityRule(parts[0], parts[1], true);
+            case "hidden":
+                return new DataVisibilityRule(parts[0], parts[1], false);
+            default:
+                throw new IllegalArgumentException(
+                    "Data visibility must be visible or hidden, got " + parts[2] + " in " + rule);
+        }
+    }
+
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    public String getMolcharType() {
+        return molcharType;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    boolean appliesToAnyType() {
+        return ANY_TYPE.equals(molcharType);
+    }
+
+    Map<String, Object> toParameters() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("dataSource", dataSource);
+        parameters.put("type", molcharType);
+        parameters.put("visible", visible);
+        return parameters;
+    }
+
+    @Override
+    public String toString() {
+        return dataSource + ":" + molcharType + ":" + (visible ? "visible" : "hidden");
+    }
+}
@@ -1,13 +1,15 @@
 package org.pdxfinder.postload;
 
-import org.pdxfinder.graph.dao.MolecularCharacterization;
-import org.pdxfinder.services.DataImportService;
+import org.neo4j.ogm.session.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
 
 @Service
@@ -16,10 +18,32 @@ public class SetDataVisibility {
 
     private final static Logger log = LoggerFactory.getLogger(SetDataVisibility.class);
 
-    private DataImportService dataImportService;
-
-    public SetDataVisibility(DataImportService dataImportService) {
-        this.dataImportService = dataImportService;
+    /*
+     * Rules are passed wildcard-first, so the last matching rule of a molchar is the most
+     * specific one and a type rule overrides the data source wide rule.
+     */
+    private static final String APPLY_VISIBILITY_RULES =
+        "MATCH (mc:MolecularCharacterization)-[:CHARACTERIZED_BY]-(:Sample)-[:MODEL_SAMPLE_RELATION]-(mod:ModelCreation) " +
+        "WHERE mod.dataSource IN {dataSources} " +
+        "WITH DISTINCT mc, mod.dataSource AS dataSource " +
+        "WITH mc, [rule IN {rules} WHERE rule.dataSource = dataSource AND (rule.type = '*' OR rule.type = mc.type)] AS matching " +
+        "WHERE size(matching) > 0 " +
+        "WITH mc, matching[size(matching) - 1] AS rule " +
+        "WITH mc, rule, coalesce(mc.isVisible, false) <> rule.visible AS changed " +
+        "SET mc.isVisible = rule.visible " +
+        "RETURN rule.dataSource AS dataSource, rule.type AS type, " +
+        "count(mc) AS matched, sum(CASE WHEN changed THEN 1 ELSE 0 END) AS changed";
+
+    private Session session;
+    private List<DataVisibilityRule> rules;
+
+    @Autowired
+    public SetDataVisibility(Session session, @Value("${data-visibility.rules:}") String[] rules) {
+        this.session = session;
+        this.rules = Arrays.stream(rules)
+            .filter(rule -> !rule.trim().isEmpty())
+            .map(DataVisibilityRule::parse)
+            .collect(Collectors.toList());
     }
 
 
@@ -29,9 +53,7 @@ public class SetDataVisibility {
 
         log.info("Applying data visibility rules");
 
-        applyDataVisibilityRules("CRL");
-        applyDataVisibilityRules("Curie-LC");
-        applyDataVisibilityRules("Curie-BC");
+        applyDataVisibilityRules();
 
         long endTime = System.currentTimeMillis();
         long totalTime = endTime - startTime;
@@ -44,24 +66,39 @@ public class SetDataVisibility {
     }
 
 
-    public void applyDataVisibilityRules(String datasourceAbbrev){
+    /**
+     * Applies every rule in a single graph update and returns the number of molecular
+     * characterizations whose visibility changed, keyed by rule.
+     */
+    public Map<String, Long> applyDataVisibilityRules(){
 
-        log.info("Disabling data visibility for "+datasourceAbbrev);
+        Map<String, Long> changedByRule = new LinkedHashMap<>();
+        if (rules.isEmpty()) {
+            log.info("No data visibility rules configured");
+            return changedByRule;
+        }
 
-        int molcharCounter = dataImportService.findMolcharNumberByDataSource(datasourceAbbrev);
+        List<DataVisibilityRule> orderedRules = new ArrayList<>(rules);
+        orderedRules.sort(Comparator.comparing(rule -> !rule.appliesToAnyType()));
 
-        for(int i=0; i < molcharCounter; i+=50){
-            List<MolecularCharacterization> molChars = dataImportService.findMolcharByDataSourceSkipLimit(datasourceAbbrev, i, 50);
-            disableVisibility(molChars);
-            dataImportService.saveMolecularCharacterizations(molChars);
-        }
-    }
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("dataSources", orderedRules.stream().map(DataVisibilityRule::getDataSource).distinct().collect(Collectors.toList()));
+        parameters.put("rules", orderedRules.stream().map(DataVisibilityRule::toParameters).collect(Collectors.toList()));
 
+        Map<String, Map<String, Object>> resultsByRule = new HashMap<>();
+        for (Map<String, Object> result : session.query(APPLY_VISIBILITY_RULES, parameters).queryResults()) {
+            resultsByRule.put(result.get("dataSource") + ":" + result.get("type"), result);
+        }
 
-    public void disableVisibility(List<MolecularCharacterization> molChars){
-        for(MolecularCharacterization mc:molChars){
-            mc.setVisible(false);
+        for (DataVisibilityRule rule : rules) {
+            Map<String, Object> result = resultsByRule.getOrDefault(
+                rule.getDataSource() + ":" + rule.getMolcharType(), Collections.emptyMap());
+            long matched = ((Number) result.getOrDefault("matched", 0)).longValue();
+            long changed = ((Number) result.getOrDefault("changed", 0)).longValue();
+            log.info("{}: {} molecular characterizations matched, {} changed", rule, matched, changed);
+            changedByRule.put(rule.toString(), changed);
         }
+        return changedByRule;
     }
 
 }
@@ -1,13 +1,17 @@
 package org.pdxfinder.utils;
 
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.pdxfinder.TSV;
 import org.pdxfinder.dataexport.ExporterTemplates;
+import org.pdxfinder.dataexport.OmicTsvWriter;
 import org.pdxfinder.dataexport.UniversalDataWriterServices;
 import org.pdxfinder.graph.dao.Group;
 import org.pdxfinder.services.OmicTransformationService;
-import org.pdxfinder.services.UtilityService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -17,20 +21,22 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class CbpTransformer {
 
     private static final Logger log = LoggerFactory.getLogger(CbpTransformer.class);
 
-    private UtilityService utilityService;
+    private static final TypeReference<Map<String, Object>> RECORD_TYPE = new TypeReference<Map<String, Object>>() {};
+    private static final int MUT_ROW_WIDTH = 26;
+    private static final int GISTIC_ROW_WIDTH = 20;
+
+    private final ObjectMapper mapper = new ObjectMapper();
     private OmicTransformationService omicTransformationService;
     private UniversalDataWriterServices universalDataWriterUtilities;
 
-    CbpTransformer(UtilityService utilityService, OmicTransformationService omicTransformationService,
+    CbpTransformer(OmicTransformationService omicTransformationService,
                    UniversalDataWriterServices universalDataWriterUtilities){
-        this.utilityService = utilityService;
         this.omicTransformationService = omicTransformationService;
         this.universalDataWriterUtilities = universalDataWriterUtilities;
     }
@@ -45,6 +51,10 @@ public class CbpTransformer {
         GISTIC
     }
 
+    /**
+     * Streams the cBioPortal JSON array in {@code pathToJson} straight into the UPDOG TSV of {@code dataType}.
+     * Only one array element is held in memory at a time, so memory use does not grow with the size of the dump.
+     */
     public void exportCBP(File exportDir,File templateDir, File pathToJson, cbioType dataType) throws IOException {
         if (doesFileNotExist(exportDir) || doesFileNotExist(templateDir) || doesFileNotExist(pathToJson)) {
             throw new IOException(String.format("A string argument passed to the exportCBP does not point to an existing file." +
@@ -52,95 +62,105 @@ public class CbpTransformer {
         }
             ExporterTemplates templates = new ExporterTemplates(templateDir.toString(), false);
             Group jsonGroup = createGroupWithJsonsFilename(pathToJson.getAbsolutePath());
-            List<Map<String, Object>> listMapTable = utilityService.serializeJSONToMaps(pathToJson.getAbsolutePath());
-            List<List<String>> cbioParsedData = cbpMapsToSheetsByDataType(listMapTable, dataType);
 
             Path providerDir = Paths.get(exportDir + "/" + jsonGroup.getAbbreviation());
-            String exportUri = "";
+            String exportUri;
+            Sheet template;
             if(dataType.equals(cbioType.MUT)) {
                 exportUri = String.format("%s/%s/%s_%s", providerDir,mutFileId,jsonGroup.getAbbreviation(),mutFileId);
-                Sheet mutationTemplate = templates.getTemplate(TSV.templateNames.mutation_template.name()).getSheetAt(0);
-                universalDataWriterUtilities.writeSingleOmicFileToTsv(exportUri,mutationTemplate, cbioParsedData);
-            } else if(dataType.equals(cbioType.GISTIC)){
+                template = templates.getTemplate(TSV.templateNames.mutation_template.name()).getSheetAt(0);
+            } else {
                 exportUri = String.format("%s/%s/%s_%s", providerDir,cnaFileId,jsonGroup.getAbbreviation(),cnaFileId);
-                Sheet cnaTemplate = templates.getTemplate(TSV.templateNames.cna_template.name()).getSheetAt(0);
-                universalDataWriterUtilities.writeSingleOmicFileToTsv(exportUri,cnaTemplate, cbioParsedData);
+                template = templates.getTemplate(TSV.templateNames.cna_template.name()).getSheetAt(0);
+            }
+
+            long startedAt = System.currentTimeMillis();
+            int skipped = 0;
+            try (JsonParser parser = mapper.getFactory().createParser(pathToJson);
+                 OmicTsvWriter writer = universalDataWriterUtilities.openOmicTsvWriter(exportUri, template)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IOException(String.format("Expected a JSON array of cBioPortal records in %s", pathToJson));
+                }
+                int recordCount = 0;
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == null) {
+                        throw new IOException(String.format("Unterminated JSON array of cBioPortal records in %s", pathToJson));
+                    }
+                    recordCount++;
+                    if (token != JsonToken.START_OBJECT) {
+                        skipped++;
+                        log.error("Json {} element {} is not an object. Skipping it", dataType, recordCount);
+                        parser.skipChildren();
+                        continue;
+                    }
+                    Map<String, Object> record = mapper.readValue(parser, RECORD_TYPE);
+                    List<String> row = cbpMapToRowByDataType(record, dataType);
+                    if (row == null) {
+                        skipped++;
+                        log.error("Missing value in Json {} map. Skipping Json Map {}", dataType, recordCount);
+                    } else {
+                        writer.writeRow(row);
+                    }
+                }
+                log.info("Transformed {} cBioPortal {} records to {} ({} skipped) in {} ms", recordCount, dataType,
+                        writer.getFile(), skipped, System.currentTimeMillis() - startedAt);
             }
+            omicTransformationService.logUnresolvedNcbiGeneIds();
     }
 
-    private List<List<String>> cbpMapsToSheetsByDataType(List<Map<String, Object>> listMapTable, cbioType dataType){
-        List<List<String>> parsedCbioData = new ArrayList<>();
-        if(dataType.equals(cbioType.MUT)){
-            parsedCbioData = cbpMutJsonMapsToSheet(listMapTable);
+    private List<String> cbpMapToRowByDataType(Map<String, Object> record, cbioType dataType){
+        try {
+            return dataType.equals(cbioType.MUT) ? cbpMutJsonMapToRow(record) : cbpGisticJsonMapToRow(record);
+        } catch (NullPointerException e) {
+            return null;
         }
-        else if(dataType.equals(cbioType.GISTIC)) {
-            parsedCbioData = cbpGisticsonMapsToSheet(listMapTable);
-        }
-        return parsedCbioData;
     }
 
-    private List<List<String>> cbpMutJsonMapsToSheet(List<Map<String, Object>> jsonMap){
-        AtomicInteger rowCount = new AtomicInteger();
-        List<List<String>> cbioData = new ArrayList<>();
-        jsonMap.forEach(f -> {
-            try {
-                rowCount.incrementAndGet();
-                List<String> row = new LinkedList<>();
-                row.add(f.get(patientId).toString());
-                row.add(f.get(sampleId).toString());
-                row.add(notSpecified);
-                row.add(notSpecified);
-                row.add(notSpecified);
-                row.add(parseHugoGeneDetails((LinkedHashMap<Object, Object>) f.get("gene")));
-                addBlanksToList(row, 7);
-                row.add(String.valueOf(f.getOrDefault("tumorAltCount", "")));
-                row.add("");
-                row.add(f.get("chr").toString());
-                row.add(f.get("startPosition").toString());
-                row.add(f.get("referenceAllele").toString());
-                row.add(f.get("variantAllele").toString());
-                addBlanksToList(row, 6);
-                row.add(f.get("ncbiBuild").toString());
-                cbioData.add(row);
-            }catch(NullPointerException e){
-                log.error(String.format("Missing value in Json Mut map. Skipping Json Map %d", rowCount.get()));
-            }
-
-        });
-        return cbioData;
+    private List<String> cbpMutJsonMapToRow(Map<String, Object> f){
+        List<String> row = new ArrayList<>(MUT_ROW_WIDTH);
+        row.add(f.get(patientId).toString());
+        row.add(f.get(sampleId).toString());
+        row.add(notSpecified);
+        row.add(notSpecified);
+        row.add(notSpecified);
+        row.add(parseHugoGeneDetails(f.get("gene")));
+        addBlanksToList(row, 7);
+        row.add(String.valueOf(f.getOrDefault("tumorAltCount", "")));
+        row.add("");
+        row.add(f.get("chr").toString());
+        row.add(f.get("startPosition").toString());
+        row.add(f.get("referenceAllele").toString());
+        row.add(f.get("variantAllele").toString());
+        addBlanksToList(row, 6);
+        row.add(f.get("ncbiBuild").toString());
+        return row;
     }
 
-    private List<List<String>> cbpGisticsonMapsToSheet(List<Map<String,Object>> jsonMap){
-        List<List<String>> cbioData = new ArrayList<>();
-
-        jsonMap.forEach(f -> {
-            try {
-            List<String> row = new LinkedList<>();
-            row.add(f.get(patientId).toString());
-            row.add(f.get(sampleId).toString());
-            row.add(notSpecified);
-            row.add(notSpecified);
-            row.add(notSpecified);
-            addBlanksToList(row,3);
-            row.add(parseHugoGeneDetails((LinkedHashMap<Object, Object>) f.get("gene")));
-            row.add("");
-            row.add(f.getOrDefault(entrezGeneId, "").toString());
-            addBlanksToList(row, 5);
-            row.add(f.get("alteration").toString());
-            addBlanksToList(row, 3);
-            cbioData.add(row);
-             }catch(NullPointerException e){
-                log.error("Missing value in Json gistic map. Skipping Json Map row");
-                }
-        });
-        return cbioData;
+    private List<String> cbpGisticJsonMapToRow(Map<String, Object> f){
+        List<String> row = new ArrayList<>(GISTIC_ROW_WIDTH);
+        row.add(f.get(patientId).toString());
+        row.add(f.get(sampleId).toString());
+        row.add(notSpecified);
+        row.add(notSpecified);
+        row.add(notSpecified);
+        addBlanksToList(row,3);
+        row.add(parseHugoGeneDetails(f.get("gene")));
+        row.add("");
+        row.add(f.getOrDefault(entrezGeneId, "").toString());
+        addBlanksToList(row, 5);
+        row.add(f.get("alteration").toString());
+        addBlanksToList(row, 3);
+        return row;
     }
 
-    private String parseHugoGeneDetails(LinkedHashMap<Object, Object> geneDetails){
-        String hugoGene = (String) geneDetails.getOrDefault("hugoGeneSymbol", "");
+    @SuppressWarnings("unchecked")
+    private String parseHugoGeneDetails(Object gene){
+        Map<String, Object> geneDetails = (Map<String, Object>) gene;
+        String hugoGene = String.valueOf(geneDetails.getOrDefault("hugoGeneSymbol", ""));
         if (hugoGene.isEmpty())  {
                 hugoGene = omicTransformationService
-                        .ncbiGeneIdToHgncSymbol((String) geneDetails.getOrDefault(entrezGeneId,""));
+                        .ncbiGeneIdToHgncSymbol(String.valueOf(geneDetails.getOrDefault(entrezGeneId,"")));
         }
         return hugoGene;
     }
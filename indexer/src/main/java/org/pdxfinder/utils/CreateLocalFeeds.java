@@ -1,10 +1,15 @@
 package org.pdxfinder.utils;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import com.github.openjson.*;
 import org.pdxfinder.services.TransformerService;
 import org.pdxfinder.services.UtilityService;
+import org.pdxfinder.services.http.CachingHttpClient;
+import org.pdxfinder.services.http.HttpCacheMode;
+import org.pdxfinder.services.http.HttpResponseCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,9 +18,24 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 
 /**
@@ -32,6 +52,11 @@ import java.util.List;
  *
  *
  * MAKE SURE THE DEPLOYMENT SCRIPT COPIES OVER ADDITIONAL DATA FILES
+ *
+ * JAX model details are fetched on a pool of local-feeds.threads requests, through the shared (optionally recording)
+ * HTTP client, which retries failed requests. Every file is written atomically. A hash of each model's responses is
+ * kept in JAX/feed-hashes.json, and models whose responses have not changed since the last build are not rewritten.
+ * With local-feeds.source-dir set, feeds are built offline from the responses recorded in that HTTP cache directory.
  */
 
 
@@ -46,6 +71,13 @@ public class CreateLocalFeeds implements CommandLineRunner {
 
     private final static Logger log = LoggerFactory.getLogger(CreateLocalFeeds.class);
 
+    static final String FEED_HASHES = "feed-hashes.json";
+
+    private static final String[] JAX_MODEL_FEEDS = {"mut", "hist", "cna", "trans"};
+    private static final Pattern LINE_BREAKS = Pattern.compile("[\\r\\n]");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
     @Value("${data-dir}")
     private String finderRootDir;
 
@@ -93,6 +125,12 @@ public class CreateLocalFeeds implements CommandLineRunner {
     @Value("#{'${wustl.urls}'.split(',')}")
     private List<String> wustlUrlsStr;
 
+    @Value("${local-feeds.threads:8}")
+    private int feedThreads;
+
+    @Value("${local-feeds.source-dir:}")
+    private String recordedResponsesDir;
+
     @Autowired
     private UtilityService utilityService;
 
@@ -126,41 +164,128 @@ public class CreateLocalFeeds implements CommandLineRunner {
     }
 
 
-    private void createJAXFeeds(){
+    void createJAXFeeds() {
 
         log.info("Creating JAX feeds");
-        String jsonString = utilityService.parseURL(jaxUrlStr);
-
-        saveFile(finderRootDir +"/data/JAX/pdx/", "models.json", jsonString);
+        CachingHttpClient httpClient = getFeedHttpClient();
+        File jaxDir = new File(finderRootDir, "data/JAX");
 
+        List<String> modelIds = new ArrayList<>();
         try {
-            JSONObject job = new JSONObject(jsonString);
-            JSONArray jarray = job.getJSONArray("pdxInfo");
+            String jsonString = fetch(httpClient, jaxUrlStr);
+            writeAtomically(new File(new File(jaxDir, "pdx"), "models.json"), jsonString);
 
+            JSONArray jarray = new JSONObject(jsonString).getJSONArray("pdxInfo");
             for (int i = 0; i < jarray.length(); i++) {
+                modelIds.add(jarray.getJSONObject(i).getString("Model ID"));
+            }
+        } catch (Exception e) {
+            log.error("Error getting JAX PDX models", e);
+            return;
+        }
+
+        File hashesFile = new File(jaxDir, FEED_HASHES);
+        Map<String, String> previousHashes = readFeedHashes(hashesFile);
+        Map<String, String> hashes = new ConcurrentHashMap<>();
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger unchanged = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, feedThreads), runnable -> {
+            Thread thread = new Thread(runnable, "local-feeds-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<CompletableFuture<Void>> modelFeeds = new ArrayList<>(modelIds.size());
+            for (String modelId : modelIds) {
+                modelFeeds.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        boolean rewritten = createJAXModelFeeds(httpClient, jaxDir, modelId, previousHashes.get(modelId), hashes);
+                        (rewritten ? written : unchanged).incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        log.error("Error creating JAX feeds of model {}", modelId, e);
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(modelFeeds.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdownNow();
+        }
 
-                JSONObject j = jarray.getJSONObject(i);
-                String modelId = j.getString("Model ID");
+        try {
+            writeAtomically(hashesFile, mapper.writerWithDefaultPrettyPrinter().writeValueAsString(new TreeMap<>(hashes)));
+        } catch (IOException e) {
+            log.error("Cannot save {}", hashesFile, e);
+        }
+        log.info("JAX feeds of {} models: {} written, {} unchanged, {} failed",
+                modelIds.size(), written.get(), unchanged.get(), failed.get());
+        httpClient.logStatistics("Local feeds");
+    }
 
-                String mutation = utilityService.parseURL(jaxVariationURL + modelId);
-                saveFile(finderRootDir +"/data/JAX/mut/", modelId+".json", mutation);
+    /**
+     * Fetches the details of one model and writes its feeds, unless they are already on disk and the responses
+     * hash to {@code previousHash}. The hash is added to {@code hashes} once the feeds are on disk.
+     *
+     * @return false when the feeds were left as they were
+     */
+    private boolean createJAXModelFeeds(CachingHttpClient httpClient, File jaxDir, String modelId, String previousHash,
+                                        Map<String, String> hashes) throws IOException {
+
+        String mutation = fetch(httpClient, jaxVariationURL + modelId);
+        String histology = fetch(httpClient, jaxHistologyURL + modelId);
+        String cna = fetch(httpClient, jaxCnaURL + modelId);
+        String trans = fetch(httpClient, jaxRnaseqURL + modelId);
+
+        String hash = DigestUtils.md5DigestAsHex(
+                String.join("\n", mutation, histology, cna, trans).getBytes(StandardCharsets.UTF_8));
+        String fileName = modelId + ".json";
+        boolean onDisk = true;
+        for (String feed : JAX_MODEL_FEEDS) {
+            onDisk &= new File(new File(jaxDir, feed), fileName).isFile();
+        }
+        if (onDisk && hash.equals(previousHash)) {
+            hashes.put(modelId, hash);
+            return false;
+        }
 
-                String histology = utilityService.parseURL(jaxHistologyURL + modelId);
-                saveFile(finderRootDir +"/data/JAX/hist/", modelId+".json", histology);
+        writeAtomically(new File(new File(jaxDir, "mut"), fileName), mutation);
+        writeAtomically(new File(new File(jaxDir, "hist"), fileName), histology);
+        writeAtomically(new File(new File(jaxDir, "cna"), fileName), dataTransformer.transformJAXCNV(cna));
+        writeAtomically(new File(new File(jaxDir, "trans"), fileName), dataTransformer.transformJaxRNASeq(trans));
+        hashes.put(modelId, hash);
+        return true;
+    }
 
-                String cna = utilityService.parseURL(jaxCnaURL + modelId);
-                cna = dataTransformer.transformJAXCNV(cna);
-                saveFile(finderRootDir +"/data/JAX/cna/", modelId+".json", cna);
+    private CachingHttpClient getFeedHttpClient() {
 
-                String trans = utilityService.parseURL(jaxRnaseqURL + modelId);
-                trans = dataTransformer.transformJaxRNASeq(trans);
-                saveFile(finderRootDir +"/data/JAX/trans/", modelId+".json", trans);
+        if (recordedResponsesDir == null || recordedResponsesDir.isEmpty()) {
+            return utilityService.getHttpClient();
+        }
+        log.info("Creating local feeds from the responses recorded in {}", recordedResponsesDir);
+        return new CachingHttpClient(
+                new HttpResponseCache(new File(recordedResponsesDir), Duration.ofMillis(-1)), HttpCacheMode.OFFLINE);
+    }
 
-            }
+    /**
+     * Like {@link UtilityService#parseURL}, the feeds are saved without line breaks, but a failed request is thrown.
+     */
+    private static String fetch(CachingHttpClient httpClient, String url) throws IOException {
+        return LINE_BREAKS.matcher(httpClient.get(url, null)).replaceAll("");
+    }
 
-        } catch (Exception e) {
-            log.error("Error getting JAX PDX models", e);
+    private Map<String, String> readFeedHashes(File hashesFile) {
 
+        if (!hashesFile.isFile()) {
+            return Collections.emptyMap();
+        }
+        try {
+            return mapper.readValue(hashesFile, new TypeReference<Map<String, String>>() {});
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable {}, every model feed will be rewritten: {}", hashesFile, e.getMessage());
+            return Collections.emptyMap();
         }
     }
 
@@ -246,25 +371,33 @@ public class CreateLocalFeeds implements CommandLineRunner {
 
     private void saveFile(String dirPath, String fileName, String fileContent){
 
-        File directory = new File(dirPath);
-        if (! directory.exists()){
-            directory.mkdirs();
-
-        }
-
         String fileWithPath = dirPath+fileName;
 
         log.info("Saving file "+fileWithPath);
         try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(fileWithPath, false));
-
-            writer.write(fileContent);
-            writer.close();
+            writeAtomically(new File(fileWithPath), fileContent);
 
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Writes {@code content} to a temporary file beside {@code target} and moves it into place, so a feed file is
+     * either the previous or the complete new version.
+     */
+    static void writeAtomically(File target, String content) throws IOException {
+
+        File directory = target.getAbsoluteFile().getParentFile();
+        Files.createDirectories(directory.toPath());
+        File temporary = File.createTempFile(target.getName(), ".tmp", directory);
+        try {
+            Files.write(temporary.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+    }
+
 
 }
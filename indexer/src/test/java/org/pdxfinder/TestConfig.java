@@ -25,7 +25,7 @@ public class TestConfig {
 
     @Bean
     public SessionFactory sessionFactory() {
-        return new SessionFactory(getConfiguration(), "org.pdxfinder.*");
+        return new SessionFactory(getConfiguration(), "org.pdxfinder.graph");
     }
 
     @Bean
@@ -6,10 +6,10 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.anyList;
 import static org.mockito.Mockito.anyListOf;
-import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.IOException;
@@ -34,11 +34,12 @@ public class FinderCommandLineTest extends BaseTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        doNothing().when(this.finderLoader).run(
+        when(this.finderLoader.run(
                 anyListOf(DataProvider.class),
                 any(File.class),
-                anyBoolean(), anyBoolean(), anyBoolean()
-        );
+                anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyListOf(String.class)
+        )).thenReturn(true);
     }
 
     @Test public void givenLoadOnlyMinimal_LoaderIsCalled() {
@@ -48,7 +49,8 @@ public class FinderCommandLineTest extends BaseTest {
         verify(this.finderLoader).run(
                 anyList(),
                 any(File.class),
-                anyBoolean(), anyBoolean(), anyBoolean()
+                anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyList()
         );
         verifyNoMoreInteractions(this.finderLoader);
     }
@@ -60,7 +62,8 @@ public class FinderCommandLineTest extends BaseTest {
         verify(this.finderLoader).run(
                 anyList(),
                 any(File.class),
-                anyBoolean(), anyBoolean(), anyBoolean()
+                anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyList()
         );
         verifyNoMoreInteractions(this.finderLoader);
     }
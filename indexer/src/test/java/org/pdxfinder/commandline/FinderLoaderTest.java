@@ -1,9 +1,14 @@
 package org.pdxfinder.commandline;
 
+import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyString;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -13,13 +18,18 @@ import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
+import org.neo4j.ogm.model.Result;
+import org.neo4j.ogm.session.Session;
 import org.pdxfinder.BaseTest;
 import org.pdxfinder.LoadDiseaseOntology;
+import org.pdxfinder.dataloaders.updog.LoadMetrics;
 import org.pdxfinder.dataloaders.updog.Updog;
 import org.pdxfinder.mapping.LinkSamplesToNCITTerms;
 import org.pdxfinder.mapping.LinkTreatmentsToNCITTerms;
@@ -31,6 +41,7 @@ import org.pdxfinder.services.constants.DataUrl;
 import org.pdxfinder.services.loader.envload.LoadMarkers;
 import org.pdxfinder.services.loader.envload.LoadNCIT;
 import org.pdxfinder.services.loader.envload.LoadNCITDrugs;
+import org.springframework.test.util.ReflectionTestUtils;
 
 public class FinderLoaderTest extends BaseTest {
 
@@ -40,6 +51,7 @@ public class FinderLoaderTest extends BaseTest {
     @Mock private LoadNCITDrugs loadNCITDrugs;
     @Mock private DataImportService dataImportService;
     @Mock private Updog updog;
+    @Mock private LoadMetrics loadMetrics;
 
     private DataProvider dataProvider;
     private DataProvider updogDataProvider;
@@ -49,6 +61,10 @@ public class FinderLoaderTest extends BaseTest {
     @Mock private CreateDataProjections createDataProjections;
     @Mock private SetDataVisibility setDataVisibility;
     @Mock private File dataDirectory;
+    @Mock private Session session;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
     @Spy
     @InjectMocks
@@ -80,6 +96,35 @@ public class FinderLoaderTest extends BaseTest {
             isFalse, isFalse, isFalse);
         verify(this.updog).run(any(Path.class), anyString());
         verifyNoMoreInteractions(this.updog);
+        verify(this.dataImportService).evictReferenceEntities();
+    }
+
+    @Test public void run_givenFailingProvider_stillRunsPostLoadStagesAndReportsFailure() throws Exception {
+        doThrow(new IllegalStateException("bad provider")).when(this.updog).run(any(Path.class), anyString());
+        boolean completed = finderLoader.run(
+            Collections.singletonList(updogDataProvider),
+            dataDirectory,
+            isFalse, isFalse, isFalse, isFalse, Collections.emptyList());
+        assertFalse(completed);
+        verify(this.loadMetrics).logSummary();
+        verify(this.linkSamplesToNCITTerms).run();
+        verify(this.setDataVisibility).run();
+    }
+
+    @Test public void run_givenProviderFailedBefore_doesNotLoadItAgainOnResume() throws Exception {
+        ReflectionTestUtils.setField(finderLoader, "dbCacheDir", temporaryFolder.getRoot().getAbsolutePath());
+        Result databaseId = mock(Result.class);
+        when(databaseId.queryResults()).thenReturn(Collections.singletonList(Collections.singletonMap("databaseId", "db")));
+        when(this.session.query(anyString(), anyMap())).thenReturn(databaseId);
+        doThrow(new IllegalStateException("bad provider")).when(this.updog).run(any(Path.class), anyString());
+        finderLoader.run(Collections.singletonList(updogDataProvider), dataDirectory,
+            isFalse, isFalse, isFalse, isFalse, Collections.emptyList());
+
+        boolean completed = finderLoader.run(Collections.singletonList(updogDataProvider), dataDirectory,
+            isFalse, isFalse, isFalse, isTrue, Collections.emptyList());
+
+        assertFalse(completed);
+        verify(this.updog, times(1)).run(any(Path.class), anyString());
     }
 
     @Test public void run_givenZeroProviders_callNoLoaders() throws Exception {
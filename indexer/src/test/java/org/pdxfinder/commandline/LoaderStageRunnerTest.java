@@ -0,0 +1,193 @@
+package org.pdxfinder.commandline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pdxfinder.commandline.LoaderCheckpoints.Status;
+
+public class LoaderStageRunnerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+    private LoaderStage stage(String name, String... dependsOn) {
+        return new LoaderStage(name, "inputs", () -> ran.add(name), dependsOn);
+    }
+
+    @Test
+    public void Given_Dependencies_When_Run_Then_StagesRunAfterTheirDependencies() {
+
+        List<String> unsuccessful = new LoaderStageRunner(2).run(Arrays.asList(
+            stage("post-load", "provider"),
+            stage("provider", "markers", "regimens"),
+            stage("markers"),
+            stage("regimens")), new LoaderCheckpoints(null), false, null);
+
+        assertTrue(unsuccessful.isEmpty());
+        assertEquals(4, ran.size());
+        assertTrue(ran.indexOf("provider") > ran.indexOf("markers"));
+        assertTrue(ran.indexOf("provider") > ran.indexOf("regimens"));
+        assertEquals("post-load", ran.get(3));
+    }
+
+    @Test
+    public void Given_IndependentStages_When_Run_Then_TheyRunTogether() {
+
+        // each stage waits for the other, so the run only completes when both run at the same time
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        LoaderStage.Action action = () -> {
+            bothStarted.countDown();
+            if (!bothStarted.await(10, TimeUnit.SECONDS)) throw new IllegalStateException("ran sequentially");
+            return null;
+        };
+
+        List<String> unsuccessful = new LoaderStageRunner(2).run(Arrays.asList(
+            new LoaderStage("markers", "", action),
+            new LoaderStage("disease-terms", "", action)), new LoaderCheckpoints(null), false, null);
+
+        assertTrue(unsuccessful.isEmpty());
+    }
+
+    @Test
+    public void Given_FailedStage_When_Run_Then_DependentsBlockedAndOthersComplete() {
+
+        LoaderCheckpoints checkpoints = new LoaderCheckpoints(null);
+        List<String> unsuccessful = new LoaderStageRunner(1).run(Arrays.asList(
+            new LoaderStage("markers", "", () -> { throw new IOException("HGNC unreachable"); }),
+            stage("regimens"),
+            stage("provider", "markers"),
+            stage("post-load", "provider")), checkpoints, false, null);
+
+        assertEquals(Arrays.asList("markers", "provider", "post-load"), unsuccessful);
+        assertEquals(Collections.singletonList("regimens"), ran);
+        assertEquals(Status.FAILED, checkpoints.get("markers").getStatus());
+        assertEquals(Status.BLOCKED, checkpoints.get("post-load").getStatus());
+    }
+
+    @Test
+    public void Given_CompletedCheckpoints_When_Resumed_Then_OnlyUnfinishedStagesRun() throws IOException {
+
+        File file = new File(temporaryFolder.getRoot(), "load-checkpoints.json");
+        List<LoaderStage> stages = Arrays.asList(
+            stage("markers"),
+            new LoaderStage("provider", "inputs", () -> { throw new IOException("interrupted"); }, "markers"));
+        new LoaderStageRunner(1).run(stages, new LoaderCheckpoints(file), false, null);
+        ran.clear();
+
+        List<String> unsuccessful = new LoaderStageRunner(1).run(Arrays.asList(
+            stage("markers"),
+            stage("provider", "markers"),
+            new LoaderStage("regimens", "other inputs", () -> ran.add("regimens"))), new LoaderCheckpoints(file), true, null);
+
+        assertTrue(unsuccessful.isEmpty());
+        assertEquals(Arrays.asList("provider", "regimens"), sorted(ran));
+        assertEquals(Status.COMPLETED, new LoaderCheckpoints(file).get("provider").getStatus());
+    }
+
+    @Test
+    public void Given_FailedStageNotRetriedAfterFailure_When_Resumed_Then_NotRunAgainAndDependentsBlocked() throws IOException {
+
+        File file = new File(temporaryFolder.getRoot(), "load-checkpoints.json");
+        new LoaderStageRunner(1).run(Arrays.asList(
+            stage("markers"),
+            new LoaderStage("provider", "inputs", () -> { throw new IOException("interrupted"); }, "markers")
+                .notRetriedAfterFailure()), new LoaderCheckpoints(file, "db"), false, null);
+        ran.clear();
+
+        LoaderCheckpoints checkpoints = new LoaderCheckpoints(file, "db");
+        List<String> unsuccessful = new LoaderStageRunner(1).run(Arrays.asList(
+            stage("markers"),
+            stage("provider", "markers").notRetriedAfterFailure(),
+            stage("post-load", "provider")), checkpoints, true, null);
+
+        assertEquals(Arrays.asList("provider", "post-load"), unsuccessful);
+        assertTrue(ran.isEmpty());
+        assertEquals(Status.FAILED, checkpoints.get("provider").getStatus());
+        assertEquals(Status.BLOCKED, checkpoints.get("post-load").getStatus());
+    }
+
+    @Test
+    public void Given_FailedStage_When_RunAfterIt_Then_StageStillRunsAndFailureReported() {
+
+        List<String> unsuccessful = new LoaderStageRunner(2).run(Arrays.asList(
+            new LoaderStage("provider-a", "", () -> { throw new IOException("bad provider"); }),
+            stage("provider-b"),
+            stage("load-metrics").runsAfter("provider-a", "provider-b"),
+            stage("post-load", "load-metrics")), new LoaderCheckpoints(null), false, null);
+
+        assertEquals(Collections.singletonList("provider-a"), unsuccessful);
+        assertEquals(Arrays.asList("provider-b", "load-metrics", "post-load"), ran);
+    }
+
+    @Test
+    public void Given_UpstreamStageRerun_When_Resumed_Then_DownstreamStagesRunAgain() throws IOException {
+
+        File file = new File(temporaryFolder.getRoot(), "load-checkpoints.json");
+        List<LoaderStage> stages = Arrays.asList(
+            stage("markers"),
+            stage("provider", "markers"),
+            stage("post-load", "provider"));
+        new LoaderStageRunner(1).run(stages, new LoaderCheckpoints(file, "db"), false, null);
+        new LoaderStageRunner(1).run(stages, new LoaderCheckpoints(file, "db"), false, Collections.singletonList("provider"));
+        ran.clear();
+
+        new LoaderStageRunner(1).run(stages, new LoaderCheckpoints(file, "db"), true, null);
+
+        assertEquals(Collections.singletonList("post-load"), ran);
+    }
+
+    @Test
+    public void Given_CheckpointsOfAnotherDatabase_When_Resumed_Then_EveryStageRuns() {
+
+        File file = new File(temporaryFolder.getRoot(), "load-checkpoints.json");
+        List<LoaderStage> stages = Arrays.asList(stage("markers"), stage("provider", "markers"));
+        new LoaderStageRunner(1).run(stages, new LoaderCheckpoints(file, "old-db"), false, null);
+        ran.clear();
+
+        new LoaderStageRunner(1).run(stages, new LoaderCheckpoints(file, "new-db"), true, null);
+
+        assertEquals(Arrays.asList("markers", "provider"), ran);
+    }
+
+    @Test
+    public void Given_OnlyStages_When_Run_Then_SelectedStagesRunWithoutTheirDependencies() {
+
+        new LoaderStageRunner(2).run(Arrays.asList(
+            stage("markers"),
+            stage("provider", "markers"),
+            stage("post-load", "provider")), new LoaderCheckpoints(null), false, Collections.singletonList("post-load"));
+
+        assertEquals(Collections.singletonList("post-load"), ran);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Given_UnknownOnlyStage_When_Run_Then_Rejected() {
+        new LoaderStageRunner(1).run(Collections.singletonList(stage("markers")),
+            new LoaderCheckpoints(null), false, Collections.singletonList("marker"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Given_DependencyCycle_When_Run_Then_Rejected() {
+        new LoaderStageRunner(1).run(Arrays.asList(stage("a", "b"), stage("b", "a")),
+            new LoaderCheckpoints(null), false, null);
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -1,5 +1,8 @@
 package org.pdxfinder.dataexport;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.Assert;
@@ -14,7 +17,6 @@ import org.mockito.Mock;
 import org.pdxfinder.BaseTest;
 import org.pdxfinder.TSV;
 import org.pdxfinder.services.OmicTransformationService;
-import org.pdxfinder.services.UtilityService;
 import org.pdxfinder.utils.CbpTransformer;
 import org.pdxfinder.utils.CbpTransformer.cbioType;
 
@@ -22,10 +24,12 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
 
 import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -35,14 +39,14 @@ public class CbpTransformerTests extends BaseTest {
     @Rule
     public TemporaryFolder folder = new TemporaryFolder();
 
-    @Mock
-    private UtilityService utilityService;
     @Mock
     private OmicTransformationService omicTransformationService;
     @Mock
     private UniversalDataWriterServices universalDataWriterUtilities;
+    @Mock
+    private OmicTsvWriter omicTsvWriter;
     @Captor
-    private ArgumentCaptor<ArrayList<List<String>>> captor;
+    private ArgumentCaptor<List<String>> rowCaptor;
 
     @InjectMocks
     private CbpTransformer cbpTransformer;
@@ -52,6 +56,7 @@ public class CbpTransformerTests extends BaseTest {
     private cbioType mutDataType;
     private cbioType gisticDataType;
     private String templatesFolder;
+    private ObjectMapper mapper = new ObjectMapper();
 
     @Before
     public void init() throws IOException {
@@ -98,30 +103,32 @@ public class CbpTransformerTests extends BaseTest {
 
     @Test
     public void Give_JsonArrayAndValidImportDirectory_When_exportsIsCalled__ThenNewMutDirExists() throws IOException {
-        String mut = TSV.molecular_characterisation_type.mut.mcType;
         String mutFileId = TSV.molecular_characterisation_type.mut.name();
-        String ns = "Not Specified";
 
-        List<Map<String, Object>> dummyListMap = new ArrayList<>();
         Map<String, Object> dummyMap= new HashMap<>();
         dummyMap.put("patientId","1");
         dummyMap.put("sampleId","2");
         dummyMap.put("entrezGeneId","00001");
+        dummyMap.put("gene", Collections.singletonMap("entrezGeneId", 1));
         dummyMap.put("chr","3");
         dummyMap.put("startPosition","4");
         dummyMap.put("referenceAllele","5");
         dummyMap.put("variantAllele","6");
         dummyMap.put("ncbiBuild","7");
-        dummyListMap.add(dummyMap);
-
-        when(utilityService.serializeJSONToMaps(jsonDummy.getAbsolutePath()))
-                .thenReturn(dummyListMap);
+        mapper.writeValue(jsonDummy, Collections.singletonList(dummyMap));
+        when(omicTransformationService.ncbiGeneIdToHgncSymbol("1")).thenReturn("A1BG");
+        when(universalDataWriterUtilities.openOmicTsvWriter(anyString(), any(Sheet.class))).thenReturn(omicTsvWriter);
 
         cbpTransformer.exportCBP(exportFolder, new File(templatesFolder), jsonDummy, mutDataType);
 
         String filename = Paths.get(jsonDummy.getAbsolutePath()).getFileName().toString();
         String expectedExportURI = String.format("%s/%s/%s/%s_%s",exportFolder, filename,"mut",filename, mutFileId);
-        verify(universalDataWriterUtilities).writeSingleOmicFileToTsv(eq(expectedExportURI), any(Sheet.class), anyList());
+        verify(universalDataWriterUtilities).openOmicTsvWriter(eq(expectedExportURI), any(Sheet.class));
+        verify(omicTsvWriter).writeRow(rowCaptor.capture());
+        verify(omicTsvWriter).close();
+        Assert.assertEquals(Arrays.asList("1", "2", "Not Specified", "Not Specified", "Not Specified", "A1BG"),
+            rowCaptor.getValue().subList(0, 6));
+        Assert.assertEquals("7", rowCaptor.getValue().get(25));
     }
 
     @Test
@@ -134,7 +141,6 @@ public class CbpTransformerTests extends BaseTest {
         geneMap.put("hugoGeneSymbol", geneSymbol);
         geneMap.put("type", "protien_coding");
 
-        List<Map<String, Object>> dummyListMap = new ArrayList<>();
         Map<String, Object> dummyMap= new HashMap<>();
         dummyMap.put("patientId","1");
         dummyMap.put("sampleId","2");
@@ -145,20 +151,100 @@ public class CbpTransformerTests extends BaseTest {
         dummyMap.put("referenceAllele","5");
         dummyMap.put("alteration","2");
         dummyMap.put("ncbiBuild","7");
-        dummyListMap.add(dummyMap);
-
-        when(utilityService.serializeJSONToMaps(jsonDummy.getAbsolutePath()))
-                .thenReturn(dummyListMap);
+        mapper.writeValue(jsonDummy, Collections.singletonList(dummyMap));
+        when(universalDataWriterUtilities.openOmicTsvWriter(anyString(), any(Sheet.class))).thenReturn(omicTsvWriter);
 
         cbpTransformer.exportCBP(exportFolder, new File(templatesFolder), jsonDummy, gisticDataType);
 
         String filename = Paths.get(jsonDummy.getAbsolutePath()).getFileName().toString();
         String expectedExportURI = String.format("%s/%s/%s/%s_%s",exportFolder, filename,"cna",filename, cnaFileId);
-        verify(universalDataWriterUtilities).writeSingleOmicFileToTsv(eq(expectedExportURI), any(Sheet.class), captor.capture());
+        verify(universalDataWriterUtilities).openOmicTsvWriter(eq(expectedExportURI), any(Sheet.class));
+        verify(omicTsvWriter).writeRow(rowCaptor.capture());
 
-        String geneName = captor.getValue().get(0).get(8);
+        String geneName = rowCaptor.getValue().get(8);
         Assert.assertEquals(geneName, geneSymbol);
+        Assert.assertEquals("2", rowCaptor.getValue().get(16));
+    }
+
+    @Test
+    public void Given_LargeSyntheticMutationDump_When_exportCBPisCalled_Then_EveryRecordStreamedToTsv() throws IOException {
+        int records = 20000;
+        File dump = folder.newFile("synthetic_mutations.json");
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(dump, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (int i = 0; i < records; i++) {
+                generator.writeStartObject();
+                generator.writeStringField("patientId", "P" + i);
+                generator.writeStringField("sampleId", "S" + i);
+                generator.writeObjectFieldStart("gene");
+                generator.writeNumberField("entrezGeneId", 3845);
+                generator.writeStringField("hugoGeneSymbol", "KRAS");
+                generator.writeEndObject();
+                if (i % 1000 != 999) {
+                    // every thousandth record lacks its chromosome and is skipped
+                    generator.writeStringField("chr", "12");
+                }
+                generator.writeNumberField("startPosition", 25398284 + i);
+                generator.writeStringField("referenceAllele", "C");
+                generator.writeStringField("variantAllele", "T");
+                generator.writeNumberField("tumorAltCount", i % 50);
+                generator.writeStringField("ncbiBuild", "GRCh37");
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        File tsv = new File(exportFolder, "synthetic_mutations.tsv");
+        Sheet template = new XSSFWorkbook().createSheet();
+        template.createRow(0).createCell(0).setCellValue("patient_id");
+        when(universalDataWriterUtilities.openOmicTsvWriter(anyString(), any(Sheet.class)))
+            .thenReturn(new OmicTsvWriter(tsv.toPath(), false));
+
+        cbpTransformer.exportCBP(exportFolder, new File(templatesFolder), dump, mutDataType);
+
+        List<String> lines = Files.readAllLines(tsv.toPath());
+        Assert.assertEquals(records - records / 1000, lines.size());
+        String[] first = lines.get(0).split("\t", -1);
+        Assert.assertEquals(27, first.length);
+        Assert.assertEquals("P0", first[0]);
+        Assert.assertEquals("KRAS", first[5]);
+        Assert.assertEquals("25398284", first[16]);
+        Assert.assertEquals("GRCh37", first[25]);
+        Assert.assertTrue(lines.get(lines.size() - 1).startsWith("P19998\tS19998\t"));
+    }
+
+    @Test
+    public void Given_NonObjectElementsInArray_When_exportCBPisCalled_Then_SkippedAndLaterRecordsStillTransformed() throws IOException {
+        Map<String, Object> record = new HashMap<>();
+        record.put("patientId", "1");
+        record.put("sampleId", "2");
+        record.put("gene", Collections.singletonMap("hugoGeneSymbol", "KRAS"));
+        record.put("chr", "3");
+        record.put("startPosition", "4");
+        record.put("referenceAllele", "5");
+        record.put("variantAllele", "6");
+        record.put("ncbiBuild", "7");
+        mapper.writeValue(jsonDummy, Arrays.asList(record, "not a record", Arrays.asList(1, 2), null, record));
+        when(universalDataWriterUtilities.openOmicTsvWriter(anyString(), any(Sheet.class))).thenReturn(omicTsvWriter);
+
+        cbpTransformer.exportCBP(exportFolder, new File(templatesFolder), jsonDummy, mutDataType);
+
+        verify(omicTsvWriter, times(2)).writeRow(rowCaptor.capture());
+        Assert.assertEquals("1", rowCaptor.getValue().get(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void Given_TruncatedJsonArray_When_exportCBPisCalled_Then_throwIOexception() throws IOException {
+        Files.write(jsonDummy.toPath(), "[{\"patientId\": \"1\"}".getBytes());
+        when(universalDataWriterUtilities.openOmicTsvWriter(anyString(), any(Sheet.class))).thenReturn(omicTsvWriter);
+
+        cbpTransformer.exportCBP(exportFolder, new File(templatesFolder), jsonDummy, mutDataType);
     }
-}
 
+    @Test(expected = IOException.class)
+    public void Given_JsonObjectInsteadOfArray_When_exportCBPisCalled_Then_throwIOexception() throws IOException {
+        mapper.writeValue(jsonDummy, Collections.singletonMap("patientId", "1"));
+        when(universalDataWriterUtilities.openOmicTsvWriter(anyString(), any(Sheet.class))).thenReturn(omicTsvWriter);
 
+        cbpTransformer.exportCBP(exportFolder, new File(templatesFolder), jsonDummy, mutDataType);
+    }
+}
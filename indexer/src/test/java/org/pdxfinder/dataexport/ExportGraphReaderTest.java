@@ -0,0 +1,106 @@
+package org.pdxfinder.dataexport;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.ogm.session.Session;
+import org.pdxfinder.BaseTest;
+import org.pdxfinder.graph.dao.HostStrain;
+import org.pdxfinder.graph.dao.MarkerAssociation;
+import org.pdxfinder.graph.dao.ModelCreation;
+import org.pdxfinder.graph.dao.MolecularCharacterization;
+import org.pdxfinder.graph.dao.Platform;
+import org.pdxfinder.graph.dao.Sample;
+import org.pdxfinder.graph.dao.Specimen;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class ExportGraphReaderTest extends BaseTest {
+
+    @Autowired
+    private Session session;
+
+    private ExportGraphReader exportGraphReader;
+
+    @Before
+    public void init() {
+        exportGraphReader = new ExportGraphReader(session);
+        session.save(model("DS1", "model B", "B"));
+        session.save(model("DS1", "model A", "A"));
+        session.save(model("DS2", "model C", "C"));
+    }
+
+    @Test
+    public void Given_ProviderModels_When_findModelIdsBySampleId_Then_OnlyThatProvidersPatientSamplesMapped() {
+        Map<String, String> modelIds = exportGraphReader.findModelIdsBySampleId("DS1");
+
+        Assert.assertEquals(2, modelIds.size());
+        Assert.assertEquals("model A", modelIds.get("patient A"));
+        Assert.assertEquals("model B", modelIds.get("patient B"));
+    }
+
+    @Test
+    public void Given_ProviderModels_When_findModelIds_Then_PagedByIdAfterTheLastOne() {
+        Assert.assertEquals(Collections.singletonList("model A"), exportGraphReader.findModelIds("DS1", "", 1));
+        Assert.assertEquals(Collections.singletonList("model B"), exportGraphReader.findModelIds("DS1", "model A", 1));
+        Assert.assertTrue(exportGraphReader.findModelIds("DS1", "model B", 1).isEmpty());
+    }
+
+    @Test
+    public void Given_PatientAndXenograftData_When_findOmicSourcesByModel_Then_PatientDataFirstAndModelsSorted() {
+        List<String> modelIds = Arrays.asList("model B", "model A", "model C");
+        Map<String, List<ExportGraphReader.OmicSource>> sources = exportGraphReader.findOmicSourcesByModel("DS1", modelIds, "mutation");
+
+        Assert.assertEquals(Arrays.asList("model A", "model B"), Arrays.asList(sources.keySet().toArray()));
+        List<ExportGraphReader.OmicSource> modelA = sources.get("model A");
+        Assert.assertEquals(2, modelA.size());
+        Assert.assertEquals("patient A", modelA.get(0).getSampleId());
+        Assert.assertEquals("patient", modelA.get(0).getOrigin());
+        Assert.assertEquals("", modelA.get(0).getHostStrainSymbol());
+        Assert.assertEquals("xenograft A", modelA.get(1).getSampleId());
+        Assert.assertEquals("xenograft", modelA.get(1).getOrigin());
+        Assert.assertEquals("NSG", modelA.get(1).getHostStrainSymbol());
+        Assert.assertEquals("2", modelA.get(1).getPassage());
+        Assert.assertEquals("panel", modelA.get(1).getPlatform());
+        Assert.assertEquals("[{\"marker\":\"KRAS\"}]", modelA.get(1).getMolecularData());
+        Assert.assertEquals(Collections.singleton("model B"),
+            exportGraphReader.findOmicSourcesByModel("DS1", Collections.singletonList("model B"), "mutation").keySet());
+        Assert.assertTrue(exportGraphReader.findOmicSourcesByModel("DS1", modelIds, "expression").isEmpty());
+    }
+
+    private ModelCreation model(String dataSource, String modelId, String suffix) {
+        ModelCreation model = new ModelCreation();
+        model.setSourcePdxId(modelId);
+        model.setDataSource(dataSource);
+
+        Sample patientSample = new Sample("patient " + suffix);
+        patientSample.addMolecularCharacterization(mutation());
+        model.setSample(patientSample);
+
+        Sample xenograftSample = new Sample("xenograft " + suffix);
+        xenograftSample.addMolecularCharacterization(mutation());
+        Specimen specimen = new Specimen();
+        specimen.setPassage("2");
+        specimen.setHostStrain(new HostStrain("NSG", "NOD scid gamma"));
+        specimen.setSample(xenograftSample);
+        model.addSpecimen(specimen);
+        return model;
+    }
+
+    private MolecularCharacterization mutation() {
+        Platform platform = new Platform();
+        platform.setName("panel");
+        MarkerAssociation markerAssociation = new MarkerAssociation();
+        markerAssociation.setMolecularDataString("[{\"marker\":\"KRAS\"}]");
+
+        MolecularCharacterization molecularCharacterization = new MolecularCharacterization();
+        molecularCharacterization.setType("mutation");
+        molecularCharacterization.setPlatform(platform);
+        molecularCharacterization.setMarkerAssociations(Collections.singletonList(markerAssociation));
+        return molecularCharacterization;
+    }
+}
@@ -0,0 +1,319 @@
+package org.pdxfinder.dataexport;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+
+public class OmicParquetWriterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void Given_RepeatedOrMixedLevels_When_hybridEncode_Then_RunLengthOrBitPackedRun() {
+        int[] repeated = new int[10];
+        Arrays.fill(repeated, 1);
+        Assert.assertArrayEquals(new byte[]{20, 1}, OmicParquetWriter.hybridEncode(repeated, 10, 1));
+
+        int[] mixed = {1, 0, 1, 1, 0, 0, 0, 1, 1};
+        Assert.assertArrayEquals(new byte[]{5, (byte) 0x8D, 1}, OmicParquetWriter.hybridEncode(mixed, 9, 1));
+
+        int[] indices = {0, 1, 2, 3, 4, 5, 6, 7};
+        Assert.assertArrayEquals(new byte[]{3, (byte) 0x88, (byte) 0xC6, (byte) 0xFA},
+                OmicParquetWriter.hybridEncode(indices, 8, 3));
+    }
+
+    @Test
+    public void Given_RowsOverSeveralRowGroups_When_close_Then_FramedFileWithFooterAfterRowGroups() throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve("expression.parquet");
+        try (OmicParquetWriter writer = new OmicParquetWriter(file, Arrays.asList("symbol", "seq_start_position", "z_score"),
+                Arrays.asList(OmicParquetWriter.ColumnType.STRING, OmicParquetWriter.ColumnType.INT64, OmicParquetWriter.ColumnType.DOUBLE),
+                1000, true)) {
+            for (int i = 0; i < 2500; i++) {
+                writer.writeRow(Arrays.asList("GENE" + i % 20, String.valueOf(i), i % 10 == 0 ? "" : "0.25"));
+            }
+            Assert.assertEquals(2, writer.getRowGroupCount());
+        }
+
+        byte[] bytes = Files.readAllBytes(file);
+        int footerLength = ByteBuffer.wrap(bytes, bytes.length - 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        Assert.assertEquals("PAR1", new String(bytes, 0, 4, "US-ASCII"));
+        Assert.assertEquals("PAR1", new String(bytes, bytes.length - 4, 4, "US-ASCII"));
+        Assert.assertTrue(footerLength > 0 && footerLength < bytes.length - 12);
+        String footer = new String(bytes, bytes.length - 8 - footerLength, footerLength, "ISO-8859-1");
+        Assert.assertTrue(footer.contains("seq_start_position") && footer.contains("GENE0") && footer.contains("GENE9"));
+    }
+
+    @Test
+    public void Given_TypedRowsWithNulls_When_ReadBack_Then_ValuesNullsRowCountsAndStatisticsMatch() throws IOException {
+        for (boolean gzip : new boolean[]{true, false}) {
+            Path file = temporaryFolder.getRoot().toPath().resolve("mut_" + gzip + ".parquet");
+            List<List<String>> rows = new ArrayList<>();
+            for (int i = 0; i < 1300; i++) {
+                rows.add(Arrays.asList(
+                        i % 7 == 0 ? "" : "GENE" + i % 300,
+                        i % 5 == 0 ? "n/a" : String.valueOf(i * 1000L - 600_000),
+                        i % 3 == 0 ? null : String.valueOf(i / 4.0 - 100)));
+            }
+            rows.add(Collections.singletonList("short row"));
+            try (OmicParquetWriter writer = new OmicParquetWriter(file, Arrays.asList("symbol", "seq_start_position", "z_score"),
+                    Arrays.asList(OmicParquetWriter.ColumnType.STRING, OmicParquetWriter.ColumnType.INT64, OmicParquetWriter.ColumnType.DOUBLE),
+                    500, gzip)) {
+                writer.writeRows(rows);
+            }
+
+            ParquetFile parquet = new ParquetFile(Files.readAllBytes(file));
+
+            Assert.assertEquals(rows.size(), parquet.rowCount);
+            Assert.assertEquals(Arrays.asList(500L, 500L, 301L), parquet.rowGroupRows);
+            Assert.assertTrue(parquet.createdBy.startsWith("pdxfinder version "));
+            for (int column = 0; column < 3; column++) {
+                List<Object> expected = new ArrayList<>();
+                for (List<String> row : rows) {
+                    expected.add(expectedValue(column, row.size() > column ? row.get(column) : null));
+                }
+                Assert.assertEquals(expected, parquet.columns.get(column));
+                List<Long> expectedNullCounts = new ArrayList<>();
+                for (int start = 0; start < expected.size(); start += 500) {
+                    expectedNullCounts.add(expected.subList(start, Math.min(start + 500, expected.size()))
+                            .stream().filter(Objects::isNull).count());
+                }
+                Assert.assertEquals(expectedNullCounts, parquet.nullCounts.get(column));
+            }
+            Assert.assertEquals("GENE0", new String(parquet.minValues.get(0).get(0), StandardCharsets.UTF_8));
+            Assert.assertEquals("GENE99", new String(parquet.maxValues.get(0).get(0), StandardCharsets.UTF_8));
+            Assert.assertEquals(-599_000L, littleEndianLong(parquet.minValues.get(1).get(0)));
+            Assert.assertEquals(1_299_000L - 600_000, littleEndianLong(parquet.maxValues.get(1).get(2)));
+            Assert.assertEquals(-99.75, Double.longBitsToDouble(littleEndianLong(parquet.minValues.get(2).get(0))), 0);
+        }
+    }
+
+    private static Object expectedValue(int column, String value) {
+        if (value == null || value.trim().isEmpty()) return null;
+        switch (column) {
+            case 1: return value.equals("n/a") ? null : Long.parseLong(value);
+            case 2: return Double.parseDouble(value);
+            default: return value;
+        }
+    }
+
+    private static long littleEndianLong(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getLong();
+    }
+
+
+    /**
+     * Just enough of a Parquet reader to decode what {@link OmicParquetWriter} writes: the Thrift compact footer,
+     * gzip or uncompressed pages, dictionary and plain values and one-bit definition levels.
+     */
+    private static final class ParquetFile {
+
+        private final List<List<Object>> columns = new ArrayList<>();
+        private final List<Long> rowGroupRows = new ArrayList<>();
+        private final List<List<Long>> nullCounts = new ArrayList<>();
+        private final List<List<byte[]>> minValues = new ArrayList<>();
+        private final List<List<byte[]>> maxValues = new ArrayList<>();
+        private final long rowCount;
+        private final String createdBy;
+
+        @SuppressWarnings("unchecked")
+        private ParquetFile(byte[] bytes) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            int footerLength = buffer.getInt(bytes.length - 8);
+            Map<Integer, Object> metaData = new ThriftReader(buffer, bytes.length - 8 - footerLength).struct();
+            rowCount = (Long) metaData.get(3);
+            createdBy = new String((byte[]) metaData.get(6), StandardCharsets.UTF_8);
+            int columnCount = ((List<Object>) metaData.get(2)).size() - 1;
+            for (int i = 0; i < columnCount; i++) {
+                columns.add(new ArrayList<>());
+                nullCounts.add(new ArrayList<>());
+                minValues.add(new ArrayList<>());
+                maxValues.add(new ArrayList<>());
+            }
+            for (Object rowGroup : (List<Object>) metaData.get(4)) {
+                Map<Integer, Object> group = (Map<Integer, Object>) rowGroup;
+                rowGroupRows.add((Long) group.get(3));
+                List<Object> chunks = (List<Object>) group.get(1);
+                for (int i = 0; i < columnCount; i++) {
+                    Map<Integer, Object> chunk = (Map<Integer, Object>) ((Map<Integer, Object>) chunks.get(i)).get(3);
+                    Map<Integer, Object> statistics = (Map<Integer, Object>) chunk.get(12);
+                    nullCounts.get(i).add((Long) statistics.get(3));
+                    maxValues.get(i).add((byte[]) statistics.get(5));
+                    minValues.get(i).add((byte[]) statistics.get(6));
+                    columns.get(i).addAll(readChunk(buffer, chunk));
+                }
+            }
+        }
+
+        private static List<Object> readChunk(ByteBuffer buffer, Map<Integer, Object> chunk) throws IOException {
+            boolean gzip = (Long) chunk.get(4) == 2;
+            long type = (Long) chunk.get(1);
+            List<String> dictionary = new ArrayList<>();
+            int offset = (int) (long) (chunk.containsKey(11) ? (Long) chunk.get(11) : (Long) chunk.get(9));
+            while (true) {
+                ThriftReader headerReader = new ThriftReader(buffer, offset);
+                Map<Integer, Object> header = headerReader.struct();
+                int storedSize = (int) (long) (Long) header.get(3);
+                ByteBuffer page = ByteBuffer.wrap(pageBytes(buffer, headerReader.position, storedSize, gzip))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                offset = headerReader.position + storedSize;
+                if ((Long) header.get(1) == 2) {
+                    int size = (int) (long) (Long) ((Map<Integer, Object>) header.get(7)).get(1);
+                    for (int i = 0; i < size; i++) {
+                        byte[] value = new byte[page.getInt()];
+                        page.get(value);
+                        dictionary.add(new String(value, StandardCharsets.UTF_8));
+                    }
+                    continue;
+                }
+                int rows = (int) (long) (Long) ((Map<Integer, Object>) header.get(5)).get(1);
+                int levelsLength = page.getInt();
+                int levelsEnd = page.position() + levelsLength;
+                int[] defined = hybridDecode(page, levelsEnd, 1, rows);
+                page.position(levelsEnd);
+                int valueCount = 0;
+                for (int level : defined) valueCount += level;
+                int[] indices = null;
+                if (!dictionary.isEmpty()) {
+                    int bitWidth = page.get();
+                    indices = hybridDecode(page, page.limit(), bitWidth, valueCount);
+                }
+                List<Object> values = new ArrayList<>();
+                int next = 0;
+                for (int level : defined) {
+                    if (level == 0) {
+                        values.add(null);
+                    } else if (indices != null) {
+                        values.add(dictionary.get(indices[next++]));
+                    } else {
+                        values.add(type == 5 ? (Object) page.getDouble() : (Object) page.getLong());
+                    }
+                }
+                return values;
+            }
+        }
+
+        private static byte[] pageBytes(ByteBuffer buffer, int offset, int size, boolean gzip) throws IOException {
+            byte[] stored = new byte[size];
+            ((ByteBuffer) buffer.duplicate().position(offset)).get(stored);
+            if (!gzip) return stored;
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(stored))) {
+                ByteArrayOutputStream page = new ByteArrayOutputStream();
+                byte[] chunk = new byte[8192];
+                for (int read; (read = in.read(chunk)) > 0; ) page.write(chunk, 0, read);
+                return page.toByteArray();
+            }
+        }
+
+        private static int[] hybridDecode(ByteBuffer page, int end, int bitWidth, int count) {
+            ByteBuffer in = page.duplicate();
+            int[] values = new int[count];
+            int decoded = 0;
+            while (decoded < count && in.position() < end) {
+                int header = (int) ThriftReader.varint(in);
+                if ((header & 1) == 0) {
+                    int value = 0;
+                    for (int b = 0; b < (bitWidth + 7) / 8; b++) value |= (in.get() & 0xFF) << (8 * b);
+                    for (int i = 0; i < header >>> 1 && decoded < count; i++) values[decoded++] = value;
+                } else {
+                    long buffer = 0;
+                    int bufferedBits = 0;
+                    for (int i = 0; i < (header >>> 1) * 8; i++) {
+                        while (bufferedBits < bitWidth) {
+                            buffer |= (long) (in.get() & 0xFF) << bufferedBits;
+                            bufferedBits += 8;
+                        }
+                        int value = (int) (buffer & ((1L << bitWidth) - 1));
+                        buffer >>>= bitWidth;
+                        bufferedBits -= bitWidth;
+                        if (decoded < count) values[decoded++] = value;
+                    }
+                }
+            }
+            page.position(in.position());
+            return values;
+        }
+    }
+
+
+    /**
+     * Reads Thrift compact protocol structs into maps of field id to Long, byte[], List or nested struct map.
+     */
+    private static final class ThriftReader {
+
+        private final ByteBuffer in;
+        private int position;
+
+        private ThriftReader(ByteBuffer buffer, int position) {
+            this.in = buffer.duplicate();
+            this.in.position(position);
+        }
+
+        private Map<Integer, Object> struct() {
+            Map<Integer, Object> fields = new HashMap<>();
+            int fieldId = 0;
+            while (true) {
+                int header = in.get() & 0xFF;
+                if (header == 0) break;
+                int delta = header >>> 4;
+                fieldId = delta == 0 ? (int) zigzag(varint(in)) : fieldId + delta;
+                fields.put(fieldId, value(header & 0x0F));
+            }
+            position = in.position();
+            return fields;
+        }
+
+        private Object value(int type) {
+            switch (type) {
+                case 1: return Boolean.TRUE;
+                case 2: return Boolean.FALSE;
+                case 3: return (long) in.get();
+                case 4: case 5: case 6: return zigzag(varint(in));
+                case 8:
+                    byte[] bytes = new byte[(int) varint(in)];
+                    in.get(bytes);
+                    return bytes;
+                case 9:
+                    int header = in.get() & 0xFF;
+                    int size = header >>> 4 == 15 ? (int) varint(in) : header >>> 4;
+                    List<Object> list = new ArrayList<>();
+                    for (int i = 0; i < size; i++) list.add(value(header & 0x0F));
+                    return list;
+                case 12: return struct();
+                default: throw new IllegalStateException("Unexpected Thrift type " + type);
+            }
+        }
+
+        private static long varint(ByteBuffer in) {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = in.get() & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+        }
+
+        private static long zigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
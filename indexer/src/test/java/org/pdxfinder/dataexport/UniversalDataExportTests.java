@@ -3,6 +3,7 @@ package org.pdxfinder.dataexport;
 
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -13,6 +14,7 @@ import org.pdxfinder.TSV;
 import org.pdxfinder.graph.dao.Group;
 import org.pdxfinder.graph.dao.ModelCreation;
 import org.pdxfinder.services.DataImportService;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -37,6 +39,9 @@ public class UniversalDataExportTests extends BaseTest {
     @Mock
     private DataImportService dataImportService;
 
+    @Mock
+    private OmicTsvWriter omicTsvWriter;
+
     @InjectMocks
     private UniversalDataExporter universalDataExporter;
 
@@ -83,10 +88,8 @@ public class UniversalDataExportTests extends BaseTest {
         universalDataExporter.exportSamplePlatform(templates, group, templateDir);
 
         verify(extractionUtilities, times(1)).extractSamplePlatform(group);
-        verify(writerUtilities, times(1)).updateXlsxSheetWithData(any(Sheet.class),
-                any(List.class), anyInt(), anyInt());
-
-        verify(writerUtilities, never()).writXlsxFromWorkbook(any(XSSFWorkbook.class), anyString());
+        verify(writerUtilities, never()).writeXlsxFromTemplate(any(XSSFWorkbook.class), anyMap(),
+                anyInt(), anyInt(), anyString());
     }
 
     @Test
@@ -96,9 +99,8 @@ public class UniversalDataExportTests extends BaseTest {
         XSSFWorkbook samplePlatformTemplate = templates.getTemplate(TSV.templateNames.sampleplatform_template.name());
         universalDataExporter.exportSamplePlatform(templates, group, templateDir);
 
-        verify(writerUtilities).updateXlsxSheetWithData(eq(samplePlatformTemplate.getSheetAt(0)),
-                any(ArrayList.class), anyInt(), anyInt());
-        verify(writerUtilities).writXlsxFromWorkbook(eq(samplePlatformTemplate), anyString());
+        verify(writerUtilities).writeXlsxFromTemplate(eq(samplePlatformTemplate),
+                eq(Collections.singletonMap(0, testSheet)), eq(6), eq(1), anyString());
     }
 
     @Test
@@ -107,10 +109,9 @@ public class UniversalDataExportTests extends BaseTest {
         when(extractionUtilities.extractMetadata(group, metadataSheets, false)).thenReturn(metadataSheets);
 
         universalDataExporter.exportMetadata(metadataSheets, templates, group, false, templateDir);
-        verify(writerUtilities, times(7)).updateXlsxSheetWithData(any(Sheet.class),
-                any(List.class), anyInt(), anyInt());
 
-        verify(writerUtilities, never()).writXlsxFromWorkbook(any(XSSFWorkbook.class), anyString());
+        verify(writerUtilities, never()).writeXlsxFromTemplate(any(XSSFWorkbook.class), anyMap(),
+                anyInt(), anyInt(), anyString());
     }
 
     @Test
@@ -123,7 +124,7 @@ public class UniversalDataExportTests extends BaseTest {
         universalDataExporter.extractAndSaveOmicByBatch(molecularType,
                 templates.getTemplate(TSV.templateNames.mutation_template.name()),testExportURI, group);
 
-        verify(writerUtilities, never()).saveHeadersToTsv(any(Sheet.class),anyString());
+        verify(writerUtilities, never()).openOmicTsvWriter(anyString(), any(Sheet.class));
         verify(extractionUtilities, never()).extractModelsOmicData(any(ModelCreation.class), anyString());
     }
 
@@ -134,17 +135,19 @@ public class UniversalDataExportTests extends BaseTest {
         ModelCreation testModel = new ModelCreation();
         when(universalDataExporter.getModelsByMolecularTypeAndDataSource(molecularType, group))
                 .thenReturn(Collections.singletonList(testModel));
+        when(writerUtilities.openOmicTsvWriter(anyString(), any(Sheet.class))).thenReturn(omicTsvWriter);
 
         universalDataExporter.extractAndSaveOmicByBatch(molecularType,
                 templates.getTemplate(TSV.templateNames.mutation_template.name()),testExportURI, group);
 
-        verify(writerUtilities).saveHeadersToTsv(any(Sheet.class),eq(testExportURI.toString()));
+        verify(writerUtilities).openOmicTsvWriter(eq(testExportURI.toString()), any(Sheet.class));
         verify(extractionUtilities).extractModelsOmicData(eq(testModel), eq(molecularType));
-        verify(writerUtilities).appendDataToOmicTsvFile(anyList(), eq(testExportURI.toString()));
+        verify(omicTsvWriter).writeRows(anyList());
+        verify(omicTsvWriter).close();
     }
 
     @Test
-    public void Given_elevenModel_When_callToExtractAndSaveOmicsByBatch_Then_runOnceInBatchThenAgain() throws IOException {
+    public void Given_elevenModel_When_callToExtractAndSaveOmicsByBatch_Then_rowsStreamedToOneOpenFile() throws IOException {
         String molecularType = "Mutation";
         Path testExportURI = Paths.get("/path/to/export");
         ModelCreation[] testModelList = new ModelCreation[11];
@@ -154,12 +157,53 @@ public class UniversalDataExportTests extends BaseTest {
 
         when(universalDataExporter.getModelsByMolecularTypeAndDataSource(molecularType, group))
                 .thenReturn(Arrays.asList(testModelList));
+        when(writerUtilities.openOmicTsvWriter(anyString(), any(Sheet.class))).thenReturn(omicTsvWriter);
 
         universalDataExporter.extractAndSaveOmicByBatch(molecularType,
                 templates.getTemplate(TSV.templateNames.mutation_template.name()),testExportURI, group);
 
-        verify(writerUtilities).saveHeadersToTsv(any(Sheet.class),eq(testExportURI.toString()));
+        verify(writerUtilities, times(1)).openOmicTsvWriter(eq(testExportURI.toString()), any(Sheet.class));
         verify(extractionUtilities, times(11)).extractModelsOmicData(any(ModelCreation.class), eq(molecularType));
-        verify(writerUtilities, times(2)).appendDataToOmicTsvFile(anyList(), eq(testExportURI.toString()));
+        verify(omicTsvWriter, times(11)).writeRows(anyList());
+        verify(omicTsvWriter, times(1)).close();
+    }
+
+    @Test
+    public void Given_twoProviders_When_exportAllFromGroups_Then_everyProviderAndTypeIsExported() throws IOException {
+        ReflectionTestUtils.setField(universalDataExporter, "exportThreads", 3);
+        Group otherGroup = new Group("other", "other", "other");
+        TemporaryFolder exportRoot = new TemporaryFolder();
+        exportRoot.create();
+
+        universalDataExporter.exportAllFromGroups(exportRoot.getRoot().getAbsolutePath(),
+                Arrays.asList(group, otherGroup), false, templateDir);
+
+        for (Group dataSource : Arrays.asList(group, otherGroup)) {
+            verify(extractionUtilities).extractSamplePlatform(dataSource);
+            verify(extractionUtilities).extractMetadata(eq(dataSource), any(MetadataSheets.class), eq(false));
+            verify(extractionUtilities, times(4)).extractOmicDataByModel(eq(dataSource), anyString(),
+                    any(UniversalDataExtractionServices.ModelRowsConsumer.class));
+            verify(dataImportService).findModelsWithTreatmentSummaryByDS(dataSource.getAbbreviation());
+            verify(dataImportService).findModelFromPatienSnapshotWithTreatmentSummaryByDS(dataSource.getAbbreviation());
+        }
+    }
+
+    @Test
+    public void Given_providerThatCannotBeScheduled_When_exportAllFromGroups_Then_otherProvidersExportedAndFailureCounted() throws IOException {
+        ReflectionTestUtils.setField(universalDataExporter, "exportThreads", 2);
+        Group brokenGroup = new Group("broken", "broken", "broken");
+        TemporaryFolder exportRoot = new TemporaryFolder();
+        exportRoot.create();
+        doThrow(new IOException("read-only file system")).when(writerUtilities)
+                .createExportDirectories(contains(brokenGroup.getAbbreviation()));
+
+        int failures = universalDataExporter.exportAllFromGroups(exportRoot.getRoot().getAbsolutePath(),
+                Arrays.asList(brokenGroup, group), false, templateDir);
+
+        Assert.assertEquals(1, failures);
+        verify(extractionUtilities, never()).extractSamplePlatform(brokenGroup);
+        verify(extractionUtilities).extractSamplePlatform(group);
+        verify(extractionUtilities, times(4)).extractOmicDataByModel(eq(group), anyString(),
+                any(UniversalDataExtractionServices.ModelRowsConsumer.class));
     }
 }
@@ -9,11 +9,18 @@ import org.pdxfinder.BaseTest;
 import org.pdxfinder.TSV;
 import org.pdxfinder.graph.dao.*;
 import org.pdxfinder.services.DataImportService;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class UniversalDataExtractorUtilitiesTest extends BaseTest {
@@ -21,6 +28,9 @@ public class UniversalDataExtractorUtilitiesTest extends BaseTest {
     @Mock
     private DataImportService dataImportService;
 
+    @Mock
+    private ExportGraphReader exportGraphReader;
+
     @InjectMocks
     protected UniversalDataExtractionServices extractor;
 
@@ -84,13 +94,14 @@ public class UniversalDataExtractorUtilitiesTest extends BaseTest {
 
         when(dataImportService.findPatientTumorAtCollectionDataByDS(providerGroup))
                 .thenReturn(patientList);
-        when(dataImportService.findModelBySample(sample))
-                .thenReturn(modelCreation);
+        when(exportGraphReader.findModelIdsBySampleId(providerGroup.getAbbreviation()))
+                .thenReturn(Collections.singletonMap("s123", modelCreation.getSourcePdxId()));
 
         extractor.extractSampleSheet(providerGroup, false);
 
         List<List<String>> patientSampleSheet = extractor.extractSampleSheet(providerGroup, false);
         Assert.assertEquals("p123", patientSampleSheet.get(0).get(0));
+        Assert.assertEquals(MODEL_ID, patientSampleSheet.get(0).get(patientSampleSheet.get(0).size() - 1));
     }
 
     @Test
@@ -211,6 +222,32 @@ public class UniversalDataExtractorUtilitiesTest extends BaseTest {
 
 
 
+    @Test
+    public void Given_BulkOmicSources_When_extractOmicDataByModel_Then_RowsMatchEntityExtraction() throws IOException {
+        ModelCreation testModel = getModelListForTest().get(0);
+        List<List<String>> expected = extractor.extractModelsOmicData(testModel, mutMolType);
+        String mutJson = testModel.getSample().getMolecularCharacterizations().stream()
+                .filter(mc -> mc.getType().equals(mutMolType))
+                .findFirst().get().getMarkerAssociations().get(0).getMolecularDataString();
+
+        Map<String, List<ExportGraphReader.OmicSource>> sources = new TreeMap<>();
+        sources.put(MODEL_ID, Arrays.asList(
+                new ExportGraphReader.OmicSource(MODEL_ID, patientSampleId, "patient", "", "", "platform", mutJson),
+                new ExportGraphReader.OmicSource(MODEL_ID, xenoSampleId, "xenograft", "hssymbol", "1", "platform", mutJson)));
+        ReflectionTestUtils.setField(extractor, "omicModelBatchSize", 1);
+        List<String> firstBatch = Collections.singletonList(MODEL_ID);
+        when(exportGraphReader.findModelIds(providerGroup.getAbbreviation(), "", 1)).thenReturn(firstBatch);
+        when(exportGraphReader.findModelIds(providerGroup.getAbbreviation(), MODEL_ID, 1)).thenReturn(Collections.emptyList());
+        when(exportGraphReader.findOmicSourcesByModel(providerGroup.getAbbreviation(), firstBatch, mutMolType)).thenReturn(sources);
+
+        Map<String, List<List<String>>> actual = new LinkedHashMap<>();
+        int models = extractor.extractOmicDataByModel(providerGroup, mutMolType, actual::put);
+
+        Assert.assertEquals(1, models);
+        Assert.assertEquals(expected, actual.get(MODEL_ID));
+        verify(exportGraphReader).findModelIds(providerGroup.getAbbreviation(), MODEL_ID, 1);
+    }
+
     private List<ModelCreation> getModelListForTest(){
         List<ModelCreation> modelCreationList = new ArrayList<>();
 
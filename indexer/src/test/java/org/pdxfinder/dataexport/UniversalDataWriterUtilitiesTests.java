@@ -1,5 +1,8 @@
 package org.pdxfinder.dataexport;
 
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -11,15 +14,22 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.pdxfinder.BaseTest;
 import org.pdxfinder.services.DataImportService;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 public class UniversalDataWriterUtilitiesTests extends BaseTest {
 
@@ -109,4 +119,95 @@ public class UniversalDataWriterUtilitiesTests extends BaseTest {
             index++;
         }
     }
+
+    @Test
+    public void Given_gzipEnabled_When_rowsStreamedToOmicWriter_Then_compressedTsvHasHeadersAndRows() throws IOException {
+        TemporaryFolder rootFolder = new TemporaryFolder();
+        rootFolder.create();
+        String tsvURI = String.format("%s/mut/test_mut.tsv", rootFolder.getRoot().getAbsoluteFile());
+        XSSFWorkbook templateWB = new XSSFWorkbook();
+        Row headers = templateWB.createSheet().createRow(0);
+        headers.createCell(0).setCellValue("model_id");
+        headers.createCell(1).setCellValue("symbol");
+        ReflectionTestUtils.setField(universalDataWriterUtilities, "gzipTsv", true);
+
+        try (OmicTsvWriter writer = universalDataWriterUtilities.openOmicTsvWriter(tsvURI, templateWB.getSheetAt(0))) {
+            writer.writeRows(Collections.singletonList(Arrays.asList("M1", "KRAS")));
+            writer.writeRow(Arrays.asList("M2", "TP53"));
+            Assert.assertEquals(2, writer.getRowCount());
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(tsvURI + ".gz")), StandardCharsets.UTF_8))) {
+            Assert.assertEquals("model_id\tsymbol\t", reader.readLine());
+            Assert.assertEquals("M1\tKRAS\t", reader.readLine());
+            Assert.assertEquals("M2\tTP53\t", reader.readLine());
+            Assert.assertNull(reader.readLine());
+        }
+    }
+
+    @Test
+    public void Given_parquetEnabled_When_openOmicParquetWriter_Then_parquetFileBesideTsvWithTypedColumns() throws IOException {
+        TemporaryFolder rootFolder = new TemporaryFolder();
+        rootFolder.create();
+        String tsvURI = String.format("%s/mut/test_mut.tsv", rootFolder.getRoot().getAbsoluteFile());
+        XSSFWorkbook templateWB = new XSSFWorkbook();
+        Row headers = templateWB.createSheet().createRow(0);
+        headers.createCell(0).setCellValue("model_id");
+        headers.createCell(1).setCellValue("read_depth");
+        headers.createCell(2).setCellValue("allele_frequency");
+
+        Assert.assertNull(universalDataWriterUtilities.openOmicParquetWriter(tsvURI, templateWB.getSheetAt(0)));
+
+        ReflectionTestUtils.setField(universalDataWriterUtilities, "parquet", true);
+        ReflectionTestUtils.setField(universalDataWriterUtilities, "parquetRowGroupRows", 2);
+        ReflectionTestUtils.setField(universalDataWriterUtilities, "parquetCompression", "gzip");
+        try (OmicParquetWriter writer = universalDataWriterUtilities.openOmicParquetWriter(tsvURI, templateWB.getSheetAt(0))) {
+            Assert.assertEquals(Paths.get(rootFolder.getRoot().getPath(), "mut", "test_mut.parquet"), writer.getFile());
+            writer.writeRows(Arrays.asList(Arrays.asList("M1", "12", "0.5"), Arrays.asList("M2", "NA", ""), Arrays.asList("M1", "7", "1e-3")));
+            Assert.assertEquals(3, writer.getRowCount());
+            Assert.assertEquals(1, writer.getRowGroupCount());
+        }
+
+        byte[] parquet = Files.readAllBytes(Paths.get(rootFolder.getRoot().getPath(), "mut", "test_mut.parquet"));
+        String footer = new String(parquet, StandardCharsets.ISO_8859_1);
+        Assert.assertTrue(footer.startsWith("PAR1") && footer.endsWith("PAR1"));
+        Assert.assertTrue(footer.contains("model_id") && footer.contains("read_depth") && footer.contains("allele_frequency"));
+        Assert.assertNull(universalDataWriterUtilities.openOmicParquetWriter(tsvURI, new XSSFWorkbook().createSheet()));
+    }
+
+    @Test
+    public void Given_styledTemplate_When_writeXlsxFromTemplate_Then_headersKeptAndRowsStreamed() throws IOException {
+        TemporaryFolder rootFolder = new TemporaryFolder();
+        rootFolder.create();
+        File xlsx = new File(rootFolder.getRoot(), "test_metadata.xlsx");
+        XSSFWorkbook template = new XSSFWorkbook();
+        Sheet sheet = template.createSheet("patient");
+        CellStyle headerStyle = template.createCellStyle();
+        Font bold = template.createFont();
+        bold.setBold(true);
+        headerStyle.setFont(bold);
+        for (int i = 0; i < 5; i++) {
+            Cell cell = sheet.createRow(i).createCell(0);
+            cell.setCellValue("header " + i);
+            cell.setCellStyle(headerStyle);
+        }
+        sheet.createRow(5).createCell(1).setCellValue("example row");
+        List<List<String>> data = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            data.add(Arrays.asList("patient-" + i, "female"));
+        }
+        ReflectionTestUtils.setField(universalDataWriterUtilities, "xlsxRowWindow", 10);
+
+        universalDataWriterUtilities.writeXlsxFromTemplate(template, Collections.singletonMap(0, data), 6, 2, xlsx.getPath());
+
+        try (XSSFWorkbook written = new XSSFWorkbook(new FileInputStream(xlsx))) {
+            Sheet writtenSheet = written.getSheetAt(0);
+            Assert.assertEquals("header 4", writtenSheet.getRow(4).getCell(0).getStringCellValue());
+            Assert.assertTrue(written.getFontAt(writtenSheet.getRow(0).getCell(0).getCellStyle().getFontIndex()).getBold());
+            Assert.assertEquals("patient-0", writtenSheet.getRow(5).getCell(1).getStringCellValue());
+            Assert.assertEquals("female", writtenSheet.getRow(504).getCell(2).getStringCellValue());
+            Assert.assertEquals(504, writtenSheet.getLastRowNum());
+        }
+    }
 }
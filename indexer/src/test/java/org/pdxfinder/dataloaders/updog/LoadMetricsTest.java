@@ -0,0 +1,55 @@
+package org.pdxfinder.dataloaders.updog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pdxfinder.dataloaders.updog.LoadMetrics.Stage;
+import org.pdxfinder.dataloaders.updog.LoadMetrics.StageTimer;
+
+public class LoadMetricsTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LoadMetrics loadMetrics;
+
+    @Before public void setUp() {
+        loadMetrics = new LoadMetrics();
+    }
+
+    @Test public void start_givenStagesForTwoProviders_aggregatesPerProviderAndInTotal() {
+        try (StageTimer timer = loadMetrics.start("TP", Stage.READ)) {
+            timer.addRows(10).addBytes(1024);
+        }
+        try (StageTimer timer = loadMetrics.start("TP", Stage.READ)) {
+            timer.addRows(5);
+        }
+        loadMetrics.record("OTHER", Stage.READ, 0, 1, 0, 0);
+
+        LoadMetrics.StageStatistics read = loadMetrics.getStatistics().get("TP").get(Stage.READ);
+        assertEquals(2, read.getCalls());
+        assertEquals(15, read.getRows());
+        assertEquals(1024, read.getBytes());
+        assertEquals(16, loadMetrics.getTotals().get(Stage.READ).getRows());
+    }
+
+    @Test public void writeSummary_givenRecordedStages_writesJsonToLogsDirectory() throws Exception {
+        File dataDirectory = temporaryFolder.newFolder();
+        loadMetrics.record("TP", Stage.CREATE, 1_000_000, 100, 20, 0);
+
+        loadMetrics.writeSummary(dataDirectory);
+
+        File[] summaries = new File(dataDirectory, "logs").listFiles();
+        assertEquals(1, summaries.length);
+        assertTrue(summaries[0].getName().startsWith("load_metrics_"));
+        JsonNode summary = new ObjectMapper().readTree(summaries[0]);
+        assertEquals(20, summary.path("providers").path("TP").path("CREATE").path("nodes").asInt());
+        assertEquals(100, summary.path("totals").path("CREATE").path("rows").asInt());
+    }
+}
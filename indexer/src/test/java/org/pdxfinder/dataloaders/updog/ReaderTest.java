@@ -0,0 +1,38 @@
+package org.pdxfinder.dataloaders.updog;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReaderTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Reader reader = new Reader();
+
+    @Test public void totalSizeOf_givenNestedFiles_countsOnlyTheFilesThatAreRead() throws IOException {
+        File provider = temporaryFolder.newFolder("provider");
+        write(provider, "metadata-patient.tsv", 10);
+        write(provider, "sampleplatform-data.tsv", 5);
+        write(new File(provider, "archive"), "metadata-patient.tsv", 100);
+        write(new File(provider, "treatment"), "provider_patienttreatment-Sheet1.tsv", 20);
+        write(new File(provider, "drug"), "provider_drugdosing-Sheet1.tsv", 30);
+        write(new File(provider, "drug/old"), "provider_drugdosing-Sheet1.tsv", 300);
+
+        Path directory = provider.toPath();
+        assertEquals(15, reader.totalSizeOf(directory, FileSystems.getDefault().getPathMatcher(Updog.PDX_TABLE_FILES)));
+        assertEquals(50, reader.totalTreatmentSizeOf(directory, FileSystems.getDefault().getPathMatcher(Updog.TREATMENT_TABLE_FILES)));
+    }
+
+    private static void write(File directory, String name, int size) throws IOException {
+        Files.createDirectories(directory.toPath());
+        Files.write(new File(directory, name).toPath(), new byte[size]);
+    }
+}
@@ -11,6 +11,7 @@ import static org.pdxfinder.dataloaders.updog.TableSetUtilities.concatenate;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +20,7 @@ import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.pdxfinder.dataloaders.updog.domainobjectcreation.DomainObjectCreator;
 import tech.tablesaw.api.Table;
 
@@ -27,6 +29,7 @@ public class UpdogTest {
     @Mock private Reader reader;
     @Mock private TableSetCleaner tableSetCleaner;
     @Mock private DomainObjectCreator domainObjectCreator;
+    @Spy private LoadMetrics loadMetrics = new LoadMetrics();
     @InjectMocks private Updog updog;
     private Map<String, Table> EMPTY_TABLESET = new HashMap<>();
 
@@ -59,6 +62,13 @@ public class UpdogTest {
     }
 
 
+    @Test public void run_whenCalled_recordsReadAndCleanStages() {
+        updog.run(Paths.get("provider/dir"), "Provider");
+        assertEquals(
+            EnumSet.of(LoadMetrics.Stage.READ, LoadMetrics.Stage.CLEAN),
+            loadMetrics.getStatistics().get("Provider").keySet());
+    }
+
     @Test public void concatenate_whenGivenTwoEmptyLists_returnsEmptyList() {
         List<String> emptyList = Collections.emptyList();
         List<String> expected = emptyList;
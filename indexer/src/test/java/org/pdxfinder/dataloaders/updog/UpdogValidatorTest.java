@@ -0,0 +1,87 @@
+package org.pdxfinder.dataloaders.updog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.pdxfinder.services.DataImportService;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+public class UpdogValidatorTest {
+
+    @Mock private Reader reader;
+    @Mock private TableSetCleaner tableSetCleaner;
+    @Mock private DataImportService dataImportService;
+    @InjectMocks private UpdogValidator updogValidator;
+
+    private static final String PROVIDER = "TP";
+    private Map<String, Table> tableSet;
+
+    @Before public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        tableSet = new HashMap<>();
+        tableSet.put("metadata-loader.tsv", Table.create("metadata-loader.tsv").addColumns(
+            StringColumn.create("name", "Test Provider"),
+            StringColumn.create("abbreviation", PROVIDER)));
+        tableSet.put("metadata-patient.tsv", Table.create("metadata-patient.tsv").addColumns(
+            StringColumn.create("patient_id", "patient 1")));
+        tableSet.put("metadata-model.tsv", Table.create("metadata-model.tsv").addColumns(
+            StringColumn.create("model_id", "model 1"),
+            StringColumn.create("host_strain_full", "nsg"),
+            StringColumn.create("passage_number", "0,1")));
+        tableSet.put("metadata-sample.tsv", Table.create("metadata-sample.tsv").addColumns(
+            StringColumn.create("patient_id", "patient 1"),
+            StringColumn.create("sample_id", "sample 1"),
+            StringColumn.create("model_id", "model 1")));
+        tableSet.put("metadata-model_validation.tsv", Table.create("metadata-model_validation.tsv").addColumns(
+            StringColumn.create("model_id", "model 1")));
+        tableSet.put("metadata-sharing.tsv", Table.create("metadata-sharing.tsv").addColumns(
+            StringColumn.create("model_id", "model 1")));
+    }
+
+    @Test public void validateTableSet_givenConsistentTables_reportsNothing() {
+        assertTrue(updogValidator.validateTableSet(tableSet, PROVIDER).isEmpty());
+    }
+
+    @Test public void validateTableSet_givenMissingTable_reportsStructureError() {
+        tableSet.remove("metadata-sharing.tsv");
+        List<ValidationError> errors = updogValidator.validateTableSet(tableSet, PROVIDER);
+        assertEquals(1, errors.size());
+        assertEquals(ValidationError.Check.TABLE_STRUCTURE, errors.get(0).getCheck());
+        assertEquals("metadata-sharing.tsv", errors.get(0).getTable());
+    }
+
+    @Test public void validateTableSet_givenMissingRequiredValue_reportsRow() {
+        tableSet.get("metadata-sample.tsv").stringColumn("sample_id").set(0, "");
+        List<ValidationError> errors = updogValidator.validateTableSet(tableSet, PROVIDER);
+        assertEquals(1, errors.size());
+        assertEquals(ValidationError.Check.REQUIRED_VALUE, errors.get(0).getCheck());
+        assertEquals(Integer.valueOf(0), errors.get(0).getRow());
+    }
+
+    @Test public void validateTableSet_givenSampleForUnknownModel_reportsCrossReference() {
+        tableSet.get("metadata-sample.tsv").stringColumn("model_id").set(0, "model 2");
+        List<ValidationError> errors = updogValidator.validateTableSet(tableSet, PROVIDER);
+        assertEquals(1, errors.size());
+        assertEquals(ValidationError.Check.CROSS_REFERENCE, errors.get(0).getCheck());
+        assertEquals("model_id", errors.get(0).getColumn());
+    }
+
+    @Test public void validateTableSet_givenXenograftPassageNotInModel_warnsOnly() {
+        tableSet.put("sampleplatform-data.tsv", Table.create("sampleplatform-data.tsv").addColumns(
+            StringColumn.create("model_id", "model 1"),
+            StringColumn.create("sample_origin", "xenograft"),
+            StringColumn.create("passage", "5")));
+        List<ValidationError> errors = updogValidator.validateTableSet(tableSet, PROVIDER);
+        assertEquals(1, errors.size());
+        assertEquals(ValidationError.Severity.WARNING, errors.get(0).getSeverity());
+    }
+}
@@ -7,7 +7,9 @@ import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.pdxfinder.BaseTest;
+import org.pdxfinder.dataloaders.updog.LoadMetrics;
 import org.pdxfinder.graph.dao.*;
 import org.pdxfinder.services.DataImportService;
 import org.pdxfinder.services.dto.NodeSuggestionDTO;
@@ -31,6 +33,7 @@ public class DomainObjectCreatorTest extends BaseTest {
     @Mock private GroupCreator groupCreator;
     @Mock private PatientCreator patientCreator;
     @Mock private ModelCreationCreator modelCreationCreator;
+    @Spy private LoadMetrics loadMetrics = new LoadMetrics();
     @InjectMocks private DomainObjectCreator domainObjectCreator;
 
     private Map<String, Table> pdxDataTables;
@@ -390,6 +393,42 @@ public class DomainObjectCreatorTest extends BaseTest {
     }
 
 
+    @Test public void createMolecularData_givenRowsForSeveralModels_flushesEachModelOnceWhenBudgetExceeded() {
+        domainObjectCreator.setStagingBudgetMb(0);
+        domainObjectCreator.addDomainObject("provider_group", FIRST, providerGroup);
+        ModelCreation modelA = new ModelCreation("model A");
+        modelA.setSample(new Sample("sample A"));
+        ModelCreation modelB = new ModelCreation("model B");
+        modelB.setSample(new Sample("sample B"));
+        domainObjectCreator.addDomainObject("model", "model A", modelA);
+        domainObjectCreator.addDomainObject("model", "model B", modelB);
+
+        Marker marker = new Marker();
+        marker.setHgncSymbol("ERBB2");
+        NodeSuggestionDTO suggestion = new NodeSuggestionDTO();
+        suggestion.setNode(marker);
+        when(dataImportService.getSuggestedMarker(any(), any(), any(), any(), any(), any())).thenReturn(suggestion);
+        when(dataImportService.saveMolecularCharacterization(any())).thenAnswer(invocation -> {
+            MolecularCharacterization mc = invocation.getArgument(0);
+            mc.setId(1L);
+            return mc;
+        });
+
+        Table cytogenetics = Table.create("cytogenetics").addColumns(
+            StringColumn.create("model_id", "model A", "model A", "model B", "model A"),
+            StringColumn.create("sample_id", "sample A", "sample A", "sample B", "sample A"),
+            StringColumn.create("sample_origin", "patient", "patient", "patient", "patient"),
+            StringColumn.create("symbol", "ERBB2", "ERBB2", "ERBB2", "ERBB2"),
+            StringColumn.create("marker_status", "positive", "positive", "negative", "negative"),
+            StringColumn.create("platform", "IHC", "IHC", "IHC", "IHC"));
+
+        domainObjectCreator.createMolecularData(cytogenetics, "cytogenetics");
+
+        verify(dataImportService, times(2)).saveMolecularCharacterization(any());
+        Assert.assertFalse(modelA.getSample().hasMolecularCharacterizations());
+        Assert.assertFalse(modelB.getSample().hasMolecularCharacterizations());
+    }
+
     @Test public void getCellAsText_whenGivenDifferentColumnTypes_returnsString() {
         Table table = Table.create(
             "table",
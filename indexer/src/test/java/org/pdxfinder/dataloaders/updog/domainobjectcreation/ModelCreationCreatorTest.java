@@ -52,4 +52,19 @@ public class ModelCreationCreatorTest {
 
         assertThat(modelCreationCreator.create(testTableSet, providerGroup, specimens).contains(expected), is(true));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getSpecimen_givenIndexedSpecimens_returnsMatchOnPassageAndHostStrain() {
+        Set<Specimen> specimens = new HashSet<>();
+        for (String passage : new String[]{"0", "1", "2"}) {
+            Specimen specimen = new Specimen();
+            specimen.setPassage(passage);
+            specimen.setHostStrain(new HostStrain("NSG"));
+            specimens.add(specimen);
+        }
+        Map<String, Specimen> index = ModelCreationCreator.indexSpecimens(specimens);
+
+        assertThat(modelCreationCreator.getSpecimen("1", "NSG", index).getPassage(), is("1"));
+        assertThat(modelCreationCreator.getSpecimen("1", "NOD", index).getPassage(), is((String) null));
+    }
+}
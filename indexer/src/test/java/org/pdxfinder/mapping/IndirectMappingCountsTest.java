@@ -0,0 +1,50 @@
+package org.pdxfinder.mapping;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class IndirectMappingCountsTest {
+
+    @Test
+    public void Given_Diamond_When_Compute_Then_SharedAncestorCountedOncePerDirectTerm(){
+        // 1 -> 2, 1 -> 3, 2 -> 4, 3 -> 4, 5 -> 3
+        Map<Long, List<Long>> parentsByChild = new HashMap<>();
+        parentsByChild.put(1L, Arrays.asList(2L, 3L));
+        parentsByChild.put(2L, Collections.singletonList(4L));
+        parentsByChild.put(3L, Collections.singletonList(4L));
+        parentsByChild.put(5L, Collections.singletonList(3L));
+        Map<Long, Integer> directCounts = new HashMap<>();
+        directCounts.put(1L, 10);
+        directCounts.put(5L, 1);
+        directCounts.put(3L, 100);
+
+        Map<Long, Long> indirectCounts = IndirectMappingCounts.compute(directCounts, parentsByChild);
+
+        Assert.assertEquals(Long.valueOf(10), indirectCounts.get(2L));
+        Assert.assertEquals(Long.valueOf(11), indirectCounts.get(3L));
+        Assert.assertEquals(Long.valueOf(111), indirectCounts.get(4L));
+        Assert.assertFalse(indirectCounts.containsKey(1L));
+        Assert.assertFalse(indirectCounts.containsKey(5L));
+    }
+
+    @Test
+    public void Given_Cycle_When_Compute_Then_AncestorsStillReceiveCounts(){
+        Map<Long, List<Long>> parentsByChild = new HashMap<>();
+        parentsByChild.put(1L, Collections.singletonList(2L));
+        parentsByChild.put(2L, Collections.singletonList(3L));
+        parentsByChild.put(3L, Arrays.asList(2L, 4L));
+
+        Map<Long, Long> indirectCounts = IndirectMappingCounts.compute(
+            Collections.singletonMap(1L, 7), parentsByChild);
+
+        Assert.assertEquals(Long.valueOf(7), indirectCounts.get(2L));
+        Assert.assertEquals(Long.valueOf(7), indirectCounts.get(3L));
+        Assert.assertEquals(Long.valueOf(7), indirectCounts.get(4L));
+    }
+}
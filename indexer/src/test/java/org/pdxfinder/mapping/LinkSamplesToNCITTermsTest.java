@@ -0,0 +1,135 @@
+package org.pdxfinder.mapping;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.ogm.session.Session;
+import org.pdxfinder.BaseTest;
+import org.pdxfinder.graph.dao.OntologyTerm;
+import org.pdxfinder.graph.dao.PatientSnapshot;
+import org.pdxfinder.graph.dao.Sample;
+import org.pdxfinder.graph.dao.Tissue;
+import org.pdxfinder.rdbms.dao.MappingEntity;
+import org.pdxfinder.rdbms.repositories.MappingEntityRepository;
+import org.pdxfinder.services.DataImportService;
+import org.pdxfinder.services.MappingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+
+public class LinkSamplesToNCITTermsTest extends BaseTest {
+
+    @MockBean
+    private MappingService mappingService;
+    @MockBean
+    private DataImportService dataImportService;
+    @MockBean
+    private MappingEntityRepository mappingEntityRepository;
+    @Autowired
+    private Session session;
+
+    private LinkSamplesToNCITTerms linkSamplesToNCITTerms;
+
+
+    @Before
+    public void init(){
+        linkSamplesToNCITTerms = new LinkSamplesToNCITTerms(
+            dataImportService, mappingService, mappingEntityRepository, session);
+
+        PatientSnapshot snapshot = new PatientSnapshot();
+        for (int i = 0; i < 3; i++) {
+            Sample sample = new Sample("sample " + i);
+            sample.setDataSource("DS");
+            sample.setDiagnosis(i < 2 ? "Carcinoma" : "Unknown");
+            sample.setOriginTissue(new Tissue("Breast"));
+            snapshot.addSample(sample);
+        }
+        session.save(snapshot);
+        session.save(new OntologyTerm("url1", "carcinoma"));
+    }
+
+
+    @Test
+    public void Given_MappedAndUnmappedSamples_When_MapSamplesToTerms_Then_MappedSamplesLinkedAndCounted(){
+        when(mappingService.getDiagnosisMapping("DS", "Carcinoma", "Breast", "")).thenReturn(getMappingEntity());
+
+        linkSamplesToNCITTerms.mapSamplesToTerms();
+
+        Map<String, Object> result = session.query(
+            "MATCH (s:Sample)-[r:MAPPED_TO]->(ot:OntologyTerm) " +
+            "RETURN count(s) AS samples, collect(DISTINCT r.type) AS types, ot.directMappedSamplesNumber AS direct",
+            Collections.emptyMap()).queryResults().iterator().next();
+
+        Assert.assertEquals(2L, ((Number) result.get("samples")).longValue());
+        Assert.assertEquals(2L, ((Number) result.get("direct")).longValue());
+        Assert.assertArrayEquals(new String[]{"direct"}, (String[]) result.get("types"));
+        verify(mappingService, times(1)).getDiagnosisMapping("DS", "Carcinoma", "Breast", "");
+    }
+
+
+    @Test
+    public void Given_LinkedSamples_When_RunTwice_Then_OneLinkPerSampleAndStableCounts(){
+        when(mappingService.getDiagnosisMapping("DS", "Carcinoma", "Breast", "")).thenReturn(getMappingEntity());
+        OntologyTerm carcinoma = session.loadAll(OntologyTerm.class).iterator().next();
+        carcinoma.addSubclass(new OntologyTerm("url3", "neoplasm"));
+        session.save(carcinoma);
+
+        linkSamplesToNCITTerms.run();
+        linkSamplesToNCITTerms.run();
+
+        Assert.assertEquals(2L, count("MATCH (:Sample)-[r:MAPPED_TO]->(:OntologyTerm) RETURN count(r) AS n"));
+        Assert.assertEquals(2L, count("MATCH (ot:OntologyTerm {url: 'url1'}) RETURN ot.directMappedSamplesNumber AS n"));
+        Assert.assertEquals(2L, count("MATCH (ot:OntologyTerm {url: 'url3'}) RETURN ot.indirectMappedSamplesNumber AS n"));
+
+        MappingEntity remapped = getMappingEntity();
+        remapped.setMappedTermUrl("url3");
+        when(mappingService.getDiagnosisMapping("DS", "Carcinoma", "Breast", "")).thenReturn(remapped);
+        linkSamplesToNCITTerms = new LinkSamplesToNCITTerms(dataImportService, mappingService, mappingEntityRepository, session);
+        linkSamplesToNCITTerms.run();
+
+        Assert.assertEquals(2L, count("MATCH (:Sample)-[r:MAPPED_TO]->(:OntologyTerm {url: 'url3'}) RETURN count(r) AS n"));
+        Assert.assertEquals(0L, count("MATCH (:Sample)-[r:MAPPED_TO]->(:OntologyTerm {url: 'url1'}) RETURN count(r) AS n"));
+        Assert.assertEquals(0L, count("MATCH (ot:OntologyTerm {url: 'url1'}) RETURN ot.directMappedSamplesNumber AS n"));
+        Assert.assertEquals(2L, count("MATCH (ot:OntologyTerm {url: 'url3'}) RETURN ot.directMappedSamplesNumber AS n"));
+        Assert.assertEquals(0L, count("MATCH (ot:OntologyTerm {url: 'url3'}) RETURN ot.indirectMappedSamplesNumber AS n"));
+    }
+
+
+    @Test
+    public void Given_MappedTerm_When_UpdateIndirectMappingData_Then_AncestorsReceiveCount(){
+        OntologyTerm child = new OntologyTerm("url2", "ductal carcinoma");
+        OntologyTerm parent = new OntologyTerm("url3", "neoplasm");
+        child.setDirectMappedSamplesNumber(3);
+        child.addSubclass(parent);
+        session.save(child);
+
+        linkSamplesToNCITTerms.updateIndirectMappingData();
+
+        Map<String, Object> result = session.query(
+            "MATCH (ot:OntologyTerm {url: 'url3'}) RETURN ot.indirectMappedSamplesNumber AS indirect, ot.allowAsSuggestion AS allowed",
+            Collections.emptyMap()).queryResults().iterator().next();
+        Assert.assertEquals(3L, ((Number) result.get("indirect")).longValue());
+        Assert.assertEquals(true, result.get("allowed"));
+    }
+
+
+    private long count(String query) {
+        Object value = session.query(query, Collections.emptyMap()).queryResults().iterator().next().get("n");
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    private MappingEntity getMappingEntity(){
+
+        MappingEntity me = new MappingEntity();
+        me.setJustification("");
+        me.setMapType("direct");
+        me.setMappedTermLabel("carcinoma");
+        me.setMappedTermUrl("url1");
+
+        return me;
+    }
+}
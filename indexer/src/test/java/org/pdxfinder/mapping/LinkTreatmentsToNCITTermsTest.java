@@ -3,16 +3,15 @@ package org.pdxfinder.mapping;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.neo4j.ogm.session.Session;
 import org.pdxfinder.BaseTest;
-import org.pdxfinder.graph.dao.OntologyTerm;
-import org.pdxfinder.graph.dao.Treatment;
+import org.pdxfinder.graph.dao.*;
 import org.pdxfinder.rdbms.dao.MappingEntity;
-import org.pdxfinder.services.DataImportService;
 import org.pdxfinder.services.MappingService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 import static org.mockito.Mockito.*;
 
@@ -20,55 +19,91 @@ public class LinkTreatmentsToNCITTermsTest extends BaseTest {
 
     @MockBean
     private MappingService mappingService;
-    @MockBean
-    private DataImportService dataImportService;
+    @Autowired
+    private Session session;
 
-    LinkTreatmentsToNCITTerms linkTreatmentsToNCITTerms;
+    private LinkTreatmentsToNCITTerms linkTreatmentsToNCITTerms;
 
 
     @Before
     public void init(){
-        linkTreatmentsToNCITTerms = new LinkTreatmentsToNCITTerms(mappingService, dataImportService);
+        linkTreatmentsToNCITTerms = new LinkTreatmentsToNCITTerms(mappingService, session);
+
+        for (String dataSource : Arrays.asList("DS1", "DS2")) {
+            Group provider = Group.createProviderGroup(dataSource, dataSource, "", "", "", "");
+            provider.setType("Provider");
+            Patient patient = new Patient("patient " + dataSource, provider);
+            PatientSnapshot snapshot = new PatientSnapshot();
+            snapshot.setTreatmentSummary(getTreatmentSummary("drug1", "drug2"));
+            patient.addSnapshot(snapshot);
+            session.save(patient);
+
+            ModelCreation model = new ModelCreation("model " + dataSource);
+            model.setDataSource(dataSource);
+            model.setTreatmentSummary(getTreatmentSummary("drug1"));
+            session.save(model);
+        }
+        session.save(new OntologyTerm("url1", "otlabel1"));
+    }
+
+
+    @Test
+    public void Given_TreatmentsOfSeveralProvidersOverManyPages_When_MapTreatmentsToTerms_Then_AllTreatmentsLinked(){
+        when(mappingService.getTreatmentMappingKey(any(), any())).thenAnswer(i -> i.getArgument(0) + "__" + i.getArgument(1));
+        when(mappingService.getTreatmentMapping(any(), eq("drug1"))).thenReturn(getMappingEntity());
+
+        linkTreatmentsToNCITTerms.setPageSize(1);
+        linkTreatmentsToNCITTerms.mapTreatmentsToTerms();
+
+        Map<String, Object> result = session.query(
+            "MATCH (tr:Treatment)-[r:MAPPED_TO]->(ot:OntologyTerm) " +
+            "RETURN count(tr) AS treatments, collect(DISTINCT r.type) AS types, collect(DISTINCT ot.label) AS labels",
+            Collections.emptyMap()).queryResults().iterator().next();
+
+        Assert.assertEquals(4L, ((Number) result.get("treatments")).longValue());
+        Assert.assertArrayEquals(new String[]{"direct"}, (String[]) result.get("types"));
+        Assert.assertArrayEquals(new String[]{"otlabel1"}, (String[]) result.get("labels"));
+        verify(mappingService, times(1)).getTreatmentMapping("DS1", "drug1");
+        verify(mappingService, times(1)).getTreatmentMapping("DS2", "drug1");
     }
 
 
     @Test
-    public void Given_Treatments_When_AddRelationshipToTreatments_Then_NewRelationshipIsPresent(){
+    public void Given_LinkedTreatments_When_MapTreatmentsToTermsAgain_Then_NoDuplicateRelationships(){
+        when(mappingService.getTreatmentMappingKey(any(), any())).thenAnswer(i -> i.getArgument(0) + "__" + i.getArgument(1));
         when(mappingService.getTreatmentMapping(any(), any())).thenReturn(getMappingEntity());
-        when(dataImportService.findOntologyTermByUrl(any())).thenReturn(getOntologyTerm());
 
-        List<Treatment> treatments = getTreatments();
-        linkTreatmentsToNCITTerms.addRelationshipToTreatments(treatments, "DS");
-        Assert.assertEquals("otlabel1",treatments.get(0).getTreatmentToOntologyRelationship().getOntologyTerm().getLabel());
+        linkTreatmentsToNCITTerms.mapTreatmentsToTerms();
+        linkTreatmentsToNCITTerms.mapTreatmentsToTerms();
+
+        Map<String, Object> result = session.query(
+            "MATCH (:Treatment)-[r:MAPPED_TO]->(:OntologyTerm) RETURN count(r) AS links",
+            Collections.emptyMap()).queryResults().iterator().next();
 
+        Assert.assertEquals(6L, ((Number) result.get("links")).longValue());
     }
 
 
 
+    private TreatmentSummary getTreatmentSummary(String... drugs){
+
+        TreatmentProtocol protocol = new TreatmentProtocol();
+        for (String drug : drugs) {
+            protocol.addTreatmentComponent(new TreatmentComponent("", new Treatment(drug)));
+        }
+        TreatmentSummary summary = new TreatmentSummary();
+        summary.addTreatmentProtocol(protocol);
+        return summary;
+    }
+
     private MappingEntity getMappingEntity(){
 
         MappingEntity me = new MappingEntity();
         me.setJustification("");
         me.setMapType("direct");
-        me.setMappedTermLabel("label1");
+        me.setMappedTermLabel("otlabel1");
+        me.setMappedTermUrl("url1");
 
         return me;
     }
-
-    private OntologyTerm getOntologyTerm(){
-        OntologyTerm ot = new OntologyTerm();
-        ot.setLabel("otlabel1");
-        ot.setUrl("url1");
-        return ot;
-    }
-
-    private List<Treatment> getTreatments(){
-
-        List<Treatment> treatments = new ArrayList<>();
-
-        Treatment t1 = new Treatment("drug1");
-        treatments.add(t1);
-
-        return treatments;
-    }
 }
@@ -3,58 +3,89 @@ package org.pdxfinder.postload;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.neo4j.ogm.session.Session;
 import org.pdxfinder.BaseTest;
+import org.pdxfinder.graph.dao.ModelCreation;
 import org.pdxfinder.graph.dao.MolecularCharacterization;
-import org.pdxfinder.services.DataImportService;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.pdxfinder.graph.dao.Sample;
+import org.springframework.beans.factory.annotation.Autowired;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import static org.mockito.Mockito.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 public class SetDataVisibilityTest extends BaseTest {
 
-    @MockBean
-    DataImportService dataImportService;
+    @Autowired
+    private Session session;
 
-    SetDataVisibility setDataVisibility;
 
     @Before
     public void init(){
 
-        setDataVisibility = new SetDataVisibility(dataImportService);
+        for (String dataSource : new String[]{"DS1", "DS2"}) {
+            Sample sample = new Sample("sample " + dataSource);
+            sample.addMolecularCharacterization(getMolchar("mutation"));
+            sample.addMolecularCharacterization(getMolchar("copy number alteration"));
+            ModelCreation model = new ModelCreation("model " + dataSource);
+            model.setDataSource(dataSource);
+            model.addRelatedSample(sample);
+            session.save(model);
+        }
     }
 
     @Test
-    public void Given_MolecularCharacterizations_When_DisablingVisibility_Then_VisibilityDisabled(){
+    public void Given_DataSourceRule_When_ApplyRules_Then_OnlyThatDataSourceHidden(){
+
+        SetDataVisibility setDataVisibility = new SetDataVisibility(session, new String[]{"DS1:*:hidden"});
+
+        Map<String, Long> changed = setDataVisibility.applyDataVisibilityRules();
 
-        List<MolecularCharacterization> molchars = getMolchars();
-        setDataVisibility.disableVisibility(molchars);
-        Assert.assertEquals(false, molchars.get(0).isVisible());
+        Assert.assertEquals(Long.valueOf(2), changed.get("DS1:*:hidden"));
+        Assert.assertEquals(Collections.singletonMap("DS1", 2L), getVisibilityByDataSource(false));
+        Assert.assertEquals(Collections.singletonMap("DS2", 2L), getVisibilityByDataSource(true));
     }
 
     @Test
-    public void Given_DataSource_When_ApplyRules_Then_RulesApplied(){
+    public void Given_TypeRuleAfterWildcard_When_ApplyRules_Then_TypeRuleWins(){
 
-        when(dataImportService.findMolcharNumberByDataSource("TEST")).thenReturn(2);
-        when(dataImportService.findMolcharByDataSourceSkipLimit("TEST", 0, 50)).thenReturn(getMolchars());
+        SetDataVisibility setDataVisibility = new SetDataVisibility(session,
+            new String[]{"DS1:mutation:visible", "DS1:*:hidden", " "});
 
-        setDataVisibility.applyDataVisibilityRules("TEST");
-        List<MolecularCharacterization> molcharList = getMolchars();
-        verify(dataImportService, times(1)).saveMolecularCharacterizations(any());
+        Map<String, Long> changed = setDataVisibility.applyDataVisibilityRules();
+
+        Assert.assertEquals(Long.valueOf(0), changed.get("DS1:mutation:visible"));
+        Assert.assertEquals(Long.valueOf(1), changed.get("DS1:*:hidden"));
+        Map<String, Object> result = session.query(
+            "MATCH (mc:MolecularCharacterization) WHERE mc.isVisible = false RETURN collect(mc.type) AS types",
+            Collections.emptyMap()).queryResults().iterator().next();
+        Assert.assertArrayEquals(new String[]{"copy number alteration"}, (String[]) result.get("types"));
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void Given_MalformedRule_When_Created_Then_Rejected(){
 
-    private List<MolecularCharacterization> getMolchars(){
+        new SetDataVisibility(session, new String[]{"DS1:mutation:maybe"});
+    }
+
+
+    private Map<String, Long> getVisibilityByDataSource(boolean visible){
+
+        Map<String, Long> counts = new HashMap<>();
+        session.query(
+            "MATCH (mc:MolecularCharacterization)--(:Sample)--(mod:ModelCreation) WHERE mc.isVisible = {visible} " +
+            "RETURN mod.dataSource AS dataSource, count(mc) AS molchars",
+            Collections.singletonMap("visible", visible)).queryResults()
+            .forEach(row -> counts.put((String) row.get("dataSource"), ((Number) row.get("molchars")).longValue()));
+        return counts;
+    }
 
-        MolecularCharacterization mc1 = new MolecularCharacterization();
-        MolecularCharacterization mc2 = new MolecularCharacterization();
-        List<MolecularCharacterization> list = new ArrayList<>();
+    private MolecularCharacterization getMolchar(String type){
 
-        list.add(mc1);
-        list.add(mc2);
-        return list;
+        MolecularCharacterization mc = new MolecularCharacterization();
+        mc.setType(type);
+        mc.setVisible(true);
+        return mc;
     }
 
 }
@@ -0,0 +1,132 @@
+package org.pdxfinder.utils;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pdxfinder.services.TransformerService;
+import org.pdxfinder.services.UtilityService;
+import org.pdxfinder.services.http.HttpResponseCache;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class CreateLocalFeedsTest {
+
+    // nothing listens on port 1, so any request that reaches the network fails
+    private static final String JAX = "http://localhost:1/PDXInfo/JSONData.do?";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private HttpResponseCache recordedResponses;
+    private TransformerService transformerService;
+    private UtilityService utilityService;
+    private CreateLocalFeeds createLocalFeeds;
+    private File jaxDir;
+
+    @Before
+    public void init() throws IOException {
+        File root = temporaryFolder.newFolder("finder");
+        File recordedDir = temporaryFolder.newFolder("recorded");
+        recordedResponses = new HttpResponseCache(recordedDir, Duration.ofMillis(-1));
+        jaxDir = new File(root, "data/JAX");
+
+        transformerService = mock(TransformerService.class);
+        when(transformerService.transformJAXCNV(anyString())).thenAnswer(invocation -> "cna:" + invocation.getArguments()[0]);
+        when(transformerService.transformJaxRNASeq(anyString())).thenAnswer(invocation -> "trans:" + invocation.getArguments()[0]);
+        utilityService = mock(UtilityService.class);
+
+        createLocalFeeds = new CreateLocalFeeds();
+        ReflectionTestUtils.setField(createLocalFeeds, "dataTransformer", transformerService);
+        ReflectionTestUtils.setField(createLocalFeeds, "utilityService", utilityService);
+        ReflectionTestUtils.setField(createLocalFeeds, "finderRootDir", root.getPath());
+        ReflectionTestUtils.setField(createLocalFeeds, "jaxUrlStr", JAX + "allModels=gimme");
+        ReflectionTestUtils.setField(createLocalFeeds, "jaxVariationURL", JAX + "modelVariation=");
+        ReflectionTestUtils.setField(createLocalFeeds, "jaxHistologyURL", JAX + "modelHistology=");
+        ReflectionTestUtils.setField(createLocalFeeds, "jaxCnaURL", JAX + "modelCNV=");
+        ReflectionTestUtils.setField(createLocalFeeds, "jaxRnaseqURL", JAX + "modelExpression=");
+        ReflectionTestUtils.setField(createLocalFeeds, "feedThreads", 3);
+        ReflectionTestUtils.setField(createLocalFeeds, "recordedResponsesDir", recordedDir.getPath());
+
+        StringBuilder models = new StringBuilder("{\"pdxInfo\":[");
+        for (int i = 1; i <= 5; i++) {
+            models.append(i > 1 ? "," : "").append("{\"Model ID\":\"J").append(i).append("\"}");
+            recordModel("J" + i, "v1");
+        }
+        recordedResponses.put(JAX + "allModels=gimme", models.append("]}\n").toString(), null);
+    }
+
+    @Test
+    public void Given_RecordedResponses_When_createJAXFeeds_Then_EveryModelFeedWrittenOffline() throws Exception {
+
+        createLocalFeeds.run("--localFeeds");
+
+        Assert.assertTrue(read("pdx/models.json").startsWith("{\"pdxInfo\":[{\"Model ID\":\"J1\"}"));
+        Assert.assertFalse(read("pdx/models.json").contains("\n"));
+        for (int i = 1; i <= 5; i++) {
+            Assert.assertEquals("mut J" + i + " v1", read("mut/J" + i + ".json"));
+            Assert.assertEquals("hist J" + i + " v1", read("hist/J" + i + ".json"));
+            Assert.assertEquals("cna:cna J" + i + " v1", read("cna/J" + i + ".json"));
+            Assert.assertEquals("trans:trans J" + i + " v1", read("trans/J" + i + ".json"));
+        }
+        Assert.assertTrue(read(CreateLocalFeeds.FEED_HASHES).contains("\"J5\""));
+        for (String feed : new String[]{"pdx", "mut", "hist", "cna", "trans"}) {
+            for (File file : new File(jaxDir, feed).listFiles()) {
+                Assert.assertFalse(file.getName(), file.getName().endsWith(".tmp"));
+            }
+        }
+        verifyZeroInteractions(utilityService);
+    }
+
+    @Test
+    public void Given_UnchangedResponses_When_createJAXFeedsAgain_Then_OnlyChangedOrMissingModelsRewritten() throws IOException {
+
+        createLocalFeeds.createJAXFeeds();
+        verify(transformerService, times(5)).transformJAXCNV(anyString());
+
+        recordModel("J2", "v2");
+        Assert.assertTrue(new File(jaxDir, "hist/J4.json").delete());
+        createLocalFeeds.createJAXFeeds();
+
+        verify(transformerService, times(7)).transformJAXCNV(anyString());
+        verify(transformerService).transformJAXCNV("cna J2 v2");
+        verify(transformerService, times(2)).transformJAXCNV("cna J4 v1");
+        Assert.assertEquals("mut J2 v2", read("mut/J2.json"));
+        Assert.assertEquals("hist J4 v1", read("hist/J4.json"));
+    }
+
+    @Test
+    public void Given_MissingModelResponses_When_createJAXFeeds_Then_OtherModelsWrittenAndFailedOnesNotHashed() throws IOException {
+
+        ReflectionTestUtils.setField(createLocalFeeds, "jaxRnaseqURL", JAX + "unrecordedExpression=");
+        recordedResponses.put(JAX + "unrecordedExpression=J1", "trans J1 v1", null);
+
+        createLocalFeeds.createJAXFeeds();
+
+        Assert.assertEquals("trans:trans J1 v1", read("trans/J1.json"));
+        Assert.assertFalse(new File(jaxDir, "mut/J3.json").exists());
+        String hashes = read(CreateLocalFeeds.FEED_HASHES);
+        Assert.assertTrue(hashes.contains("\"J1\""));
+        Assert.assertFalse(hashes.contains("\"J3\""));
+    }
+
+    private void recordModel(String modelId, String version) {
+        recordedResponses.put(JAX + "modelVariation=" + modelId, "mut " + modelId + " " + version, null);
+        recordedResponses.put(JAX + "modelHistology=" + modelId, "hist " + modelId + " " + version, null);
+        recordedResponses.put(JAX + "modelCNV=" + modelId, "cna " + modelId + " " + version, null);
+        recordedResponses.put(JAX + "modelExpression=" + modelId, "trans " + modelId + " " + version, null);
+    }
+
+    private String read(String feed) throws IOException {
+        return new String(Files.readAllBytes(new File(jaxDir, feed).toPath()), StandardCharsets.UTF_8);
+    }
+}